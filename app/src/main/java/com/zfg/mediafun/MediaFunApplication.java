@@ -2,7 +2,17 @@ package com.zfg.mediafun;
 
 import android.app.Application;
 
+import com.zfg.common.Constants;
+import com.zfg.common.mp4.Mp4Reader;
+import com.zfg.common.mp4.Mp4Recovery;
+import com.zfg.common.mp4.RecoverySidecar;
+import com.zfg.common.storage.StorageManager;
+import com.zfg.common.trace.PipelineTrace;
 import com.zfg.common.utils.LogUtils;
+import com.zfg.encode.AndroidMediaBackends;
+
+import java.io.File;
+import java.io.IOException;
 
 /**
  * @author zhongfanggui
@@ -11,6 +21,13 @@ import com.zfg.common.utils.LogUtils;
  */
 public class MediaFunApplication extends Application {
 
+    // 录像目录总大小上限，超出时从最旧的录像开始删除
+    private static final long STORAGE_QUOTA_BYTES = 8L * 1024 * 1024 * 1024;
+    // 存储至少保留的剩余空间
+    private static final long STORAGE_MIN_FREE_BYTES = 512L * 1024 * 1024;
+    // 测量写入速度时写入的数据量
+    private static final long WRITE_PROBE_BYTES = 16L * 1024 * 1024;
+
     private static Application mApplication;
 
     @Override
@@ -24,7 +41,69 @@ public class MediaFunApplication extends Application {
         } else {
             LogUtils.setLevel(LogUtils.INFO);
         }
+        // 调试版本输出采集、编码、混合的跟踪点，发布版本为空实现
+        PipelineTrace.setEnabled(BuildConfig.DEBUG);
         LogUtils.i("Show log...");
+
+        StorageManager.setDefault(new StorageManager.Builder(new File(Constants.PATH))
+                .setQuotaBytes(STORAGE_QUOTA_BYTES)
+                .setMinFreeBytes(STORAGE_MIN_FREE_BYTES)
+                .build());
+        // API 26及以上加密录制时mp4写入时加密
+        AndroidMediaBackends.getInstance().setContext(this);
+        // 先修复再测速，避免两者同时读写影响测速结果
+        new Thread(() -> {
+            recoverRecordings();
+            measureWriteSpeed();
+        }, "RecoverRecordings").start();
+    }
+
+    /**
+     * 录像目录所在存储的写入速度，录制开始时据此提示慢卡，只在第一次和换卡后测量
+     */
+    private static void measureWriteSpeed() {
+        try {
+            StorageManager.getDefault().loadOrMeasureWriteSpeed(WRITE_PROBE_BYTES);
+        } catch (IOException e) {
+            LogUtils.e("measure write speed exception = " + e);
+        }
+    }
+
+    /**
+     * 修复上次异常退出时未正常结束的录像，即存在修复文件的MP4
+     */
+    private static void recoverRecordings() {
+        File[] sidecars = new File(Constants.PATH).listFiles(
+                (dir, name) -> name.endsWith(".mp4" + RecoverySidecar.SUFFIX));
+        if (sidecars == null) {
+            return;
+        }
+        for (File sidecar : sidecars) {
+            String path = sidecar.getPath();
+            File mp4 = new File(path.substring(0, path.length() - RecoverySidecar.SUFFIX.length()));
+            // 上次修复在替换文件时被中断
+            if (!Mp4Recovery.restoreBackup(mp4)) {
+                sidecar.delete();
+                continue;
+            }
+            // 已有moov，录制其实已正常结束
+            try {
+                new Mp4Reader(mp4).close();
+                sidecar.delete();
+                Mp4Recovery.backupFor(mp4).delete();
+                continue;
+            } catch (IOException e) {
+                LogUtils.i("recover " + mp4 + ", reason = " + e.getMessage());
+            }
+            try {
+                long start = System.currentTimeMillis();
+                Mp4Recovery.Result result = Mp4Recovery.recoverInPlace(mp4);
+                LogUtils.i("recover " + mp4 + " done, " + result + ", cost = "
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (IOException e) {
+                LogUtils.e("recover " + mp4 + " failed, exception = " + e);
+            }
+        }
     }
 
     public static Application getApplication() {
@@ -24,13 +24,27 @@ import androidx.core.content.ContextCompat;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.zfg.common.Constants;
-import com.zfg.common.utils.DateUtils;
+import com.zfg.common.analysis.MotionDetector;
+import com.zfg.common.analysis.SceneChangeDetector;
+import com.zfg.common.mp4.RecoverySidecar;
+import com.zfg.common.overlay.OverlayCompositor;
+import com.zfg.common.replay.YuvFileReader;
+import com.zfg.common.storage.StorageManager;
+import com.zfg.common.trace.PipelineTrace;
+import com.zfg.common.utils.FileNameGenerator;
 import com.zfg.common.utils.ImageFormatUtils;
 import com.zfg.common.utils.LogUtils;
+import com.zfg.encode.DualResolutionRecorder;
 import com.zfg.encode.MuxerThread;
+import com.zfg.encode.PowerManagerThermalMonitor;
+import com.zfg.encode.QualityGovernor;
+import com.zfg.encode.RecordingConfig;
+import com.zfg.encode.RecordingSession;
+import com.zfg.encode.ReplaySession;
 import com.zfg.mediafun.R;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -54,7 +68,47 @@ public class PreviewActivity extends BaseActivity {
     // 默认选择后置摄像头
     private int mFacing = CameraSelector.LENS_FACING_BACK;
     private final ExecutorService mCameraExecutor = Executors.newSingleThreadExecutor();
-    private boolean isStartEncode;
+    private volatile boolean isStartEncode;
+    // 同时录制代理文件
+    private static final boolean RECORD_PROXY = true;
+    private volatile DualResolutionRecorder mRecorder;
+    // 分析帧需要顺时针旋转的角度，开始录制时按此角度确定编码宽高
+    private volatile int mRotationDegrees;
+    private volatile boolean isPrewarmed;
+    // 复用的NV21，只在分析线程使用
+    private byte[] mNV21;
+    // 转换、旋转、镜像耗时统计
+    private long mRotateCount;
+    private long mRotateTotalNs;
+    // 叠加到录制画面的站点编号
+    private static final String SITE_ID = "SITE-0001";
+    // 时间戳、站点编号叠加，只在分析线程使用，分辨率变化时重建
+    private OverlayCompositor mOverlay;
+    private int mOverlayHeight;
+    private long mOverlayCount;
+    private long mOverlayTotalNs;
+    // 移动侦测触发录制：按开始编码后进入布防，有移动时开始录制，静止一段时间后停止
+    private static final boolean MOTION_TRIGGERED = false;
+    private volatile boolean isMotionArmed;
+    // 只在分析线程使用，置null后重建
+    private volatile MotionDetector mMotionDetector;
+    private long mMotionCount;
+    private long mMotionTotalNs;
+    // 场景切换时强制关键帧，只在分析线程使用
+    private SceneChangeDetector mSceneDetector;
+    // 回放测试：设置为SIZE大小的NV12文件路径时，开始编码改为回放该文件，不使用摄像头画面
+    private static final String REPLAY_YUV = null;
+    // 回放的PCM/WAV文件，为null时使用麦克风
+    private static final String REPLAY_AUDIO = null;
+    // 按帧率实时回放，为false时尽快送帧，测量最大吞吐
+    private static final boolean REPLAY_REAL_TIME = true;
+    private ReplaySession mReplaySession;
+    // 录制期间按发热和丢帧降级，减少分析时跳过场景检测、移动侦测隔帧执行
+    private static final boolean QUALITY_GOVERNOR = true;
+    private final QualityGovernor mGovernor = new QualityGovernor(this::onQualityLevelChanged);
+    private volatile boolean isAnalysisReduced;
+    // 只在分析线程使用
+    private long mAnalyzeCount;
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
@@ -105,9 +159,9 @@ public class PreviewActivity extends BaseActivity {
                 .setTargetRotation(Surface.ROTATION_90)
                 .build();
 
-        byte[] nv12 = new byte[SIZE.getWidth() * SIZE.getHeight() * 3 / 2];
-
+        isPrewarmed = false;
         mImageAnalyzer.setAnalyzer(mCameraExecutor, image -> {
+            PipelineTrace.begin(PipelineTrace.ANALYZE);
             // CameraX默认出图格式：YUV_420_888  YYYY UV VU，数据分别在image.getPlanes()[0]，
             // image.getPlanes()[1]，image.getPlanes()[2]中
             ByteBuffer yPlane = image.getPlanes()[0].getBuffer();
@@ -128,15 +182,45 @@ public class PreviewActivity extends BaseActivity {
             }
 
             // 由于得到的图片格式是YUV_420_888的，这里我采用先转为NV21再转为NV12然后编码H264
-            // 角度转换
-            if (isStartEncode) {
-                byte[] nv21 = ImageFormatUtils.yuv420888ToNV21(yPlane, uPlane, vPlane,
-                        SIZE.getWidth(), SIZE.getHeight());
-                ImageFormatUtils.NV21ToNV12(nv21, nv12, SIZE.getWidth(), SIZE.getHeight());
-                MuxerThread.addVideoPreviewData(nv12);
+            // 角度转换：按rotationDegrees旋转到正向
+            mRotationDegrees = rotationDegrees;
+            if (!isPrewarmed) {
+                // 收到第一帧后分辨率和角度已确定，预创建编码器，缩短开始录制的耗时
+                isPrewarmed = true;
+                prewarmEncoders();
+            }
+            mAnalyzeCount++;
+            if (isMotionArmed && (!isAnalysisReduced || (mAnalyzeCount & 1) == 0)) {
+                detectMotion(yPlane, image.getPlanes()[0].getRowStride(), width, height);
+            }
+            DualResolutionRecorder recorder = mRecorder;
+            if (isStartEncode && recorder != null) {
+                // 场景切换时当前帧编码为关键帧
+                if (!isAnalysisReduced && detectSceneChange(yPlane,
+                        image.getPlanes()[0].getRowStride(), width, height)) {
+                    recorder.forceKeyFrame();
+                }
+                PipelineTrace.begin(PipelineTrace.YUV_CONVERT);
+                int frameSize = SIZE.getWidth() * SIZE.getHeight() * 3 / 2;
+                if (mNV21 == null || mNV21.length != frameSize) {
+                    mNV21 = new byte[frameSize];
+                }
+                ImageFormatUtils.yuv420888ToNV21(yPlane, uPlane, vPlane,
+                        SIZE.getWidth(), SIZE.getHeight(), mNV21);
+                // 每帧从缓存池取，编码完后归还
+                byte[] nv12 = recorder.obtainFrame();
+                // 前置摄像头与预览一致做水平镜像
+                boolean mirror = mFacing == CameraSelector.LENS_FACING_FRONT;
+                rotateFrame(mNV21, nv12, rotationDegrees, mirror);
+                PipelineTrace.end();
+                boolean swap = rotationDegrees == 90 || rotationDegrees == 270;
+                drawOverlay(nv12, swap ? SIZE.getHeight() : SIZE.getWidth(),
+                        swap ? SIZE.getWidth() : SIZE.getHeight());
+                recorder.addVideoData(nv12);
             }
 
             image.close();
+            PipelineTrace.end();
         });
 
         // 绑定前先解绑
@@ -146,6 +230,94 @@ public class PreviewActivity extends BaseActivity {
                 preview, mImageCapture, mImageAnalyzer);
     }
 
+    private void prewarmEncoders() {
+        RecordingConfig config = createRecordingConfig();
+        RecordingSession.prewarmEncoders(config);
+        if (RECORD_PROXY) {
+            RecordingSession.prewarmEncoders(DualResolutionRecorder.createProxyConfig(config));
+        }
+    }
+
+    /**
+     * NV21转NV12的同时旋转到正向，前置摄像头再做水平镜像，一次写入缓存池的帧
+     *
+     * @param dst 旋转后的NV12，90、270度时宽高互换
+     */
+    private void rotateFrame(byte[] nv21, byte[] dst, int rotationDegrees, boolean mirror) {
+        long startNs = System.nanoTime();
+        ImageFormatUtils.NV21ToNV12(nv21, dst, SIZE.getWidth(), SIZE.getHeight(),
+                rotationDegrees, mirror);
+        mRotateTotalNs += System.nanoTime() - startNs;
+        if (++mRotateCount % 250 == 0) {
+            LogUtils.d("rotate avg = " + mRotateTotalNs / mRotateCount / 1000 + "us");
+        }
+    }
+
+    /**
+     * 在转换好的NV12上叠加时间戳和站点编号，主文件和代理文件都带叠加
+     */
+    private void drawOverlay(byte[] nv12, int width, int height) {
+        if (mOverlay == null || mOverlayHeight != height) {
+            mOverlay = new OverlayCompositor(OverlayCompositor.textSizeFor(height), SITE_ID, null);
+            mOverlayHeight = height;
+        }
+        long startNs = System.nanoTime();
+        mOverlay.compose(nv12, width, height, System.currentTimeMillis());
+        mOverlayTotalNs += System.nanoTime() - startNs;
+        if (++mOverlayCount % 250 == 0) {
+            LogUtils.d("overlay avg = " + mOverlayTotalNs / mOverlayCount / 1000 + "us");
+        }
+    }
+
+    /**
+     * 移动侦测，在分析线程执行，回调中开始、停止录制
+     */
+    private void detectMotion(ByteBuffer yPlane, int rowStride, int width, int height) {
+        MotionDetector detector = mMotionDetector;
+        if (detector == null || detector.getWidth() != width || detector.getHeight() != height) {
+            detector = new MotionDetector(width, height);
+            // 静止5秒后停止录制
+            detector.setHysteresis(3, 5 * MuxerThread.FRAME_RATE);
+            detector.setListener(mMotionListener);
+            mMotionDetector = detector;
+        }
+        long startNs = System.nanoTime();
+        detector.process(yPlane, rowStride);
+        mMotionTotalNs += System.nanoTime() - startNs;
+        if (++mMotionCount % 250 == 0) {
+            LogUtils.d("motion avg = " + mMotionTotalNs / mMotionCount / 1000 + "us");
+        }
+    }
+
+    private boolean detectSceneChange(ByteBuffer yPlane, int rowStride, int width, int height) {
+        if (mSceneDetector == null || mSceneDetector.getWidth() != width
+                || mSceneDetector.getHeight() != height) {
+            mSceneDetector = new SceneChangeDetector(width, height);
+            // 两次强制关键帧至少间隔0.5秒
+            mSceneDetector.setThreshold(0.4f, MuxerThread.FRAME_RATE / 2);
+        }
+        boolean changed = mSceneDetector.process(yPlane, rowStride);
+        if (changed) {
+            LogUtils.i("scene change, distance = " + mSceneDetector.getLastDistance());
+        }
+        return changed;
+    }
+
+    private final MotionDetector.Listener mMotionListener = new MotionDetector.Listener() {
+        @Override
+        public void onMotionStart() {
+            LogUtils.i("onMotionStart");
+            startRecorder();
+        }
+
+        @Override
+        public void onMotionStop() {
+            LogUtils.i("onMotionStop");
+            isStartEncode = false;
+            stopSession(mMuxerCallback);
+        }
+    };
+
     public void switchCameraClick(View view) {
         mFacing = mFacing == CameraSelector.LENS_FACING_BACK ?
                 CameraSelector.LENS_FACING_FRONT : CameraSelector.LENS_FACING_BACK;
@@ -159,10 +331,14 @@ public class PreviewActivity extends BaseActivity {
                 dir.mkdirs();
             }
             // 创建文件
-            String fileName = DateUtils.getStringDate() + ".jpg";
-            File file = new File(Constants.PATH, fileName);
-            if (file.exists()) {
-                file.delete();
+            String fileName = FileNameGenerator.getInstance().nextFileName(".jpg");
+            File file;
+            try {
+                // 不覆盖已有的照片
+                file = StorageManager.createUniqueFile(dir, fileName);
+            } catch (IOException e) {
+                LogUtils.e("create photo file exception = " + e);
+                return;
             }
             ImageCapture.OutputFileOptions outputFileOptions = new ImageCapture.OutputFileOptions
                     .Builder(file).build();
@@ -189,15 +365,117 @@ public class PreviewActivity extends BaseActivity {
         LogUtils.i("encoderClick label = " + label);
         if ("开始编码".equals(label)) {
             mEncodeBtn.setText("停止编码");
-            MuxerThread.startMuxer();
-            isStartEncode = true;
+            if (REPLAY_YUV != null) {
+                startReplay();
+            } else if (MOTION_TRIGGERED) {
+                // 布防，由移动侦测开始录制
+                mMotionDetector = null;
+                isMotionArmed = true;
+            } else {
+                startRecorder();
+            }
         } else {
             mEncodeBtn.setText("开始编码");
+            if (mReplaySession != null) {
+                mReplaySession.stop();
+                mReplaySession = null;
+            }
+            isMotionArmed = false;
             isStartEncode = false;
-            MuxerThread.stopMuxer();
+            stopSession(mMuxerCallback);
+        }
+    }
+
+    private void startRecorder() {
+        RecordingConfig config = createRecordingConfig();
+        DualResolutionRecorder recorder = new DualResolutionRecorder(config,
+                RECORD_PROXY ? DualResolutionRecorder.createProxyConfig(config) : null);
+        recorder.start(null);
+        mRecorder = recorder;
+        isStartEncode = true;
+        if (QUALITY_GOVERNOR) {
+            mGovernor.start(new PowerManagerThermalMonitor(this),
+                    recorder.getMasterSession().getStats());
+        }
+    }
+
+    /**
+     * 在降级评估线程回调
+     */
+    private void onQualityLevelChanged(int level, String reason) {
+        isAnalysisReduced = level >= QualityGovernor.LEVEL_REDUCED_ANALYSIS;
+        DualResolutionRecorder recorder = mRecorder;
+        if (recorder != null) {
+            recorder.setQualityLevel(level);
+        }
+    }
+
+    private void startReplay() {
+        RecordingConfig config = new RecordingConfig.Builder()
+                .setSize(SIZE.getWidth(), SIZE.getHeight())
+                .build();
+        ReplaySession replaySession = new ReplaySession(config, new File(REPLAY_YUV),
+                YuvFileReader.FORMAT_NV12, REPLAY_AUDIO == null ? null : new File(REPLAY_AUDIO),
+                REPLAY_REAL_TIME);
+        replaySession.start((filePath, report) -> runOnUiThread(() -> {
+            if (mReplaySession == replaySession) {
+                mReplaySession = null;
+                mEncodeBtn.setText("开始编码");
+            }
+            Toast.makeText(PreviewActivity.this, filePath == null ? report
+                    : "保存成功: " + filePath + "\n" + report, Toast.LENGTH_LONG).show();
+        }));
+        mReplaySession = replaySession;
+    }
+
+    private RecordingConfig createRecordingConfig() {
+        // 分析帧旋转后再编码，90、270度时编码宽高互换
+        boolean swap = mRotationDegrees == 90 || mRotationDegrees == 270;
+        return new RecordingConfig.Builder()
+                .setSize(swap ? SIZE.getHeight() : SIZE.getWidth(),
+                        swap ? SIZE.getWidth() : SIZE.getHeight())
+                .build();
+    }
+
+    /**
+     * 停止和写文件在后台完成，不阻塞主线程
+     */
+    private void stopSession(RecordingSession.Callback callback) {
+        mGovernor.stop();
+        isAnalysisReduced = false;
+        DualResolutionRecorder recorder = mRecorder;
+        mRecorder = null;
+        if (recorder != null) {
+            recorder.stop(callback);
+            recorder.release();
         }
     }
 
+    private final RecordingSession.Callback mMuxerCallback = new RecordingSession.Callback() {
+        @Override
+        public void onStarted(String filePath) {
+
+        }
+
+        @Override
+        public void onStopped(String filePath, boolean isFinished) {
+            if (filePath == null) {
+                return;
+            }
+            String message;
+            if (isFinished) {
+                message = "保存成功: " + filePath;
+            } else if (RecoverySidecar.fileFor(new File(filePath)).exists()) {
+                message = "录制异常结束，下次启动时将尝试修复: " + filePath;
+            } else {
+                // 边写边加密的文件没有修复文件，无法修复
+                message = "录制异常结束，文件无法修复: " + filePath;
+            }
+            runOnUiThread(() -> Toast.makeText(PreviewActivity.this, message,
+                    Toast.LENGTH_SHORT).show());
+        }
+    };
+
     private void stopCamera() {
         LogUtils.i("stopCamera");
         // stop encode
@@ -205,8 +483,14 @@ public class PreviewActivity extends BaseActivity {
             mImageAnalyzer.clearAnalyzer();
         }
 
+        isMotionArmed = false;
         isStartEncode = false;
-        MuxerThread.stopMuxer();
+        stopSession(null);
+        if (mReplaySession != null) {
+            mReplaySession.stop();
+            mReplaySession = null;
+        }
+        RecordingSession.releaseEncoders();
     }
 
     @Override
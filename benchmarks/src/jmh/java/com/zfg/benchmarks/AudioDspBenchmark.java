@@ -0,0 +1,90 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.audio.AudioDspChain;
+import com.zfg.common.audio.AutomaticGainControl;
+import com.zfg.common.audio.ChannelMixer;
+import com.zfg.common.audio.PolyphaseResampler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 采集链路的音频处理，按20ms一块分别测混音、重采样、AGC和整条AudioDspChain。
+ * 输入为双声道两路（麦克风和第二路），输出为16kHz单声道
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AudioDspBenchmark {
+
+    private static final int OUT_RATE = 16000;
+    private static final int IN_CHANNELS = 2;
+    private static final int CHUNK_MS = 20;
+
+    @Param({"48000", "44100", "16000"})
+    public int inRate;
+
+    private int mFrames;
+    private short[] mMic;
+    private short[] mAux;
+    private short[] mMono;
+    private short[] mOut;
+    private short[][] mInputs;
+    private final int[] mChannels = {IN_CHANNELS, IN_CHANNELS};
+
+    private ChannelMixer mMixer;
+    private PolyphaseResampler mResampler;
+    private AutomaticGainControl mAgc;
+    private AudioDspChain mChain;
+
+    @Setup
+    public void setUp() {
+        mFrames = inRate * CHUNK_MS / 1000;
+        mMic = SignalGenerator.speechLike(inRate, mFrames, IN_CHANNELS, 1);
+        mAux = SignalGenerator.speechLike(inRate, mFrames, IN_CHANNELS, 2);
+        mInputs = new short[][]{mMic, mAux};
+        mMono = new short[mFrames];
+        mMixer = new ChannelMixer(1, 2, mFrames);
+        mResampler = new PolyphaseResampler(inRate, OUT_RATE, 1, mFrames);
+        mAgc = new AutomaticGainControl(OUT_RATE, 1);
+        mChain = new AudioDspChain(inRate, IN_CHANNELS, OUT_RATE, 1, mFrames);
+        mOut = new short[Math.max(mChain.getMaxOutputFrames(), mFrames)];
+        mMixer.mix(mInputs, mChannels, 2, mFrames, mMono);
+    }
+
+    @Benchmark
+    public short[] mix() {
+        mMixer.mix(mInputs, mChannels, 2, mFrames, mMono);
+        return mMono;
+    }
+
+    @Benchmark
+    public int resample() {
+        return mResampler.process(mMono, 0, mFrames, mOut, 0);
+    }
+
+    @Benchmark
+    public short[] agc() {
+        // AGC原地处理，先复制一份，避免增益逐块累积
+        System.arraycopy(mMono, 0, mOut, 0, mFrames);
+        mAgc.process(mOut, 0, mFrames);
+        return mOut;
+    }
+
+    @Benchmark
+    public int chain() {
+        return mChain.process(mMic, mAux, mFrames, mOut);
+    }
+}
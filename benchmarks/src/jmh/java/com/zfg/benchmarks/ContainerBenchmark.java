@@ -0,0 +1,178 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.audio.AdtsHeader;
+import com.zfg.common.mp4.Mp4BoxWriter;
+import com.zfg.common.mp4.Mp4MoovWriter;
+import com.zfg.common.mp4.Mp4Reader;
+import com.zfg.common.mp4.Mp4Recovery;
+import com.zfg.common.mp4.Mp4Track;
+import com.zfg.common.mp4.RecoverySidecar;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 容器相关的热点：ADTS加头、MP4 box写入（moov生成）、修复时的NAL扫描、Mp4Reader打开和采样表加载。
+ * 数据按1080p 25fps、16kHz单声道AAC录制一段时间的规模合成
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ContainerBenchmark {
+
+    private static final int FRAME_RATE = 25;
+    private static final int SAMPLE_RATE = 16000;
+    // moov按1小时录像生成
+    private static final int MOOV_SECONDS = 3600;
+    // 修复和读取用的文件，约60MB
+    private static final int FILE_SECONDS = 60;
+    private static final int ADTS_FRAMES = 1024;
+    private static final byte[] SPS = {0x67, 0x64, 0x00, 0x28, (byte) 0xAC, 0x2B, 0x40};
+    private static final byte[] PPS = {0x68, (byte) 0xEE, 0x3C, (byte) 0xB0};
+    private static final byte[] AUDIO_CONFIG = {0x14, 0x08};
+
+    private final byte[] mAdtsFrame = new byte[AdtsHeader.SIZE + 256];
+    private List<Mp4MoovWriter.Track> mMoovTracks;
+    private Mp4BoxWriter mBoxWriter;
+    private File mBroken;
+    private File mRecovered;
+    private File mScratch;
+
+    @Setup
+    public void setUp() throws IOException {
+        Mp4MoovWriter.Track video = Mp4MoovWriter.Track.avc(1920, 1080, FRAME_RATE, SPS, PPS);
+        Mp4MoovWriter.Track audio = Mp4MoovWriter.Track.aac(SAMPLE_RATE, 1, AUDIO_CONFIG);
+        Random random = new Random(1);
+        long offset = 48;
+        for (int i = 0; i < MOOV_SECONDS * FRAME_RATE; i++) {
+            int size = i % 50 == 0 ? 200000 : 20000 + random.nextInt(20000);
+            video.addSample(offset, size, i % 50 == 0);
+            offset += size;
+        }
+        for (int i = 0; i < MOOV_SECONDS * SAMPLE_RATE / 1024; i++) {
+            audio.addSample(offset, 200, true);
+            offset += 200;
+        }
+        mMoovTracks = new ArrayList<>();
+        mMoovTracks.add(video);
+        mMoovTracks.add(audio);
+        mBoxWriter = new Mp4BoxWriter(4 * 1024 * 1024);
+
+        mBroken = File.createTempFile("bench_broken", ".mp4");
+        mRecovered = File.createTempFile("bench_recovered", ".mp4");
+        mScratch = File.createTempFile("bench_scratch", ".mp4");
+        writeBrokenRecording(mBroken, random);
+        new Mp4Recovery(mBroken).recover(mRecovered);
+    }
+
+    @TearDown
+    public void tearDown() {
+        RecoverySidecar.fileFor(mBroken).delete();
+        mBroken.delete();
+        mRecovered.delete();
+        mScratch.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ADTS_FRAMES)
+    public byte[] adtsHeader() {
+        int index = AdtsHeader.sampleRateIndex(SAMPLE_RATE);
+        for (int i = 0; i < ADTS_FRAMES; i++) {
+            AdtsHeader.write(mAdtsFrame, 0, AdtsHeader.SIZE + 100 + (i & 0x7F),
+                    AdtsHeader.PROFILE_AAC_LC, index, 1);
+        }
+        return mAdtsFrame;
+    }
+
+    /**
+     * 1小时录像的moov，约90000个视频采样、56000个音频采样
+     */
+    @Benchmark
+    public int writeMoov() {
+        mBoxWriter.reset();
+        Mp4MoovWriter.write(mBoxWriter, mMoovTracks);
+        return mBoxWriter.size();
+    }
+
+    /**
+     * 扫描约60MB的mdat切分NAL和AAC帧并重建moov
+     */
+    @Benchmark
+    public Mp4Recovery.Result recoverScan() throws IOException {
+        return new Mp4Recovery(mBroken).recover(mScratch);
+    }
+
+    @Benchmark
+    public long openAndLoadTables() throws IOException {
+        try (Mp4Reader reader = new Mp4Reader(mRecovered)) {
+            Mp4Track video = reader.getVideoTrack();
+            return video.getSampleOffset(video.getSampleCount() - 1);
+        }
+    }
+
+    /**
+     * 与MuxerThread写出的中断文件结构相同：ftyp、大小为0的mdat，视频帧与AAC帧按约0.5秒交错
+     */
+    private static void writeBrokenRecording(File file, Random random) throws IOException {
+        RecoverySidecar sidecar = RecoverySidecar.create(file);
+        sidecar.writeVideoConfig("video/avc", 1920, 1080, FRAME_RATE, SPS, PPS);
+        sidecar.writeAudioConfig(SAMPLE_RATE, 1, AUDIO_CONFIG);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            out.write(new byte[]{0, 0, 0, 16, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0, 0, 0, 0});
+            out.write(new byte[]{0, 0, 0, 0, 'm', 'd', 'a', 't'});
+            byte[] payload = new byte[256 * 1024];
+            random.nextBytes(payload);
+            for (int i = 0; i < payload.length; i++) {
+                if (payload[i] == 0) {
+                    payload[i] = 1;
+                }
+            }
+            int audioPerChunk = SAMPLE_RATE / 1024 / 2;
+            for (int i = 0; i < FILE_SECONDS * FRAME_RATE; i++) {
+                boolean isKey = i % 50 == 0;
+                int size = isKey ? 200000 : 20000 + random.nextInt(20000);
+                writeInt(out, size);
+                out.write(isKey ? 0x65 : 0x41);
+                out.write(0x88);
+                out.write(payload, 0, size - 2);
+                if (i % (FRAME_RATE / 2) == FRAME_RATE / 2 - 1) {
+                    for (int j = 0; j < audioPerChunk; j++) {
+                        int audioSize = 150 + random.nextInt(100);
+                        out.write(0x21);
+                        out.write(payload, 0, audioSize - 1);
+                        sidecar.appendAudioSize(audioSize);
+                    }
+                }
+            }
+        }
+        sidecar.close();
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -0,0 +1,187 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.crypto.DecryptingReader;
+import com.zfg.common.crypto.EncryptingSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 加密输出的开销：每次调用加密、解密1秒的1080p录像（8Mbps视频按25帧写入，加64kbps音频），
+ * 输出写到空通道，只计算加解密本身。平均耗时除以1000ms即占用一个核心的比例，
+ * 低于50ms说明不到5%
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncryptionBenchmark {
+
+    private static final int FRAME_RATE = 25;
+    private static final int VIDEO_BYTES_PER_SECOND = 8000000 / 8;
+    // 16kHz AAC每秒约16帧
+    private static final int AUDIO_FRAMES_PER_SECOND = 16;
+    private static final int AUDIO_FRAME_SIZE = 64000 / 8 / AUDIO_FRAMES_PER_SECOND;
+
+    @Param({"1", "2"})
+    public int mode;
+
+    private SecretKey mKey;
+    // 编码器输出在直接内存中
+    private ByteBuffer mVideoFrame;
+    private ByteBuffer mAudioFrame;
+    private byte[] mEncrypted;
+    private ByteBuffer mReadBuffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] key = new byte[32];
+        Random random = new Random(1);
+        random.nextBytes(key);
+        mKey = new SecretKeySpec(key, "AES");
+        byte[] frame = new byte[VIDEO_BYTES_PER_SECOND / FRAME_RATE];
+        random.nextBytes(frame);
+        mVideoFrame = ByteBuffer.allocateDirect(frame.length);
+        mVideoFrame.put(frame).flip();
+        mAudioFrame = ByteBuffer.allocateDirect(AUDIO_FRAME_SIZE);
+        mReadBuffer = ByteBuffer.allocateDirect(EncryptingSink.CHUNK_SIZE);
+
+        ByteArraySink sink = new ByteArraySink(VIDEO_BYTES_PER_SECOND * 2);
+        writeOneSecond(new EncryptingSink(sink, mKey, mode));
+        mEncrypted = sink.toByteArray();
+    }
+
+    private long writeOneSecond(EncryptingSink sink) throws IOException {
+        long written = 0;
+        for (int i = 0; i < FRAME_RATE; i++) {
+            mVideoFrame.rewind();
+            written += sink.write(mVideoFrame);
+            if (i < AUDIO_FRAMES_PER_SECOND) {
+                mAudioFrame.clear();
+                written += sink.write(mAudioFrame);
+            }
+        }
+        sink.close();
+        return written;
+    }
+
+    @Benchmark
+    public long encryptOneSecond() throws IOException {
+        return writeOneSecond(new EncryptingSink(new NullSink(), mKey, mode));
+    }
+
+    @Benchmark
+    public long decryptOneSecond() throws IOException {
+        long read = 0;
+        try (DecryptingReader reader = new DecryptingReader(new ByteArraySource(mEncrypted),
+                mKey)) {
+            int n;
+            while ((n = reader.read(mReadBuffer)) >= 0) {
+                read += n;
+                mReadBuffer.clear();
+            }
+        }
+        return read;
+    }
+
+    private static class NullSink implements WritableByteChannel {
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            src.position(src.limit());
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    private static class ByteArraySink implements WritableByteChannel {
+        private final ByteBuffer mBuffer;
+
+        ByteArraySink(int capacity) {
+            mBuffer = ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int length = src.remaining();
+            mBuffer.put(src);
+            return length;
+        }
+
+        byte[] toByteArray() {
+            byte[] bytes = new byte[mBuffer.position()];
+            System.arraycopy(mBuffer.array(), 0, bytes, 0, bytes.length);
+            return bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+
+    private static class ByteArraySource implements ReadableByteChannel {
+        private final ByteBuffer mBuffer;
+
+        ByteArraySource(byte[] bytes) {
+            mBuffer = ByteBuffer.wrap(bytes);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(dst.remaining(), mBuffer.remaining());
+            int limit = mBuffer.limit();
+            mBuffer.limit(mBuffer.position() + length);
+            dst.put(mBuffer);
+            mBuffer.limit(limit);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+        }
+    }
+}
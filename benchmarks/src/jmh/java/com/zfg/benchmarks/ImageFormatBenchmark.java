@@ -0,0 +1,144 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.utils.ImageFormatUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageFormatUtils每帧的转换、缩放、旋转、镜像，720p、1080p、4K；
+ * 预览录制时NV21转NV12与旋转、镜像在一次遍历中完成
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageFormatBenchmark {
+
+    // 模拟解码器输出Image的行尾填充
+    private static final int ROW_PADDING = 64;
+
+    @Param({"1280x720", "1920x1080", "3840x2160"})
+    public String resolution;
+
+    private int mWidth;
+    private int mHeight;
+    private byte[] mSrc;
+    private byte[] mDst;
+    private byte[] mHalf;
+    private byte[] mScaled;
+    private int mScaledWidth;
+    private int mScaledHeight;
+    private ByteBuffer mYPlane;
+    private ByteBuffer mUPlane;
+    private ByteBuffer mVPlane;
+    private int mRowStride;
+
+    @Setup
+    public void setUp() {
+        String[] size = resolution.split("x");
+        mWidth = Integer.parseInt(size[0]);
+        mHeight = Integer.parseInt(size[1]);
+        int frameSize = mWidth * mHeight * 3 / 2;
+        mSrc = new byte[frameSize];
+        new Random(1).nextBytes(mSrc);
+        mDst = new byte[frameSize];
+        mHalf = new byte[frameSize / 4];
+        // 录制副码流常用的2/3缩放，非整数倍走双线性
+        mScaledWidth = mWidth * 2 / 3 & ~1;
+        mScaledHeight = mHeight * 2 / 3 & ~1;
+        mScaled = new byte[mScaledWidth * mScaledHeight * 3 / 2];
+
+        // YUV_420_888：Y单独一个平面，U、V交叉存储（像素跨度2），行有填充
+        mRowStride = mWidth + ROW_PADDING;
+        mYPlane = ByteBuffer.allocateDirect(mRowStride * mHeight);
+        ByteBuffer uv = ByteBuffer.allocateDirect(mRowStride * mHeight / 2);
+        mUPlane = uv.duplicate();
+        uv.position(1);
+        mVPlane = uv.slice();
+    }
+
+    @Benchmark
+    public byte[] nv21ToNv12() {
+        ImageFormatUtils.NV21ToNV12(mSrc, mDst, mWidth, mHeight);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] yuv420888ToNv12() {
+        ImageFormatUtils.yuv420888ToNV12(mYPlane, mRowStride, mUPlane, mVPlane, mRowStride, 2,
+                mWidth, mHeight, mDst);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] scaleBoxHalf() {
+        ImageFormatUtils.scaleNV12Box(mSrc, mWidth, mHeight, mHalf, 2);
+        return mHalf;
+    }
+
+    @Benchmark
+    public byte[] scaleBilinearTwoThirds() {
+        ImageFormatUtils.scaleNV12Bilinear(mSrc, mWidth, mHeight, mScaled, mScaledWidth,
+                mScaledHeight);
+        return mScaled;
+    }
+
+    @Benchmark
+    public byte[] rotate90() {
+        ImageFormatUtils.rotateNV12(mSrc, mDst, mWidth, mHeight, 90);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] rotate180() {
+        ImageFormatUtils.rotateNV12(mSrc, mDst, mWidth, mHeight, 180);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] rotate270() {
+        ImageFormatUtils.rotateNV12(mSrc, mDst, mWidth, mHeight, 270);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] rotateI420By90() {
+        ImageFormatUtils.rotateI420(mSrc, mDst, mWidth, mHeight, 90);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] rotateI420By270() {
+        ImageFormatUtils.rotateI420(mSrc, mDst, mWidth, mHeight, 270);
+        return mDst;
+    }
+
+    /**
+     * 前置摄像头竖屏录制的每帧处理
+     */
+    @Benchmark
+    public byte[] nv21ToNv12Rotate270Mirror() {
+        ImageFormatUtils.NV21ToNV12(mSrc, mDst, mWidth, mHeight, 270, true);
+        return mDst;
+    }
+
+    @Benchmark
+    public byte[] mirror() {
+        ImageFormatUtils.mirrorNV12(mSrc, mDst, mWidth, mHeight);
+        return mDst;
+    }
+}
@@ -0,0 +1,67 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.analysis.MotionDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MotionDetector处理一帧1080p Y分量的耗时，目标约1ms。
+ * 两帧交替送入，方块位置不同，每帧都有变化的块
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MotionDetectorBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int BOX_SIZE = 300;
+
+    private byte[][] mFrames;
+    private MotionDetector mDetector;
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        mFrames = new byte[][]{frame(random, 100, 400), frame(random, 200, 400)};
+        mDetector = new MotionDetector(WIDTH, HEIGHT);
+    }
+
+    /**
+     * 横向渐变背景加噪声和一个亮方块
+     */
+    private static byte[] frame(Random random, int boxX, int boxY) {
+        byte[] y = new byte[WIDTH * HEIGHT];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                y[row * WIDTH + col] = (byte) (40 + col * 160 / WIDTH + random.nextInt(9) - 4);
+            }
+        }
+        for (int row = boxY; row < boxY + BOX_SIZE; row++) {
+            for (int col = boxX; col < boxX + BOX_SIZE; col++) {
+                y[row * WIDTH + col] = (byte) 235;
+            }
+        }
+        return y;
+    }
+
+    @Benchmark
+    public boolean process() {
+        mIndex ^= 1;
+        return mDetector.process(mFrames[mIndex], WIDTH);
+    }
+}
@@ -0,0 +1,225 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.utils.FrameBufferPool;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Control;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编码线程到MuxerThread的数据交接。MediaMuxer和MediaCodec.BufferInfo无法在JVM上运行，
+ * 这里按MuxerThread的做法建模：
+ * 1）混合器启动后：生产者把编码输出复制到直接缓冲区，在lock中放入muxerDataList（Vector，不限长度）
+ * 并lock.notify，消费者队列为空时lock.wait，否则remove(0)
+ * 2）混合器启动前：addPendingData按轨道放入ArrayDeque，视频超过帧率 * 2个、音频超过48个时丢弃最早的
+ * 另外对比FrameBufferPool复用与每帧分配
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MuxerQueueBenchmark {
+
+    // 与MuxerThread.FRAME_RATE、PENDING_VIDEO_SECONDS、MAX_PENDING_AUDIO一致
+    private static final int FRAME_RATE = 25;
+    private static final int MAX_PENDING_VIDEO = FRAME_RATE * 2;
+    private static final int MAX_PENDING_AUDIO = 48;
+    /**
+     * muxerDataList不限长度，消费者跟不上时会一直增长。基准中积压到这么多时生产者等待，
+     * 等待计入生产者的耗时，不会把没有放入的数据算作吞吐
+     */
+    private static final int MAX_BACKLOG = MAX_PENDING_VIDEO;
+    private static final long WAIT_MS = 10;
+
+    /**
+     * 对应MuxerThread.MuxerData
+     */
+    static class Sample {
+        final ByteBuffer byteBuf;
+        final long presentationTimeUs;
+
+        Sample(ByteBuffer byteBuf, long presentationTimeUs) {
+            this.byteBuf = byteBuf;
+            this.presentationTimeUs = presentationTimeUs;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class Queue {
+
+        // 1080p P帧和AAC帧的典型大小
+        @Param({"30000", "300"})
+        public int sampleSize;
+
+        final Object lock = new Object();
+        // 只用于基准中生产者等待积压消化，消费者不在这里等待
+        final Object space = new Object();
+        final Vector<Sample> muxerDataList = new Vector<>();
+        ByteBuffer encoderOutput;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            encoderOutput = ByteBuffer.allocateDirect(sampleSize);
+            muxerDataList.clear();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pending {
+
+        final Object lock = new Object();
+        final ArrayDeque<Sample> pendingVideo = new ArrayDeque<>();
+        final ArrayDeque<Sample> pendingAudio = new ArrayDeque<>();
+        ByteBuffer videoOutput;
+        ByteBuffer audioOutput;
+        long pts;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            videoOutput = ByteBuffer.allocateDirect(30000);
+            audioOutput = ByteBuffer.allocateDirect(300);
+            pendingVideo.clear();
+            pendingAudio.clear();
+        }
+    }
+
+    /**
+     * 暂存时被挤掉的数据数，与吞吐分开统计
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PendingCounters {
+        public long dropped;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            dropped = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pool {
+
+        @Param({"3110400"})
+        public int frameSize;
+
+        FrameBufferPool pool;
+
+        @Setup
+        public void setUp() {
+            pool = new FrameBufferPool(frameSize, 4);
+            pool.release(pool.acquire());
+        }
+    }
+
+    private static Sample copy(ByteBuffer encoderOutput, long pts) {
+        ByteBuffer src = encoderOutput.duplicate();
+        ByteBuffer copy = ByteBuffer.allocateDirect(src.remaining());
+        copy.put(src);
+        copy.flip();
+        return new Sample(copy, pts);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(2)
+    public boolean produce(Queue queue, Control control) throws InterruptedException {
+        Sample sample = copy(queue.encoderOutput, 0);
+        synchronized (queue.space) {
+            while (queue.muxerDataList.size() >= MAX_BACKLOG) {
+                if (control.stopMeasurement) {
+                    return false;
+                }
+                queue.space.wait(WAIT_MS);
+            }
+        }
+        synchronized (queue.lock) {
+            queue.muxerDataList.add(sample);
+            queue.lock.notify();
+        }
+        return true;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Sample consume(Queue queue, Control control) throws InterruptedException {
+        while (queue.muxerDataList.isEmpty()) {
+            synchronized (queue.lock) {
+                if (queue.muxerDataList.isEmpty()) {
+                    // 迭代结束生产者停止后不再等待
+                    if (control.stopMeasurement) {
+                        return null;
+                    }
+                    queue.lock.wait(WAIT_MS);
+                }
+            }
+        }
+        Sample sample = queue.muxerDataList.remove(0);
+        if (queue.muxerDataList.size() == MAX_BACKLOG - 1) {
+            synchronized (queue.space) {
+                queue.space.notifyAll();
+            }
+        }
+        return sample;
+    }
+
+    @Benchmark
+    public int pendVideo(Pending state, PendingCounters counters) {
+        return addPending(state, state.pendingVideo, MAX_PENDING_VIDEO,
+                copy(state.videoOutput, state.pts++), counters);
+    }
+
+    @Benchmark
+    public int pendAudio(Pending state, PendingCounters counters) {
+        return addPending(state, state.pendingAudio, MAX_PENDING_AUDIO,
+                copy(state.audioOutput, state.pts++), counters);
+    }
+
+    /**
+     * 同MuxerThread.addPendingData：在lock中加入，超出上限时丢弃最早的数据
+     */
+    private static int addPending(Pending state, ArrayDeque<Sample> pending, int max,
+                                  Sample sample, PendingCounters counters) {
+        synchronized (state.lock) {
+            if (pending.size() >= max) {
+                pending.poll();
+                counters.dropped++;
+            }
+            pending.offer(sample);
+            return pending.size();
+        }
+    }
+
+    @Benchmark
+    public byte[] poolAcquireRelease(Pool state) {
+        byte[] frame = state.pool.acquire();
+        frame[0] = 1;
+        state.pool.release(frame);
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] allocatePerFrame(Pool state) {
+        byte[] frame = new byte[state.frameSize];
+        frame[0] = 1;
+        return frame;
+    }
+}
@@ -0,0 +1,101 @@
+package com.zfg.benchmarks;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * 基准测试用的音频数据：合成的类语音信号，或从16位PCM的WAV文件读取
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+final class SignalGenerator {
+
+    private SignalGenerator() {
+    }
+
+    /**
+     * 基频加谐波，按4Hz音节包络调幅，叠加白噪声
+     */
+    static short[] speechLike(int sampleRate, int frames, int channels, long seed) {
+        Random random = new Random(seed);
+        short[] pcm = new short[frames * channels];
+        double pitch = 120 + random.nextInt(80);
+        for (int i = 0; i < frames; i++) {
+            double t = (double) i / sampleRate;
+            double envelope = 0.5 + 0.5 * Math.sin(2 * Math.PI * 4 * t);
+            double voice = 0;
+            for (int h = 1; h <= 5; h++) {
+                voice += Math.sin(2 * Math.PI * pitch * h * t) / h;
+            }
+            for (int c = 0; c < channels; c++) {
+                double value = 6000 * envelope * voice + 300 * random.nextGaussian();
+                pcm[i * channels + c] = (short) Math.max(-32768, Math.min(32767, value));
+            }
+        }
+        return pcm;
+    }
+
+    /**
+     * 一半静音（只有底噪）一半语音，每秒交替
+     */
+    static short[] speechWithPauses(int sampleRate, int seconds) {
+        short[] speech = speechLike(sampleRate, sampleRate * seconds, 1, 3);
+        Random random = new Random(4);
+        for (int s = 0; s < seconds; s += 2) {
+            for (int i = s * sampleRate; i < (s + 1) * sampleRate; i++) {
+                speech[i] = (short) (200 * random.nextGaussian());
+            }
+        }
+        return speech;
+    }
+
+    /**
+     * 读取16位PCM单声道WAV
+     *
+     * @param sampleRate 输出参数，sampleRate[0]为文件的采样率
+     */
+    static short[] readWav(File file, int[] sampleRate) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) {
+            throw new IOException("not a wav file: " + file);
+        }
+        int position = 12;
+        int channels = 0;
+        int bits = 0;
+        while (position + 8 <= bytes.length) {
+            int id = buffer.getInt(position);
+            int size = buffer.getInt(position + 4);
+            int content = position + 8;
+            if (id == 0x20746D66) {
+                // "fmt "
+                channels = buffer.getShort(content + 2);
+                sampleRate[0] = buffer.getInt(content + 4);
+                bits = buffer.getShort(content + 14);
+            } else if (id == 0x61746164) {
+                // "data"
+                if (channels != 1 || bits != 16) {
+                    throw new IOException("need 16-bit mono wav, got " + channels + "ch "
+                            + bits + "bit");
+                }
+                int samples = Math.min(size, bytes.length - content) / 2;
+                short[] pcm = new short[samples];
+                buffer.position(content);
+                buffer.asShortBuffer().get(pcm);
+                return pcm;
+            }
+            position = content + size + (size & 1);
+        }
+        throw new IOException("no data chunk: " + file);
+    }
+}
@@ -0,0 +1,71 @@
+package com.zfg.benchmarks;
+
+import com.zfg.common.audio.VoiceActivityDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * VoiceActivityDetector处理一段录音的耗时，按AudioRecord每次读取的20ms送入。
+ * 通过-Pjmh参数或jmh { benchmarkParameters }把wavPath设为16位单声道WAV即可测真实录音，
+ * 为空时使用合成的10秒语音/静音交替信号
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VoiceActivityBenchmark {
+
+    private static final int DEFAULT_SAMPLE_RATE = 16000;
+    private static final int SYNTHETIC_SECONDS = 10;
+    private static final int CHUNK_MS = 20;
+
+    @Param({""})
+    public String wavPath;
+
+    private short[] mPcm;
+    private int mSampleRate;
+    private int mChunk;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (wavPath.isEmpty()) {
+            mSampleRate = DEFAULT_SAMPLE_RATE;
+            mPcm = SignalGenerator.speechWithPauses(mSampleRate, SYNTHETIC_SECONDS);
+        } else {
+            int[] sampleRate = new int[1];
+            mPcm = SignalGenerator.readWav(new File(wavPath), sampleRate);
+            mSampleRate = sampleRate[0];
+        }
+        mChunk = mSampleRate * CHUNK_MS / 1000;
+    }
+
+    /**
+     * @return 语音占比，避免被优化掉
+     */
+    @Benchmark
+    public float detect() {
+        VoiceActivityDetector vad = new VoiceActivityDetector(mSampleRate);
+        long chunkUs = CHUNK_MS * 1000L;
+        long timeUs = 0;
+        for (int offset = 0; offset + mChunk <= mPcm.length; offset += mChunk) {
+            vad.process(mPcm, offset, mChunk, timeUs);
+            timeUs += chunkUs;
+        }
+        vad.finish(timeUs);
+        return vad.getSpeechRatio();
+    }
+}
@@ -0,0 +1,272 @@
+package com.zfg.common.analysis;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 移动侦测，对分析帧的Y分量按步长降采样后分块，计算每块与上一帧的绝对差之和（SAD），
+ * 检测区域内超过阈值的块数达到要求即认为有移动，开始、结束都带滞后，避免频繁启停录制。
+ * 所有缓存在构造时分配，每帧不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class MotionDetector {
+
+    // 默认降采样步长，1080p降为480x270
+    public static final int DEFAULT_STEP = 4;
+    // 默认分块数
+    public static final int DEFAULT_BLOCKS_X = 16;
+    public static final int DEFAULT_BLOCKS_Y = 9;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mStep;
+    private final int mGridWidth;
+    private final int mGridHeight;
+    private final int mBlocksX;
+    private final int mBlocksY;
+
+    // 上一帧降采样后的Y
+    private final byte[] mPrevious;
+    // 每个采样列、行所在的块
+    private final int[] mColumnBlock;
+    private final int[] mRowBlock;
+    // 每块的采样数和当前帧SAD
+    private final int[] mBlockSamples;
+    private final int[] mBlockSad;
+    // 检测区域，未设置区域时全部块参与检测
+    private final boolean[] mZoneMask;
+    private boolean hasZone;
+    private boolean hasPrevious;
+
+    // 块内平均每个采样点的亮度差超过此值认为该块有变化
+    private int mPixelThreshold = 12;
+    // 区域内有变化的块数达到此值认为有移动
+    private int mMinActiveBlocks = 2;
+    // 连续多少帧有移动才开始
+    private int mTriggerFrames = 3;
+    // 连续多少帧没有移动才结束
+    private int mReleaseFrames = 125;
+
+    private int mActiveBlocks;
+    private int mMotionFrames;
+    private int mStillFrames;
+    private boolean isTriggered;
+    private Listener mListener;
+
+    public MotionDetector(int width, int height) {
+        this(width, height, DEFAULT_STEP, DEFAULT_BLOCKS_X, DEFAULT_BLOCKS_Y);
+    }
+
+    /**
+     * @param width   Y分量宽
+     * @param height  Y分量高
+     * @param step    降采样步长，水平、垂直每step个像素取一个
+     * @param blocksX 水平分块数
+     * @param blocksY 垂直分块数
+     */
+    public MotionDetector(int width, int height, int step, int blocksX, int blocksY) {
+        mWidth = width;
+        mHeight = height;
+        mStep = step;
+        mGridWidth = width / step;
+        mGridHeight = height / step;
+        mBlocksX = blocksX;
+        mBlocksY = blocksY;
+
+        mPrevious = new byte[mGridWidth * mGridHeight];
+        mColumnBlock = new int[mGridWidth];
+        mRowBlock = new int[mGridHeight];
+        mBlockSamples = new int[blocksX * blocksY];
+        mBlockSad = new int[blocksX * blocksY];
+        mZoneMask = new boolean[blocksX * blocksY];
+        for (int x = 0; x < mGridWidth; x++) {
+            mColumnBlock[x] = x * blocksX / mGridWidth;
+        }
+        for (int y = 0; y < mGridHeight; y++) {
+            mRowBlock[y] = y * blocksY / mGridHeight;
+            for (int x = 0; x < mGridWidth; x++) {
+                mBlockSamples[mRowBlock[y] * blocksX + mColumnBlock[x]]++;
+            }
+        }
+    }
+
+    /**
+     * 添加检测区域，坐标为相对帧宽高的比例，块中心落在区域内的块参与检测，可添加多个
+     */
+    public void addZone(float left, float top, float right, float bottom) {
+        for (int by = 0; by < mBlocksY; by++) {
+            float cy = (by + 0.5f) / mBlocksY;
+            for (int bx = 0; bx < mBlocksX; bx++) {
+                float cx = (bx + 0.5f) / mBlocksX;
+                if (cx >= left && cx < right && cy >= top && cy < bottom) {
+                    mZoneMask[by * mBlocksX + bx] = true;
+                    hasZone = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 清除检测区域，恢复全画面检测
+     */
+    public void clearZones() {
+        Arrays.fill(mZoneMask, false);
+        hasZone = false;
+    }
+
+    /**
+     * @param pixelThreshold  块内平均亮度差阈值，0~255
+     * @param minActiveBlocks 有变化的块数阈值
+     */
+    public void setThreshold(int pixelThreshold, int minActiveBlocks) {
+        mPixelThreshold = pixelThreshold;
+        mMinActiveBlocks = minActiveBlocks;
+    }
+
+    /**
+     * @param triggerFrames 连续多少帧有移动才开始
+     * @param releaseFrames 连续多少帧没有移动才结束
+     */
+    public void setHysteresis(int triggerFrames, int releaseFrames) {
+        mTriggerFrames = triggerFrames;
+        mReleaseFrames = releaseFrames;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 处理一帧Y分量
+     *
+     * @param yPlane    Y分量，从绝对位置0开始
+     * @param rowStride 行跨度
+     * @return 当前是否处于移动状态（已过滞后）
+     */
+    public boolean process(ByteBuffer yPlane, int rowStride) {
+        int[] sad = mBlockSad;
+        Arrays.fill(sad, 0);
+        byte[] previous = mPrevious;
+        int step = mStep;
+        int index = 0;
+        for (int gy = 0; gy < mGridHeight; gy++) {
+            int rowBase = gy * step * rowStride;
+            int blockRow = mRowBlock[gy] * mBlocksX;
+            for (int gx = 0; gx < mGridWidth; gx++) {
+                int value = yPlane.get(rowBase + gx * step) & 0xFF;
+                int diff = value - (previous[index] & 0xFF);
+                previous[index++] = (byte) value;
+                sad[blockRow + mColumnBlock[gx]] += diff < 0 ? -diff : diff;
+            }
+        }
+        return evaluate();
+    }
+
+    /**
+     * 处理一帧Y分量
+     *
+     * @param y         Y分量，如NV12、NV21的前width * height字节
+     * @param rowStride 行跨度
+     * @return 当前是否处于移动状态（已过滞后）
+     */
+    public boolean process(byte[] y, int rowStride) {
+        int[] sad = mBlockSad;
+        Arrays.fill(sad, 0);
+        byte[] previous = mPrevious;
+        int step = mStep;
+        int index = 0;
+        for (int gy = 0; gy < mGridHeight; gy++) {
+            int rowBase = gy * step * rowStride;
+            int blockRow = mRowBlock[gy] * mBlocksX;
+            for (int gx = 0; gx < mGridWidth; gx++) {
+                int value = y[rowBase + gx * step] & 0xFF;
+                int diff = value - (previous[index] & 0xFF);
+                previous[index++] = (byte) value;
+                sad[blockRow + mColumnBlock[gx]] += diff < 0 ? -diff : diff;
+            }
+        }
+        return evaluate();
+    }
+
+    private boolean evaluate() {
+        // 第一帧只记录参考
+        if (!hasPrevious) {
+            hasPrevious = true;
+            return isTriggered;
+        }
+
+        int active = 0;
+        for (int i = 0; i < mBlockSad.length; i++) {
+            if ((hasZone && !mZoneMask[i]) || mBlockSamples[i] == 0) {
+                continue;
+            }
+            if (mBlockSad[i] >= mPixelThreshold * mBlockSamples[i]) {
+                active++;
+            }
+        }
+        mActiveBlocks = active;
+
+        if (active >= mMinActiveBlocks) {
+            mMotionFrames++;
+            mStillFrames = 0;
+        } else {
+            mStillFrames++;
+            mMotionFrames = 0;
+        }
+
+        if (!isTriggered && mMotionFrames >= mTriggerFrames) {
+            isTriggered = true;
+            if (mListener != null) {
+                mListener.onMotionStart();
+            }
+        } else if (isTriggered && mStillFrames >= mReleaseFrames) {
+            isTriggered = false;
+            if (mListener != null) {
+                mListener.onMotionStop();
+            }
+        }
+        return isTriggered;
+    }
+
+    /**
+     * 清除参考帧和状态，如切换摄像头后调用，不触发回调
+     */
+    public void reset() {
+        hasPrevious = false;
+        isTriggered = false;
+        mMotionFrames = 0;
+        mStillFrames = 0;
+        mActiveBlocks = 0;
+    }
+
+    public boolean isTriggered() {
+        return isTriggered;
+    }
+
+    /**
+     * @return 上一帧检测区域内有变化的块数
+     */
+    public int getActiveBlocks() {
+        return mActiveBlocks;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * 移动开始、结束回调，在调用process的线程执行
+     */
+    public interface Listener {
+        void onMotionStart();
+
+        void onMotionStop();
+    }
+}
@@ -0,0 +1,152 @@
+package com.zfg.common.analysis;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 场景切换检测，对分析帧的Y分量降采样后统计亮度直方图，与上一帧的直方图距离超过阈值认为是切换，
+ * 用于在切换处强制编码关键帧。两次切换之间有最小间隔，避免闪烁画面连续产生关键帧。
+ * 每帧不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class SceneChangeDetector {
+
+    // 直方图分组数，256级亮度每4级一组
+    private static final int BINS = 64;
+    private static final int BIN_SHIFT = 2;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mStep;
+    private final int mSamples;
+
+    private int[] mHistogram = new int[BINS];
+    private int[] mPrevHistogram = new int[BINS];
+    private boolean hasPrevious;
+
+    // 直方图距离阈值，0~1，为两帧直方图差的绝对值之和除以2倍采样数
+    private float mThreshold = 0.4f;
+    // 两次切换之间的最小帧数
+    private int mMinIntervalFrames = 12;
+    private int mFramesSinceChange;
+    private float mLastDistance;
+
+    public SceneChangeDetector(int width, int height) {
+        this(width, height, MotionDetector.DEFAULT_STEP);
+    }
+
+    /**
+     * @param width  Y分量宽
+     * @param height Y分量高
+     * @param step   降采样步长
+     */
+    public SceneChangeDetector(int width, int height, int step) {
+        mWidth = width;
+        mHeight = height;
+        mStep = step;
+        mSamples = (width / step) * (height / step);
+        mFramesSinceChange = Integer.MAX_VALUE / 2;
+    }
+
+    /**
+     * @param threshold         直方图距离阈值，0~1
+     * @param minIntervalFrames 两次切换之间的最小帧数
+     */
+    public void setThreshold(float threshold, int minIntervalFrames) {
+        mThreshold = threshold;
+        mMinIntervalFrames = minIntervalFrames;
+    }
+
+    /**
+     * 处理一帧Y分量
+     *
+     * @param yPlane    Y分量，从绝对位置0开始
+     * @param rowStride 行跨度
+     * @return 该帧是否为场景切换
+     */
+    public boolean process(ByteBuffer yPlane, int rowStride) {
+        int[] histogram = mHistogram;
+        Arrays.fill(histogram, 0);
+        int gridWidth = mWidth / mStep;
+        int gridHeight = mHeight / mStep;
+        for (int gy = 0; gy < gridHeight; gy++) {
+            int rowBase = gy * mStep * rowStride;
+            for (int gx = 0; gx < gridWidth; gx++) {
+                histogram[(yPlane.get(rowBase + gx * mStep) & 0xFF) >> BIN_SHIFT]++;
+            }
+        }
+        return evaluate();
+    }
+
+    /**
+     * 处理一帧Y分量
+     *
+     * @param y         Y分量
+     * @param rowStride 行跨度
+     * @return 该帧是否为场景切换
+     */
+    public boolean process(byte[] y, int rowStride) {
+        int[] histogram = mHistogram;
+        Arrays.fill(histogram, 0);
+        int gridWidth = mWidth / mStep;
+        int gridHeight = mHeight / mStep;
+        for (int gy = 0; gy < gridHeight; gy++) {
+            int rowBase = gy * mStep * rowStride;
+            for (int gx = 0; gx < gridWidth; gx++) {
+                histogram[(y[rowBase + gx * mStep] & 0xFF) >> BIN_SHIFT]++;
+            }
+        }
+        return evaluate();
+    }
+
+    private boolean evaluate() {
+        boolean changed = false;
+        if (hasPrevious) {
+            int diff = 0;
+            for (int i = 0; i < BINS; i++) {
+                int d = mHistogram[i] - mPrevHistogram[i];
+                diff += d < 0 ? -d : d;
+            }
+            mLastDistance = mSamples == 0 ? 0 : diff / (2f * mSamples);
+            mFramesSinceChange++;
+            if (mLastDistance >= mThreshold && mFramesSinceChange >= mMinIntervalFrames) {
+                mFramesSinceChange = 0;
+                changed = true;
+            }
+        }
+        hasPrevious = true;
+
+        // 交换，当前帧成为下一帧的参考
+        int[] temp = mPrevHistogram;
+        mPrevHistogram = mHistogram;
+        mHistogram = temp;
+        return changed;
+    }
+
+    /**
+     * 清除参考帧，如切换摄像头后调用
+     */
+    public void reset() {
+        hasPrevious = false;
+        mFramesSinceChange = Integer.MAX_VALUE / 2;
+        mLastDistance = 0;
+    }
+
+    /**
+     * @return 上一帧与其参考帧的直方图距离
+     */
+    public float getLastDistance() {
+        return mLastDistance;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+}
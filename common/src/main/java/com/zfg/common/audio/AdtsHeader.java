@@ -0,0 +1,51 @@
+package com.zfg.common.audio;
+
+/**
+ * AAC裸流的ADTS头（7字节，无CRC），保存.aac文件时加在每帧前面
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public final class AdtsHeader {
+
+    public static final int SIZE = 7;
+    public static final int PROFILE_AAC_LC = 2;
+
+    private static final int[] SAMPLE_RATES = {96000, 88200, 64000, 48000, 44100, 32000, 24000,
+            22050, 16000, 12000, 11025, 8000, 7350};
+
+    private AdtsHeader() {
+    }
+
+    /**
+     * @return ADTS采样率序号，不支持的采样率抛出IllegalArgumentException
+     */
+    public static int sampleRateIndex(int sampleRate) {
+        for (int i = 0; i < SAMPLE_RATES.length; i++) {
+            if (SAMPLE_RATES[i] == sampleRate) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("unsupported sample rate: " + sampleRate);
+    }
+
+    /**
+     * @param packet          从offset开始要空出SIZE个字节
+     * @param packetLen       包含ADTS头的帧长度
+     * @param profile         如PROFILE_AAC_LC
+     * @param sampleRateIndex 见sampleRateIndex
+     * @param channelConfig   声道数，1～6
+     */
+    public static void write(byte[] packet, int offset, int packetLen, int profile,
+                             int sampleRateIndex, int channelConfig) {
+        packet[offset] = (byte) 0xFF;
+        packet[offset + 1] = (byte) 0xF9;
+        packet[offset + 2] = (byte) (((profile - 1) << 6) + (sampleRateIndex << 2)
+                + (channelConfig >> 2));
+        packet[offset + 3] = (byte) (((channelConfig & 3) << 6) + (packetLen >> 11));
+        packet[offset + 4] = (byte) ((packetLen & 0x7FF) >> 3);
+        packet[offset + 5] = (byte) (((packetLen & 7) << 5) + 0x1F);
+        packet[offset + 6] = (byte) 0xFC;
+    }
+}
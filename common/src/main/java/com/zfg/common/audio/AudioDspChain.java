@@ -0,0 +1,100 @@
+package com.zfg.common.audio;
+
+/**
+ * 采集音频的处理链：混音（含声道转换）、重采样、AGC限幅，按块流式处理16位交错PCM。
+ * 所有缓存在构造时分配，每块不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class AudioDspChain {
+
+    private final int mInChannels;
+    private final int mOutChannels;
+    private final int mMaxInputFrames;
+    private final ChannelMixer mMixer;
+    private final PolyphaseResampler mResampler;
+    private final AutomaticGainControl mAgc;
+    private boolean isAgcEnabled = true;
+
+    // 混音输入和结果
+    private final short[][] mMixInputs = new short[2][];
+    private final int[] mMixChannels = new int[2];
+    private final short[] mMixed;
+
+    /**
+     * @param inRate         输入采样率
+     * @param inChannels     输入声道数，第二路输入需相同
+     * @param outRate        输出采样率
+     * @param outChannels    输出声道数
+     * @param maxInputFrames 每次最多输入的帧数
+     */
+    public AudioDspChain(int inRate, int inChannels, int outRate, int outChannels,
+                         int maxInputFrames) {
+        mInChannels = inChannels;
+        mOutChannels = outChannels;
+        mMaxInputFrames = maxInputFrames;
+        mMixer = new ChannelMixer(outChannels, 2, maxInputFrames);
+        mResampler = new PolyphaseResampler(inRate, outRate, outChannels, maxInputFrames);
+        mAgc = new AutomaticGainControl(outRate, outChannels);
+        mMixed = new short[maxInputFrames * outChannels];
+        mMixChannels[0] = inChannels;
+        mMixChannels[1] = inChannels;
+    }
+
+    /**
+     * @return 每块最多输出的帧数，用于分配输出缓存
+     */
+    public int getMaxOutputFrames() {
+        return mResampler.getMaxOutputFrames(mMaxInputFrames);
+    }
+
+    /**
+     * 处理一块PCM
+     *
+     * @param in       主输入，如麦克风
+     * @param aux      第二路输入，可为null
+     * @param inFrames 输入帧数
+     * @param out      输出，容量至少getMaxOutputFrames() * outChannels
+     * @return 输出帧数
+     */
+    public int process(short[] in, short[] aux, int inFrames, short[] out) {
+        short[] resampleInput;
+        if (aux == null && mInChannels == mOutChannels) {
+            // 没有第二路且声道数不变时跳过混音
+            resampleInput = in;
+        } else {
+            mMixInputs[0] = in;
+            mMixInputs[1] = aux;
+            mMixer.mix(mMixInputs, mMixChannels, 2, inFrames, mMixed);
+            resampleInput = mMixed;
+        }
+        int outFrames = mResampler.process(resampleInput, 0, inFrames, out, 0);
+        if (isAgcEnabled) {
+            mAgc.process(out, 0, outFrames);
+        }
+        return outFrames;
+    }
+
+    public void setAgcEnabled(boolean agcEnabled) {
+        isAgcEnabled = agcEnabled;
+    }
+
+    public ChannelMixer getMixer() {
+        return mMixer;
+    }
+
+    public AutomaticGainControl getAgc() {
+        return mAgc;
+    }
+
+    public int getOutChannels() {
+        return mOutChannels;
+    }
+
+    public void reset() {
+        mResampler.reset();
+        mAgc.reset();
+    }
+}
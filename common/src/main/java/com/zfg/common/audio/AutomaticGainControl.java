@@ -0,0 +1,124 @@
+package com.zfg.common.audio;
+
+/**
+ * 自动增益控制（AGC）加限幅，原地处理交错的16位PCM：
+ * 1）峰值包络跟随，增益向目标电平靠拢，降增益快、升增益慢，避免呼吸感
+ * 2）包络低于噪声门限时不再升增益，避免把底噪放大
+ * 3）放大后超过限幅门限的部分软压缩，不超过满幅
+ * 多声道共用同一增益，不改变声像，不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class AutomaticGainControl {
+
+    // 限幅门限和满幅
+    private static final float LIMIT_THRESHOLD = 0.8f * Short.MAX_VALUE;
+    private static final float FULL_SCALE = Short.MAX_VALUE;
+
+    private final int mChannels;
+    // 目标峰值电平，相对满幅
+    private float mTargetLevel = 0.5f;
+    private float mMaxGain = 8f;
+    // 噪声门限，相对满幅
+    private float mNoiseGate = 0.005f;
+    // 每个采样的平滑系数
+    private final float mAttackCoef;
+    private final float mReleaseCoef;
+    private final float mEnvelopeDecay;
+
+    private float mEnvelope;
+    private float mGain = 1f;
+
+    public AutomaticGainControl(int sampleRate, int channels) {
+        this(sampleRate, channels, 5, 500);
+    }
+
+    /**
+     * @param sampleRate 采样率
+     * @param channels   声道数
+     * @param attackMs   降增益的时间常数，单位毫秒
+     * @param releaseMs  升增益和包络回落的时间常数，单位毫秒
+     */
+    public AutomaticGainControl(int sampleRate, int channels, int attackMs, int releaseMs) {
+        mChannels = channels;
+        mAttackCoef = coefficient(sampleRate, attackMs);
+        mReleaseCoef = coefficient(sampleRate, releaseMs);
+        mEnvelopeDecay = 1f - mReleaseCoef;
+    }
+
+    private static float coefficient(int sampleRate, int timeMs) {
+        return (float) (1.0 - Math.exp(-1000.0 / (sampleRate * Math.max(1, timeMs))));
+    }
+
+    /**
+     * @param targetLevel 目标峰值电平，0~1
+     * @param maxGain     最大增益倍数
+     * @param noiseGate   噪声门限，0~1
+     */
+    public void setTarget(float targetLevel, float maxGain, float noiseGate) {
+        mTargetLevel = targetLevel;
+        mMaxGain = maxGain;
+        mNoiseGate = noiseGate;
+    }
+
+    /**
+     * 原地处理
+     *
+     * @param pcm    交错PCM
+     * @param offset 起始位置（采样）
+     * @param frames 帧数
+     */
+    public void process(short[] pcm, int offset, int frames) {
+        int channels = mChannels;
+        float target = mTargetLevel * FULL_SCALE;
+        float gate = mNoiseGate * FULL_SCALE;
+        float envelope = mEnvelope;
+        float gain = mGain;
+        int end = offset + frames * channels;
+        for (int i = offset; i < end; i += channels) {
+            // 多声道取峰值
+            float peak = 0;
+            for (int c = 0; c < channels; c++) {
+                float v = Math.abs((float) pcm[i + c]);
+                if (v > peak) {
+                    peak = v;
+                }
+            }
+            envelope = peak > envelope ? peak : envelope * mEnvelopeDecay;
+
+            float desired = envelope < gate ? gain : Math.min(mMaxGain, target / envelope);
+            gain += (desired - gain) * (desired < gain ? mAttackCoef : mReleaseCoef);
+
+            for (int c = 0; c < channels; c++) {
+                pcm[i + c] = limit(pcm[i + c] * gain);
+            }
+        }
+        mEnvelope = envelope;
+        mGain = gain;
+    }
+
+    /**
+     * 超过门限的部分按 x / (1 + x) 压缩，输出不超过满幅
+     */
+    private static short limit(float value) {
+        float magnitude = Math.abs(value);
+        if (magnitude > LIMIT_THRESHOLD) {
+            float headroom = FULL_SCALE - LIMIT_THRESHOLD;
+            float over = (magnitude - LIMIT_THRESHOLD) / headroom;
+            magnitude = LIMIT_THRESHOLD + headroom * over / (1 + over);
+        }
+        int v = Math.round(value < 0 ? -magnitude : magnitude);
+        return (short) v;
+    }
+
+    public float getGain() {
+        return mGain;
+    }
+
+    public void reset() {
+        mEnvelope = 0;
+        mGain = 1f;
+    }
+}
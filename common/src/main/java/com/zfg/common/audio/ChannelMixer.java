@@ -0,0 +1,94 @@
+package com.zfg.common.audio;
+
+import java.util.Arrays;
+
+/**
+ * 多路交错16位PCM混音，并转换到目标声道数：
+ * 单声道输入复制到所有输出声道，多声道输入第i声道混入第i % outChannels声道并按数量取平均。
+ * 每路有独立增益，结果饱和截断，不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class ChannelMixer {
+
+    private final int mOutChannels;
+    private final float[] mGains;
+    // 混音累加缓存
+    private final float[] mAccumulator;
+
+    /**
+     * @param outChannels  输出声道数
+     * @param maxInputs    最多输入路数
+     * @param maxFrames    每次最多处理的帧数
+     */
+    public ChannelMixer(int outChannels, int maxInputs, int maxFrames) {
+        mOutChannels = outChannels;
+        mGains = new float[maxInputs];
+        Arrays.fill(mGains, 1f);
+        mAccumulator = new float[maxFrames * outChannels];
+    }
+
+    /**
+     * @param input 输入序号
+     * @param gain  该路增益，1为原始音量
+     */
+    public void setGain(int input, float gain) {
+        mGains[input] = gain;
+    }
+
+    /**
+     * 混音
+     *
+     * @param inputs     各路输入，为null的路跳过
+     * @param channels   各路声道数
+     * @param inputCount 输入路数
+     * @param frames     帧数，各路相同
+     * @param out        输出，容量至少frames * outChannels
+     */
+    public void mix(short[][] inputs, int[] channels, int inputCount, int frames, short[] out) {
+        int outChannels = mOutChannels;
+        int samples = frames * outChannels;
+        float[] acc = mAccumulator;
+        Arrays.fill(acc, 0, samples, 0f);
+        for (int n = 0; n < inputCount; n++) {
+            short[] in = inputs[n];
+            if (in == null) {
+                continue;
+            }
+            int inChannels = channels[n];
+            float gain = mGains[n];
+            if (inChannels == 1) {
+                for (int f = 0; f < frames; f++) {
+                    float v = in[f] * gain;
+                    int base = f * outChannels;
+                    for (int c = 0; c < outChannels; c++) {
+                        acc[base + c] += v;
+                    }
+                }
+            } else if (inChannels == outChannels) {
+                for (int i = 0; i < samples; i++) {
+                    acc[i] += in[i] * gain;
+                }
+            } else {
+                for (int c = 0; c < inChannels; c++) {
+                    int target = c % outChannels;
+                    // 混入同一输出声道的输入声道数
+                    int share = (inChannels - target + outChannels - 1) / outChannels;
+                    float g = gain / share;
+                    for (int f = 0; f < frames; f++) {
+                        acc[f * outChannels + target] += in[f * inChannels + c] * g;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < samples; i++) {
+            out[i] = PolyphaseResampler.saturate(acc[i]);
+        }
+    }
+
+    public int getOutChannels() {
+        return mOutChannels;
+    }
+}
@@ -0,0 +1,206 @@
+package com.zfg.common.audio;
+
+import java.util.Arrays;
+
+/**
+ * 多相滤波重采样，支持任意整数采样率之间的转换（如16000转44100、48000），
+ * 按块流式处理交错的16位PCM，块之间保留滤波器历史，不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class PolyphaseResampler {
+
+    // 默认每相的抽头数
+    public static final int DEFAULT_TAPS = 24;
+
+    private final int mInRate;
+    private final int mOutRate;
+    private final int mChannels;
+    private final int mMaxInputFrames;
+    // 上采样L倍、下采样M倍
+    private final int mUp;
+    private final int mDown;
+    private final int mTaps;
+    // 滤波系数，按相位连续存放，每相mTaps个
+    private final float[] mCoefficients;
+    // 每个声道的工作缓存，前mTaps - 1个为上一块的历史
+    private final float[][] mWork;
+    // 下一个输出采样的位置，单位为1/L个输入采样，相对当前块第一个输入采样
+    private long mTime;
+
+    public PolyphaseResampler(int inRate, int outRate, int channels, int maxInputFrames) {
+        this(inRate, outRate, channels, maxInputFrames, DEFAULT_TAPS);
+    }
+
+    /**
+     * @param inRate         输入采样率
+     * @param outRate        输出采样率
+     * @param channels       声道数
+     * @param maxInputFrames 每次最多输入的帧数（每帧包含所有声道的一个采样）
+     * @param taps           每相的抽头数，越大过渡带越窄，耗时越多
+     */
+    public PolyphaseResampler(int inRate, int outRate, int channels, int maxInputFrames,
+                              int taps) {
+        int gcd = gcd(inRate, outRate);
+        mInRate = inRate;
+        mOutRate = outRate;
+        mChannels = channels;
+        mMaxInputFrames = maxInputFrames;
+        mUp = outRate / gcd;
+        mDown = inRate / gcd;
+        mTaps = taps;
+        mCoefficients = design(mUp, mDown, taps);
+        mWork = new float[channels][maxInputFrames + taps - 1];
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Kaiser窗sinc低通原型滤波器，截止频率取输入、输出奈奎斯特频率中较低者的0.9倍，
+     * 拆分为L相后每相归一化，保证直流增益为1
+     */
+    private static float[] design(int up, int down, int taps) {
+        int length = up * taps;
+        double cutoff = 0.9 * Math.min(1.0, (double) up / down) / up;
+        double center = (length - 1) / 2.0;
+        double beta = 8.0;
+        double i0Beta = besselI0(beta);
+        double[] prototype = new double[length];
+        for (int n = 0; n < length; n++) {
+            double x = n - center;
+            double sinc = x == 0 ? 1.0 : Math.sin(Math.PI * cutoff * x) / (Math.PI * cutoff * x);
+            double r = 2.0 * n / (length - 1) - 1.0;
+            double window = besselI0(beta * Math.sqrt(Math.max(0, 1 - r * r))) / i0Beta;
+            prototype[n] = sinc * window;
+        }
+
+        float[] coefficients = new float[length];
+        for (int phase = 0; phase < up; phase++) {
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                sum += prototype[k * up + phase];
+            }
+            for (int k = 0; k < taps; k++) {
+                coefficients[phase * taps + k] = (float) (prototype[k * up + phase] / sum);
+            }
+        }
+        return coefficients;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        for (int k = 1; k < 32; k++) {
+            term *= (x / (2 * k)) * (x / (2 * k));
+            sum += term;
+        }
+        return sum;
+    }
+
+    /**
+     * @return inputFrames个输入帧最多产生的输出帧数，用于分配输出缓存
+     */
+    public int getMaxOutputFrames(int inputFrames) {
+        return (int) (((long) inputFrames * mUp + mDown - 1) / mDown) + 1;
+    }
+
+    /**
+     * 重采样一块交错PCM
+     *
+     * @param in          输入
+     * @param inOffset    输入起始位置（采样）
+     * @param inFrames    输入帧数，不超过maxInputFrames
+     * @param out         输出，容量至少getMaxOutputFrames(inFrames) * channels
+     * @param outOffset   输出起始位置（采样）
+     * @return 输出帧数
+     */
+    public int process(short[] in, int inOffset, int inFrames, short[] out, int outOffset) {
+        if (inFrames > mMaxInputFrames) {
+            throw new IllegalArgumentException("inFrames " + inFrames + " > " + mMaxInputFrames);
+        }
+        int channels = mChannels;
+        if (mUp == mDown) {
+            System.arraycopy(in, inOffset, out, outOffset, inFrames * channels);
+            return inFrames;
+        }
+
+        int history = mTaps - 1;
+        for (int c = 0; c < channels; c++) {
+            float[] work = mWork[c];
+            for (int i = 0, p = inOffset + c; i < inFrames; i++, p += channels) {
+                work[history + i] = in[p];
+            }
+        }
+
+        int taps = mTaps;
+        int up = mUp;
+        float[] coefficients = mCoefficients;
+        long time = mTime;
+        long end = (long) inFrames * up;
+        int outFrames = 0;
+        while (time < end) {
+            int newest = (int) (time / up) + history;
+            int phaseBase = (int) (time % up) * taps;
+            for (int c = 0; c < channels; c++) {
+                float[] work = mWork[c];
+                float acc = 0;
+                for (int k = 0; k < taps; k++) {
+                    acc += coefficients[phaseBase + k] * work[newest - k];
+                }
+                out[outOffset + outFrames * channels + c] = saturate(acc);
+            }
+            outFrames++;
+            time += mDown;
+        }
+        mTime = time - end;
+
+        // 保留最后taps - 1个输入作为下一块的历史
+        for (int c = 0; c < channels; c++) {
+            float[] work = mWork[c];
+            System.arraycopy(work, inFrames, work, 0, history);
+        }
+        return outFrames;
+    }
+
+    static short saturate(float value) {
+        int v = Math.round(value);
+        if (v > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        if (v < Short.MIN_VALUE) {
+            return Short.MIN_VALUE;
+        }
+        return (short) v;
+    }
+
+    /**
+     * 清除历史，开始新的流时调用
+     */
+    public void reset() {
+        for (float[] work : mWork) {
+            Arrays.fill(work, 0);
+        }
+        mTime = 0;
+    }
+
+    public int getInRate() {
+        return mInRate;
+    }
+
+    public int getOutRate() {
+        return mOutRate;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+}
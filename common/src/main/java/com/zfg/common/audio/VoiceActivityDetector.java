@@ -0,0 +1,232 @@
+package com.zfg.common.audio;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * 语音活动检测（VAD），对16位单声道PCM按短帧计算能量和过零率：
+ * 1）能量明显高于自适应噪声基底时为语音（浊音）
+ * 2）能量略高于噪声基底且过零率高时也为语音（清音，如s、f）
+ * 3）语音结束后保持一段时间（hangover），避免切掉词尾
+ * 静音段可替换为低电平舒适噪声，语音段的起止时间可导出为元数据。每帧不分配内存
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class VoiceActivityDetector {
+
+    // 默认分析帧长，单位毫秒
+    public static final int DEFAULT_FRAME_MS = 20;
+    // 噪声基底每帧最多上升的比例，约每秒上升10%
+    private static final double FLOOR_RISE = 1.002;
+    // 噪声基底下限，对应幅度约10
+    private static final double MIN_FLOOR = 100;
+    // 语音能量下限，对应幅度约150，避免安静环境下的底噪被判为语音
+    private static final double MIN_SPEECH_ENERGY = 150 * 150;
+    // 浊音能量需高于噪声基底的倍数，约8dB
+    private static final double VOICED_RATIO = 6.0;
+    // 清音能量需高于噪声基底的倍数和过零率下限
+    private static final double UNVOICED_RATIO = 2.5;
+    private static final float UNVOICED_ZCR = 0.3f;
+    // 舒适噪声最大幅度，约-54dBFS
+    private static final int MAX_COMFORT_AMPLITUDE = 64;
+
+    private final int mSampleRate;
+    private final int mFrameSamples;
+    private final int mHangoverFrames;
+
+    // 当前帧累计
+    private long mFrameEnergy;
+    private int mFrameCrossings;
+    private int mFrameCount;
+    private int mLastSample;
+    private long mFrameStartUs;
+
+    private double mNoiseFloor = -1;
+    private int mHangover;
+    private boolean isSpeech;
+    private long mSpeechFrames;
+    private long mTotalFrames;
+
+    // 语音段起止时间，单位微秒，成对存放
+    private long[] mRanges = new long[64];
+    private int mRangeCount;
+    private long mSpeechStartUs = -1;
+
+    // 舒适噪声随机数
+    private int mSeed = 0x12345;
+
+    public VoiceActivityDetector(int sampleRate) {
+        this(sampleRate, DEFAULT_FRAME_MS, 300);
+    }
+
+    /**
+     * @param sampleRate 采样率
+     * @param frameMs    分析帧长，单位毫秒
+     * @param hangoverMs 语音结束后保持的时长，单位毫秒
+     */
+    public VoiceActivityDetector(int sampleRate, int frameMs, int hangoverMs) {
+        mSampleRate = sampleRate;
+        mFrameSamples = sampleRate * frameMs / 1000;
+        mHangoverFrames = Math.max(1, hangoverMs / frameMs);
+    }
+
+    /**
+     * 处理一段16位单声道PCM，分析帧可以跨越多次调用
+     *
+     * @param pcm      PCM数据
+     * @param offset   起始位置
+     * @param samples  采样数
+     * @param startUs  第一个采样的时间戳，单位微秒
+     * @return 这段数据中是否有语音（含hangover）
+     */
+    public boolean process(short[] pcm, int offset, int samples, long startUs) {
+        boolean active = isSpeech;
+        int frameSamples = mFrameSamples;
+        long energy = mFrameEnergy;
+        int crossings = mFrameCrossings;
+        int count = mFrameCount;
+        int last = mLastSample;
+        if (count == 0) {
+            mFrameStartUs = startUs;
+        }
+        for (int i = 0; i < samples; i++) {
+            int sample = pcm[offset + i];
+            energy += sample * sample;
+            // 符号变化计为一次过零
+            if ((sample ^ last) < 0) {
+                crossings++;
+            }
+            last = sample;
+            if (++count == frameSamples) {
+                endFrame(energy, crossings, count);
+                active |= isSpeech;
+                energy = 0;
+                crossings = 0;
+                count = 0;
+                mFrameStartUs = startUs + (long) (i + 1) * 1000000L / mSampleRate;
+            }
+        }
+        mFrameEnergy = energy;
+        mFrameCrossings = crossings;
+        mFrameCount = count;
+        mLastSample = last;
+        return active;
+    }
+
+    private void endFrame(long energySum, int crossings, int count) {
+        double energy = (double) energySum / count;
+        float zcr = (float) crossings / count;
+        mTotalFrames++;
+
+        // 噪声基底快降慢升
+        if (mNoiseFloor < 0 || energy < mNoiseFloor) {
+            mNoiseFloor = Math.max(MIN_FLOOR, energy);
+        } else {
+            mNoiseFloor *= FLOOR_RISE;
+        }
+
+        boolean speechFrame = energy >= MIN_SPEECH_ENERGY
+                && (energy > mNoiseFloor * VOICED_RATIO
+                || (energy > mNoiseFloor * UNVOICED_RATIO && zcr > UNVOICED_ZCR));
+        if (speechFrame) {
+            mHangover = mHangoverFrames;
+            if (!isSpeech) {
+                isSpeech = true;
+                mSpeechStartUs = mFrameStartUs;
+            }
+        } else if (isSpeech && --mHangover <= 0) {
+            isSpeech = false;
+            addRange(mSpeechStartUs, mFrameStartUs);
+            mSpeechStartUs = -1;
+        }
+        if (isSpeech) {
+            mSpeechFrames++;
+        }
+    }
+
+    private void addRange(long startUs, long endUs) {
+        if (mRangeCount * 2 + 2 > mRanges.length) {
+            long[] ranges = new long[mRanges.length * 2];
+            System.arraycopy(mRanges, 0, ranges, 0, mRangeCount * 2);
+            mRanges = ranges;
+        }
+        mRanges[mRangeCount * 2] = startUs;
+        mRanges[mRangeCount * 2 + 1] = endUs;
+        mRangeCount++;
+    }
+
+    /**
+     * 用舒适噪声替换一段PCM，幅度跟随噪声基底，听感上比完全静音自然，编码器需要的码率也更低
+     */
+    public void fillComfortNoise(short[] pcm, int offset, int samples) {
+        int amplitude = (int) Math.min(MAX_COMFORT_AMPLITUDE,
+                Math.sqrt(Math.max(mNoiseFloor, 0)));
+        int seed = mSeed;
+        for (int i = offset; i < offset + samples; i++) {
+            // 线性同余随机数
+            seed = seed * 1103515245 + 12345;
+            pcm[i] = (short) (amplitude == 0 ? 0 : ((seed >> 16) % (amplitude + 1)));
+        }
+        mSeed = seed;
+    }
+
+    /**
+     * 结束检测，未结束的语音段以endUs结束
+     */
+    public void finish(long endUs) {
+        if (isSpeech && mSpeechStartUs >= 0) {
+            addRange(mSpeechStartUs, endUs);
+        }
+        isSpeech = false;
+        mSpeechStartUs = -1;
+    }
+
+    public boolean isSpeech() {
+        return isSpeech;
+    }
+
+    public int getRangeCount() {
+        return mRangeCount;
+    }
+
+    public long getRangeStartUs(int index) {
+        return mRanges[index * 2];
+    }
+
+    public long getRangeEndUs(int index) {
+        return mRanges[index * 2 + 1];
+    }
+
+    /**
+     * @return 语音帧占比，0~1
+     */
+    public float getSpeechRatio() {
+        return mTotalFrames == 0 ? 0 : (float) mSpeechFrames / mTotalFrames;
+    }
+
+    /**
+     * 语音段写入json文件，时间相对baseUs，单位毫秒，如{"speech":[[0,1520],[3000,4210]]}
+     */
+    public void writeRanges(File file, long baseUs) throws IOException {
+        StringBuilder builder = new StringBuilder("{\"speech\":[");
+        for (int i = 0; i < mRangeCount; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('[').append(Math.max(0, (getRangeStartUs(i) - baseUs) / 1000))
+                    .append(',').append(Math.max(0, (getRangeEndUs(i) - baseUs) / 1000))
+                    .append(']');
+        }
+        builder.append("]}");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+                Charset.forName("UTF-8"))) {
+            writer.write(builder.toString());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.zfg.common.crypto;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * 读取EncryptingSink写的加密数据，按文件头中的模式解密。
+ * GCM模式逐块校验，块被篡改、删除、重排或文件被截断时read抛出IOException，
+ * 已返回的数据都已通过校验。非线程安全
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class DecryptingReader implements ReadableByteChannel {
+
+    private final ReadableByteChannel mIn;
+    private final EncryptionHeader mHeader;
+    private final Cipher mCipher;
+    // 密文，GCM时多读1字节判断是否最后一块，多读的字节留给下一块
+    private final ByteBuffer mInput;
+    // GCM已解密未读取的明文
+    private final ByteBuffer mPlain;
+    private final byte[] mNonce = new byte[EncryptingSink.NONCE_SIZE];
+    private int mChunkIndex;
+    private boolean isEnd;
+    private boolean isOpen = true;
+
+    /**
+     * 创建时读取文件头
+     *
+     * @param in        输入，close时一并关闭
+     * @param masterKey 加密时使用的主密钥
+     * @throws IOException 不是加密文件或主密钥不对
+     */
+    public DecryptingReader(ReadableByteChannel in, SecretKey masterKey) throws IOException {
+        mIn = in;
+        mHeader = EncryptionHeader.read(in, masterKey);
+        try {
+            if (mHeader.mode == EncryptingSink.MODE_CTR) {
+                mCipher = Cipher.getInstance("AES/CTR/NoPadding");
+                mCipher.init(Cipher.DECRYPT_MODE, mHeader.dataKey,
+                        new IvParameterSpec(mHeader.iv));
+                mInput = ByteBuffer.allocateDirect(EncryptingSink.CHUNK_SIZE);
+                mPlain = null;
+            } else if (mHeader.mode == EncryptingSink.MODE_GCM && mHeader.chunkSize > 0) {
+                mCipher = Cipher.getInstance("AES/GCM/NoPadding");
+                mInput = ByteBuffer.allocateDirect(
+                        mHeader.chunkSize + EncryptingSink.TAG_SIZE + 1);
+                mPlain = ByteBuffer.allocateDirect(mHeader.chunkSize);
+                mPlain.flip();
+            } else {
+                throw new IOException("unsupported mode " + mHeader.mode + ", chunk size "
+                        + mHeader.chunkSize);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("init cipher failed", e);
+        }
+        System.arraycopy(mHeader.iv, 0, mNonce, 0, mNonce.length - 4);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!isOpen) {
+            throw new IOException("reader closed");
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        try {
+            return mPlain == null ? readCtr(dst) : readGcm(dst);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("decrypt chunk " + (mChunkIndex - 1) + " failed", e);
+        }
+    }
+
+    private int readCtr(ByteBuffer dst) throws IOException, GeneralSecurityException {
+        if (isEnd) {
+            return -1;
+        }
+        mInput.clear();
+        mInput.limit(Math.min(dst.remaining(), mInput.capacity()));
+        int read = mIn.read(mInput);
+        if (read < 0) {
+            isEnd = true;
+            return -1;
+        }
+        mInput.flip();
+        int position = dst.position();
+        mCipher.update(mInput, dst);
+        return dst.position() - position;
+    }
+
+    private int readGcm(ByteBuffer dst) throws IOException, GeneralSecurityException {
+        while (!mPlain.hasRemaining()) {
+            if (isEnd) {
+                return -1;
+            }
+            openChunk();
+        }
+        int length = Math.min(dst.remaining(), mPlain.remaining());
+        int limit = mPlain.limit();
+        mPlain.limit(mPlain.position() + length);
+        dst.put(mPlain);
+        mPlain.limit(limit);
+        return length;
+    }
+
+    /**
+     * 读取并校验下一块，读满一块后还有数据说明不是最后一块
+     */
+    private void openChunk() throws IOException, GeneralSecurityException {
+        while (mInput.hasRemaining()) {
+            if (mIn.read(mInput) < 0) {
+                break;
+            }
+        }
+        boolean isLast = mInput.hasRemaining();
+        mInput.flip();
+        int length = isLast ? mInput.remaining() : mInput.remaining() - 1;
+        if (length < EncryptingSink.TAG_SIZE) {
+            throw new IOException("encrypted data truncated");
+        }
+        EncryptingSink.setChunkIndex(mNonce, mChunkIndex++);
+        mCipher.init(Cipher.DECRYPT_MODE, mHeader.dataKey,
+                new GCMParameterSpec(EncryptingSink.TAG_SIZE * 8, mNonce));
+        mCipher.updateAAD(isLast ? EncryptingSink.AAD_LAST_CHUNK : EncryptingSink.AAD_CHUNK);
+        int limit = mInput.limit();
+        mInput.limit(length);
+        mPlain.clear();
+        mCipher.doFinal(mInput, mPlain);
+        mPlain.flip();
+        mInput.limit(limit);
+        mInput.compact();
+        isEnd = isLast;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public void close() throws IOException {
+        isOpen = false;
+        mIn.close();
+    }
+
+    /**
+     * 解密整个文件
+     *
+     * @return 明文大小
+     */
+    public static long decryptFile(File input, File output, SecretKey masterKey)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(EncryptingSink.CHUNK_SIZE);
+        long total = 0;
+        try (FileChannel in = new FileInputStream(input).getChannel();
+             DecryptingReader reader = new DecryptingReader(in, masterKey);
+             FileChannel out = new FileOutputStream(output).getChannel()) {
+            while (reader.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    total += out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,206 @@
+package com.zfg.common.crypto;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * 加密写入：在输出前写EncryptionHeader，之后的数据按模式加密：
+ * 1）MODE_CTR：AES-CTR流加密，密文与明文等长，没有完整性校验
+ * 2）MODE_GCM：按chunkSize分块AES-GCM，每块附16字节校验，nonce为IV前8字节加块序号，
+ * 最后一块的附加认证数据不同，块被删除、重排或文件被截断时解密失败
+ * 数据直接在直接内存中通过Cipher.update(ByteBuffer, ByteBuffer)加密，不复制到堆数组。
+ * 每个文件有独立的数据密钥，见EncryptionHeader。非线程安全
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class EncryptingSink implements WritableByteChannel {
+
+    public static final int MODE_CTR = 1;
+    public static final int MODE_GCM = 2;
+    // 加密文件的扩展名，加在原扩展名之后
+    public static final String SUFFIX = ".enc";
+    // GCM每块明文大小，也是CTR每次加密的最大长度
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    static final int TAG_SIZE = 16;
+    static final int NONCE_SIZE = 12;
+    static final byte[] AAD_CHUNK = {0};
+    static final byte[] AAD_LAST_CHUNK = {1};
+
+    private final WritableByteChannel mOut;
+    private final EncryptionHeader mHeader;
+    private final Cipher mCipher;
+    // GCM待加密的一块明文
+    private final ByteBuffer mChunk;
+    private final ByteBuffer mOutput;
+    private final byte[] mNonce = new byte[NONCE_SIZE];
+    private int mChunkIndex;
+    private boolean isOpen = true;
+
+    /**
+     * 创建后立即写入文件头
+     *
+     * @param out       输出，close时一并关闭
+     * @param masterKey 用于加密数据密钥的AES密钥
+     * @param mode      MODE_CTR或MODE_GCM
+     */
+    public EncryptingSink(WritableByteChannel out, SecretKey masterKey, int mode)
+            throws IOException {
+        if (mode != MODE_CTR && mode != MODE_GCM) {
+            throw new IllegalArgumentException("unknown mode " + mode);
+        }
+        mOut = out;
+        try {
+            mHeader = EncryptionHeader.create(masterKey, mode, mode == MODE_GCM ? CHUNK_SIZE : 0);
+            if (mode == MODE_CTR) {
+                mCipher = Cipher.getInstance("AES/CTR/NoPadding");
+                mCipher.init(Cipher.ENCRYPT_MODE, mHeader.dataKey,
+                        new IvParameterSpec(mHeader.iv));
+                mChunk = null;
+            } else {
+                mCipher = Cipher.getInstance("AES/GCM/NoPadding");
+                mChunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("init cipher failed", e);
+        }
+        System.arraycopy(mHeader.iv, 0, mNonce, 0, NONCE_SIZE - 4);
+        mOutput = ByteBuffer.allocateDirect(CHUNK_SIZE + TAG_SIZE);
+        mHeader.write(out);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!isOpen) {
+            throw new IOException("sink closed");
+        }
+        int length = src.remaining();
+        int limit = src.limit();
+        try {
+            while (src.hasRemaining()) {
+                if (mChunk == null) {
+                    src.limit(src.position() + Math.min(src.remaining(), CHUNK_SIZE));
+                    mOutput.clear();
+                    mCipher.update(src, mOutput);
+                    writeOutput();
+                } else {
+                    src.limit(src.position() + Math.min(src.remaining(), mChunk.remaining()));
+                    mChunk.put(src);
+                    if (!mChunk.hasRemaining()) {
+                        sealChunk(false);
+                    }
+                }
+                src.limit(limit);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("encrypt failed", e);
+        } finally {
+            src.limit(limit);
+        }
+        return length;
+    }
+
+    /**
+     * 加密一块并写出
+     *
+     * @param isLast 是否最后一块，close时写出，可以为空
+     */
+    private void sealChunk(boolean isLast) throws GeneralSecurityException, IOException {
+        setChunkIndex(mNonce, mChunkIndex++);
+        mCipher.init(Cipher.ENCRYPT_MODE, mHeader.dataKey,
+                new GCMParameterSpec(TAG_SIZE * 8, mNonce));
+        mCipher.updateAAD(isLast ? AAD_LAST_CHUNK : AAD_CHUNK);
+        mChunk.flip();
+        mOutput.clear();
+        mCipher.doFinal(mChunk, mOutput);
+        mChunk.clear();
+        writeOutput();
+    }
+
+    static void setChunkIndex(byte[] nonce, int index) {
+        nonce[NONCE_SIZE - 4] = (byte) (index >>> 24);
+        nonce[NONCE_SIZE - 3] = (byte) (index >>> 16);
+        nonce[NONCE_SIZE - 2] = (byte) (index >>> 8);
+        nonce[NONCE_SIZE - 1] = (byte) index;
+    }
+
+    private void writeOutput() throws IOException {
+        mOutput.flip();
+        while (mOutput.hasRemaining()) {
+            mOut.write(mOutput);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    /**
+     * 写出最后一块（GCM）后关闭输出，不调用close的文件在GCM模式下无法完整解密
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        try {
+            if (mChunk != null) {
+                sealChunk(true);
+            } else {
+                mOutput.clear();
+                mCipher.doFinal(ByteBuffer.allocate(0), mOutput);
+                writeOutput();
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("encrypt failed", e);
+        } finally {
+            mOut.close();
+        }
+    }
+
+    /**
+     * 加密整个文件，用于不能写入时加密（API 26以下）的MediaMuxer输出在结束后加密
+     *
+     * @return 密文大小
+     */
+    public static long encryptFile(File input, File output, SecretKey masterKey, int mode)
+            throws IOException {
+        encryptFile(input, new FileOutputStream(output).getChannel(), masterKey, mode);
+        return output.length();
+    }
+
+    /**
+     * 加密整个文件写到out
+     *
+     * @param out 输出，结束后关闭
+     */
+    public static void encryptFile(File input, WritableByteChannel out, SecretKey masterKey,
+                                   int mode) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        try (FileChannel in = new FileInputStream(input).getChannel();
+             WritableByteChannel output = out) {
+            EncryptingSink sink = new EncryptingSink(output, masterKey, mode);
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                sink.write(buffer);
+                buffer.clear();
+            }
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.zfg.common.crypto;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 加密文件头，共88字节：
+ * "ZENC"、版本号（1字节）、模式（1字节）、保留（2字节）、GCM分块大小（4字节）、
+ * IV（16字节，前8字节随机，后8字节为0）、数据密钥的GCM nonce（12字节）、用主密钥加密的数据密钥（48字节）。
+ * 每个文件随机生成一个数据密钥，主密钥只用来加密数据密钥，头的前28字节作为附加认证数据，不能被篡改
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+final class EncryptionHeader {
+
+    static final int SIZE = 88;
+
+    private static final int MAGIC = 0x5A454E43;
+    private static final int VERSION = 1;
+    private static final int IV_SIZE = 16;
+    private static final int KEY_SIZE = 32;
+    private static final int KEY_NONCE_SIZE = 12;
+    private static final int TAG_BITS = 128;
+    // 受数据密钥加密保护的部分：magic到IV
+    private static final int AAD_SIZE = 28;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    final int mode;
+    final int chunkSize;
+    final byte[] iv;
+    final SecretKey dataKey;
+    private final byte[] mBytes;
+
+    private EncryptionHeader(int mode, int chunkSize, byte[] iv, SecretKey dataKey,
+                             byte[] bytes) {
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+        this.iv = iv;
+        this.dataKey = dataKey;
+        mBytes = bytes;
+    }
+
+    /**
+     * 生成新的数据密钥和IV
+     */
+    static EncryptionHeader create(SecretKey masterKey, int mode, int chunkSize)
+            throws GeneralSecurityException {
+        byte[] iv = new byte[IV_SIZE];
+        byte[] key = new byte[KEY_SIZE];
+        RANDOM.nextBytes(iv);
+        RANDOM.nextBytes(key);
+        // 低8字节作为CTR的计数器或GCM的块序号，从0开始，不会溢出到随机部分
+        for (int i = IV_SIZE / 2; i < IV_SIZE; i++) {
+            iv[i] = 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(SIZE);
+        header.putInt(MAGIC).put((byte) VERSION).put((byte) mode).putShort((short) 0)
+                .putInt(chunkSize).put(iv);
+
+        // 不指定IV，由Cipher生成，AndroidKeyStore中的密钥也只允许这种用法
+        Cipher wrap = Cipher.getInstance("AES/GCM/NoPadding");
+        wrap.init(Cipher.ENCRYPT_MODE, masterKey);
+        wrap.updateAAD(header.array(), 0, AAD_SIZE);
+        byte[] wrapped = wrap.doFinal(key);
+        byte[] nonce = wrap.getIV();
+        if (nonce.length != KEY_NONCE_SIZE) {
+            throw new GeneralSecurityException("unexpected nonce size " + nonce.length);
+        }
+        header.put(nonce).put(wrapped);
+        return new EncryptionHeader(mode, chunkSize, iv, new SecretKeySpec(key, "AES"),
+                header.array());
+    }
+
+    /**
+     * 读取文件头并用主密钥解出数据密钥
+     *
+     * @throws IOException 不是加密文件、文件头被篡改或主密钥不对
+     */
+    static EncryptionHeader read(ReadableByteChannel in, SecretKey masterKey) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SIZE);
+        while (header.hasRemaining()) {
+            if (in.read(header) < 0) {
+                throw new EOFException("encryption header truncated");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not an encrypted file");
+        }
+        int version = header.get();
+        if (version != VERSION) {
+            throw new IOException("unsupported encryption version " + version);
+        }
+        int mode = header.get();
+        header.getShort();
+        int chunkSize = header.getInt();
+        byte[] iv = new byte[IV_SIZE];
+        header.get(iv);
+        byte[] nonce = new byte[KEY_NONCE_SIZE];
+        header.get(nonce);
+        byte[] wrapped = new byte[header.remaining()];
+        header.get(wrapped);
+        byte[] key;
+        try {
+            Cipher unwrap = Cipher.getInstance("AES/GCM/NoPadding");
+            unwrap.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_BITS, nonce));
+            unwrap.updateAAD(header.array(), 0, AAD_SIZE);
+            key = unwrap.doFinal(wrapped);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("wrong key or corrupted encryption header", e);
+        }
+        return new EncryptionHeader(mode, chunkSize, iv, new SecretKeySpec(key, "AES"),
+                header.array());
+    }
+
+    void write(WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(mBytes);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
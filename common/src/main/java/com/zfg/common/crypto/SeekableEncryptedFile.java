@@ -0,0 +1,190 @@
+package com.zfg.common.crypto;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * 可在任意位置读写的AES-CTR加密文件，格式与EncryptingSink的MODE_CTR相同，可用DecryptingReader解密。
+ * CTR第n个16字节块的计数器为IV加n，任意位置都能直接算出密钥流，
+ * 用于MediaMuxer这类会回头改写文件头的写入方，明文不落盘。
+ * 位置和大小都是明文的，文件中的位置要加上文件头大小。非线程安全
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class SeekableEncryptedFile implements Closeable {
+
+    // 明文位置position在文件中的位置为HEADER_SIZE + position
+    public static final int HEADER_SIZE = EncryptionHeader.SIZE;
+
+    private static final int BLOCK_SIZE = 16;
+    private static final byte[] SKIP = new byte[BLOCK_SIZE];
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final EncryptionHeader mHeader;
+    private final Cipher mCipher;
+    private final byte[] mCounter;
+    private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(EncryptingSink.CHUNK_SIZE);
+    // 已写入的明文末尾，文件可能是预分配的，不按文件大小计算
+    private long mSize;
+    private boolean isOpen = true;
+
+    private SeekableEncryptedFile(RandomAccessFile file, EncryptionHeader header)
+            throws IOException {
+        mFile = file;
+        mChannel = file.getChannel();
+        mHeader = header;
+        try {
+            mCipher = Cipher.getInstance("AES/CTR/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("init cipher failed", e);
+        }
+        mCounter = header.iv.clone();
+    }
+
+    /**
+     * 生成新的数据密钥并写入文件头，保留文件已有的长度（预分配的空间）
+     *
+     * @param masterKey 用于加密数据密钥的AES密钥
+     */
+    public static SeekableEncryptedFile create(File file, SecretKey masterKey)
+            throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            EncryptionHeader header;
+            try {
+                header = EncryptionHeader.create(masterKey, EncryptingSink.MODE_CTR, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("create encryption header failed", e);
+            }
+            header.write(raf.getChannel());
+            return new SeekableEncryptedFile(raf, header);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 加密后写入position处
+     *
+     * @param position 明文位置
+     */
+    public void write(long position, byte[] data, int offset, int length) throws IOException {
+        checkOpen();
+        int done = 0;
+        while (done < length) {
+            int count = Math.min(length - done, mBuffer.capacity());
+            mBuffer.clear();
+            crypt(position + done, ByteBuffer.wrap(data, offset + done, count), mBuffer);
+            mBuffer.flip();
+            long filePosition = EncryptionHeader.SIZE + position + done;
+            while (mBuffer.hasRemaining()) {
+                filePosition += mChannel.write(mBuffer, filePosition);
+            }
+            done += count;
+        }
+        mSize = Math.max(mSize, position + length);
+    }
+
+    /**
+     * 读取position处的数据并解密，不超过已写入的大小
+     *
+     * @param position 明文位置
+     * @return 读到的字节数，到末尾时返回-1
+     */
+    public int read(long position, byte[] data, int offset, int length) throws IOException {
+        checkOpen();
+        if (position >= mSize) {
+            return -1;
+        }
+        length = (int) Math.min(length, mSize - position);
+        int done = 0;
+        while (done < length) {
+            mBuffer.clear();
+            mBuffer.limit(Math.min(length - done, mBuffer.capacity()));
+            long filePosition = EncryptionHeader.SIZE + position + done;
+            while (mBuffer.hasRemaining()) {
+                int read = mChannel.read(mBuffer, filePosition);
+                if (read < 0) {
+                    break;
+                }
+                filePosition += read;
+            }
+            mBuffer.flip();
+            int count = mBuffer.remaining();
+            if (count == 0) {
+                break;
+            }
+            crypt(position + done, mBuffer, ByteBuffer.wrap(data, offset + done, count));
+            done += count;
+        }
+        return done;
+    }
+
+    /**
+     * 从position对应的计数器开始加密或解密src
+     */
+    private void crypt(long position, ByteBuffer src, ByteBuffer dst) throws IOException {
+        // IV低8字节为0，块序号直接写入低8字节
+        long block = position / BLOCK_SIZE;
+        for (int i = 0; i < 8; i++) {
+            mCounter[mCounter.length - 1 - i] = (byte) (block >>> (i * 8));
+        }
+        try {
+            mCipher.init(Cipher.ENCRYPT_MODE, mHeader.dataKey, new IvParameterSpec(mCounter));
+            int skip = (int) (position % BLOCK_SIZE);
+            if (skip > 0) {
+                mCipher.update(SKIP, 0, skip);
+            }
+            mCipher.update(src, dst);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("crypt at " + position + " failed", e);
+        }
+    }
+
+    /**
+     * @return 已写入的明文大小
+     */
+    public long size() {
+        return mSize;
+    }
+
+    public void force() throws IOException {
+        checkOpen();
+        mChannel.force(false);
+    }
+
+    private void checkOpen() throws IOException {
+        if (!isOpen) {
+            throw new IOException("file closed");
+        }
+    }
+
+    /**
+     * 截掉写入范围之后预分配的空间后关闭
+     */
+    @Override
+    public void close() throws IOException {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        try {
+            mChannel.truncate(EncryptionHeader.SIZE + mSize);
+        } finally {
+            mFile.close();
+        }
+    }
+}
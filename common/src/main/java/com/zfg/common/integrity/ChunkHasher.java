@@ -0,0 +1,70 @@
+package com.zfg.common.integrity;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按写入顺序把数据分成固定大小的块，逐块计算SHA-256，只保留每块的摘要，不缓存数据。
+ * 非线程安全
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class ChunkHasher {
+
+    private final int mChunkSize;
+    private final MessageDigest mDigest = IntegrityManifest.newDigest();
+    private final List<byte[]> mHashes = new ArrayList<>();
+    // 当前块已摘要的字节数
+    private int mChunkFilled;
+    private long mLength;
+
+    public ChunkHasher(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size " + chunkSize);
+        }
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * 摘要src中剩余的数据，返回后src的position到达limit
+     */
+    public void update(ByteBuffer src) {
+        int limit = src.limit();
+        while (src.hasRemaining()) {
+            int length = Math.min(src.remaining(), mChunkSize - mChunkFilled);
+            src.limit(src.position() + length);
+            mDigest.update(src);
+            src.limit(limit);
+            mChunkFilled += length;
+            mLength += length;
+            if (mChunkFilled == mChunkSize) {
+                mHashes.add(mDigest.digest());
+                mChunkFilled = 0;
+            }
+        }
+    }
+
+    /**
+     * @return 已摘要的总字节数
+     */
+    public long getLength() {
+        return mLength;
+    }
+
+    /**
+     * 结束最后一个不满的块
+     *
+     * @return 每块的摘要，按块序号排列
+     */
+    public List<byte[]> finish() {
+        if (mChunkFilled > 0) {
+            mHashes.add(mDigest.digest());
+            mChunkFilled = 0;
+        }
+        return mHashes;
+    }
+}
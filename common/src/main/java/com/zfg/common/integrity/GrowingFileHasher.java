@@ -0,0 +1,255 @@
+package com.zfg.common.integrity;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在后台线程摘要由别人写的MP4（MediaMuxer），写入时刚写出的数据还在页缓存中，
+ * 结束后不需要再完整读一遍文件。
+ * MediaMuxer在mdat之后只追加数据，结束时才改写mdat之前的部分（mdat大小、预留的moov空间）并在末尾写moov，
+ * 所以录制中只摘要mdat数据开始之后、已确定写出的整块，其余的块在finish时摘要。
+ * 文件可能是预分配的，不能按文件大小判断写到了哪里；混合器内部缓存多少数据也无法确定，
+ * 已写出的范围以写入方在文件中的实际位置为准，拿不到位置时全部在finish时摘要。
+ * 边写边加密的文件中是密文，无法按box找到mdat，由写入方提供mdat数据在文件中开始的位置，
+ * 摘要的仍是文件中的密文
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class GrowingFileHasher {
+
+    private final File mFile;
+    private final int mChunkSize;
+    private final long mLagBytes;
+    private final WriteOffset mWriteOffset;
+    // 为null时按文件中的box查找
+    private final DataStart mDataStartSource;
+    private final ExecutorService mExecutor;
+    // 以下只在后台线程使用，finish时executor已结束
+    private final List<byte[]> mHashes = new ArrayList<>();
+    private FileChannel mChannel;
+    private ByteBuffer mBuffer;
+    private MessageDigest mDigest;
+    // mdat数据开始的位置，-1表示还未读到mdat头
+    private long mDataStart = -1;
+    // 录制中摘要的第一块，之前的块在finish时摘要
+    private int mFirstChunk;
+    // 下一个要摘要的块
+    private int mNextChunk;
+    // 已通知但未处理的数据量，-1表示没有，避免每次写入都提交任务
+    private final AtomicLong mPendingDataBytes = new AtomicLong(-1);
+
+    /**
+     * @param chunkSize   块大小
+     * @param lagBytes    离最新写入混合器的数据这么远之前的数据才摘要，避开混合器可能回头改写的部分
+     * @param writeOffset 写入方在文件中当前的位置，之前的数据才认为已写出
+     */
+    public GrowingFileHasher(File file, int chunkSize, long lagBytes, WriteOffset writeOffset) {
+        this(file, chunkSize, lagBytes, writeOffset, null);
+    }
+
+    /**
+     * @param dataStart mdat数据在文件中开始的位置，为null时按文件中的box查找
+     */
+    public GrowingFileHasher(File file, int chunkSize, long lagBytes, WriteOffset writeOffset,
+                             DataStart dataStart) {
+        mFile = file;
+        mChunkSize = chunkSize;
+        mLagBytes = lagBytes;
+        mWriteOffset = writeOffset;
+        mDataStartSource = dataStart;
+        mExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "GrowingFileHasher"));
+    }
+
+    /**
+     * 写入混合器的数据量增加，在后台摘要已写出的块
+     *
+     * @param dataBytes 写入混合器的样本数据总量
+     */
+    public void onDataWritten(long dataBytes) {
+        if (mPendingDataBytes.getAndSet(dataBytes) < 0) {
+            mExecutor.execute(() -> {
+                try {
+                    hashWritten(mPendingDataBytes.getAndSet(-1));
+                } catch (IOException e) {
+                    // 留到finish时再摘要
+                }
+            });
+        }
+    }
+
+    private void hashWritten(long dataBytes) throws IOException {
+        if (mChannel == null) {
+            mChannel = new FileInputStream(mFile).getChannel();
+            mBuffer = ByteBuffer.allocateDirect(mChunkSize);
+            mDigest = IntegrityManifest.newDigest();
+        }
+        if (mDataStart < 0) {
+            mDataStart = mDataStartSource != null ? mDataStartSource.get()
+                    : findDataStart(mChannel);
+            if (mDataStart < 0) {
+                return;
+            }
+            // 含mdat头的块结束时会被改写
+            mFirstChunk = (int) (mDataStart / mChunkSize) + 1;
+            mNextChunk = mFirstChunk;
+        }
+        long writtenEnd = Math.min(mDataStart + dataBytes - mLagBytes, mWriteOffset.get());
+        while ((long) (mNextChunk + 1) * mChunkSize <= writtenEnd) {
+            mHashes.add(IntegrityManifest.hashRange(mChannel, (long) mNextChunk * mChunkSize,
+                    mChunkSize, mBuffer, mDigest));
+            mNextChunk++;
+        }
+    }
+
+    /**
+     * 按顶层box找到mdat数据开始的位置
+     *
+     * @return 还没写到mdat头时返回-1
+     */
+    static long findDataStart(FileChannel channel) throws IOException {
+        return findDataStart((position, data, offset, length) ->
+                channel.read(ByteBuffer.wrap(data, offset, length), position));
+    }
+
+    /**
+     * 按顶层box找到mdat数据开始的位置，如从SeekableEncryptedFile中读取明文
+     *
+     * @return 还没写到mdat头时返回-1
+     */
+    public static long findDataStart(BoxReader reader) throws IOException {
+        byte[] bytes = new byte[16];
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        long position = 0;
+        while (true) {
+            if (reader.read(position, bytes, 0, bytes.length) < bytes.length) {
+                return -1;
+            }
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            }
+            if (header.get(4) == 'm' && header.get(5) == 'd' && header.get(6) == 'a'
+                    && header.get(7) == 't') {
+                return position + headerSize;
+            }
+            // 预分配的文件未写的部分为0
+            if (size < headerSize) {
+                return -1;
+            }
+            position += size;
+        }
+    }
+
+    /**
+     * 文件已结束（不再改写）后调用，摘要剩余的块
+     *
+     * @return 每块的摘要，按块序号排列
+     */
+    public List<byte[]> finish() throws IOException {
+        mExecutor.shutdown();
+        try {
+            mExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("wait hasher interrupted");
+        }
+        try (FileChannel channel = mChannel != null ? mChannel
+                : new FileInputStream(mFile).getChannel()) {
+            ByteBuffer buffer = mBuffer != null ? mBuffer : ByteBuffer.allocateDirect(mChunkSize);
+            MessageDigest digest = mDigest != null ? mDigest : IntegrityManifest.newDigest();
+            long length = channel.size();
+            int count = IntegrityManifest.chunkCount(length, mChunkSize);
+            int incremental = Math.min(mHashes.size(), Math.max(count - mFirstChunk, 0));
+            List<byte[]> hashes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (i >= mFirstChunk && i < mFirstChunk + incremental) {
+                    hashes.add(mHashes.get(i - mFirstChunk));
+                } else {
+                    long position = (long) i * mChunkSize;
+                    hashes.add(IntegrityManifest.hashRange(channel, position,
+                            Math.min(mChunkSize, length - position), buffer, digest));
+                }
+            }
+            return hashes;
+        }
+    }
+
+    /**
+     * 等待已通知的数据摘要完，测试用
+     */
+    void sync() throws Exception {
+        mExecutor.submit(() -> { }).get();
+    }
+
+    /**
+     * @return 录制中已摘要的块数，finish后有效
+     */
+    public int getIncrementalChunkCount() {
+        return mHashes.size();
+    }
+
+    /**
+     * 文件未正常结束，不生成清单
+     */
+    public void cancel() {
+        mExecutor.shutdownNow();
+        try {
+            mExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            if (mChannel != null) {
+                mChannel.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 忽略
+        }
+    }
+
+    /**
+     * 按位置读取，用于查找mdat
+     */
+    public interface BoxReader {
+
+        /**
+         * @return 读到的字节数，到末尾时返回-1
+         */
+        int read(long position, byte[] data, int offset, int length) throws IOException;
+    }
+
+    /**
+     * 写入方提供的mdat数据在文件中开始的位置，在后台线程调用
+     */
+    public interface DataStart {
+
+        /**
+         * @return 还没写到mdat头时返回-1
+         */
+        long get() throws IOException;
+    }
+
+    /**
+     * 写入方在文件中的当前位置，如与MediaMuxer共享的文件描述符的偏移，在后台线程调用
+     */
+    public interface WriteOffset {
+
+        /**
+         * @return 之前的数据都已写进文件，无法获取时返回-1
+         */
+        long get() throws IOException;
+    }
+}
@@ -0,0 +1,49 @@
+package com.zfg.common.integrity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 写入时同时分块摘要实际写出的数据，用于自己写的文件（如加密后的录像），不需要写完后再读一遍
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class HashingChannel implements WritableByteChannel {
+
+    private final WritableByteChannel mOut;
+    private final ChunkHasher mHasher;
+
+    /**
+     * @param out 输出，close时一并关闭
+     */
+    public HashingChannel(WritableByteChannel out, ChunkHasher hasher) {
+        mOut = out;
+        mHasher = hasher;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int position = src.position();
+        int written = mOut.write(src);
+        if (written > 0) {
+            // 只摘要这次真正写出的部分
+            ByteBuffer slice = src.duplicate();
+            slice.position(position).limit(position + written);
+            mHasher.update(slice);
+        }
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mOut.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+}
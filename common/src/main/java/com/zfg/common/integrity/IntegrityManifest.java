@@ -0,0 +1,381 @@
+package com.zfg.common.integrity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 录像文件的完整性清单（"xxx.mp4.manifest"），用于证明文件在生成后未被修改。
+ * 文件按chunkSize分块，记录每块的SHA-256，并串成哈希链：
+ * c0 = SHA-256(h0)，ci = SHA-256(c(i-1) || hi)，链尾为根摘要。
+ * 格式："ZMAN"、版本号、文件名、文件大小、块大小、块数、每块摘要、根摘要、签名算法，
+ * 以上内容用私钥签名，签名附在最后。校验时各块摘要并行计算
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class IntegrityManifest {
+
+    public static final String SUFFIX = ".manifest";
+    // 默认块大小
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final int MAGIC = 0x5A4D414E;
+    private static final int VERSION = 1;
+    private static final int HASH_SIZE = 32;
+    // 校验时每个任务处理的块数
+    private static final int CHUNKS_PER_TASK = 16;
+
+    private final String mFileName;
+    private final long mFileLength;
+    private final int mChunkSize;
+    private final byte[][] mHashes;
+    private final byte[] mRootHash;
+    private final String mAlgorithm;
+    // 被签名的内容
+    private final byte[] mBody;
+    private final byte[] mSignature;
+
+    private IntegrityManifest(String fileName, long fileLength, int chunkSize, byte[][] hashes,
+                              byte[] rootHash, String algorithm, byte[] body, byte[] signature) {
+        mFileName = fileName;
+        mFileLength = fileLength;
+        mChunkSize = chunkSize;
+        mHashes = hashes;
+        mRootHash = rootHash;
+        mAlgorithm = algorithm;
+        mBody = body;
+        mSignature = signature;
+    }
+
+    /**
+     * @return 录像文件对应的清单文件
+     */
+    public static File fileFor(File file) {
+        return new File(file.getPath() + SUFFIX);
+    }
+
+    /**
+     * 由写入时计算的各块摘要生成清单并签名
+     *
+     * @param chunkHashes 各块摘要，块数要与文件大小一致
+     * @param key         EC或RSA私钥，可以是AndroidKeyStore中的密钥
+     */
+    public static IntegrityManifest create(String fileName, long fileLength, int chunkSize,
+                                           List<byte[]> chunkHashes, PrivateKey key)
+            throws GeneralSecurityException {
+        if (chunkHashes.size() != chunkCount(fileLength, chunkSize)) {
+            throw new IllegalArgumentException(chunkHashes.size() + " hashes for "
+                    + fileLength + " bytes");
+        }
+        byte[][] hashes = chunkHashes.toArray(new byte[0][]);
+        byte[] rootHash = chainRoot(hashes);
+        String algorithm = signatureAlgorithm(key.getAlgorithm());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                128 + hashes.length * HASH_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(fileName);
+            out.writeLong(fileLength);
+            out.writeInt(chunkSize);
+            out.writeInt(hashes.length);
+            for (byte[] hash : hashes) {
+                out.write(hash);
+            }
+            out.write(rootHash);
+            out.writeUTF(algorithm);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        Signature signer = Signature.getInstance(algorithm);
+        signer.initSign(key);
+        signer.update(body);
+        return new IntegrityManifest(fileName, fileLength, chunkSize, hashes, rootHash,
+                algorithm, body, signer.sign());
+    }
+
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(mBody);
+            out.writeInt(mSignature.length);
+            out.write(mSignature);
+        }
+    }
+
+    public static IntegrityManifest read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a manifest file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported manifest version " + version);
+        }
+        String fileName = in.readUTF();
+        long fileLength = in.readLong();
+        int chunkSize = in.readInt();
+        int count = in.readInt();
+        if (chunkSize <= 0 || count < 0 || (long) count * HASH_SIZE > bytes.length) {
+            throw new IOException("corrupted manifest, chunk size " + chunkSize
+                    + ", count " + count);
+        }
+        byte[][] hashes = new byte[count][HASH_SIZE];
+        for (byte[] hash : hashes) {
+            in.readFully(hash);
+        }
+        byte[] rootHash = new byte[HASH_SIZE];
+        in.readFully(rootHash);
+        String algorithm = in.readUTF();
+        int bodyLength = bytes.length - in.available();
+        int signatureLength = in.readInt();
+        if (signatureLength < 0 || signatureLength > in.available()) {
+            throw new EOFException("signature truncated");
+        }
+        byte[] signature = new byte[signatureLength];
+        in.readFully(signature);
+        return new IntegrityManifest(fileName, fileLength, chunkSize, hashes, rootHash,
+                algorithm, Arrays.copyOf(bytes, bodyLength), signature);
+    }
+
+    public String getFileName() {
+        return mFileName;
+    }
+
+    public long getFileLength() {
+        return mFileLength;
+    }
+
+    public int getChunkSize() {
+        return mChunkSize;
+    }
+
+    public int getChunkCount() {
+        return mHashes.length;
+    }
+
+    public byte[] getRootHash() {
+        return mRootHash.clone();
+    }
+
+    /**
+     * 检查签名，以及记录的各块摘要与根摘要、文件大小是否一致
+     */
+    public boolean verifySignature(PublicKey key) {
+        try {
+            Signature verifier = Signature.getInstance(mAlgorithm);
+            verifier.initVerify(key);
+            verifier.update(mBody);
+            if (!verifier.verify(mSignature)) {
+                return false;
+            }
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+        return mHashes.length == chunkCount(mFileLength, mChunkSize)
+                && MessageDigest.isEqual(mRootHash, chainRoot(mHashes));
+    }
+
+    /**
+     * 使用与CPU核数相同的线程校验
+     */
+    public Result verify(File file, PublicKey key) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors());
+        try {
+            return verify(file, key, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 校验签名并重新计算文件各块摘要，各块在executor中并行计算
+     */
+    public Result verify(File file, PublicKey key, ExecutorService executor) throws IOException {
+        boolean isSignatureValid = verifySignature(key);
+        List<Integer> badChunks = new ArrayList<>();
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            boolean isLengthValid = channel.size() == mFileLength;
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int start = 0; start < mHashes.length; start += CHUNKS_PER_TASK) {
+                futures.add(executor.submit(
+                        new VerifyTask(channel, start, Math.min(start + CHUNKS_PER_TASK,
+                                mHashes.length))));
+            }
+            for (Future<List<Integer>> future : futures) {
+                badChunks.addAll(future.get());
+            }
+            return new Result(isSignatureValid, isLengthValid, badChunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("verify interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("verify " + file + " failed", e.getCause());
+        }
+    }
+
+    private class VerifyTask implements Callable<List<Integer>> {
+        private final FileChannel mChannel;
+        private final int mStart;
+        private final int mEnd;
+
+        VerifyTask(FileChannel channel, int start, int end) {
+            mChannel = channel;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        public List<Integer> call() throws IOException {
+            List<Integer> badChunks = new ArrayList<>();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(mChunkSize);
+            MessageDigest digest = newDigest();
+            for (int i = mStart; i < mEnd; i++) {
+                long position = (long) i * mChunkSize;
+                try {
+                    byte[] hash = hashRange(mChannel, position,
+                            Math.min(mChunkSize, mFileLength - position), buffer, digest);
+                    if (!MessageDigest.isEqual(hash, mHashes[i])) {
+                        badChunks.add(i);
+                    }
+                } catch (EOFException e) {
+                    // 文件被截断
+                    badChunks.add(i);
+                }
+            }
+            return badChunks;
+        }
+    }
+
+    /**
+     * 校验结果
+     */
+    public static class Result {
+        private final boolean isSignatureValid;
+        private final boolean isLengthValid;
+        private final List<Integer> badChunks;
+
+        Result(boolean isSignatureValid, boolean isLengthValid, List<Integer> badChunks) {
+            this.isSignatureValid = isSignatureValid;
+            this.isLengthValid = isLengthValid;
+            this.badChunks = badChunks;
+        }
+
+        public boolean isValid() {
+            return isSignatureValid && isLengthValid && badChunks.isEmpty();
+        }
+
+        /**
+         * 签名不对说明清单本身被修改或不是这个密钥签的，此时各块的结果也不可信
+         */
+        public boolean isSignatureValid() {
+            return isSignatureValid;
+        }
+
+        public boolean isLengthValid() {
+            return isLengthValid;
+        }
+
+        /**
+         * @return 内容与清单不符的块序号，乘以块大小即被修改的位置
+         */
+        public List<Integer> getBadChunks() {
+            return badChunks;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{signature=" + isSignatureValid + ", length=" + isLengthValid
+                    + ", badChunks=" + badChunks + "}";
+        }
+    }
+
+    static int chunkCount(long fileLength, int chunkSize) {
+        return (int) ((fileLength + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * 读取并摘要文件中的一段，使用定位读取，多个线程可共用同一个FileChannel
+     *
+     * @param buffer 读取缓冲，大小不限
+     * @throws EOFException 文件不够长
+     */
+    static byte[] hashRange(FileChannel channel, long position, long length, ByteBuffer buffer,
+                            MessageDigest digest) throws IOException {
+        long end = position + length;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("file ends at " + position);
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+        return digest.digest();
+    }
+
+    static byte[] chainRoot(byte[][] hashes) {
+        MessageDigest digest = newDigest();
+        byte[] chain = null;
+        for (byte[] hash : hashes) {
+            if (chain != null) {
+                digest.update(chain);
+            }
+            digest.update(hash);
+            chain = digest.digest();
+        }
+        return chain != null ? chain : digest.digest();
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String signatureAlgorithm(String keyAlgorithm)
+            throws NoSuchAlgorithmException {
+        if ("EC".equals(keyAlgorithm)) {
+            return "SHA256withECDSA";
+        } else if ("RSA".equals(keyAlgorithm)) {
+            return "SHA256withRSA";
+        }
+        throw new NoSuchAlgorithmException("unsupported key " + keyAlgorithm);
+    }
+}
@@ -0,0 +1,134 @@
+package com.zfg.common.mp4;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 在内存中按大端序写MP4 box，start/end成对调用，end时回填box大小，可嵌套
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class Mp4BoxWriter {
+
+    // 最大嵌套层数
+    private static final int MAX_DEPTH = 16;
+
+    private byte[] mData;
+    private int mSize;
+    private final int[] mBoxStarts = new int[MAX_DEPTH];
+    private int mDepth;
+
+    public Mp4BoxWriter(int initialCapacity) {
+        mData = new byte[Math.max(64, initialCapacity)];
+    }
+
+    public Mp4BoxWriter start(String type) {
+        if (mDepth == MAX_DEPTH) {
+            throw new IllegalStateException("box nesting too deep");
+        }
+        mBoxStarts[mDepth++] = mSize;
+        putInt(0);
+        return putFourCC(type);
+    }
+
+    /**
+     * 开始FullBox，即box头后跟1字节version和3字节flags
+     */
+    public Mp4BoxWriter startFull(String type, int version, int flags) {
+        start(type);
+        return putInt((version << 24) | (flags & 0xFFFFFF));
+    }
+
+    public Mp4BoxWriter end() {
+        if (mDepth == 0) {
+            throw new IllegalStateException("no open box");
+        }
+        int start = mBoxStarts[--mDepth];
+        int size = mSize - start;
+        mData[start] = (byte) (size >>> 24);
+        mData[start + 1] = (byte) (size >>> 16);
+        mData[start + 2] = (byte) (size >>> 8);
+        mData[start + 3] = (byte) size;
+        return this;
+    }
+
+    public Mp4BoxWriter putByte(int value) {
+        ensureCapacity(1);
+        mData[mSize++] = (byte) value;
+        return this;
+    }
+
+    public Mp4BoxWriter putShort(int value) {
+        ensureCapacity(2);
+        mData[mSize++] = (byte) (value >>> 8);
+        mData[mSize++] = (byte) value;
+        return this;
+    }
+
+    public Mp4BoxWriter putInt(int value) {
+        ensureCapacity(4);
+        mData[mSize++] = (byte) (value >>> 24);
+        mData[mSize++] = (byte) (value >>> 16);
+        mData[mSize++] = (byte) (value >>> 8);
+        mData[mSize++] = (byte) value;
+        return this;
+    }
+
+    public Mp4BoxWriter putLong(long value) {
+        putInt((int) (value >>> 32));
+        return putInt((int) value);
+    }
+
+    public Mp4BoxWriter putBytes(byte[] bytes) {
+        return putBytes(bytes, 0, bytes.length);
+    }
+
+    public Mp4BoxWriter putBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, mData, mSize, length);
+        mSize += length;
+        return this;
+    }
+
+    public Mp4BoxWriter putZeros(int count) {
+        ensureCapacity(count);
+        Arrays.fill(mData, mSize, mSize + count, (byte) 0);
+        mSize += count;
+        return this;
+    }
+
+    public Mp4BoxWriter putFourCC(String type) {
+        ensureCapacity(4);
+        for (int i = 0; i < 4; i++) {
+            mData[mSize++] = (byte) type.charAt(i);
+        }
+        return this;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return 已写数据的视图，不复制
+     */
+    public ByteBuffer toByteBuffer() {
+        if (mDepth != 0) {
+            throw new IllegalStateException(mDepth + " boxes not ended");
+        }
+        return ByteBuffer.wrap(mData, 0, mSize);
+    }
+
+    public void reset() {
+        mSize = 0;
+        mDepth = 0;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mSize + extra > mData.length) {
+            mData = Arrays.copyOf(mData, Math.max(mData.length * 2, mSize + extra));
+        }
+    }
+}
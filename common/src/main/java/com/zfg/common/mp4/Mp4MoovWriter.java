@@ -0,0 +1,263 @@
+package com.zfg.common.mp4;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 根据采样表生成moov，用于修复文件（Mp4Recovery）。
+ * 每个采样单独一个chunk（stsc只有一项、co64逐个采样记录偏移），采样时长固定
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public final class Mp4MoovWriter {
+
+    private static final int MOVIE_TIMESCALE = 1000;
+    private static final int VIDEO_TIMESCALE = 90000;
+    // 每个AAC帧的采样数
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final int[] UNITY_MATRIX = {0x10000, 0, 0, 0, 0x10000, 0, 0, 0, 0x40000000};
+
+    private Mp4MoovWriter() {
+    }
+
+    /**
+     * 一个轨道的采样表，用基本类型数组保存，按需扩容
+     */
+    public static class Track {
+        final boolean isVideo;
+        final int timescale;
+        final int sampleDelta;
+        // 视频
+        int width;
+        int height;
+        byte[] sps;
+        byte[] pps;
+        // 音频
+        int channelCount;
+        int sampleRate;
+        byte[] audioConfig;
+
+        long[] offsets = new long[1024];
+        int[] sizes = new int[1024];
+        int[] syncSamples = new int[64];
+        int sampleCount;
+        int syncCount;
+
+        private Track(boolean isVideo, int timescale, int sampleDelta) {
+            this.isVideo = isVideo;
+            this.timescale = timescale;
+            this.sampleDelta = sampleDelta;
+        }
+
+        /**
+         * @param sps 不含起始码
+         * @param pps 不含起始码
+         */
+        public static Track avc(int width, int height, int frameRate, byte[] sps, byte[] pps) {
+            Track track = new Track(true, VIDEO_TIMESCALE, VIDEO_TIMESCALE / Math.max(1, frameRate));
+            track.width = width;
+            track.height = height;
+            track.sps = sps;
+            track.pps = pps;
+            return track;
+        }
+
+        public static Track aac(int sampleRate, int channelCount, byte[] audioSpecificConfig) {
+            Track track = new Track(false, sampleRate, AAC_FRAME_SAMPLES);
+            track.sampleRate = sampleRate;
+            track.channelCount = channelCount;
+            track.audioConfig = audioSpecificConfig;
+            return track;
+        }
+
+        public void addSample(long offset, int size, boolean isSync) {
+            if (sampleCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, sampleCount * 2);
+                sizes = Arrays.copyOf(sizes, sampleCount * 2);
+            }
+            if (isSync && isVideo) {
+                if (syncCount == syncSamples.length) {
+                    syncSamples = Arrays.copyOf(syncSamples, syncCount * 2);
+                }
+                syncSamples[syncCount++] = sampleCount + 1;
+            }
+            offsets[sampleCount] = offset;
+            sizes[sampleCount] = size;
+            sampleCount++;
+        }
+
+        public int getSampleCount() {
+            return sampleCount;
+        }
+
+        /**
+         * @return 最后一个采样的结束位置，没有采样时为-1
+         */
+        public long getEndOffset() {
+            return sampleCount == 0 ? -1 : offsets[sampleCount - 1] + sizes[sampleCount - 1];
+        }
+
+        long getDuration() {
+            return (long) sampleCount * sampleDelta;
+        }
+
+        long getDurationMs() {
+            return getDuration() * MOVIE_TIMESCALE / timescale;
+        }
+    }
+
+    /**
+     * 写完整的moov box
+     */
+    public static void write(Mp4BoxWriter out, List<Track> tracks) {
+        long durationMs = 0;
+        for (Track track : tracks) {
+            durationMs = Math.max(durationMs, track.getDurationMs());
+        }
+        out.start("moov");
+        out.startFull("mvhd", 0, 0)
+                .putInt(0).putInt(0)
+                .putInt(MOVIE_TIMESCALE).putInt((int) durationMs)
+                .putInt(0x00010000).putShort(0x0100).putZeros(10);
+        putMatrix(out);
+        out.putZeros(24).putInt(tracks.size() + 1).end();
+        for (int i = 0; i < tracks.size(); i++) {
+            writeTrak(out, tracks.get(i), i + 1);
+        }
+        out.end();
+    }
+
+    private static void writeTrak(Mp4BoxWriter out, Track track, int trackId) {
+        out.start("trak");
+        // flags：enabled、in movie、in preview
+        out.startFull("tkhd", 0, 7)
+                .putInt(0).putInt(0)
+                .putInt(trackId).putInt(0)
+                .putInt((int) track.getDurationMs())
+                .putZeros(8)
+                .putShort(0).putShort(0)
+                .putShort(track.isVideo ? 0 : 0x0100).putShort(0);
+        putMatrix(out);
+        out.putInt(track.width << 16).putInt(track.height << 16).end();
+
+        out.start("mdia");
+        // language "und"
+        out.startFull("mdhd", 0, 0)
+                .putInt(0).putInt(0)
+                .putInt(track.timescale).putInt((int) track.getDuration())
+                .putShort(0x55C4).putShort(0).end();
+        out.startFull("hdlr", 0, 0).putInt(0)
+                .putFourCC(track.isVideo ? Mp4Track.HANDLER_VIDEO : Mp4Track.HANDLER_AUDIO)
+                .putZeros(12)
+                .putBytes(asciiz(track.isVideo ? "VideoHandle" : "SoundHandle")).end();
+
+        out.start("minf");
+        if (track.isVideo) {
+            out.startFull("vmhd", 0, 1).putZeros(8).end();
+        } else {
+            out.startFull("smhd", 0, 0).putZeros(4).end();
+        }
+        out.start("dinf");
+        out.startFull("dref", 0, 0).putInt(1);
+        out.startFull("url ", 0, 1).end();
+        out.end();
+        out.end();
+        writeStbl(out, track);
+        out.end();
+
+        out.end();
+        out.end();
+    }
+
+    private static void writeStbl(Mp4BoxWriter out, Track track) {
+        out.start("stbl");
+        out.startFull("stsd", 0, 0).putInt(1);
+        if (track.isVideo) {
+            writeAvc1(out, track);
+        } else {
+            writeMp4a(out, track);
+        }
+        out.end();
+
+        out.startFull("stts", 0, 0).putInt(1).putInt(track.sampleCount)
+                .putInt(track.sampleDelta).end();
+        if (track.isVideo) {
+            out.startFull("stss", 0, 0).putInt(track.syncCount);
+            for (int i = 0; i < track.syncCount; i++) {
+                out.putInt(track.syncSamples[i]);
+            }
+            out.end();
+        }
+        out.startFull("stsz", 0, 0).putInt(0).putInt(track.sampleCount);
+        for (int i = 0; i < track.sampleCount; i++) {
+            out.putInt(track.sizes[i]);
+        }
+        out.end();
+        out.startFull("stsc", 0, 0).putInt(1).putInt(1).putInt(1).putInt(1).end();
+        out.startFull("co64", 0, 0).putInt(track.sampleCount);
+        for (int i = 0; i < track.sampleCount; i++) {
+            out.putLong(track.offsets[i]);
+        }
+        out.end();
+        out.end();
+    }
+
+    private static void writeAvc1(Mp4BoxWriter out, Track track) {
+        out.start("avc1")
+                .putZeros(6).putShort(1)
+                .putZeros(16)
+                .putShort(track.width).putShort(track.height)
+                .putInt(0x00480000).putInt(0x00480000)
+                .putInt(0).putShort(1)
+                .putZeros(32)
+                .putShort(0x0018).putShort(0xFFFF);
+        // AVCDecoderConfigurationRecord，NAL长度4字节，一个SPS一个PPS
+        out.start("avcC")
+                .putByte(1).putByte(track.sps[1]).putByte(track.sps[2]).putByte(track.sps[3])
+                .putByte(0xFF).putByte(0xE1)
+                .putShort(track.sps.length).putBytes(track.sps)
+                .putByte(1)
+                .putShort(track.pps.length).putBytes(track.pps)
+                .end();
+        out.end();
+    }
+
+    private static void writeMp4a(Mp4BoxWriter out, Track track) {
+        out.start("mp4a")
+                .putZeros(6).putShort(1)
+                .putZeros(8)
+                .putShort(track.channelCount).putShort(16)
+                .putShort(0).putShort(0)
+                .putInt(track.sampleRate << 16);
+        int decoderSpecificSize = 2 + track.audioConfig.length;
+        int decoderConfigSize = 2 + 13 + decoderSpecificSize;
+        int esSize = 2 + 3 + decoderConfigSize + 3;
+        // ES_Descriptor -> DecoderConfigDescriptor(AAC, 音频流) -> DecoderSpecificInfo、SLConfig
+        out.startFull("esds", 0, 0)
+                .putByte(0x03).putByte(esSize - 2).putShort(0).putByte(0)
+                .putByte(0x04).putByte(decoderConfigSize - 2)
+                .putByte(0x40).putByte(0x15)
+                .putByte(0).putShort(0)
+                .putInt(0).putInt(0)
+                .putByte(0x05).putByte(track.audioConfig.length).putBytes(track.audioConfig)
+                .putByte(0x06).putByte(1).putByte(0x02)
+                .end();
+        out.end();
+    }
+
+    private static void putMatrix(Mp4BoxWriter out) {
+        for (int value : UNITY_MATRIX) {
+            out.putInt(value);
+        }
+    }
+
+    private static byte[] asciiz(String name) {
+        byte[] bytes = new byte[name.length() + 1];
+        for (int i = 0; i < name.length(); i++) {
+            bytes[i] = (byte) name.charAt(i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,330 @@
+package com.zfg.common.mp4;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 纯Java的MP4（ISO BMFF）读取，不依赖MediaExtractor，可在JVM上运行。
+ * 打开时只读取顶层box头和moov，采样表在第一次访问时解析（见Mp4Track）。
+ * 采样数据通过内存映射的FileChannel读取，按窗口映射，多GB文件也不会整体映射。
+ * 不是线程安全的，readSample返回的ByteBuffer在下一次readSample后可能失效
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class Mp4Reader implements Closeable {
+
+    // 读取采样时的映射窗口大小
+    private static final long WINDOW_SIZE = 32 * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final long mFileSize;
+    private final List<Mp4Track> mTracks = new ArrayList<>();
+    private long mMovieTimescale;
+    private long mMovieDuration;
+    private long mMdatOffset = -1;
+    private long mMdatSize;
+
+    private MappedByteBuffer mWindow;
+    private long mWindowOffset;
+
+    /**
+     * @throws IOException 文件不可读或没有moov（如录制中断的文件）
+     */
+    public Mp4Reader(File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        mChannel = mFile.getChannel();
+        mFileSize = mChannel.size();
+        try {
+            parseTopLevel();
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e instanceof IOException ? (IOException) e
+                    : new IOException("invalid mp4: " + file, e);
+        }
+    }
+
+    public List<Mp4Track> getTracks() {
+        return Collections.unmodifiableList(mTracks);
+    }
+
+    /**
+     * @return 第一个视频轨，没有时为null
+     */
+    public Mp4Track getVideoTrack() {
+        for (Mp4Track track : mTracks) {
+            if (track.isVideo()) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    public Mp4Track getAudioTrack() {
+        for (Mp4Track track : mTracks) {
+            if (track.isAudio()) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return mvhd中的时长，单位：微秒
+     */
+    public long getDurationUs() {
+        return mMovieTimescale > 0 ? mMovieDuration * 1000000 / mMovieTimescale : 0;
+    }
+
+    /**
+     * @return 第一个mdat内容的偏移，没有时为-1
+     */
+    public long getMdatOffset() {
+        return mMdatOffset;
+    }
+
+    public long getMdatSize() {
+        return mMdatSize;
+    }
+
+    public FileChannel getChannel() {
+        return mChannel;
+    }
+
+    /**
+     * 读取一个采样，返回映射窗口中的只读切片，不复制数据
+     */
+    public ByteBuffer readSample(Mp4Track track, int index) throws IOException {
+        long offset = track.getSampleOffset(index);
+        int size = track.getSampleSize(index);
+        if (offset < 0 || offset + size > mFileSize) {
+            throw new IOException("sample " + index + " out of file, offset = " + offset);
+        }
+        if (mWindow == null || offset < mWindowOffset
+                || offset + size > mWindowOffset + mWindow.capacity()) {
+            mWindowOffset = offset;
+            long length = Math.min(mFileSize - offset, Math.max(WINDOW_SIZE, size));
+            mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+        ByteBuffer sample = mWindow.duplicate();
+        int position = (int) (offset - mWindowOffset);
+        sample.limit(position + size);
+        sample.position(position);
+        return sample.slice();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWindow = null;
+        mFile.close();
+    }
+
+    private void parseTopLevel() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0;
+        boolean hasMoov = false;
+        while (position + 8 <= mFileSize) {
+            header.clear();
+            mChannel.read(header, position);
+            header.flip();
+            if (header.remaining() < 8) {
+                break;
+            }
+            long size = header.getInt() & 0xFFFFFFFFL;
+            String type = fourCC(header, 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (header.remaining() < 8) {
+                    break;
+                }
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = mFileSize - position;
+            }
+            if (size < headerSize) {
+                throw new IOException("invalid box " + type + " at " + position);
+            }
+            if ("moov".equals(type)) {
+                // moov一般只有几MB，整体映射，stbl内容以切片形式保存在Mp4Track中
+                ByteBuffer moov = mChannel.map(FileChannel.MapMode.READ_ONLY,
+                        position + headerSize, size - headerSize);
+                parseMoov(moov);
+                hasMoov = true;
+            } else if ("mdat".equals(type) && mMdatOffset < 0) {
+                mMdatOffset = position + headerSize;
+                mMdatSize = Math.min(size, mFileSize - position) - headerSize;
+            }
+            position += size;
+        }
+        if (!hasMoov) {
+            throw new IOException("no moov box");
+        }
+    }
+
+    private void parseMoov(ByteBuffer moov) {
+        while (moov.remaining() >= 8) {
+            Box child = nextBox(moov);
+            ByteBuffer box = child.content;
+            String type = child.type;
+            if ("mvhd".equals(type)) {
+                int version = box.get() & 0xFF;
+                skip(box, 3 + (version == 1 ? 16 : 8));
+                mMovieTimescale = box.getInt() & 0xFFFFFFFFL;
+                mMovieDuration = version == 1 ? box.getLong() : box.getInt() & 0xFFFFFFFFL;
+            } else if ("trak".equals(type)) {
+                Mp4Track track = parseTrak(box);
+                if (track != null) {
+                    mTracks.add(track);
+                }
+            }
+        }
+    }
+
+    private Mp4Track parseTrak(ByteBuffer trak) {
+        int trackId = 0;
+        ByteBuffer mdia = null;
+        while (trak.remaining() >= 8) {
+            Box child = nextBox(trak);
+            ByteBuffer box = child.content;
+            String type = child.type;
+            if ("tkhd".equals(type)) {
+                int version = box.get() & 0xFF;
+                skip(box, 3 + (version == 1 ? 16 : 8));
+                trackId = box.getInt();
+            } else if ("mdia".equals(type)) {
+                mdia = box;
+            }
+        }
+        if (mdia == null) {
+            return null;
+        }
+        int timescale = 0;
+        long duration = 0;
+        String handler = null;
+        ByteBuffer stbl = null;
+        while (mdia.remaining() >= 8) {
+            Box child = nextBox(mdia);
+            ByteBuffer box = child.content;
+            String type = child.type;
+            if ("mdhd".equals(type)) {
+                int version = box.get() & 0xFF;
+                skip(box, 3 + (version == 1 ? 16 : 8));
+                timescale = box.getInt();
+                duration = version == 1 ? box.getLong() : box.getInt() & 0xFFFFFFFFL;
+            } else if ("hdlr".equals(type)) {
+                // version、flags、pre_defined
+                handler = fourCC(box, box.position() + 8);
+            } else if ("minf".equals(type)) {
+                stbl = findChild(box, "stbl");
+            }
+        }
+        Mp4Track track = new Mp4Track(trackId, handler, timescale, duration);
+        if (stbl != null) {
+            while (stbl.remaining() >= 8) {
+                Box child = nextBox(stbl);
+                ByteBuffer content = child.content.slice();
+                switch (child.type) {
+                    case "stsd":
+                        track.mStsd = content;
+                        break;
+                    case "stts":
+                        track.mStts = content;
+                        break;
+                    case "ctts":
+                        track.mCtts = content;
+                        break;
+                    case "stss":
+                        track.mStss = content;
+                        break;
+                    case "stsz":
+                        track.mStsz = content;
+                        break;
+                    case "stz2":
+                        track.mStz2 = content;
+                        break;
+                    case "stsc":
+                        track.mStsc = content;
+                        break;
+                    case "stco":
+                        track.mStco = content;
+                        break;
+                    case "co64":
+                        track.mCo64 = content;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return track;
+    }
+
+    private static ByteBuffer findChild(ByteBuffer parent, String childType) {
+        while (parent.remaining() >= 8) {
+            Box child = nextBox(parent);
+            if (childType.equals(child.type)) {
+                return child.content;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 读取parent当前位置的box，parent移到下一个box
+     */
+    private static Box nextBox(ByteBuffer parent) {
+        int start = parent.position();
+        long size = parent.getInt() & 0xFFFFFFFFL;
+        String type = fourCC(parent, start + 4);
+        parent.getInt();
+        int headerSize = 8;
+        if (size == 1) {
+            size = parent.getLong();
+            headerSize = 16;
+        } else if (size == 0) {
+            size = parent.limit() - start;
+        }
+        int end = (int) Math.min(parent.limit(), start + Math.max(size, headerSize));
+        ByteBuffer content = parent.duplicate();
+        content.limit(end);
+        content.position(Math.min(end, start + headerSize));
+        parent.position(end);
+        return new Box(type, content);
+    }
+
+    private static void skip(ByteBuffer buffer, int count) {
+        buffer.position(buffer.position() + count);
+    }
+
+    static String fourCC(ByteBuffer buffer, int position) {
+        char[] chars = new char[4];
+        for (int i = 0; i < 4; i++) {
+            chars[i] = (char) (buffer.get(position + i) & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * box类型及内容（不含box头）
+     */
+    private static final class Box {
+        final String type;
+        final ByteBuffer content;
+
+        Box(String type, ByteBuffer content) {
+            this.type = type;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package com.zfg.common.mp4;
+
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 修复录制中断（mediaMuxerStop未执行）留下的MP4：文件有mdat没有moov，无法播放。
+ * 根据录制时写的RecoverySidecar，顺序扫描一遍mdat：
+ * 1）视频按4字节长度前缀切分AVC NAL单元，再按NAL类型和first_mb_in_slice组成帧。
+ * NAL头和slice头都要合法，且NAL之后必须紧接着合法的NAL、文件末尾，或按sidecar中的大小
+ * 依次取音频帧后恰好落在这些位置，否则单声道AAC帧（SCE开头为0x00/0x01）会被当作NAL长度
+ * 2）不是合法NAL的位置按sidecar中记录的大小依次取一个AAC帧
+ * 3）两者都不符合时（如末尾未写完的数据）逐字节向后查找下一个NAL
+ * 然后复制ftyp到mdat末尾的数据、修正mdat大小并追加新的moov。
+ * 扫描只用固定大小的读缓存，采样表每个采样约12字节
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class Mp4Recovery {
+
+    // 读缓存大小，只读NAL头，NAL内容直接跳过
+    private static final int WINDOW_SIZE = 64 * 1024;
+    // 单个NAL最大长度，超过视为非法。AAC帧开头的字节按长度解读时通常远大于此值
+    private static final int MAX_NAL_SIZE = 4 * 1024 * 1024;
+    // 文件末尾至少这么长的全0数据视为StorageManager预分配而未写入的空间
+    private static final int MIN_PREALLOCATED_ZEROS = 4096;
+    // 校验NAL后面的位置时最多连续取的音频帧数，MediaMuxer每个音频chunk的帧数远小于此值
+    private static final int MAX_AUDIO_RUN = 64;
+    // 校验slice头时最多读取的字节数
+    private static final int SLICE_HEADER_BYTES = 8;
+
+    private static final int NAL_SLICE = 1;
+    private static final int NAL_IDR = 5;
+    private static final int NAL_SEI = 6;
+    private static final int NAL_SPS = 7;
+    private static final int NAL_PPS = 8;
+    private static final int NAL_AUD = 9;
+
+    // slice_type对5取余
+    private static final int SLICE_B = 1;
+    private static final int SLICE_I = 2;
+    private static final int SLICE_SI = 4;
+
+    private final File mInput;
+    private final RecoverySidecar mSidecar;
+    // slice头中first_mb_in_slice的上限和pic_parameter_set_id应有的值
+    private final int mMbCount;
+    private final long mPpsId;
+    private FileChannel mChannel;
+    private final ByteBuffer mWindow = ByteBuffer.allocateDirect(WINDOW_SIZE);
+    private long mWindowStart;
+    private long mEnd;
+
+    private Mp4MoovWriter.Track mVideo;
+    private Mp4MoovWriter.Track mAudio;
+    private int mAudioIndex;
+    // 正在组帧的视频帧
+    private long mFrameStart = -1;
+    private long mFrameEnd;
+    private boolean isFrameHasSlice;
+    private boolean isFrameKey;
+    private long mSkippedBytes;
+    // 解析slice头的缓存
+    private final byte[] mSliceHeader = new byte[SLICE_HEADER_BYTES];
+    private long mBits;
+    private int mBitsLength;
+    private int mBitsUsed;
+
+    /**
+     * @param input 中断的MP4，需存在对应的RecoverySidecar文件
+     */
+    public Mp4Recovery(File input) throws IOException {
+        mInput = input;
+        mSidecar = RecoverySidecar.read(RecoverySidecar.fileFor(input));
+        if (!mSidecar.hasVideo()) {
+            throw new IOException("no video config in sidecar");
+        }
+        if (!"video/avc".equals(mSidecar.getVideoMime())) {
+            throw new IOException("unsupported mime: " + mSidecar.getVideoMime());
+        }
+        mMbCount = ((mSidecar.getWidth() + 15) / 16) * ((mSidecar.getHeight() + 15) / 16);
+        byte[] pps = mSidecar.getPps();
+        loadBits(pps, 1, pps.length - 1);
+        mPpsId = readUe();
+        if (mPpsId < 0) {
+            throw new IOException("invalid pps in sidecar");
+        }
+    }
+
+    /**
+     * 修复后写到output，input不变
+     */
+    public Result recover(File output) throws IOException {
+        mVideo = Mp4MoovWriter.Track.avc(mSidecar.getWidth(), mSidecar.getHeight(),
+                mSidecar.getFrameRate(), mSidecar.getSps(), mSidecar.getPps());
+        if (mSidecar.hasAudio()) {
+            mAudio = Mp4MoovWriter.Track.aac(mSidecar.getSampleRate(),
+                    mSidecar.getChannelCount(), mSidecar.getAudioConfig());
+        }
+        try (RandomAccessFile in = new RandomAccessFile(mInput, "r");
+             RandomAccessFile out = new RandomAccessFile(output, "rw")) {
+            mChannel = in.getChannel();
+            mWindow.limit(0);
+            long[] mdat = findMdat();
+            long headerStart = mdat[0];
+            long dataStart = mdat[1];
+            mEnd = mdat[2];
+            scan(dataStart);
+            if (mVideo.getSampleCount() == 0) {
+                throw new IOException("no video frame found");
+            }
+            long dataEnd = Math.max(mVideo.getEndOffset(),
+                    mAudio != null ? mAudio.getEndOffset() : -1);
+
+            // 复制mdat之前的box和mdat中已识别的数据，偏移不变
+            FileChannel outChannel = out.getChannel();
+            out.setLength(0);
+            long copied = 0;
+            while (copied < dataEnd) {
+                copied += mChannel.transferTo(copied, dataEnd - copied, outChannel);
+            }
+            writeMdatSize(outChannel, headerStart, dataStart - headerStart, dataEnd - headerStart);
+
+            List<Mp4MoovWriter.Track> tracks = new ArrayList<>();
+            tracks.add(mVideo);
+            if (mAudio != null && mAudio.getSampleCount() > 0) {
+                tracks.add(mAudio);
+            }
+            Mp4BoxWriter moov = new Mp4BoxWriter(
+                    4096 + (mVideo.getSampleCount() + mAudioIndex) * 16);
+            Mp4MoovWriter.write(moov, tracks);
+            ByteBuffer buffer = moov.toByteBuffer();
+            long position = dataEnd;
+            while (buffer.hasRemaining()) {
+                position += outChannel.write(buffer, position);
+            }
+            return new Result(mVideo.getSampleCount(), mAudio != null ? mAudio.getSampleCount() : 0,
+                    mEnd - dataEnd, mSkippedBytes);
+        }
+    }
+
+    /**
+     * 修复并替换原文件，成功后删除RecoverySidecar文件。
+     * 原文件先改名为备份，修复后的文件改名成功后才删除备份，任何一步失败都保留原文件
+     */
+    public static Result recoverInPlace(File input) throws IOException {
+        File temp = new File(input.getPath() + ".recovering");
+        Result result;
+        try {
+            result = new Mp4Recovery(input).recover(temp);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        File backup = backupFor(input);
+        if (!input.renameTo(backup)) {
+            temp.delete();
+            throw new IOException("backup failed: " + input);
+        }
+        if (!temp.renameTo(input)) {
+            if (!backup.renameTo(input)) {
+                LogUtils.e("restore " + input + " failed, original kept in " + backup);
+            }
+            temp.delete();
+            throw new IOException("replace failed: " + input);
+        }
+        RecoverySidecar.fileFor(input).delete();
+        backup.delete();
+        return result;
+    }
+
+    /**
+     * recoverInPlace替换过程中原文件的备份
+     */
+    public static File backupFor(File input) {
+        return new File(input.getPath() + ".orig");
+    }
+
+    /**
+     * 上次recoverInPlace在替换过程中被中断时，把备份的原文件改回原名
+     *
+     * @return input是否存在
+     */
+    public static boolean restoreBackup(File input) {
+        File backup = backupFor(input);
+        if (!input.exists() && backup.exists() && !backup.renameTo(input)) {
+            LogUtils.e("restore " + input + " failed");
+        }
+        return input.exists();
+    }
+
+    /**
+     * @return mdat头的位置、内容开始位置、内容结束位置
+     */
+    private long[] findMdat() throws IOException {
+        long fileSize = mChannel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0;
+        while (position + 8 <= fileSize) {
+            header.clear();
+            mChannel.read(header, position);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            String type = Mp4Reader.fourCC(header, 4);
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            }
+            if ("mdat".equals(type)) {
+                // 中断的文件mdat大小通常为0或不正确，以文件末尾为准
+                long end = size >= headerSize && position + size <= fileSize
+                        ? position + size : fileSize;
+                return new long[]{position, position + headerSize,
+                        trimTrailingZeros(position + headerSize, end)};
+            }
+            if (size < headerSize) {
+                break;
+            }
+            position += size;
+        }
+        throw new IOException("no mdat box");
+    }
+
+    /**
+     * 去掉末尾预分配的全0空间，否则最后一个NAL后面不是文件末尾，会被当作不完整的数据
+     *
+     * @return 最后一个非0字节之后的位置，末尾的0不够长时返回end
+     */
+    private long trimTrailingZeros(long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(WINDOW_SIZE);
+        long position = end;
+        while (position > start) {
+            int length = (int) Math.min(WINDOW_SIZE, position - start);
+            buffer.clear();
+            buffer.limit(length);
+            while (buffer.hasRemaining()) {
+                if (mChannel.read(buffer, position - length + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of file");
+                }
+            }
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) != 0) {
+                    long dataEnd = position - length + i + 1;
+                    return end - dataEnd >= MIN_PREALLOCATED_ZEROS ? dataEnd : end;
+                }
+            }
+            position -= length;
+        }
+        return end - start >= MIN_PREALLOCATED_ZEROS ? start : end;
+    }
+
+    private void writeMdatSize(FileChannel channel, long headerStart, long headerSize, long size)
+            throws IOException {
+        ByteBuffer buffer;
+        if (headerSize == 16) {
+            buffer = ByteBuffer.allocate(16);
+            buffer.putInt(1).put(new byte[]{'m', 'd', 'a', 't'}).putLong(size);
+        } else if (size <= 0xFFFFFFFFL) {
+            buffer = ByteBuffer.allocate(4);
+            buffer.putInt((int) size);
+        } else {
+            throw new IOException("mdat too large for 32-bit size: " + size);
+        }
+        buffer.flip();
+        channel.write(buffer, headerStart);
+    }
+
+    private void scan(long position) throws IOException {
+        while (position + 5 <= mEnd) {
+            int nalSize = validNalSizeAt(position);
+            if (nalSize > 0) {
+                addNal(position, nalSize);
+                position += 4 + nalSize;
+                continue;
+            }
+            endFrame();
+            if (mAudio != null && mAudioIndex < mSidecar.getAudioSizeCount()) {
+                int size = mSidecar.getAudioSize(mAudioIndex);
+                if (size > 0 && position + size <= mEnd) {
+                    mAudio.addSample(position, size, true);
+                    mAudioIndex++;
+                    position += size;
+                    continue;
+                }
+            }
+            // 找下一个NAL
+            long next = position + 1;
+            while (next + 5 <= mEnd && validNalSizeAt(next) <= 0) {
+                next++;
+            }
+            if (next + 5 > mEnd) {
+                // 末尾未写完的数据，计入truncatedBytes
+                break;
+            }
+            mSkippedBytes += next - position;
+            position = next;
+        }
+        endFrame();
+    }
+
+    /**
+     * @return position处NAL的长度，NAL不合法或后面的位置不合法时为0
+     */
+    private int validNalSizeAt(long position) throws IOException {
+        int nalSize = nalSizeAt(position);
+        return nalSize > 0 && isNextValid(position + 4 + nalSize) ? nalSize : 0;
+    }
+
+    /**
+     * NAL后面是文件末尾、下一个合法NAL、末尾未写完的NAL，或按sidecar中的大小依次取音频帧后
+     * 恰好落在这些位置（或最后一个音频帧被文件末尾截断）时才认为该NAL有效
+     */
+    private boolean isNextValid(long next) throws IOException {
+        int audioIndex = mAudioIndex;
+        for (int i = 0; i <= MAX_AUDIO_RUN; i++) {
+            if (next == mEnd || (next + 5 <= mEnd
+                    && (nalSizeAt(next) > 0 || isTruncatedNalAt(next)))) {
+                return true;
+            }
+            if (next > mEnd || mAudio == null || audioIndex >= mSidecar.getAudioSizeCount()) {
+                return false;
+            }
+            int size = mSidecar.getAudioSize(audioIndex++);
+            if (size <= 0) {
+                return false;
+            }
+            if (next + size > mEnd) {
+                return true;
+            }
+            next += size;
+        }
+        return false;
+    }
+
+    /**
+     * @return position处合法NAL的长度，不合法时为0
+     */
+    private int nalSizeAt(long position) throws IOException {
+        long size = getInt(position) & 0xFFFFFFFFL;
+        if (size == 0 || size > MAX_NAL_SIZE || position + 4 + size > mEnd) {
+            return 0;
+        }
+        // NAL以rbsp_stop_one_bit结尾，最后一个字节不为0
+        if (getByte(position + 4 + size - 1) == 0 || !isNalHeaderValid(position, size)) {
+            return 0;
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return position处是否是被文件末尾截断、但NAL头合法的NAL
+     */
+    private boolean isTruncatedNalAt(long position) throws IOException {
+        long size = getInt(position) & 0xFFFFFFFFL;
+        return size <= MAX_NAL_SIZE && position + 4 + size > mEnd
+                && isNalHeaderValid(position, Math.min(size, mEnd - position - 4));
+    }
+
+    /**
+     * 检查NAL头，slice还要检查slice头
+     *
+     * @param size 可读取的NAL长度
+     */
+    private boolean isNalHeaderValid(long position, long size) throws IOException {
+        int header = getByte(position + 4);
+        if ((header & 0x80) != 0) {
+            return false;
+        }
+        int type = header & 0x1F;
+        int refIdc = (header >> 5) & 0x03;
+        switch (type) {
+            case NAL_SLICE:
+                return isSliceHeaderValid(position + 5, size - 1, false, refIdc);
+            case NAL_IDR:
+                return refIdc != 0 && isSliceHeaderValid(position + 5, size - 1, true, refIdc);
+            case NAL_SPS:
+            case NAL_PPS:
+                return refIdc != 0;
+            case NAL_SEI:
+                return refIdc == 0;
+            case NAL_AUD:
+                // 只有primary_pic_type一个字节
+                return refIdc == 0 && size == 2;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * slice头的first_mb_in_slice小于宏块数，slice_type合法（IDR只能是I/SI，不作参考的
+     * slice只能是B），pic_parameter_set_id与sidecar中的PPS一致
+     */
+    private boolean isSliceHeaderValid(long position, long size, boolean idr, int refIdc)
+            throws IOException {
+        int length = (int) Math.min(size, SLICE_HEADER_BYTES);
+        for (int i = 0; i < length; i++) {
+            mSliceHeader[i] = (byte) getByte(position + i);
+        }
+        loadBits(mSliceHeader, 0, length);
+        long firstMb = readUe();
+        long sliceType = readUe();
+        long ppsId = readUe();
+        if (firstMb < 0 || firstMb >= mMbCount || sliceType < 0 || sliceType > 9
+                || ppsId != mPpsId) {
+            return false;
+        }
+        int kind = (int) (sliceType % 5);
+        if (idr) {
+            return kind == SLICE_I || kind == SLICE_SI;
+        }
+        return refIdc != 0 || kind == SLICE_B;
+    }
+
+    /**
+     * 从data中最多取8个字节，供readUe按位读取
+     */
+    private void loadBits(byte[] data, int offset, int length) {
+        length = Math.min(length, 8);
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits |= (data[offset + i] & 0xFFL) << (56 - i * 8);
+        }
+        mBits = bits;
+        mBitsLength = length * 8;
+        mBitsUsed = 0;
+    }
+
+    /**
+     * 读一个无符号指数哥伦布码
+     *
+     * @return 读到的值，剩余的位不够时为-1
+     */
+    private long readUe() {
+        if (mBitsUsed >= mBitsLength) {
+            return -1;
+        }
+        long rest = mBits << mBitsUsed;
+        int zeros = Long.numberOfLeadingZeros(rest);
+        int length = zeros * 2 + 1;
+        if (mBitsUsed + length > mBitsLength) {
+            return -1;
+        }
+        mBitsUsed += length;
+        return (rest >>> (64 - length)) - 1;
+    }
+
+    /**
+     * 加入当前帧，新帧的开始：前一帧已有slice，且该NAL是AUD/SPS/PPS/SEI或first_mb_in_slice为0的slice
+     */
+    private void addNal(long position, int size) throws IOException {
+        int type = getByte(position + 4) & 0x1F;
+        boolean isSlice = type == NAL_SLICE || type == NAL_IDR;
+        if (mFrameStart >= 0 && (mFrameEnd != position || (isFrameHasSlice
+                && (!isSlice || (size > 1 && (getByte(position + 5) & 0x80) != 0))))) {
+            endFrame();
+        }
+        if (mFrameStart < 0) {
+            mFrameStart = position;
+        }
+        mFrameEnd = position + 4 + size;
+        isFrameHasSlice |= isSlice;
+        isFrameKey |= type == NAL_IDR;
+    }
+
+    private void endFrame() {
+        if (mFrameStart >= 0 && isFrameHasSlice) {
+            // 文件从IDR帧开始，之前的数据不会被播放器正确解码
+            if (mVideo.getSampleCount() > 0 || isFrameKey) {
+                mVideo.addSample(mFrameStart, (int) (mFrameEnd - mFrameStart), isFrameKey);
+            }
+        }
+        mFrameStart = -1;
+        isFrameHasSlice = false;
+        isFrameKey = false;
+    }
+
+    private int getByte(long position) throws IOException {
+        ensureWindow(position, 1);
+        return mWindow.get((int) (position - mWindowStart)) & 0xFF;
+    }
+
+    private int getInt(long position) throws IOException {
+        ensureWindow(position, 4);
+        return mWindow.getInt((int) (position - mWindowStart));
+    }
+
+    private void ensureWindow(long position, int length) throws IOException {
+        if (position >= mWindowStart && position + length <= mWindowStart + mWindow.limit()) {
+            return;
+        }
+        mWindow.clear();
+        mWindowStart = position;
+        while (mWindow.hasRemaining()) {
+            if (mChannel.read(mWindow, position + mWindow.position()) < 0) {
+                break;
+            }
+        }
+        mWindow.flip();
+        if (mWindow.limit() < length) {
+            throw new IOException("unexpected end of file at " + position);
+        }
+    }
+
+    /**
+     * 修复结果
+     */
+    public static class Result {
+        public final int videoFrames;
+        public final int audioFrames;
+        // 末尾丢弃的不完整数据
+        public final long truncatedBytes;
+        // 中间无法识别而跳过的数据
+        public final long skippedBytes;
+
+        Result(int videoFrames, int audioFrames, long truncatedBytes, long skippedBytes) {
+            this.videoFrames = videoFrames;
+            this.audioFrames = audioFrames;
+            this.truncatedBytes = truncatedBytes;
+            this.skippedBytes = skippedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{video=" + videoFrames + ", audio=" + audioFrames + ", truncated="
+                    + truncatedBytes + ", skipped=" + skippedBytes + "}";
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.zfg.common.mp4;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * MP4的一个轨道。打开文件时只记录stbl各子box的位置，第一次访问采样时才解析采样表。
+ * 采样表用基本类型数组保存：每个采样一个偏移（long）和大小（int，大小固定时不保存），
+ * stts、ctts按游程保存，stss保存关键帧序号
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class Mp4Track {
+
+    public static final String HANDLER_VIDEO = "vide";
+    public static final String HANDLER_AUDIO = "soun";
+
+    private final int mTrackId;
+    private final String mHandlerType;
+    private final int mTimescale;
+    private final long mDuration;
+
+    // stbl子box的内容（不含box头），未出现时为null
+    ByteBuffer mStsd;
+    ByteBuffer mStts;
+    ByteBuffer mCtts;
+    ByteBuffer mStss;
+    ByteBuffer mStsz;
+    ByteBuffer mStz2;
+    ByteBuffer mStsc;
+    ByteBuffer mStco;
+    ByteBuffer mCo64;
+
+    private boolean isLoaded;
+    private int mSampleCount;
+    private long[] mOffsets;
+    // 所有采样大小相同时为null
+    private int[] mSizes;
+    private int mConstantSize;
+    // stts游程：每段的首个采样序号、首个采样的解码时间、采样时长
+    private int[] mSttsFirstSample;
+    private long[] mSttsFirstTime;
+    private int[] mSttsDelta;
+    // ctts游程：每段的首个采样序号和偏移
+    private int[] mCttsFirstSample;
+    private int[] mCttsOffset;
+    // 关键帧序号（从0开始），为null时所有采样都是关键帧
+    private int[] mSyncSamples;
+
+    Mp4Track(int trackId, String handlerType, int timescale, long duration) {
+        mTrackId = trackId;
+        mHandlerType = handlerType;
+        mTimescale = timescale;
+        mDuration = duration;
+    }
+
+    public int getTrackId() {
+        return mTrackId;
+    }
+
+    /**
+     * @return hdlr类型，如HANDLER_VIDEO、HANDLER_AUDIO
+     */
+    public String getHandlerType() {
+        return mHandlerType;
+    }
+
+    public boolean isVideo() {
+        return HANDLER_VIDEO.equals(mHandlerType);
+    }
+
+    public boolean isAudio() {
+        return HANDLER_AUDIO.equals(mHandlerType);
+    }
+
+    public int getTimescale() {
+        return mTimescale;
+    }
+
+    public long getDurationUs() {
+        return toUs(mDuration);
+    }
+
+    /**
+     * @return 第一个采样描述的类型，如avc1、hvc1、mp4a
+     */
+    public String getSampleEntryType() {
+        ByteBuffer entry = getSampleEntry();
+        return entry == null ? null : Mp4Reader.fourCC(entry, 4);
+    }
+
+    /**
+     * 第一个采样描述（含box头），其中包含avcC、esds等编码配置
+     */
+    public ByteBuffer getSampleEntry() {
+        if (mStsd == null || mStsd.remaining() < 16) {
+            return null;
+        }
+        ByteBuffer entry = mStsd.duplicate();
+        // version、flags、entry_count
+        entry.position(entry.position() + 8);
+        int size = entry.getInt(entry.position());
+        entry.limit(Math.min(entry.limit(), entry.position() + size));
+        return entry.slice();
+    }
+
+    /**
+     * @return 视频宽度，非视频轨为0
+     */
+    public int getWidth() {
+        ByteBuffer entry = getSampleEntry();
+        return isVideo() && entry != null ? entry.getShort(32) & 0xFFFF : 0;
+    }
+
+    public int getHeight() {
+        ByteBuffer entry = getSampleEntry();
+        return isVideo() && entry != null ? entry.getShort(34) & 0xFFFF : 0;
+    }
+
+    /**
+     * @return 音频声道数，非音频轨为0
+     */
+    public int getChannelCount() {
+        ByteBuffer entry = getSampleEntry();
+        return isAudio() && entry != null ? entry.getShort(24) & 0xFFFF : 0;
+    }
+
+    public int getSampleRate() {
+        ByteBuffer entry = getSampleEntry();
+        // 16.16定点数
+        return isAudio() && entry != null ? entry.getInt(32) >>> 16 : 0;
+    }
+
+    public int getSampleCount() {
+        ensureLoaded();
+        return mSampleCount;
+    }
+
+    public long getSampleOffset(int index) {
+        ensureLoaded();
+        return mOffsets[index];
+    }
+
+    public int getSampleSize(int index) {
+        ensureLoaded();
+        return mSizes != null ? mSizes[index] : mConstantSize;
+    }
+
+    /**
+     * @return 解码时间，单位：微秒
+     */
+    public long getDecodeTimeUs(int index) {
+        ensureLoaded();
+        return toUs(decodeTime(index));
+    }
+
+    /**
+     * @return 显示时间（解码时间加ctts偏移），单位：微秒
+     */
+    public long getPresentationTimeUs(int index) {
+        ensureLoaded();
+        long time = decodeTime(index);
+        if (mCttsFirstSample != null) {
+            time += mCttsOffset[findRun(mCttsFirstSample, index)];
+        }
+        return toUs(time);
+    }
+
+    public boolean isSyncSample(int index) {
+        ensureLoaded();
+        return mSyncSamples == null || Arrays.binarySearch(mSyncSamples, index) >= 0;
+    }
+
+    /**
+     * @return 解码时间不晚于timeUs的最后一个采样，timeUs在第一个采样之前时为0
+     */
+    public int getSampleIndex(long timeUs) {
+        ensureLoaded();
+        if (mSampleCount == 0) {
+            return -1;
+        }
+        long time = timeUs * mTimescale / 1000000;
+        int run = findRun(mSttsFirstTime, time);
+        if (run < 0) {
+            return 0;
+        }
+        long index = mSttsFirstSample[run] + (time - mSttsFirstTime[run]) / Math.max(1, mSttsDelta[run]);
+        int last = run + 1 < mSttsFirstSample.length ? mSttsFirstSample[run + 1] - 1 : mSampleCount - 1;
+        return (int) Math.min(index, last);
+    }
+
+    /**
+     * @return index及之前最近的关键帧，没有时为0
+     */
+    public int getSyncSampleBefore(int index) {
+        ensureLoaded();
+        if (mSyncSamples == null) {
+            return index;
+        }
+        int run = findRun(mSyncSamples, index);
+        return run < 0 ? 0 : mSyncSamples[run];
+    }
+
+    private long toUs(long time) {
+        return mTimescale > 0 ? time * 1000000 / mTimescale : 0;
+    }
+
+    private long decodeTime(int index) {
+        int run = findRun(mSttsFirstSample, index);
+        if (run < 0) {
+            return 0;
+        }
+        return mSttsFirstTime[run] + (long) (index - mSttsFirstSample[run]) * mSttsDelta[run];
+    }
+
+    /**
+     * @return 最后一个不大于key的元素位置，都大于key时为-1
+     */
+    private static int findRun(int[] starts, long key) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private static int findRun(long[] starts, long key) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    private synchronized void ensureLoaded() {
+        if (isLoaded) {
+            return;
+        }
+        loadSizes();
+        loadOffsets();
+        loadTimes();
+        loadSync();
+        isLoaded = true;
+    }
+
+    private void loadSizes() {
+        if (mStsz != null) {
+            ByteBuffer b = mStsz.duplicate();
+            b.getInt();
+            mConstantSize = b.getInt();
+            mSampleCount = b.getInt();
+            if (mConstantSize == 0) {
+                mSizes = new int[mSampleCount];
+                for (int i = 0; i < mSampleCount; i++) {
+                    mSizes[i] = b.getInt();
+                }
+            }
+        } else if (mStz2 != null) {
+            ByteBuffer b = mStz2.duplicate();
+            b.getInt();
+            int fieldSize = b.getInt() & 0xFF;
+            mSampleCount = b.getInt();
+            mSizes = new int[mSampleCount];
+            for (int i = 0; i < mSampleCount; i++) {
+                if (fieldSize == 4) {
+                    int value = b.get(b.position() + i / 2) & 0xFF;
+                    mSizes[i] = (i & 1) == 0 ? value >>> 4 : value & 0x0F;
+                } else if (fieldSize == 8) {
+                    mSizes[i] = b.get() & 0xFF;
+                } else {
+                    mSizes[i] = b.getShort() & 0xFFFF;
+                }
+            }
+        }
+    }
+
+    private void loadOffsets() {
+        mOffsets = new long[mSampleCount];
+        if (mSampleCount == 0 || mStsc == null || (mStco == null && mCo64 == null)) {
+            return;
+        }
+        ByteBuffer chunks = (mCo64 != null ? mCo64 : mStco).duplicate();
+        chunks.getInt();
+        int chunkCount = chunks.getInt();
+        boolean isLarge = mCo64 != null;
+
+        ByteBuffer stsc = mStsc.duplicate();
+        stsc.getInt();
+        int entryCount = stsc.getInt();
+        int[] firstChunk = new int[entryCount];
+        int[] samplesPerChunk = new int[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            firstChunk[i] = stsc.getInt() - 1;
+            samplesPerChunk[i] = stsc.getInt();
+            // sample_description_index
+            stsc.getInt();
+        }
+
+        int sample = 0;
+        int entry = 0;
+        for (int chunk = 0; chunk < chunkCount && sample < mSampleCount; chunk++) {
+            while (entry + 1 < entryCount && firstChunk[entry + 1] <= chunk) {
+                entry++;
+            }
+            long offset = isLarge ? chunks.getLong() : chunks.getInt() & 0xFFFFFFFFL;
+            int count = entryCount > 0 ? samplesPerChunk[entry] : 0;
+            for (int i = 0; i < count && sample < mSampleCount; i++) {
+                mOffsets[sample] = offset;
+                offset += mSizes != null ? mSizes[sample] : mConstantSize;
+                sample++;
+            }
+        }
+    }
+
+    private void loadTimes() {
+        if (mStts == null) {
+            mSttsFirstSample = new int[0];
+            mSttsFirstTime = new long[0];
+            mSttsDelta = new int[0];
+        } else {
+            ByteBuffer b = mStts.duplicate();
+            b.getInt();
+            int count = b.getInt();
+            mSttsFirstSample = new int[count];
+            mSttsFirstTime = new long[count];
+            mSttsDelta = new int[count];
+            int sample = 0;
+            long time = 0;
+            for (int i = 0; i < count; i++) {
+                int samples = b.getInt();
+                int delta = b.getInt();
+                mSttsFirstSample[i] = sample;
+                mSttsFirstTime[i] = time;
+                mSttsDelta[i] = delta;
+                sample += samples;
+                time += (long) samples * delta;
+            }
+        }
+        if (mCtts != null) {
+            ByteBuffer b = mCtts.duplicate();
+            b.getInt();
+            int count = b.getInt();
+            mCttsFirstSample = new int[count];
+            mCttsOffset = new int[count];
+            int sample = 0;
+            for (int i = 0; i < count; i++) {
+                int samples = b.getInt();
+                mCttsFirstSample[i] = sample;
+                // version 0为无符号，实际文件中都小于2^31，与version 1一样按有符号读取
+                mCttsOffset[i] = b.getInt();
+                sample += samples;
+            }
+        }
+    }
+
+    private void loadSync() {
+        if (mStss == null) {
+            return;
+        }
+        ByteBuffer b = mStss.duplicate();
+        b.getInt();
+        int count = b.getInt();
+        mSyncSamples = new int[count];
+        for (int i = 0; i < count; i++) {
+            mSyncSamples[i] = b.getInt() - 1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Mp4Track{id=" + mTrackId + ", " + mHandlerType + ", " + getSampleEntryType()
+                + ", timescale=" + mTimescale + ", durationUs=" + getDurationUs() + "}";
+    }
+}
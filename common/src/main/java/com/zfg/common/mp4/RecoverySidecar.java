@@ -0,0 +1,282 @@
+package com.zfg.common.mp4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 录制时与MP4同时写的小文件（"xxx.mp4.rec"），用于录制异常中断后修复（见Mp4Recovery）。
+ * 记录视频、音频的编码配置，以及按写入顺序的每个音频帧大小（AAC裸流无法自行分帧）。
+ * 格式："ZREC"、版本号，之后是若干条记录：1字节类型、4字节长度、内容。
+ * 音频帧大小攒够一批才写一条记录，进程中断时最后一批可能丢失，读取时忽略不完整的记录
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class RecoverySidecar implements Closeable {
+
+    public static final String SUFFIX = ".rec";
+
+    private static final int MAGIC = 0x5A524543;
+    private static final int VERSION = 1;
+    private static final int RECORD_VIDEO = 'V';
+    private static final int RECORD_AUDIO = 'A';
+    private static final int RECORD_AUDIO_SIZES = 'S';
+    // 每批音频帧大小个数，16kHz下约1秒
+    private static final int SIZE_BATCH = 16;
+
+    private final File mFile;
+    private final DataOutputStream mOut;
+    private final short[] mSizes = new short[SIZE_BATCH];
+    private int mSizeCount;
+
+    // 读取结果
+    private String mVideoMime;
+    private int mWidth;
+    private int mHeight;
+    private int mFrameRate;
+    private byte[] mSps;
+    private byte[] mPps;
+    private int mSampleRate;
+    private int mChannelCount;
+    private byte[] mAudioConfig;
+    private short[] mAudioSizes = new short[0];
+    private int mAudioSizeCount;
+
+    private RecoverySidecar(File file, DataOutputStream out) {
+        mFile = file;
+        mOut = out;
+    }
+
+    /**
+     * @return mp4对应的修复文件
+     */
+    public static File fileFor(File mp4) {
+        return new File(mp4.getPath() + SUFFIX);
+    }
+
+    public static RecoverySidecar create(File mp4) throws IOException {
+        File file = fileFor(mp4);
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.flush();
+        return new RecoverySidecar(file, out);
+    }
+
+    /**
+     * @param sps 不含起始码的SPS
+     * @param pps 不含起始码的PPS
+     */
+    public synchronized void writeVideoConfig(String mime, int width, int height, int frameRate,
+                                              byte[] sps, byte[] pps) throws IOException {
+        byte[] mimeBytes = mime.getBytes("UTF-8");
+        mOut.writeByte(RECORD_VIDEO);
+        mOut.writeInt(2 + mimeBytes.length + 12 + 4 + sps.length + 4 + pps.length);
+        mOut.writeShort(mimeBytes.length);
+        mOut.write(mimeBytes);
+        mOut.writeInt(width);
+        mOut.writeInt(height);
+        mOut.writeInt(frameRate);
+        mOut.writeInt(sps.length);
+        mOut.write(sps);
+        mOut.writeInt(pps.length);
+        mOut.write(pps);
+        mOut.flush();
+    }
+
+    /**
+     * @param audioSpecificConfig AAC的csd-0
+     */
+    public synchronized void writeAudioConfig(int sampleRate, int channelCount,
+                                              byte[] audioSpecificConfig) throws IOException {
+        mOut.writeByte(RECORD_AUDIO);
+        mOut.writeInt(12 + audioSpecificConfig.length);
+        mOut.writeInt(sampleRate);
+        mOut.writeInt(channelCount);
+        mOut.writeInt(audioSpecificConfig.length);
+        mOut.write(audioSpecificConfig);
+        mOut.flush();
+    }
+
+    /**
+     * 记录一个已写入MP4的音频帧大小
+     */
+    public synchronized void appendAudioSize(int size) throws IOException {
+        mSizes[mSizeCount++] = (short) size;
+        if (mSizeCount == SIZE_BATCH) {
+            flushSizes();
+        }
+    }
+
+    private void flushSizes() throws IOException {
+        if (mSizeCount == 0) {
+            return;
+        }
+        mOut.writeByte(RECORD_AUDIO_SIZES);
+        mOut.writeInt(mSizeCount * 2);
+        for (int i = 0; i < mSizeCount; i++) {
+            mOut.writeShort(mSizes[i]);
+        }
+        mOut.flush();
+        mSizeCount = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flushSizes();
+        } finally {
+            mOut.close();
+        }
+    }
+
+    /**
+     * MP4正常结束后调用，删除修复文件
+     */
+    public void delete() throws IOException {
+        close();
+        if (!mFile.delete()) {
+            throw new IOException("delete failed: " + mFile);
+        }
+    }
+
+    /**
+     * 读取修复文件，忽略末尾不完整的记录
+     */
+    public static RecoverySidecar read(File file) throws IOException {
+        RecoverySidecar sidecar = new RecoverySidecar(file, null);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a recovery file: " + file);
+            }
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || length > file.length()) {
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    break;
+                }
+                sidecar.parseRecord(type, new DataInputStream(new ByteArrayInputStream(record)));
+            }
+        }
+        return sidecar;
+    }
+
+    private void parseRecord(int type, DataInputStream in) throws IOException {
+        switch (type) {
+            case RECORD_VIDEO:
+                byte[] mime = new byte[in.readUnsignedShort()];
+                in.readFully(mime);
+                mVideoMime = new String(mime, "UTF-8");
+                mWidth = in.readInt();
+                mHeight = in.readInt();
+                mFrameRate = in.readInt();
+                mSps = readBytes(in);
+                mPps = readBytes(in);
+                break;
+            case RECORD_AUDIO:
+                mSampleRate = in.readInt();
+                mChannelCount = in.readInt();
+                mAudioConfig = readBytes(in);
+                break;
+            case RECORD_AUDIO_SIZES:
+                int count = in.available() / 2;
+                if (mAudioSizeCount + count > mAudioSizes.length) {
+                    mAudioSizes = Arrays.copyOf(mAudioSizes,
+                            Math.max(mAudioSizes.length * 2, mAudioSizeCount + count));
+                }
+                for (int i = 0; i < count; i++) {
+                    mAudioSizes[mAudioSizeCount++] = in.readShort();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    public boolean hasVideo() {
+        return mSps != null && mPps != null;
+    }
+
+    public boolean hasAudio() {
+        return mAudioConfig != null;
+    }
+
+    public String getVideoMime() {
+        return mVideoMime;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getFrameRate() {
+        return mFrameRate;
+    }
+
+    public byte[] getSps() {
+        return mSps;
+    }
+
+    public byte[] getPps() {
+        return mPps;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public byte[] getAudioConfig() {
+        return mAudioConfig;
+    }
+
+    /**
+     * @return 已记录的音频帧数
+     */
+    public int getAudioSizeCount() {
+        return mAudioSizeCount;
+    }
+
+    /**
+     * @return 第index个音频帧的大小
+     */
+    public int getAudioSize(int index) {
+        return mAudioSizes[index] & 0xFFFF;
+    }
+}
@@ -0,0 +1,111 @@
+package com.zfg.common.overlay;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * 字形图集，用等宽字体把字符预先绘制成YuvTile，之后每帧只做叠加，不再经过Bitmap。
+ * 白字黑边，在亮暗背景上都能看清
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class GlyphAtlas {
+
+    private final Paint mPaint;
+    private final int mCellWidth;
+    private final int mCellHeight;
+    private final float mBaseline;
+    private final float mStrokeWidth;
+    private final String mChars;
+    private final YuvTile[] mGlyphs;
+
+    /**
+     * @param chars    需要预绘制的字符
+     * @param textSize 字号，单位像素
+     */
+    public GlyphAtlas(String chars, float textSize) {
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mPaint.setTypeface(Typeface.MONOSPACE);
+        mPaint.setTextSize(textSize);
+        mStrokeWidth = Math.max(2f, textSize / 12f);
+
+        Paint.FontMetrics metrics = mPaint.getFontMetrics();
+        int pad = (int) Math.ceil(mStrokeWidth);
+        // 等宽字体每个字符宽度一致，宽高取偶数以便UV按2x2对齐
+        mCellWidth = even((int) Math.ceil(mPaint.measureText("0")) + pad * 2);
+        mCellHeight = even((int) Math.ceil(metrics.descent - metrics.ascent) + pad * 2);
+        mBaseline = pad - metrics.ascent;
+
+        mChars = chars;
+        mGlyphs = new YuvTile[chars.length()];
+        for (int i = 0; i < chars.length(); i++) {
+            mGlyphs[i] = render(String.valueOf(chars.charAt(i)), mCellWidth);
+        }
+    }
+
+    private static int even(int value) {
+        return (value + 1) & ~1;
+    }
+
+    /**
+     * 把整段文字绘制成一个叠加块，用于内容不变的文字，如站点编号
+     */
+    public YuvTile renderText(String text) {
+        int pad = (int) Math.ceil(mStrokeWidth);
+        return render(text, even((int) Math.ceil(mPaint.measureText(text)) + pad * 2));
+    }
+
+    private YuvTile render(String text, int width) {
+        Bitmap bitmap = Bitmap.createBitmap(width, mCellHeight, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.TRANSPARENT);
+        Canvas canvas = new Canvas(bitmap);
+        float x = (float) Math.ceil(mStrokeWidth);
+        // 先描黑边再填白字
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(mStrokeWidth);
+        mPaint.setColor(Color.BLACK);
+        canvas.drawText(text, x, mBaseline, mPaint);
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setColor(Color.WHITE);
+        canvas.drawText(text, x, mBaseline, mPaint);
+
+        YuvTile tile = fromBitmap(bitmap);
+        bitmap.recycle();
+        return tile;
+    }
+
+    /**
+     * Bitmap转为叠加块，只在初始化时调用，如台标
+     *
+     * @param bitmap 宽高为奇数时裁掉最后一行或一列
+     */
+    public static YuvTile fromBitmap(Bitmap bitmap) {
+        int width = bitmap.getWidth() & ~1;
+        int height = bitmap.getHeight() & ~1;
+        int[] argb = new int[width * height];
+        // getPixels返回的是非预乘的ARGB
+        bitmap.getPixels(argb, 0, width, 0, 0, width, height);
+        return YuvTile.fromArgb(argb, width, height);
+    }
+
+    /**
+     * @return 字符对应的叠加块，图集中没有的字符返回null，按空白处理
+     */
+    public YuvTile getGlyph(char c) {
+        int index = mChars.indexOf(c);
+        return index >= 0 ? mGlyphs[index] : null;
+    }
+
+    public int getCellWidth() {
+        return mCellWidth;
+    }
+
+    public int getCellHeight() {
+        return mCellHeight;
+    }
+}
@@ -0,0 +1,110 @@
+package com.zfg.common.overlay;
+
+import android.graphics.Bitmap;
+
+import java.util.Calendar;
+
+/**
+ * 在NV12帧上叠加时间戳、站点编号和台标。
+ * 字形、文字和台标在初始化时预转换为YuvTile，每帧只混合叠加区域，耗时与帧分辨率无关，
+ * 帧数据不经过Bitmap
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class OverlayCompositor {
+
+    // 时间戳格式 yyyy-MM-dd HH:mm:ss
+    private static final int TIMESTAMP_LENGTH = 19;
+    private static final String TIMESTAMP_CHARS = "0123456789-: ";
+
+    private final GlyphAtlas mAtlas;
+    private final YuvTile mSiteTile;
+    private final YuvTile mLogoTile;
+    private final int mMargin;
+
+    // 当前秒对应的字形，秒数变化时才更新
+    private final YuvTile[] mTimeGlyphs = new YuvTile[TIMESTAMP_LENGTH];
+    private final char[] mTimeChars = new char[TIMESTAMP_LENGTH];
+    private final Calendar mCalendar = Calendar.getInstance();
+    private long mCurrentSecond = -1;
+
+    /**
+     * @param textSize 字号，单位像素
+     * @param siteId   站点编号，显示在时间戳下方，可为null
+     * @param logo     台标，显示在右上角，可为null，转换后即可回收
+     */
+    public OverlayCompositor(float textSize, String siteId, Bitmap logo) {
+        mAtlas = new GlyphAtlas(TIMESTAMP_CHARS, textSize);
+        mSiteTile = siteId == null || siteId.isEmpty() ? null : mAtlas.renderText(siteId);
+        mLogoTile = logo == null ? null : GlyphAtlas.fromBitmap(logo);
+        mMargin = ((int) textSize / 2) & ~1;
+    }
+
+    /**
+     * 按帧高计算合适的字号，约为帧高的1/30
+     */
+    public static float textSizeFor(int frameHeight) {
+        return Math.max(16, frameHeight / 30);
+    }
+
+    /**
+     * 叠加到NV12帧上
+     *
+     * @param frame       NV12帧
+     * @param width       帧宽
+     * @param height      帧高
+     * @param timeMillis  显示的时间
+     */
+    public void compose(byte[] frame, int width, int height, long timeMillis) {
+        updateTimestamp(timeMillis);
+
+        int cellWidth = mAtlas.getCellWidth();
+        int left = mMargin;
+        int top = mMargin;
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            YuvTile glyph = mTimeGlyphs[i];
+            if (glyph != null) {
+                glyph.blendNV12(frame, width, height, left + i * cellWidth, top);
+            }
+        }
+        if (mSiteTile != null) {
+            mSiteTile.blendNV12(frame, width, height, left, top + mAtlas.getCellHeight());
+        }
+        if (mLogoTile != null) {
+            mLogoTile.blendNV12(frame, width, height, width - mMargin - mLogoTile.width, top);
+        }
+    }
+
+    private void updateTimestamp(long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second == mCurrentSecond) {
+            return;
+        }
+        mCurrentSecond = second;
+        mCalendar.setTimeInMillis(timeMillis);
+        putNumber(0, mCalendar.get(Calendar.YEAR), 4);
+        mTimeChars[4] = '-';
+        putNumber(5, mCalendar.get(Calendar.MONTH) + 1, 2);
+        mTimeChars[7] = '-';
+        putNumber(8, mCalendar.get(Calendar.DAY_OF_MONTH), 2);
+        mTimeChars[10] = ' ';
+        putNumber(11, mCalendar.get(Calendar.HOUR_OF_DAY), 2);
+        mTimeChars[13] = ':';
+        putNumber(14, mCalendar.get(Calendar.MINUTE), 2);
+        mTimeChars[16] = ':';
+        putNumber(17, mCalendar.get(Calendar.SECOND), 2);
+        for (int i = 0; i < TIMESTAMP_LENGTH; i++) {
+            // 空格不叠加
+            mTimeGlyphs[i] = mTimeChars[i] == ' ' ? null : mAtlas.getGlyph(mTimeChars[i]);
+        }
+    }
+
+    private void putNumber(int offset, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            mTimeChars[offset + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
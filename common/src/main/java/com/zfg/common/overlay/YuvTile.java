@@ -0,0 +1,149 @@
+package com.zfg.common.overlay;
+
+/**
+ * 预先转换好的YUV叠加块，Y和UV各带一份透明度，叠加时直接与NV12帧混合，不需要经过Bitmap
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class YuvTile {
+
+    // 宽高均为偶数
+    final int width;
+    final int height;
+    // 每个像素的Y和透明度
+    final byte[] y;
+    final byte[] alpha;
+    // 每2x2像素一组的U、V交错数据和平均透明度
+    final byte[] uv;
+    final byte[] alphaUV;
+
+    /**
+     * @param width   宽，偶数
+     * @param height  高，偶数
+     * @param y       Y，width * height
+     * @param alpha   Y的透明度，width * height
+     * @param uv      UV交错，width * height / 2
+     * @param alphaUV UV的透明度，width * height / 4
+     */
+    public YuvTile(int width, int height, byte[] y, byte[] alpha, byte[] uv, byte[] alphaUV) {
+        this.width = width;
+        this.height = height;
+        this.y = y;
+        this.alpha = alpha;
+        this.uv = uv;
+        this.alphaUV = alphaUV;
+    }
+
+    /**
+     * 由ARGB像素生成，按BT.601 limited range转换，UV取2x2的透明度加权平均
+     *
+     * @param argb   非预乘的ARGB像素
+     * @param width  宽，偶数
+     * @param height 高，偶数
+     */
+    public static YuvTile fromArgb(int[] argb, int width, int height) {
+        byte[] y = new byte[width * height];
+        byte[] alpha = new byte[width * height];
+        byte[] uv = new byte[width * height / 2];
+        byte[] alphaUV = new byte[width * height / 4];
+        for (int i = 0; i < width * height; i++) {
+            int c = argb[i];
+            int r = (c >> 16) & 0xFF;
+            int g = (c >> 8) & 0xFF;
+            int b = c & 0xFF;
+            y[i] = (byte) (((66 * r + 129 * g + 25 * b + 128) >> 8) + 16);
+            alpha[i] = (byte) (c >>> 24);
+        }
+        for (int cy = 0; cy < height / 2; cy++) {
+            for (int cx = 0; cx < width / 2; cx++) {
+                int sumA = 0;
+                int sumU = 0;
+                int sumV = 0;
+                for (int j = 0; j < 2; j++) {
+                    for (int i = 0; i < 2; i++) {
+                        int c = argb[(cy * 2 + j) * width + cx * 2 + i];
+                        int a = c >>> 24;
+                        int r = (c >> 16) & 0xFF;
+                        int g = (c >> 8) & 0xFF;
+                        int b = c & 0xFF;
+                        sumA += a;
+                        sumU += a * (((-38 * r - 74 * g + 112 * b + 128) >> 8) + 128);
+                        sumV += a * (((112 * r - 94 * g - 18 * b + 128) >> 8) + 128);
+                    }
+                }
+                int index = cy * (width / 2) + cx;
+                alphaUV[index] = (byte) (sumA >> 2);
+                uv[index * 2] = (byte) (sumA == 0 ? 128 : sumU / sumA);
+                uv[index * 2 + 1] = (byte) (sumA == 0 ? 128 : sumV / sumA);
+            }
+        }
+        return new YuvTile(width, height, y, alpha, uv, alphaUV);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 叠加到NV12帧上，只处理叠加块覆盖的区域，超出帧的部分裁掉
+     *
+     * @param frame  NV12帧
+     * @param frameWidth  帧宽
+     * @param frameHeight 帧高
+     * @param left   叠加位置，偶数
+     * @param top    叠加位置，偶数
+     */
+    public void blendNV12(byte[] frame, int frameWidth, int frameHeight, int left, int top) {
+        left &= ~1;
+        top &= ~1;
+        int x0 = Math.max(0, -left);
+        int y0 = Math.max(0, -top);
+        int x1 = Math.min(width, frameWidth - left);
+        int y1 = Math.min(height, frameHeight - top);
+        if (x0 >= x1 || y0 >= y1) {
+            return;
+        }
+
+        // Y
+        for (int ty = y0; ty < y1; ty++) {
+            int t = ty * width;
+            int f = (top + ty) * frameWidth + left;
+            for (int tx = x0; tx < x1; tx++) {
+                int a = alpha[t + tx] & 0xFF;
+                if (a == 0) {
+                    continue;
+                }
+                // 255映射为256，避免除法
+                a += a >> 7;
+                int src = frame[f + tx] & 0xFF;
+                frame[f + tx] = (byte) (src + ((((y[t + tx] & 0xFF) - src) * a) >> 8));
+            }
+        }
+
+        // UV
+        int uvOffset = frameWidth * frameHeight;
+        int chromaWidth = width / 2;
+        for (int cy = y0 / 2; cy < y1 / 2; cy++) {
+            int t = cy * chromaWidth;
+            int f = uvOffset + (top / 2 + cy) * frameWidth + left;
+            for (int cx = x0 / 2; cx < x1 / 2; cx++) {
+                int a = alphaUV[t + cx] & 0xFF;
+                if (a == 0) {
+                    continue;
+                }
+                a += a >> 7;
+                int p = f + cx * 2;
+                int u = frame[p] & 0xFF;
+                int v = frame[p + 1] & 0xFF;
+                frame[p] = (byte) (u + ((((uv[(t + cx) * 2] & 0xFF) - u) * a) >> 8));
+                frame[p + 1] = (byte) (v + ((((uv[(t + cx) * 2 + 1] & 0xFF) - v) * a) >> 8));
+            }
+        }
+    }
+}
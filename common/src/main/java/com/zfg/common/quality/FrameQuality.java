@@ -0,0 +1,59 @@
+package com.zfg.common.quality;
+
+import java.util.Locale;
+
+/**
+ * 单帧的客观质量：各分量PSNR和Y分量SSIM。完全相同的分量PSNR记为QualityMetrics.MAX_PSNR
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class FrameQuality {
+
+    private final double mPsnrY;
+    private final double mPsnrU;
+    private final double mPsnrV;
+    private final double mPsnr;
+    private final double mSsim;
+
+    FrameQuality(double psnrY, double psnrU, double psnrV, double psnr, double ssim) {
+        mPsnrY = psnrY;
+        mPsnrU = psnrU;
+        mPsnrV = psnrV;
+        mPsnr = psnr;
+        mSsim = ssim;
+    }
+
+    public double getPsnrY() {
+        return mPsnrY;
+    }
+
+    public double getPsnrU() {
+        return mPsnrU;
+    }
+
+    public double getPsnrV() {
+        return mPsnrV;
+    }
+
+    /**
+     * @return 按所有采样（Y、U、V合计）的均方误差计算的PSNR
+     */
+    public double getPsnr() {
+        return mPsnr;
+    }
+
+    /**
+     * @return Y分量SSIM，0~1
+     */
+    public double getSsim() {
+        return mSsim;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "psnr = %.2f (y %.2f, u %.2f, v %.2f), ssim = %.4f",
+                mPsnr, mPsnrY, mPsnrU, mPsnrV, mSsim);
+    }
+}
@@ -0,0 +1,211 @@
+package com.zfg.common.quality;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 计算编码后帧与源帧之间的PSNR和SSIM，输入为同尺寸的NV12。
+ * 帧按行切成条带，在ForkJoinPool中并行计算后合并，每个条带只在栈上累加，不分配帧大小的内存。
+ * SSIM在Y分量上按8x8窗口、步长4计算后取平均（与x264、libvpx的快速SSIM一致）。
+ * measure可以在多个线程同时调用
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class QualityMetrics {
+
+    // 两帧完全相同时的PSNR
+    public static final double MAX_PSNR = 100;
+
+    private static final int SSIM_WINDOW = 8;
+    private static final int SSIM_STEP = 4;
+    private static final double SSIM_C1 = (0.01 * 255) * (0.01 * 255);
+    private static final double SSIM_C2 = (0.03 * 255) * (0.03 * 255);
+    // 每个条带至少的行数，再小时拆分任务的开销超过计算本身
+    private static final int MIN_TILE_ROWS = 32;
+
+    // 条带结果的下标
+    private static final int SSE_Y = 0;
+    private static final int SSE_U = 1;
+    private static final int SSE_V = 2;
+    private static final int SSIM_SUM = 3;
+    private static final int SSIM_WINDOWS = 4;
+
+    private final ForkJoinPool mPool;
+
+    /**
+     * 并行数为CPU核数
+     */
+    public QualityMetrics() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism 并行线程数
+     */
+    public QualityMetrics(int parallelism) {
+        mPool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    /**
+     * @param reference 源帧，NV12
+     * @param distorted 编码后解码得到的帧，NV12
+     * @param width     宽，需为偶数
+     * @param height    高，需为偶数
+     */
+    public FrameQuality measure(byte[] reference, byte[] distorted, int width, int height) {
+        int frameSize = width * height * 3 / 2;
+        if (reference.length < frameSize || distorted.length < frameSize) {
+            throw new IllegalArgumentException("frame smaller than " + width + "x" + height);
+        }
+        double[] sums = mPool.invoke(new TileTask(reference, distorted, width, height, 0,
+                height));
+        long lumaSamples = (long) width * height;
+        long chromaSamples = lumaSamples / 4;
+        double psnrY = psnr(sums[SSE_Y], lumaSamples);
+        double psnrU = psnr(sums[SSE_U], chromaSamples);
+        double psnrV = psnr(sums[SSE_V], chromaSamples);
+        double psnr = psnr(sums[SSE_Y] + sums[SSE_U] + sums[SSE_V],
+                lumaSamples + 2 * chromaSamples);
+        // 小于一个窗口的帧按Y分量是否相同处理
+        double ssim = sums[SSIM_WINDOWS] > 0 ? sums[SSIM_SUM] / sums[SSIM_WINDOWS]
+                : sums[SSE_Y] == 0 ? 1 : 0;
+        return new FrameQuality(psnrY, psnrU, psnrV, psnr, ssim);
+    }
+
+    /**
+     * 8位采样的PSNR
+     */
+    public static double psnr(double sse, long samples) {
+        if (sse <= 0) {
+            return MAX_PSNR;
+        }
+        return Math.min(MAX_PSNR, 10 * Math.log10(255.0 * 255.0 * samples / sse));
+    }
+
+    /**
+     * 关闭线程池，之后不能再调用measure
+     */
+    public void shutdown() {
+        mPool.shutdown();
+    }
+
+    /**
+     * 计算[startRow, endRow)行的误差平方和，以及左上角在这些行内的SSIM窗口，行数过多时对半拆分
+     */
+    private static class TileTask extends RecursiveTask<double[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] mReference;
+        private final byte[] mDistorted;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mStartRow;
+        private final int mEndRow;
+
+        TileTask(byte[] reference, byte[] distorted, int width, int height, int startRow,
+                 int endRow) {
+            mReference = reference;
+            mDistorted = distorted;
+            mWidth = width;
+            mHeight = height;
+            mStartRow = startRow;
+            mEndRow = endRow;
+        }
+
+        @Override
+        protected double[] compute() {
+            int rows = mEndRow - mStartRow;
+            if (rows >= 2 * MIN_TILE_ROWS) {
+                // 分界对齐到SSIM步长，同时保证色度行完整
+                int middle = (mStartRow + rows / 2) / SSIM_STEP * SSIM_STEP;
+                TileTask top = new TileTask(mReference, mDistorted, mWidth, mHeight, mStartRow,
+                        middle);
+                TileTask bottom = new TileTask(mReference, mDistorted, mWidth, mHeight, middle,
+                        mEndRow);
+                bottom.fork();
+                double[] sums = top.compute();
+                double[] bottomSums = bottom.join();
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += bottomSums[i];
+                }
+                return sums;
+            }
+            double[] sums = new double[5];
+            computeLuma(sums);
+            computeChroma(sums);
+            computeSsim(sums);
+            return sums;
+        }
+
+        private void computeLuma(double[] sums) {
+            long sse = 0;
+            for (int i = mStartRow * mWidth, end = mEndRow * mWidth; i < end; i++) {
+                int diff = (mReference[i] & 0xFF) - (mDistorted[i] & 0xFF);
+                sse += diff * diff;
+            }
+            sums[SSE_Y] = sse;
+        }
+
+        private void computeChroma(double[] sums) {
+            int uvOffset = mWidth * mHeight;
+            long sseU = 0;
+            long sseV = 0;
+            for (int row = mStartRow / 2; row < mEndRow / 2; row++) {
+                int rowStart = uvOffset + row * mWidth;
+                for (int i = rowStart, end = rowStart + mWidth; i < end; i += 2) {
+                    int diffU = (mReference[i] & 0xFF) - (mDistorted[i] & 0xFF);
+                    int diffV = (mReference[i + 1] & 0xFF) - (mDistorted[i + 1] & 0xFF);
+                    sseU += diffU * diffU;
+                    sseV += diffV * diffV;
+                }
+            }
+            sums[SSE_U] = sseU;
+            sums[SSE_V] = sseV;
+        }
+
+        private void computeSsim(double[] sums) {
+            int firstRow = (mStartRow + SSIM_STEP - 1) / SSIM_STEP * SSIM_STEP;
+            double ssimSum = 0;
+            int windows = 0;
+            for (int y = firstRow; y < mEndRow && y + SSIM_WINDOW <= mHeight; y += SSIM_STEP) {
+                for (int x = 0; x + SSIM_WINDOW <= mWidth; x += SSIM_STEP) {
+                    ssimSum += windowSsim(x, y);
+                    windows++;
+                }
+            }
+            sums[SSIM_SUM] = ssimSum;
+            sums[SSIM_WINDOWS] = windows;
+        }
+
+        private double windowSsim(int x, int y) {
+            int sumA = 0;
+            int sumB = 0;
+            long sumAA = 0;
+            long sumBB = 0;
+            long sumAB = 0;
+            for (int row = y; row < y + SSIM_WINDOW; row++) {
+                int offset = row * mWidth + x;
+                for (int i = offset; i < offset + SSIM_WINDOW; i++) {
+                    int a = mReference[i] & 0xFF;
+                    int b = mDistorted[i] & 0xFF;
+                    sumA += a;
+                    sumB += b;
+                    sumAA += a * a;
+                    sumBB += b * b;
+                    sumAB += a * b;
+                }
+            }
+            double n = SSIM_WINDOW * SSIM_WINDOW;
+            double meanA = sumA / n;
+            double meanB = sumB / n;
+            double varA = sumAA / n - meanA * meanA;
+            double varB = sumBB / n - meanB * meanB;
+            double covariance = sumAB / n - meanA * meanB;
+            return (2 * meanA * meanB + SSIM_C1) * (2 * covariance + SSIM_C2)
+                    / ((meanA * meanA + meanB * meanB + SSIM_C1) * (varA + varB + SSIM_C2));
+        }
+    }
+}
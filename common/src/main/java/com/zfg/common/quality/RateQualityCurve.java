@@ -0,0 +1,88 @@
+package com.zfg.common.quality;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 同一源视频、同一编码配置在不同码率下的质量，按码率升序保存，
+ * 用于为每个录制配置选出满足质量目标的最低码率
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class RateQualityCurve {
+
+    private final String mName;
+    private final List<Integer> mBitRates = new ArrayList<>();
+    private final List<SequenceQuality> mQualities = new ArrayList<>();
+
+    /**
+     * @param name 配置名，如分辨率和帧率，只用于输出
+     */
+    public RateQualityCurve(String name) {
+        mName = name;
+    }
+
+    /**
+     * 添加一个码率的测量结果，相同码率覆盖之前的结果
+     */
+    public synchronized void add(int bitRate, SequenceQuality quality) {
+        int index = 0;
+        while (index < mBitRates.size() && mBitRates.get(index) < bitRate) {
+            index++;
+        }
+        if (index < mBitRates.size() && mBitRates.get(index) == bitRate) {
+            mQualities.set(index, quality);
+        } else {
+            mBitRates.add(index, bitRate);
+            mQualities.add(index, quality);
+        }
+    }
+
+    public synchronized int size() {
+        return mBitRates.size();
+    }
+
+    public synchronized int getBitRate(int index) {
+        return mBitRates.get(index);
+    }
+
+    public synchronized SequenceQuality getQuality(int index) {
+        return mQualities.get(index);
+    }
+
+    /**
+     * 质量随码率通常单调上升，但硬件编码器的码控不一定，按码率从低到高找第一个满足目标的点
+     *
+     * @param minMeanSsim  平均SSIM目标，不限制时传0
+     * @param minMeanPsnrY 平均Y分量PSNR目标，单位dB，不限制时传0
+     * @return 满足目标的最低码率，都不满足时返回-1
+     */
+    public synchronized int findLowestBitRate(double minMeanSsim, double minMeanPsnrY) {
+        for (int i = 0; i < mBitRates.size(); i++) {
+            SequenceQuality quality = mQualities.get(i);
+            if (quality.getMeanSsim() >= minMeanSsim && quality.getMeanPsnrY() >= minMeanPsnrY) {
+                return mBitRates.get(i);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 每个码率一行，可直接粘贴到表格中作图
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(mName == null ? "" : mName);
+        builder.append("\nkbps\tframes\tpsnr_y\tpsnr\tssim\tmin_ssim");
+        for (int i = 0; i < mBitRates.size(); i++) {
+            SequenceQuality quality = mQualities.get(i);
+            builder.append(String.format(Locale.US, "\n%d\t%d\t%.2f\t%.2f\t%.4f\t%.4f",
+                    mBitRates.get(i) / 1000, quality.getFrames(), quality.getMeanPsnrY(),
+                    quality.getMeanPsnr(), quality.getMeanSsim(), quality.getMinSsim()));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.zfg.common.quality;
+
+import java.util.Locale;
+
+/**
+ * 一段视频的质量汇总：平均PSNR、平均和最低SSIM。add只在一个线程调用
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class SequenceQuality {
+
+    private int mFrames;
+    private double mPsnrYSum;
+    private double mPsnrSum;
+    private double mSsimSum;
+    private double mMinSsim = 1;
+    private double mMinPsnrY = QualityMetrics.MAX_PSNR;
+
+    public void add(FrameQuality quality) {
+        mFrames++;
+        mPsnrYSum += quality.getPsnrY();
+        mPsnrSum += quality.getPsnr();
+        mSsimSum += quality.getSsim();
+        mMinSsim = Math.min(mMinSsim, quality.getSsim());
+        mMinPsnrY = Math.min(mMinPsnrY, quality.getPsnrY());
+    }
+
+    public int getFrames() {
+        return mFrames;
+    }
+
+    public double getMeanPsnrY() {
+        return mFrames == 0 ? 0 : mPsnrYSum / mFrames;
+    }
+
+    public double getMeanPsnr() {
+        return mFrames == 0 ? 0 : mPsnrSum / mFrames;
+    }
+
+    public double getMeanSsim() {
+        return mFrames == 0 ? 0 : mSsimSum / mFrames;
+    }
+
+    /**
+     * @return 最差一帧的SSIM，用于发现关键帧间隔末尾、运动剧烈处的质量下降
+     */
+    public double getMinSsim() {
+        return mFrames == 0 ? 0 : mMinSsim;
+    }
+
+    public double getMinPsnrY() {
+        return mFrames == 0 ? 0 : mMinPsnrY;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "frames = %d, psnr y = %.2f (min %.2f), psnr = %.2f, ssim = %.4f (min %.4f)",
+                mFrames, getMeanPsnrY(), getMinPsnrY(), getMeanPsnr(), getMeanSsim(),
+                getMinSsim());
+    }
+}
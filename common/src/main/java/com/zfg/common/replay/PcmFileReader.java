@@ -0,0 +1,146 @@
+package com.zfg.common.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 读取16位PCM，WAV文件按文件头的采样率和声道数，其他文件当作裸PCM（小端）。
+ * 数据区整体内存映射，顺序读取。不是线程安全的
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class PcmFileReader implements Closeable {
+
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746D66;
+    private static final int DATA = 0x61746164;
+    private static final int WAVE_FORMAT_PCM = 1;
+
+    private final RandomAccessFile mFile;
+    private final ShortBuffer mSamples;
+    private final int mSampleRate;
+    private final int mChannelCount;
+
+    /**
+     * @param sampleRate   裸PCM的采样率，WAV文件忽略
+     * @param channelCount 裸PCM的声道数，WAV文件忽略
+     * @throws IOException 文件不可读，或WAV不是16位PCM
+     */
+    public PcmFileReader(File file, int sampleRate, int channelCount) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = mFile.getChannel();
+            long size = channel.size();
+            long dataOffset = 0;
+            long dataSize = size;
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            if (size >= 12 && channel.read(header, 0) == 12
+                    && header.getInt(0) == RIFF && header.getInt(8) == WAVE) {
+                int[] format = new int[2];
+                long[] data = new long[2];
+                parseWave(channel, size, format, data);
+                sampleRate = format[0];
+                channelCount = format[1];
+                dataOffset = data[0];
+                dataSize = Math.min(data[1], size - data[0]);
+            }
+            // 超过2GB的部分忽略，16kHz单声道约18小时
+            dataSize = Math.min(dataSize, Integer.MAX_VALUE) & ~1L;
+            mSamples = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataSize)
+                    .order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        } catch (IOException | RuntimeException e) {
+            mFile.close();
+            throw e;
+        }
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+    }
+
+    /**
+     * @param format 输出采样率和声道数
+     * @param data   输出data块的偏移和大小
+     */
+    private static void parseWave(FileChannel channel, long size, int[] format, long[] data)
+            throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+        long position = 12;
+        boolean hasFormat = false;
+        while (position + 8 <= size) {
+            chunk.clear();
+            channel.read(chunk, position);
+            int id = chunk.getInt(0);
+            long chunkSize = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (id == FMT) {
+                int encoding = chunk.getShort(8);
+                int bits = chunk.getShort(22);
+                if (encoding != WAVE_FORMAT_PCM || bits != 16) {
+                    throw new IOException("need 16-bit pcm wav, got format " + encoding + ", "
+                            + bits + " bit");
+                }
+                format[1] = chunk.getShort(10);
+                format[0] = chunk.getInt(12);
+                hasFormat = true;
+            } else if (id == DATA) {
+                if (!hasFormat) {
+                    throw new IOException("wav data before fmt chunk");
+                }
+                data[0] = position + 8;
+                data[1] = chunkSize;
+                return;
+            }
+            position += 8 + chunkSize + (chunkSize & 1);
+        }
+        throw new IOException("no data chunk in wav");
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * @return 总帧数（每帧包含所有声道）
+     */
+    public int getFrameCount() {
+        return mSamples.capacity() / mChannelCount;
+    }
+
+    /**
+     * 顺序读取，按整帧返回
+     *
+     * @param samples 最多读取的采样数（所有声道）
+     * @return 读到的采样数，到文件末尾时返回-1
+     */
+    public int read(short[] pcm, int offset, int samples) {
+        int count = Math.min(samples, mSamples.remaining()) / mChannelCount * mChannelCount;
+        if (count <= 0) {
+            return -1;
+        }
+        mSamples.get(pcm, offset, count);
+        return count;
+    }
+
+    /**
+     * 回到开头，循环回放时使用
+     */
+    public void rewind() {
+        mSamples.rewind();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
@@ -0,0 +1,132 @@
+package com.zfg.common.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 读取裸YUV文件（连续存放的NV12或I420帧，没有文件头），按窗口内存映射，输出NV12。
+ * 用于回放固定的输入，使性能测试可复现。不是线程安全的
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class YuvFileReader implements Closeable {
+
+    public static final int FORMAT_NV12 = 0;
+    public static final int FORMAT_I420 = 1;
+
+    // 每次映射的最大字节数，至少一帧
+    private static final long WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFormat;
+    private final int mFrameSize;
+    private final int mFrameCount;
+    private final int mFramesPerWindow;
+
+    private MappedByteBuffer mWindow;
+    private int mWindowFirstFrame;
+    private int mWindowFrames;
+
+    /**
+     * @param width  宽，需为偶数
+     * @param height 高，需为偶数
+     * @param format FORMAT_NV12或FORMAT_I420
+     * @throws IOException 文件不可读或不足一帧，末尾不足一帧的数据忽略
+     */
+    public YuvFileReader(File file, int width, int height, int format) throws IOException {
+        if (width <= 0 || height <= 0 || (width & 1) != 0 || (height & 1) != 0) {
+            throw new IllegalArgumentException("invalid size " + width + "x" + height);
+        }
+        if (format != FORMAT_NV12 && format != FORMAT_I420) {
+            throw new IllegalArgumentException("unsupported format " + format);
+        }
+        mWidth = width;
+        mHeight = height;
+        mFormat = format;
+        mFrameSize = width * height * 3 / 2;
+        mFile = new RandomAccessFile(file, "r");
+        mChannel = mFile.getChannel();
+        long frames = mChannel.size() / mFrameSize;
+        if (frames == 0) {
+            close();
+            throw new IOException("file smaller than one " + width + "x" + height + " frame: "
+                    + file);
+        }
+        mFrameCount = (int) Math.min(frames, Integer.MAX_VALUE);
+        mFramesPerWindow = (int) Math.max(1, WINDOW_SIZE / mFrameSize);
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @return 每帧NV12的字节数
+     */
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+
+    /**
+     * 读取一帧，I420转换为NV12
+     *
+     * @param index 帧序号，0到getFrameCount() - 1
+     * @param nv12  输出，至少getFrameSize()字节
+     */
+    public void readFrame(int index, byte[] nv12) throws IOException {
+        if (index < 0 || index >= mFrameCount) {
+            throw new IndexOutOfBoundsException("frame " + index + " of " + mFrameCount);
+        }
+        if (mWindow == null || index < mWindowFirstFrame
+                || index >= mWindowFirstFrame + mWindowFrames) {
+            map(index);
+        }
+        int position = (index - mWindowFirstFrame) * mFrameSize;
+        int ySize = mWidth * mHeight;
+        if (mFormat == FORMAT_NV12) {
+            mWindow.position(position);
+            mWindow.get(nv12, 0, mFrameSize);
+            return;
+        }
+        mWindow.position(position);
+        mWindow.get(nv12, 0, ySize);
+        // I420的U、V平面交叉存放为NV12的UV平面
+        int chromaSize = ySize / 4;
+        int uPosition = position + ySize;
+        int vPosition = uPosition + chromaSize;
+        for (int i = 0; i < chromaSize; i++) {
+            nv12[ySize + 2 * i] = mWindow.get(uPosition + i);
+            nv12[ySize + 2 * i + 1] = mWindow.get(vPosition + i);
+        }
+    }
+
+    private void map(int firstFrame) throws IOException {
+        mWindowFrames = Math.min(mFramesPerWindow, mFrameCount - firstFrame);
+        mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, (long) firstFrame * mFrameSize,
+                (long) mWindowFrames * mFrameSize);
+        mWindowFirstFrame = firstFrame;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWindow = null;
+        mFile.close();
+    }
+}
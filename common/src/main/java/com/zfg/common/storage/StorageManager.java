@@ -0,0 +1,412 @@
+package com.zfg.common.storage;
+
+import android.system.ErrnoException;
+import android.system.Os;
+
+import com.zfg.common.Constants;
+import com.zfg.common.integrity.IntegrityManifest;
+import com.zfg.common.mp4.RecoverySidecar;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 录像输出目录管理：
+ * 1）创建文件前检查配额和剩余空间，不够时按修改时间从旧到新删除录像（循环录制）
+ * 2）按预计大小预分配文件，减少长时间录制时文件碎片，也保证录制中途不会写满
+ * 3）测量存储的持续写入速度，录制前发现慢卡，结果缓存在录像目录中，换卡后才重新测量
+ * 正在写的文件需标记为使用中，不会被删除，写完后调用release
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class StorageManager {
+
+    // 参与配额统计和循环删除的文件
+    private static final String[] MEDIA_SUFFIXES = {".mp4", ".aac", ".h264", ".yuv", ".jpg", ".enc"};
+    // 写入速度测量的文件名和每次写入大小
+    private static final String PROBE_FILE_NAME = ".write_probe";
+    // 写入速度的缓存，在被测的存储上，换卡或格式化后不存在
+    private static final String SPEED_CACHE_FILE_NAME = ".write_speed";
+    private static final int PROBE_CHUNK_SIZE = 1024 * 1024;
+    // 写入速度至少是需要速度的这么多倍才认为够快，留出文件系统元数据、其他应用写入的余量
+    private static final int WRITE_SPEED_MARGIN = 2;
+
+    private static volatile StorageManager sDefault;
+
+    private final File mRoot;
+    private final long mQuotaBytes;
+    private final long mMinFreeBytes;
+    // 使用中的文件的绝对路径
+    private final Set<String> mActiveFiles = new HashSet<>();
+    // 最近一次测量的写入速度，单位字节/秒，未测量时为-1
+    private volatile long mWriteBytesPerSecond = -1;
+
+    private StorageManager(Builder builder) {
+        mRoot = builder.root;
+        mQuotaBytes = builder.quotaBytes;
+        mMinFreeBytes = builder.minFreeBytes;
+    }
+
+    /**
+     * 设置默认实例，未设置输出目录的录制、编码调试文件使用该实例
+     */
+    public static void setDefault(StorageManager manager) {
+        sDefault = manager;
+    }
+
+    public static StorageManager getDefault() {
+        return sDefault;
+    }
+
+    /**
+     * 在默认实例的目录下创建文件，检查配额但不预分配、不标记使用中。
+     * 未设置默认实例时在Constants.PATH下创建，不检查配额。同名文件已存在时换名，见createUniqueFile
+     *
+     * @throws IOException 空间不足且无法删除旧文件
+     */
+    public static File createOutputFile(String fileName) throws IOException {
+        StorageManager manager = sDefault;
+        if (manager != null) {
+            manager.enforceQuota(0);
+        }
+        return createUniqueFile(getOutputDir(), fileName);
+    }
+
+    /**
+     * 在dir下创建空文件，同名文件已存在时（如系统时间回退后生成了重复的文件名）在扩展名前加_1、_2……，
+     * 不删除、不覆盖已有的文件
+     *
+     * @param fileName 期望的文件名，第一个'.'之后为扩展名
+     * @return 新创建的文件
+     */
+    public static File createUniqueFile(File dir, String fileName) throws IOException {
+        int dot = fileName.indexOf('.');
+        String base = dot < 0 ? fileName : fileName.substring(0, dot);
+        String suffix = dot < 0 ? "" : fileName.substring(dot);
+        File file = new File(dir, fileName);
+        for (int i = 1; !file.createNewFile(); i++) {
+            file = new File(dir, base + "_" + i + suffix);
+        }
+        if (!file.getName().equals(fileName)) {
+            LogUtils.w(fileName + " already exists, use " + file.getName());
+        }
+        return file;
+    }
+
+    /**
+     * @return 默认实例的目录，未设置时为Constants.PATH，不存在时创建
+     */
+    public static File getOutputDir() {
+        StorageManager manager = sDefault;
+        File dir = manager != null ? manager.mRoot : new File(Constants.PATH);
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        return dir;
+    }
+
+    public File getRoot() {
+        return mRoot;
+    }
+
+    /**
+     * 腾出空间后创建文件并预分配，文件标记为使用中。同名文件已存在时换名，见createUniqueFile
+     *
+     * @param reserveBytes 预计写入的大小，预分配这么多空间，0表示不预分配
+     * @throws IOException 空间不足且无法删除旧文件，或创建失败
+     */
+    public File createFile(String fileName, long reserveBytes) throws IOException {
+        if (!mRoot.exists()) {
+            mRoot.mkdirs();
+        }
+        enforceQuota(reserveBytes);
+        File file;
+        synchronized (this) {
+            file = createUniqueFile(mRoot, fileName);
+            mActiveFiles.add(file.getAbsolutePath());
+        }
+        if (reserveBytes > 0) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                preallocate(raf.getFD(), reserveBytes);
+            } catch (IOException e) {
+                release(file);
+                throw e;
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 文件写完后调用，之后可被循环删除
+     */
+    public synchronized void release(File file) {
+        mActiveFiles.remove(file.getAbsolutePath());
+    }
+
+    /**
+     * 按修改时间从旧到新删除录像，直到配额和剩余空间都能容纳即将写入的数据。
+     * 删除mp4时一并删除其修复文件
+     *
+     * @param incomingBytes 即将写入的大小
+     * @return 删除的字节数
+     * @throws IOException 删除所有可删除的文件后仍不够
+     */
+    public synchronized long enforceQuota(long incomingBytes) throws IOException {
+        File[] files = listMediaFiles();
+        long used = 0;
+        for (File file : files) {
+            used += file.length();
+        }
+        long free = mRoot.getUsableSpace();
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        long deleted = 0;
+        for (File file : files) {
+            if (!isOverLimit(used - deleted, free + deleted, incomingBytes)) {
+                break;
+            }
+            if (mActiveFiles.contains(file.getAbsolutePath())) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                deleted += length;
+                if (file.getName().endsWith(".mp4")) {
+                    RecoverySidecar.fileFor(file).delete();
+                }
+                IntegrityManifest.fileFor(file).delete();
+                LogUtils.i("StorageManager delete " + file.getName() + ", " + length + " bytes");
+            }
+        }
+        if (isOverLimit(used - deleted, free + deleted, incomingBytes)) {
+            throw new IOException("storage full, used = " + (used - deleted) + ", free = "
+                    + (free + deleted) + ", incoming = " + incomingBytes);
+        }
+        return deleted;
+    }
+
+    private boolean isOverLimit(long used, long free, long incomingBytes) {
+        return (mQuotaBytes > 0 && used + incomingBytes > mQuotaBytes)
+                || free - incomingBytes < mMinFreeBytes;
+    }
+
+    /**
+     * @return 目录下录像文件的总大小，预分配的文件按分配后的大小计算
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (File file : listMediaFiles()) {
+            used += file.length();
+        }
+        return used;
+    }
+
+    private File[] listMediaFiles() {
+        File[] files = mRoot.listFiles(file -> {
+            if (!file.isFile()) {
+                return false;
+            }
+            for (String suffix : MEDIA_SUFFIXES) {
+                if (file.getName().endsWith(suffix)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        return files != null ? files : new File[0];
+    }
+
+    /**
+     * 写入probeBytes并同步到存储，测量持续写入速度，耗时与存储速度有关，在后台线程调用
+     *
+     * @return 字节/秒
+     */
+    public long measureWriteSpeed(long probeBytes) throws IOException {
+        if (!mRoot.exists()) {
+            mRoot.mkdirs();
+        }
+        File file = new File(mRoot, PROBE_FILE_NAME);
+        ByteBuffer chunk = ByteBuffer.allocateDirect(PROBE_CHUNK_SIZE);
+        long start = System.nanoTime();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            long written = 0;
+            while (written < probeBytes) {
+                chunk.clear();
+                chunk.limit((int) Math.min(PROBE_CHUNK_SIZE, probeBytes - written));
+                while (chunk.hasRemaining()) {
+                    written += channel.write(chunk);
+                }
+            }
+            // 不同步时只测到了页缓存的速度
+            channel.force(false);
+        } finally {
+            file.delete();
+        }
+        long elapsedNs = Math.max(1, System.nanoTime() - start);
+        long speed = probeBytes * 1000000000L / elapsedNs;
+        mWriteBytesPerSecond = speed;
+        LogUtils.i("StorageManager write speed = " + speed / 1024 + "KB/s");
+        return speed;
+    }
+
+    /**
+     * 读取缓存的写入速度，没有缓存或存储容量变了（换卡）时才写入probeBytes测量，避免每次启动都写存储。
+     * 在后台线程调用
+     *
+     * @return 字节/秒
+     */
+    public long loadOrMeasureWriteSpeed(long probeBytes) throws IOException {
+        File cache = new File(mRoot, SPEED_CACHE_FILE_NAME);
+        long totalSpace = mRoot.getTotalSpace();
+        if (cache.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(cache))) {
+                long speed = in.readLong();
+                if (in.readLong() == totalSpace && speed > 0) {
+                    mWriteBytesPerSecond = speed;
+                    LogUtils.i("StorageManager cached write speed = " + speed / 1024 + "KB/s");
+                    return speed;
+                }
+            } catch (IOException e) {
+                LogUtils.w("read write speed cache exception = " + e);
+            }
+        }
+        long speed = measureWriteSpeed(probeBytes);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(cache))) {
+            out.writeLong(speed);
+            out.writeLong(totalSpace);
+        }
+        return speed;
+    }
+
+    /**
+     * @return 最近一次测量的写入速度，单位字节/秒，未测量时为-1
+     */
+    public long getWriteBytesPerSecond() {
+        return mWriteBytesPerSecond;
+    }
+
+    /**
+     * @param bytesPerSecond 录制需要的写入速度
+     * @return 测得的写入速度是否留有余量，未测量时返回true
+     */
+    public boolean isFastEnough(long bytesPerSecond) {
+        long speed = mWriteBytesPerSecond;
+        return speed < 0 || speed >= bytesPerSecond * WRITE_SPEED_MARGIN;
+    }
+
+    /**
+     * 预分配文件空间，不改变已写入的数据。文件系统不支持时（如部分SD卡的FAT）不预分配
+     *
+     * @return 是否已预分配
+     */
+    public static boolean preallocate(FileDescriptor fd, long bytes) {
+        try {
+            Os.posix_fallocate(fd, 0, bytes);
+            return true;
+        } catch (ErrnoException e) {
+            LogUtils.w("preallocate " + bytes + " bytes failed, errno = " + e.errno);
+            return false;
+        }
+    }
+
+    /**
+     * 去掉MP4末尾预分配而未使用的空间：按顶层box依次查找，截断在第一个不合法的box头处。
+     * 大小为0的box（延伸到文件末尾）无法判断结束位置，不截断
+     *
+     * @return 截断后的长度
+     */
+    public static long trimPreallocatedMp4(RandomAccessFile file) throws IOException {
+        FileChannel channel = file.getChannel();
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        long position = 0;
+        while (position + 8 <= fileSize) {
+            header.clear();
+            channel.read(header, position);
+            long size = header.getInt(0) & 0xFFFFFFFFL;
+            if (size == 0 && header.getInt(4) != 0) {
+                return fileSize;
+            }
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            }
+            if (size < headerSize || !isBoxType(header) || position + size > fileSize) {
+                break;
+            }
+            position += size;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+        }
+        return position;
+    }
+
+    /**
+     * box类型是4个可打印ASCII字符，预分配的空间全为0
+     */
+    private static boolean isBoxType(ByteBuffer header) {
+        for (int i = 4; i < 8; i++) {
+            int c = header.get(i) & 0xFF;
+            if (c < 0x20 || c > 0x7E) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static class Builder {
+        private final File root;
+        // 小于等于0时不限制
+        private long quotaBytes;
+        private long minFreeBytes;
+
+        /**
+         * @param root 录像目录
+         */
+        public Builder(File root) {
+            this.root = root;
+        }
+
+        /**
+         * @param quotaBytes 目录下录像总大小上限，小于等于0时不限制
+         */
+        public Builder setQuotaBytes(long quotaBytes) {
+            this.quotaBytes = quotaBytes;
+            return this;
+        }
+
+        /**
+         * @param minFreeBytes 写入后存储至少保留的剩余空间
+         */
+        public Builder setMinFreeBytes(long minFreeBytes) {
+            this.minFreeBytes = minFreeBytes;
+            return this;
+        }
+
+        public StorageManager build() {
+            return new StorageManager(this);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.zfg.common.storage;
+
+/**
+ * 统计录制中存储是否跟得上：比较交给混合器的数据量和文件实际写到的位置。
+ * MediaMuxer.writeSampleData只是把样本交给MPEG4Writer，真正写文件在它自己的线程中，
+ * 计时writeSampleData看不出存储慢，所以按固定窗口比较文件偏移的增长和交给混合器的数据量，
+ * 积压（交给混合器但还没写进文件的数据）超过几秒且还在增长时认为存储跟不上，
+ * 此时混合队列还没有积压，可以提前降低码率。
+ * onWrite只在写入线程调用，结果可在任意线程读取
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class WriteThroughputMonitor {
+
+    // 统计窗口
+    static final long WINDOW_NS = 2000000000L;
+    // MediaMuxer按轨道交错缓存约1秒的数据，积压超过这么多秒认为存储跟不上
+    static final float SATURATED_BACKLOG_SECONDS = 2f;
+
+    private long mWindowStartNs = -1;
+    private long mWindowBytes;
+    private long mWindowStartOffset = -1;
+    // 第一次拿到文件偏移时的位置和之后交给混合器的数据量
+    private long mBaseOffset = -1;
+    private long mSubmittedBytes;
+
+    // 上一个完整窗口的结果
+    private volatile long mWriteBytesPerSecond = -1;
+    private volatile long mIncomingBytesPerSecond;
+    private volatile long mBacklogBytes;
+    private volatile boolean isBacklogGrowing;
+
+    /**
+     * 每次交给混合器后调用
+     *
+     * @param bytes      交给混合器的字节数
+     * @param fileOffset 混合器在文件中写到的位置，无法获取时为-1
+     * @param nowNs      当前时间，System.nanoTime
+     */
+    public void onWrite(long bytes, long fileOffset, long nowNs) {
+        if (mWindowStartNs < 0) {
+            mWindowStartNs = nowNs;
+        }
+        mWindowBytes += bytes;
+        if (fileOffset >= 0) {
+            if (mBaseOffset < 0) {
+                mBaseOffset = fileOffset;
+                mWindowStartOffset = fileOffset;
+            } else {
+                mSubmittedBytes += bytes;
+            }
+        }
+        long elapsedNs = nowNs - mWindowStartNs;
+        if (elapsedNs < WINDOW_NS) {
+            return;
+        }
+        mIncomingBytesPerSecond = mWindowBytes * 1000000000L / elapsedNs;
+        if (fileOffset >= 0 && mWindowStartOffset >= 0) {
+            mWriteBytesPerSecond = (fileOffset - mWindowStartOffset) * 1000000000L / elapsedNs;
+            long backlog = Math.max(mSubmittedBytes - (fileOffset - mBaseOffset), 0);
+            isBacklogGrowing = backlog > mBacklogBytes;
+            mBacklogBytes = backlog;
+            mWindowStartOffset = fileOffset;
+        }
+        mWindowStartNs = nowNs;
+        mWindowBytes = 0;
+    }
+
+    /**
+     * @return 上一个窗口中文件实际增长的速度，单位字节/秒，拿不到文件偏移时为-1
+     */
+    public long getWriteBytesPerSecond() {
+        return mWriteBytesPerSecond;
+    }
+
+    /**
+     * @return 上一个窗口中需要写入的速度，即码率，单位字节/秒
+     */
+    public long getIncomingBytesPerSecond() {
+        return mIncomingBytesPerSecond;
+    }
+
+    /**
+     * @return 上一个窗口结束时交给混合器但还没写进文件的字节数
+     */
+    public long getBacklogBytes() {
+        return mBacklogBytes;
+    }
+
+    public boolean isSaturated() {
+        long incoming = mIncomingBytesPerSecond;
+        return isBacklogGrowing && incoming > 0
+                && mBacklogBytes > incoming * SATURATED_BACKLOG_SECONDS;
+    }
+
+    @Override
+    public String toString() {
+        return "write speed = " + mWriteBytesPerSecond / 1024 + "KB/s, incoming = "
+                + mIncomingBytesPerSecond / 1024 + "KB/s, backlog = " + mBacklogBytes / 1024
+                + "KB";
+    }
+}
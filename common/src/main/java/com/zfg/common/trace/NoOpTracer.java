@@ -0,0 +1,36 @@
+package com.zfg.common.trace;
+
+/**
+ * 不输出任何事件，未启用跟踪时使用，调用开销只有一次虚方法调用
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class NoOpTracer implements Tracer {
+
+    @Override
+    public void beginSection(String name) {
+
+    }
+
+    @Override
+    public void endSection() {
+
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+
+    }
+
+    @Override
+    public void setCounter(String name, long value) {
+
+    }
+}
@@ -0,0 +1,100 @@
+package com.zfg.common.trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 采集、编码、混合流程的跟踪点。同步区间标出各线程上的耗时操作，
+ * 每个视频帧分配一个帧号，以帧号为cookie的异步区间从进入编码队列一直到写入文件，
+ * 在Perfetto中可以看到每帧的完整路径。默认不启用，未启用时所有调用都是空实现，帧号为0
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public final class PipelineTrace {
+
+    // 同步区间
+    public static final String ANALYZE = "analyze";
+    public static final String YUV_CONVERT = "yuvConvert";
+    public static final String ENCODE_FRAME = "encodeFrame";
+    public static final String DEQUEUE_OUTPUT = "dequeueOutputBuffer";
+    public static final String ADD_MUXER_DATA = "addMuxerData";
+    public static final String WRITE_SAMPLE = "writeSampleData";
+
+    // 异步区间，cookie为帧号：进入编码队列到写入文件
+    public static final String FRAME = "frame";
+    // 送入编码器到取得输出
+    public static final String FRAME_ENCODE = "frameEncode";
+
+    // 计数器
+    public static final String VIDEO_BACKLOG = "videoBacklog";
+
+    private static final Tracer NO_OP = new NoOpTracer();
+
+    private static volatile Tracer sTracer = NO_OP;
+    private static final AtomicInteger sFrameId = new AtomicInteger();
+
+    private PipelineTrace() {
+
+    }
+
+    /**
+     * 开启或关闭跟踪，在开始录制前设置，一般在Application或Activity创建时按是否调试版本设置
+     */
+    public static void setEnabled(boolean enabled) {
+        sTracer = enabled ? new SystemTracer() : NO_OP;
+    }
+
+    /**
+     * 替换跟踪输出，如主机单测中记录事件
+     */
+    public static void setTracer(Tracer tracer) {
+        sTracer = tracer != null ? tracer : NO_OP;
+    }
+
+    public static boolean isEnabled() {
+        return sTracer != NO_OP;
+    }
+
+    /**
+     * @return 新的帧号，从1开始；未启用时返回0，后续异步区间都会跳过
+     */
+    public static int nextFrameId() {
+        if (sTracer == NO_OP) {
+            return 0;
+        }
+        int id = sFrameId.incrementAndGet();
+        // 溢出后跳过0
+        return id != 0 ? id : sFrameId.incrementAndGet();
+    }
+
+    public static void begin(String name) {
+        sTracer.beginSection(name);
+    }
+
+    public static void end() {
+        sTracer.endSection();
+    }
+
+    /**
+     * @param frameId 为0时忽略
+     */
+    public static void beginFrame(String name, int frameId) {
+        if (frameId != 0) {
+            sTracer.beginAsyncSection(name, frameId);
+        }
+    }
+
+    /**
+     * @param frameId 为0时忽略
+     */
+    public static void endFrame(String name, int frameId) {
+        if (frameId != 0) {
+            sTracer.endAsyncSection(name, frameId);
+        }
+    }
+
+    public static void counter(String name, long value) {
+        sTracer.setCounter(name, value);
+    }
+}
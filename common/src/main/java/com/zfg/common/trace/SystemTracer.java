@@ -0,0 +1,48 @@
+package com.zfg.common.trace;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * 输出到android.os.Trace，可在Systrace、Perfetto中查看。
+ * 异步区间和计数器需要API 29，低版本只输出同步区间
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class SystemTracer implements Tracer {
+
+    private static final boolean HAS_ASYNC = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q;
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        if (HAS_ASYNC) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        if (HAS_ASYNC) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    @Override
+    public void setCounter(String name, long value) {
+        if (HAS_ASYNC) {
+            Trace.setCounter(name, value);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.zfg.common.trace;
+
+/**
+ * 跟踪事件的输出，PipelineTrace在启用时使用SystemTracer，否则使用NoOpTracer
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public interface Tracer {
+
+    /**
+     * 开始当前线程上的同步区间，与endSection成对调用
+     */
+    void beginSection(String name);
+
+    void endSection();
+
+    /**
+     * 开始可跨线程的异步区间，name和cookie相同的endAsyncSection结束
+     */
+    void beginAsyncSection(String name, int cookie);
+
+    void endAsyncSection(String name, int cookie);
+
+    void setCounter(String name, long value);
+}
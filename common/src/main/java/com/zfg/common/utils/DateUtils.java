@@ -13,6 +13,10 @@ public class DateUtils {
 
     private static final String LONG_FORMAT = "yyyy-MM-dd HH:mm:ss";
 
+    /**
+     * @deprecated 精度只到秒，且含空格和冒号，文件名用FileNameGenerator
+     */
+    @Deprecated
     public static String getStringDate() {
         Date date = new Date();
         SimpleDateFormat formatter = new SimpleDateFormat(LONG_FORMAT, Locale.getDefault());
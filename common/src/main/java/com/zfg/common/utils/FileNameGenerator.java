@@ -0,0 +1,102 @@
+package com.zfg.common.utils;
+
+import java.util.Calendar;
+
+/**
+ * 生成录像、照片的会话ID和文件名，格式为yyyyMMdd_HHmmss_SSS，同一毫秒内的后续ID追加-01到-99的序号，
+ * 序号用完时借用下一毫秒。ID单调递增且进程内不重复，按字符串排序即生成顺序，不含空格和冒号。
+ * 日期部分每秒只计算一次，多个录制会话可并发调用
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class FileNameGenerator {
+
+    private static final FileNameGenerator INSTANCE = new FileNameGenerator();
+
+    // 同一毫秒内的最大序号，保持两位数使字符串顺序与生成顺序一致
+    static final int MAX_SEQUENCE = 99;
+    // yyyyMMdd_HHmmss_SSS
+    private static final int MILLIS_OFFSET = 16;
+    private static final int ID_LENGTH = 19;
+
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final char[] mBuffer = new char[ID_LENGTH + 3];
+    // mBuffer中日期部分对应的秒
+    private long mCachedSecond = Long.MIN_VALUE;
+    private long mLastMs = Long.MIN_VALUE;
+    private int mSequence;
+
+    FileNameGenerator() {
+        mBuffer[8] = '_';
+        mBuffer[15] = '_';
+        mBuffer[ID_LENGTH] = '-';
+    }
+
+    public static FileNameGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return 新的会话ID，如20261019_143005_123或20261019_143005_123-01
+     */
+    public String nextId() {
+        return nextId(System.currentTimeMillis());
+    }
+
+    /**
+     * @param suffix 扩展名，如".mp4"
+     */
+    public String nextFileName(String suffix) {
+        return nextId() + suffix;
+    }
+
+    /**
+     * 系统时间回退时沿用上一个ID的时间继续增加序号，保证不重复
+     */
+    synchronized String nextId(long nowMs) {
+        if (nowMs > mLastMs) {
+            mLastMs = nowMs;
+            mSequence = 0;
+        } else if (mSequence < MAX_SEQUENCE) {
+            mSequence++;
+        } else {
+            mLastMs++;
+            mSequence = 0;
+        }
+        long second = mLastMs / 1000;
+        if (second != mCachedSecond) {
+            mCachedSecond = second;
+            formatSecond(second * 1000);
+        }
+        put3(MILLIS_OFFSET, (int) (mLastMs % 1000));
+        if (mSequence == 0) {
+            return new String(mBuffer, 0, ID_LENGTH);
+        }
+        put2(ID_LENGTH + 1, mSequence);
+        return new String(mBuffer, 0, mBuffer.length);
+    }
+
+    private void formatSecond(long timeMs) {
+        mCalendar.setTimeInMillis(timeMs);
+        int year = mCalendar.get(Calendar.YEAR);
+        put2(0, year / 100);
+        put2(2, year % 100);
+        put2(4, mCalendar.get(Calendar.MONTH) + 1);
+        put2(6, mCalendar.get(Calendar.DAY_OF_MONTH));
+        put2(9, mCalendar.get(Calendar.HOUR_OF_DAY));
+        put2(11, mCalendar.get(Calendar.MINUTE));
+        put2(13, mCalendar.get(Calendar.SECOND));
+    }
+
+    private void put2(int offset, int value) {
+        mBuffer[offset] = (char) ('0' + value / 10);
+        mBuffer[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private void put3(int offset, int value) {
+        mBuffer[offset] = (char) ('0' + value / 100);
+        put2(offset + 1, value % 100);
+    }
+}
@@ -2,7 +2,7 @@ package com.zfg.common.utils;
 
 import android.text.TextUtils;
 
-import com.zfg.common.Constants;
+import com.zfg.common.storage.StorageManager;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -60,13 +60,8 @@ public class FileUtils {
     }
 
     private String createFile(String fileName) {
-        // 创建文件夹
-        File dir = new File(Constants.PATH);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-        // 创建文件
-        File file = new File(Constants.PATH, fileName);
+        // 每帧追加写入，这里只取目录不检查配额，设置了StorageManager时写到其目录下
+        File file = new File(StorageManager.getOutputDir(), fileName);
         try {
             return file.getAbsolutePath();
         } catch (Exception e) {
@@ -0,0 +1,46 @@
+package com.zfg.common.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 帧缓存池，复用固定大小的byte[]，避免每帧分配
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class FrameBufferPool {
+
+    private final int mFrameSize;
+    private final ArrayBlockingQueue<byte[]> mFreeBuffers;
+
+    /**
+     * @param frameSize 每帧字节数
+     * @param capacity  最多缓存的空闲帧数
+     */
+    public FrameBufferPool(int frameSize, int capacity) {
+        mFrameSize = frameSize;
+        mFreeBuffers = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * 取一个空闲帧，池中没有时新分配
+     */
+    public byte[] acquire() {
+        byte[] buffer = mFreeBuffers.poll();
+        return buffer != null ? buffer : new byte[mFrameSize];
+    }
+
+    /**
+     * 归还帧，大小不符或池已满时丢弃
+     */
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == mFrameSize) {
+            mFreeBuffers.offer(buffer);
+        }
+    }
+
+    public int getFrameSize() {
+        return mFrameSize;
+    }
+}
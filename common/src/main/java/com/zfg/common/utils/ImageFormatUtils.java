@@ -1,7 +1,5 @@
 package com.zfg.common.utils;
 
-import android.media.Image;
-
 import java.nio.ByteBuffer;
 
 /**
@@ -13,8 +11,15 @@ import java.nio.ByteBuffer;
  */
 public class ImageFormatUtils {
 
+    // 旋转时的分块大小，源和目标各一块能放进L1缓存
+    private static final int ROTATE_TILE = 64;
+
     static {
-        System.loadLibrary("mediafun");
+        try {
+            System.loadLibrary("mediafun");
+        } catch (UnsatisfiedLinkError e) {
+            // 在JVM上运行（如benchmarks模块）时没有so，只有stringFromJNI不可用
+        }
     }
 
     public static native String stringFromJNI();
@@ -31,14 +36,60 @@ public class ImageFormatUtils {
      */
     public static byte[] yuv420888ToNV21(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
                                          int width, int height) {
+        byte[] nv21 = new byte[width * height * 3 / 2];
+        yuv420888ToNV21(yPlane, uPlane, vPlane, width, height, nv21);
+        return nv21;
+    }
+
+    /**
+     * YUV_420_888转NV21，写入调用方复用的缓存
+     *
+     * @param nv21 输出，长度为width * height * 3 / 2
+     */
+    public static void yuv420888ToNV21(ByteBuffer yPlane, ByteBuffer uPlane, ByteBuffer vPlane,
+                                       int width, int height, byte[] nv21) {
         int frameSize = width * height * 3 / 2;
-        byte[] nv21 = new byte[frameSize];
         int len = yPlane.capacity();
         yPlane.get(nv21, 0, len);
         vPlane.get(nv21, len, vPlane.capacity());
         byte lastValue = uPlane.get(uPlane.capacity() - 1);
         nv21[frameSize - 1] = lastValue;
-        return nv21;
+    }
+
+    /**
+     * 带行跨度和像素跨度的YUV_420_888转NV12，用于解码器输出的Image，行尾有填充时也能正确转换
+     *
+     * @param yPlane        y分量
+     * @param yRowStride    y行跨度
+     * @param uPlane        u分量
+     * @param vPlane        v分量
+     * @param uvRowStride   uv行跨度
+     * @param uvPixelStride uv像素跨度，1为平面存储，2为交叉存储
+     * @param width         宽
+     * @param height        高
+     * @param nv12          输出，长度不小于width * height * 3 / 2
+     */
+    public static void yuv420888ToNV12(ByteBuffer yPlane, int yRowStride, ByteBuffer uPlane,
+                                       ByteBuffer vPlane, int uvRowStride, int uvPixelStride,
+                                       int width, int height, byte[] nv12) {
+        int yBase = yPlane.position();
+        for (int row = 0; row < height; row++) {
+            yPlane.position(yBase + row * yRowStride);
+            yPlane.get(nv12, row * width, width);
+        }
+        yPlane.position(yBase);
+
+        int uBase = uPlane.position();
+        int vBase = vPlane.position();
+        int offset = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            int rowStart = row * uvRowStride;
+            for (int col = 0; col < width / 2; col++) {
+                int index = rowStart + col * uvPixelStride;
+                nv12[offset++] = uPlane.get(uBase + index);
+                nv12[offset++] = vPlane.get(vBase + index);
+            }
+        }
     }
 
     /**
@@ -65,6 +116,24 @@ public class ImageFormatUtils {
         }
     }
 
+    /**
+     * NV21转NV12的同时顺时针旋转，再按旋转后的画面水平镜像，一次遍历写入目标，不需要中间帧
+     *
+     * @param nv21    ImageFormat.NV21
+     * @param nv12    输出，不能与nv21相同，90、270度时宽高互换
+     * @param width   源宽
+     * @param height  源高
+     * @param degrees 0、90、180、270
+     * @param mirror  是否水平镜像
+     */
+    public static void NV21ToNV12(byte[] nv21, byte[] nv12, int width, int height, int degrees,
+                                  boolean mirror) {
+        int ySize = width * height;
+        transformPlane(nv21, 0, width, height, 1, false, nv12, 0, degrees, mirror);
+        // VU交换为UV
+        transformPlane(nv21, ySize, width / 2, height / 2, 2, true, nv12, ySize, degrees, mirror);
+    }
+
     /**
      * 检查 YUV_420_888 图像的 UV 平面缓冲区是否为 NV21 格式。
      * 1.YYYYYYYYYYYYYYYYY(...)UUUUU(...)VVVVV(...) 平面存储，常用
@@ -94,4 +163,330 @@ public class ImageFormatUtils {
 
         return areNV21;
     }
+
+    /**
+     * NV12缩放，整数倍缩小时使用区域平均（box），否则使用双线性插值
+     *
+     * @param src       源数据 ImageFormat.NV12
+     * @param srcWidth  源宽，偶数
+     * @param srcHeight 源高，偶数
+     * @param dst       目标数据，长度不小于dstWidth * dstHeight * 3 / 2
+     * @param dstWidth  目标宽，偶数
+     * @param dstHeight 目标高，偶数
+     */
+    public static void scaleNV12(byte[] src, int srcWidth, int srcHeight,
+                                 byte[] dst, int dstWidth, int dstHeight) {
+        int factor = srcWidth / dstWidth;
+        if (factor > 1 && factor * dstWidth == srcWidth && factor * dstHeight == srcHeight
+                && (srcWidth / 2) % (dstWidth / 2) == 0 && (srcHeight / 2) % (dstHeight / 2) == 0) {
+            scaleNV12Box(src, srcWidth, srcHeight, dst, factor);
+        } else {
+            scaleNV12Bilinear(src, srcWidth, srcHeight, dst, dstWidth, dstHeight);
+        }
+    }
+
+    /**
+     * NV12整数倍缩小，每个目标像素取源图factor x factor区域的平均值
+     *
+     * @param factor 缩小倍数，源宽高的一半须能被factor整除
+     */
+    public static void scaleNV12Box(byte[] src, int srcWidth, int srcHeight,
+                                    byte[] dst, int factor) {
+        int dstWidth = srcWidth / factor;
+        int dstHeight = srcHeight / factor;
+        int area = factor * factor;
+        // 用乘法和移位代替除法
+        int mul = (65536 + area - 1) / area;
+
+        // Y
+        for (int dy = 0; dy < dstHeight; dy++) {
+            int srcRow = dy * factor * srcWidth;
+            int dstIndex = dy * dstWidth;
+            if (factor == 2) {
+                // 常用的2倍、3倍展开，避免内层循环
+                int r0 = srcRow;
+                int r1 = srcRow + srcWidth;
+                for (int dx = 0; dx < dstWidth; dx++, r0 += 2, r1 += 2) {
+                    int sum = (src[r0] & 0xFF) + (src[r0 + 1] & 0xFF)
+                            + (src[r1] & 0xFF) + (src[r1 + 1] & 0xFF);
+                    dst[dstIndex + dx] = (byte) ((sum + 2) >> 2);
+                }
+            } else if (factor == 3) {
+                int r0 = srcRow;
+                int r1 = srcRow + srcWidth;
+                int r2 = r1 + srcWidth;
+                for (int dx = 0; dx < dstWidth; dx++, r0 += 3, r1 += 3, r2 += 3) {
+                    int sum = (src[r0] & 0xFF) + (src[r0 + 1] & 0xFF) + (src[r0 + 2] & 0xFF)
+                            + (src[r1] & 0xFF) + (src[r1 + 1] & 0xFF) + (src[r1 + 2] & 0xFF)
+                            + (src[r2] & 0xFF) + (src[r2 + 1] & 0xFF) + (src[r2 + 2] & 0xFF);
+                    dst[dstIndex + dx] = (byte) ((sum * mul) >> 16);
+                }
+            } else {
+                for (int dx = 0; dx < dstWidth; dx++) {
+                    int sum = 0;
+                    int rowStart = srcRow + dx * factor;
+                    for (int j = 0; j < factor; j++) {
+                        int p = rowStart + j * srcWidth;
+                        for (int i = 0; i < factor; i++) {
+                            sum += src[p + i] & 0xFF;
+                        }
+                    }
+                    dst[dstIndex + dx] = (byte) ((sum * mul) >> 16);
+                }
+            }
+        }
+
+        // UV交错存储，每个色度点占两个字节
+        int srcUV = srcWidth * srcHeight;
+        int dstUV = dstWidth * dstHeight;
+        int dstChromaWidth = dstWidth / 2;
+        int dstChromaHeight = dstHeight / 2;
+        for (int cy = 0; cy < dstChromaHeight; cy++) {
+            int srcRow = srcUV + cy * factor * srcWidth;
+            int dstIndex = dstUV + cy * dstWidth;
+            for (int cx = 0; cx < dstChromaWidth; cx++) {
+                int sumU = 0;
+                int sumV = 0;
+                int rowStart = srcRow + cx * factor * 2;
+                for (int j = 0; j < factor; j++) {
+                    int p = rowStart + j * srcWidth;
+                    for (int i = 0; i < factor; i++) {
+                        sumU += src[p + 2 * i] & 0xFF;
+                        sumV += src[p + 2 * i + 1] & 0xFF;
+                    }
+                }
+                dst[dstIndex + 2 * cx] = (byte) ((sumU * mul) >> 16);
+                dst[dstIndex + 2 * cx + 1] = (byte) ((sumV * mul) >> 16);
+            }
+        }
+    }
+
+    /**
+     * NV12双线性缩放，定点运算，权重精度8位
+     */
+    public static void scaleNV12Bilinear(byte[] src, int srcWidth, int srcHeight,
+                                         byte[] dst, int dstWidth, int dstHeight) {
+        scalePlaneBilinear(src, 0, srcWidth, srcWidth, srcHeight, 1,
+                dst, 0, dstWidth, dstWidth, dstHeight);
+        int srcUV = srcWidth * srcHeight;
+        int dstUV = dstWidth * dstHeight;
+        // U、V分别按步长2处理
+        scalePlaneBilinear(src, srcUV, srcWidth, srcWidth / 2, srcHeight / 2, 2,
+                dst, dstUV, dstWidth, dstWidth / 2, dstHeight / 2);
+        scalePlaneBilinear(src, srcUV + 1, srcWidth, srcWidth / 2, srcHeight / 2, 2,
+                dst, dstUV + 1, dstWidth, dstWidth / 2, dstHeight / 2);
+    }
+
+    /**
+     * 双线性缩放单个分量
+     *
+     * @param pixelStride 同一分量相邻像素的间隔，Y为1，NV12的U、V为2
+     */
+    private static void scalePlaneBilinear(byte[] src, int srcOffset, int srcStride,
+                                           int srcWidth, int srcHeight, int pixelStride,
+                                           byte[] dst, int dstOffset, int dstStride,
+                                           int dstWidth, int dstHeight) {
+        // 16.16定点步长，采样点取像素中心
+        int xStep = (srcWidth << 16) / dstWidth;
+        int yStep = (srcHeight << 16) / dstHeight;
+        int maxX = srcWidth - 1;
+        int maxY = srcHeight - 1;
+        int y = (yStep >> 1) - 32768;
+        for (int dy = 0; dy < dstHeight; dy++, y += yStep) {
+            int yClamped = y < 0 ? 0 : y;
+            int y0 = yClamped >> 16;
+            if (y0 > maxY) {
+                y0 = maxY;
+            }
+            int y1 = y0 < maxY ? y0 + 1 : maxY;
+            int fy = (yClamped >> 8) & 0xFF;
+            int row0 = srcOffset + y0 * srcStride;
+            int row1 = srcOffset + y1 * srcStride;
+            int dstIndex = dstOffset + dy * dstStride;
+            int x = (xStep >> 1) - 32768;
+            for (int dx = 0; dx < dstWidth; dx++, x += xStep) {
+                int xClamped = x < 0 ? 0 : x;
+                int x0 = xClamped >> 16;
+                if (x0 > maxX) {
+                    x0 = maxX;
+                }
+                int x1 = x0 < maxX ? x0 + 1 : maxX;
+                int fx = (xClamped >> 8) & 0xFF;
+                int p00 = src[row0 + x0 * pixelStride] & 0xFF;
+                int p01 = src[row0 + x1 * pixelStride] & 0xFF;
+                int p10 = src[row1 + x0 * pixelStride] & 0xFF;
+                int p11 = src[row1 + x1 * pixelStride] & 0xFF;
+                int top = (p00 << 8) + (p01 - p00) * fx;
+                int bottom = (p10 << 8) + (p11 - p10) * fx;
+                int value = ((top << 8) + (bottom - top) * fy + 32768) >> 16;
+                dst[dstIndex + dx * pixelStride] = (byte) value;
+            }
+        }
+    }
+
+    /**
+     * NV12顺时针旋转
+     *
+     * @param src     源数据 ImageFormat.NV12
+     * @param dst     目标数据，不能与src相同，90、270度时宽高互换
+     * @param width   源宽
+     * @param height  源高
+     * @param degrees 0、90、180、270
+     */
+    public static void rotateNV12(byte[] src, byte[] dst, int width, int height, int degrees) {
+        int ySize = width * height;
+        transformPlane(src, 0, width, height, 1, false, dst, 0, degrees, false);
+        // UV交错存储，按两个字节一组旋转
+        transformPlane(src, ySize, width / 2, height / 2, 2, false, dst, ySize, degrees, false);
+    }
+
+    /**
+     * I420顺时针旋转
+     *
+     * @param src     源数据 YYYY U V
+     * @param dst     目标数据，不能与src相同，90、270度时宽高互换
+     * @param width   源宽
+     * @param height  源高
+     * @param degrees 0、90、180、270
+     */
+    public static void rotateI420(byte[] src, byte[] dst, int width, int height, int degrees) {
+        int ySize = width * height;
+        int uvSize = ySize / 4;
+        transformPlane(src, 0, width, height, 1, false, dst, 0, degrees, false);
+        transformPlane(src, ySize, width / 2, height / 2, 1, false, dst, ySize, degrees, false);
+        transformPlane(src, ySize + uvSize, width / 2, height / 2, 1, false,
+                dst, ySize + uvSize, degrees, false);
+    }
+
+    /**
+     * NV12水平镜像，src与dst可以相同
+     */
+    public static void mirrorNV12(byte[] src, byte[] dst, int width, int height) {
+        mirrorPlane(src, 0, width, height, 1, dst);
+        mirrorPlane(src, width * height, width / 2, height / 2, 2, dst);
+    }
+
+    /**
+     * I420水平镜像，src与dst可以相同
+     */
+    public static void mirrorI420(byte[] src, byte[] dst, int width, int height) {
+        int ySize = width * height;
+        mirrorPlane(src, 0, width, height, 1, dst);
+        mirrorPlane(src, ySize, width / 2, height / 2, 1, dst);
+        mirrorPlane(src, ySize + ySize / 4, width / 2, height / 2, 1, dst);
+    }
+
+    /**
+     * 顺时针旋转一个平面，再按旋转后的画面水平镜像。源(x, y)写到目标的
+     * start + x * xStep + y * yStep（单位为像素），90、270度按块转置，减少按列写入时的缓存缺失
+     *
+     * @param pixelBytes 每个像素的字节数，Y和I420的U、V为1，NV12的UV为2
+     * @param swapBytes  两个字节的像素是否交换字节顺序，用于VU转UV
+     */
+    private static void transformPlane(byte[] src, int offset, int width, int height,
+                                       int pixelBytes, boolean swapBytes, byte[] dst,
+                                       int dstOffset, int degrees, boolean mirror) {
+        if (degrees == 0 && !mirror && !swapBytes) {
+            System.arraycopy(src, offset, dst, dstOffset, width * height * pixelBytes);
+            return;
+        }
+        int start;
+        int xStep;
+        int yStep;
+        switch (degrees) {
+            case 90:
+                // 源(x, y) -> 目标(height - 1 - y, x)，目标宽为height，镜像后为(y, x)
+                start = mirror ? 0 : height - 1;
+                xStep = height;
+                yStep = mirror ? 1 : -1;
+                break;
+            case 180:
+                // 源(x, y) -> 目标(width - 1 - x, height - 1 - y)，镜像后为(x, height - 1 - y)
+                start = mirror ? (height - 1) * width : width * height - 1;
+                xStep = mirror ? 1 : -1;
+                yStep = -width;
+                break;
+            case 270:
+                // 源(x, y) -> 目标(y, width - 1 - x)，目标宽为height，
+                // 镜像后为(height - 1 - y, width - 1 - x)
+                start = (width - 1) * height + (mirror ? height - 1 : 0);
+                xStep = -height;
+                yStep = mirror ? -1 : 1;
+                break;
+            default:
+                start = mirror ? width - 1 : 0;
+                xStep = mirror ? -1 : 1;
+                yStep = width;
+                break;
+        }
+        int rowBytes = width * pixelBytes;
+        int dstStep = xStep * pixelBytes;
+        for (int ty = 0; ty < height; ty += ROTATE_TILE) {
+            int yEnd = Math.min(ty + ROTATE_TILE, height);
+            for (int tx = 0; tx < width; tx += ROTATE_TILE) {
+                int xEnd = Math.min(tx + ROTATE_TILE, width);
+                for (int y = ty; y < yEnd; y++) {
+                    int s = offset + y * rowBytes + tx * pixelBytes;
+                    int d = dstOffset + (start + tx * xStep + y * yStep) * pixelBytes;
+                    copyRow(src, s, dst, d, xEnd - tx, pixelBytes, swapBytes, dstStep);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把源数据一行中连续的count个像素按dstStep写到目标，旋转90、270度时为目标的一列
+     *
+     * @param dstStep 目标中相邻两个像素的间隔（字节），可为负
+     */
+    private static void copyRow(byte[] src, int s, byte[] dst, int d, int count,
+                                int pixelBytes, boolean swapBytes, int dstStep) {
+        if (pixelBytes == 1) {
+            for (int i = 0; i < count; i++, s++, d += dstStep) {
+                dst[d] = src[s];
+            }
+        } else if (swapBytes) {
+            for (int i = 0; i < count; i++, s += 2, d += dstStep) {
+                dst[d] = src[s + 1];
+                dst[d + 1] = src[s];
+            }
+        } else {
+            for (int i = 0; i < count; i++, s += 2, d += dstStep) {
+                dst[d] = src[s];
+                dst[d + 1] = src[s + 1];
+            }
+        }
+    }
+
+    /**
+     * 水平镜像一个平面，支持原地处理
+     */
+    private static void mirrorPlane(byte[] src, int offset, int width, int height,
+                                    int pixelBytes, byte[] dst) {
+        int rowBytes = width * pixelBytes;
+        for (int y = 0; y < height; y++) {
+            int left = offset + y * rowBytes;
+            int right = left + rowBytes - pixelBytes;
+            while (left < right) {
+                byte l0 = src[left];
+                byte r0 = src[right];
+                dst[left] = r0;
+                dst[right] = l0;
+                if (pixelBytes == 2) {
+                    byte l1 = src[left + 1];
+                    byte r1 = src[right + 1];
+                    dst[left + 1] = r1;
+                    dst[right + 1] = l1;
+                }
+                left += pixelBytes;
+                right -= pixelBytes;
+            }
+            if (left == right) {
+                dst[left] = src[left];
+                if (pixelBytes == 2) {
+                    dst[left + 1] = src[left + 1];
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,126 @@
+package com.zfg.common.analysis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用合成的1080p Y分量序列验证移动侦测：静止画面加传感器噪声、移动的方块、检测区域和滞后
+ */
+public class MotionDetectorTest {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    private final Random mRandom = new Random(1);
+    private byte[] mBackground;
+    private MotionDetector mDetector;
+    private int mStarts;
+    private int mStops;
+
+    @Before
+    public void setUp() {
+        // 横向渐变背景
+        mBackground = new byte[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                mBackground[y * WIDTH + x] = (byte) (40 + x * 160 / WIDTH);
+            }
+        }
+        mDetector = new MotionDetector(WIDTH, HEIGHT);
+        mDetector.setHysteresis(3, 10);
+        mDetector.setListener(new MotionDetector.Listener() {
+            @Override
+            public void onMotionStart() {
+                mStarts++;
+            }
+
+            @Override
+            public void onMotionStop() {
+                mStops++;
+            }
+        });
+    }
+
+    /**
+     * 背景加±4的噪声，boxX小于0时不画方块
+     */
+    private byte[] frame(int boxX, int boxY, int boxSize) {
+        byte[] y = mBackground.clone();
+        for (int i = 0; i < y.length; i += 7) {
+            y[i] = (byte) ((y[i] & 0xFF) + mRandom.nextInt(9) - 4);
+        }
+        if (boxX >= 0) {
+            for (int row = boxY; row < boxY + boxSize; row++) {
+                for (int col = boxX; col < boxX + boxSize; col++) {
+                    y[row * WIDTH + col] = (byte) 235;
+                }
+            }
+        }
+        return y;
+    }
+
+    @Test
+    public void stillSceneWithNoise_doesNotTrigger() {
+        for (int i = 0; i < 50; i++) {
+            assertFalse(mDetector.process(frame(-1, 0, 0), WIDTH));
+        }
+        assertEquals(0, mStarts);
+    }
+
+    @Test
+    public void movingObject_triggersAndReleasesWithHysteresis() {
+        mDetector.process(frame(-1, 0, 0), WIDTH);
+        // 前两帧有移动还不开始
+        assertFalse(mDetector.process(frame(100, 400, 300), WIDTH));
+        assertFalse(mDetector.process(frame(160, 400, 300), WIDTH));
+        assertTrue(mDetector.process(frame(220, 400, 300), WIDTH));
+        assertEquals(1, mStarts);
+
+        // 停在原地，10帧后结束
+        for (int i = 0; i < 9; i++) {
+            assertTrue(mDetector.process(frame(220, 400, 300), WIDTH));
+        }
+        assertFalse(mDetector.process(frame(220, 400, 300), WIDTH));
+        assertEquals(1, mStarts);
+        assertEquals(1, mStops);
+    }
+
+    @Test
+    public void motionOutsideZone_isIgnored() {
+        // 只检测右半边
+        mDetector.addZone(0.5f, 0f, 1f, 1f);
+        mDetector.process(frame(-1, 0, 0), WIDTH);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(mDetector.process(frame(100 + i * 40, 400, 300), WIDTH));
+        }
+        for (int i = 0; i < 3; i++) {
+            mDetector.process(frame(1200 + i * 40, 400, 300), WIDTH);
+        }
+        assertTrue(mDetector.isTriggered());
+    }
+
+    @Test
+    public void byteBufferWithRowStride_matchesArray() {
+        int stride = WIDTH + 64;
+        MotionDetector strided = new MotionDetector(WIDTH, HEIGHT);
+        strided.setHysteresis(1, 10);
+        mDetector.setHysteresis(1, 10);
+        for (int i = 0; i < 4; i++) {
+            byte[] y = frame(100 + i * 80, 200, 400);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(stride * HEIGHT);
+            for (int row = 0; row < HEIGHT; row++) {
+                buffer.position(row * stride);
+                buffer.put(y, row * WIDTH, WIDTH);
+            }
+            buffer.clear();
+            assertEquals(mDetector.process(y, WIDTH), strided.process(buffer, stride));
+            assertEquals(mDetector.getActiveBlocks(), strided.getActiveBlocks());
+        }
+        assertTrue(strided.isTriggered());
+    }
+}
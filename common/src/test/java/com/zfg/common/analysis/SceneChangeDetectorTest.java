@@ -0,0 +1,127 @@
+package com.zfg.common.analysis;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用合成的Y分量序列验证场景切换检测：硬切换触发，渐变和传感器噪声不触发，最小间隔内的连续切换被抑制
+ */
+public class SceneChangeDetectorTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 180;
+    private static final int MIN_INTERVAL = 12;
+
+    private final Random mRandom = new Random(3);
+    private SceneChangeDetector mDetector;
+
+    @Before
+    public void setUp() {
+        mDetector = new SceneChangeDetector(WIDTH, HEIGHT);
+        mDetector.setThreshold(0.4f, MIN_INTERVAL);
+    }
+
+    /**
+     * 横向渐变画面，亮度整体偏移offset，并加±noise的噪声
+     */
+    private byte[] gradient(int offset, int noise) {
+        byte[] y = new byte[WIDTH * HEIGHT];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                int value = 40 + col * 160 / WIDTH + offset;
+                if (noise > 0) {
+                    value += mRandom.nextInt(noise * 2 + 1) - noise;
+                }
+                y[row * WIDTH + col] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return y;
+    }
+
+    private static byte[] flat(int value) {
+        byte[] y = new byte[WIDTH * HEIGHT];
+        Arrays.fill(y, (byte) value);
+        return y;
+    }
+
+    @Test
+    public void hardCut_triggers() {
+        assertFalse(mDetector.process(gradient(0, 0), WIDTH));
+        assertFalse(mDetector.process(gradient(0, 0), WIDTH));
+        assertTrue(mDetector.process(flat(20), WIDTH));
+        assertTrue(mDetector.getLastDistance() > 0.9f);
+        assertFalse(mDetector.process(flat(20), WIDTH));
+        assertEquals(0, mDetector.getLastDistance(), 0);
+    }
+
+    @Test
+    public void firstFrame_neverTriggers() {
+        assertFalse(mDetector.process(flat(20), WIDTH));
+        mDetector.reset();
+        // reset后没有参考帧
+        assertFalse(mDetector.process(flat(230), WIDTH));
+        assertTrue(mDetector.process(flat(20), WIDTH));
+    }
+
+    @Test
+    public void gradualFade_doesNotTrigger() {
+        // 每帧亮度增加1，共40级
+        for (int i = 0; i <= 40; i++) {
+            assertFalse("frame " + i, mDetector.process(gradient(i, 0), WIDTH));
+            assertTrue(mDetector.getLastDistance() < 0.1f);
+        }
+    }
+
+    @Test
+    public void sensorNoise_doesNotTrigger() {
+        for (int i = 0; i < 30; i++) {
+            assertFalse("frame " + i, mDetector.process(gradient(0, 6), WIDTH));
+            assertTrue(mDetector.getLastDistance() < 0.1f);
+        }
+    }
+
+    @Test
+    public void minInterval_suppressesBackToBackCuts() {
+        byte[] dark = flat(20);
+        byte[] bright = flat(230);
+        int triggers = 0;
+        int lastTrigger = -1;
+        for (int i = 0; i < 30; i++) {
+            // 每帧都在两个画面之间切换，如闪光
+            if (mDetector.process((i & 1) == 0 ? dark : bright, WIDTH)) {
+                if (lastTrigger >= 0) {
+                    assertEquals(MIN_INTERVAL, i - lastTrigger);
+                }
+                lastTrigger = i;
+                triggers++;
+            }
+            assertTrue(mDetector.getLastDistance() > 0.9f || i == 0);
+        }
+        // 第1、13、25帧
+        assertEquals(3, triggers);
+    }
+
+    @Test
+    public void byteBufferWithRowStride_matchesArray() {
+        SceneChangeDetector strided = new SceneChangeDetector(WIDTH, HEIGHT);
+        strided.setThreshold(0.4f, MIN_INTERVAL);
+        int stride = WIDTH + 64;
+        byte[][] frames = {gradient(0, 4), gradient(0, 4), flat(20), flat(20), gradient(10, 4)};
+        for (byte[] y : frames) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(stride * HEIGHT);
+            for (int row = 0; row < HEIGHT; row++) {
+                buffer.position(row * stride);
+                buffer.put(y, row * WIDTH, WIDTH);
+            }
+            buffer.clear();
+            assertEquals(mDetector.process(y, WIDTH), strided.process(buffer, stride));
+            assertEquals(mDetector.getLastDistance(), strided.getLastDistance(), 0);
+        }
+    }
+}
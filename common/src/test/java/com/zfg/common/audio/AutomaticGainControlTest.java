@@ -0,0 +1,89 @@
+package com.zfg.common.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 增益始终在[0, maxGain]之间：小声时放大到目标电平但不超过最大增益，底噪不放大，
+ * 大声时降增益且限幅后不超过满幅
+ */
+public class AutomaticGainControlTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int CHUNK = 320;
+    private static final float MAX_GAIN = 8f;
+
+    private static short[] sine(int amplitude, int frames) {
+        short[] pcm = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            pcm[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+        }
+        return pcm;
+    }
+
+    /**
+     * 分块处理，每块后检查增益范围，返回处理后最后一块的峰值
+     */
+    private static int run(AutomaticGainControl agc, short[] pcm) {
+        int peak = 0;
+        for (int offset = 0; offset < pcm.length; offset += CHUNK) {
+            int frames = Math.min(CHUNK, pcm.length - offset);
+            agc.process(pcm, offset, frames);
+            assertTrue("gain = " + agc.getGain(), agc.getGain() > 0);
+            assertTrue("gain = " + agc.getGain(), agc.getGain() <= MAX_GAIN);
+            peak = 0;
+            for (int i = offset; i < offset + frames; i++) {
+                peak = Math.max(peak, Math.abs(pcm[i]));
+            }
+        }
+        return peak;
+    }
+
+    @Test
+    public void quietSpeech_isRaisedToTarget() {
+        AutomaticGainControl agc = new AutomaticGainControl(SAMPLE_RATE, 1);
+        // 约-16dBFS，需要放大约3.3倍到目标电平0.5
+        int peak = run(agc, sine(5000, SAMPLE_RATE * 5));
+        assertEquals(0.5f * Short.MAX_VALUE, peak, 0.05f * Short.MAX_VALUE);
+        assertEquals(0.5f * Short.MAX_VALUE / 5000, agc.getGain(), 0.3f);
+    }
+
+    @Test
+    public void veryQuiet_isCappedAtMaxGain() {
+        AutomaticGainControl agc = new AutomaticGainControl(SAMPLE_RATE, 1);
+        // 需要放大16倍才能到目标电平，增益停在最大值
+        int peak = run(agc, sine(1024, SAMPLE_RATE * 10));
+        assertEquals(MAX_GAIN, agc.getGain(), 0.1f);
+        assertEquals(1024 * MAX_GAIN, peak, 100);
+    }
+
+    @Test
+    public void noiseBelowGate_isNotRaised() {
+        AutomaticGainControl agc = new AutomaticGainControl(SAMPLE_RATE, 1);
+        // 低于0.005的噪声门限
+        run(agc, sine(100, SAMPLE_RATE * 5));
+        assertEquals(1f, agc.getGain(), 0.001f);
+    }
+
+    @Test
+    public void fullScale_isLoweredAndLimited() {
+        AutomaticGainControl agc = new AutomaticGainControl(SAMPLE_RATE, 2);
+        short[] pcm = new short[SAMPLE_RATE * 2 * 2];
+        short[] mono = sine(Short.MAX_VALUE, SAMPLE_RATE * 2);
+        for (int i = 0; i < mono.length; i++) {
+            pcm[i * 2] = mono[i];
+            pcm[i * 2 + 1] = (short) -mono[i];
+        }
+        for (int offset = 0; offset < mono.length; offset += CHUNK) {
+            int frames = Math.min(CHUNK, mono.length - offset);
+            agc.process(pcm, offset * 2, frames);
+            assertTrue("gain = " + agc.getGain(), agc.getGain() <= 1f);
+        }
+        assertEquals(0.5f, agc.getGain(), 0.05f);
+        // 两个声道共用同一增益
+        for (int i = SAMPLE_RATE; i < mono.length; i++) {
+            assertEquals(pcm[i * 2], -pcm[i * 2 + 1], 1);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.zfg.common.audio;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 16kHz的正弦分块重采样到其他采样率，输出长度按采样率比例，频率和幅度不变，
+ * 高于输出奈奎斯特频率的成分被滤掉
+ */
+public class PolyphaseResamplerTest {
+
+    private static final int IN_RATE = 16000;
+    // 20ms一块
+    private static final int CHUNK = 320;
+
+    private static short[] sine(int rate, int frequency, int amplitude, int frames) {
+        short[] pcm = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            pcm[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / rate));
+        }
+        return pcm;
+    }
+
+    /**
+     * 按CHUNK分块重采样，返回全部输出
+     */
+    private static short[] resample(short[] in, int inRate, int outRate) {
+        PolyphaseResampler resampler = new PolyphaseResampler(inRate, outRate, 1, CHUNK);
+        short[] out = new short[resampler.getMaxOutputFrames(in.length) + in.length / CHUNK + 1];
+        short[] block = new short[resampler.getMaxOutputFrames(CHUNK)];
+        int outFrames = 0;
+        for (int offset = 0; offset < in.length; offset += CHUNK) {
+            int frames = resampler.process(in, offset, Math.min(CHUNK, in.length - offset),
+                    block, 0);
+            System.arraycopy(block, 0, out, outFrames, frames);
+            outFrames += frames;
+        }
+        short[] result = new short[outFrames];
+        System.arraycopy(out, 0, result, 0, outFrames);
+        return result;
+    }
+
+    /**
+     * 跳过开头滤波器的延迟，按正向过零数估算频率
+     */
+    private static double frequency(short[] pcm, int rate, int skip) {
+        int first = -1;
+        int last = -1;
+        int crossings = 0;
+        for (int i = skip + 1; i < pcm.length; i++) {
+            if (pcm[i - 1] < 0 && pcm[i] >= 0) {
+                if (first < 0) {
+                    first = i;
+                } else {
+                    crossings++;
+                }
+                last = i;
+            }
+        }
+        return (double) crossings * rate / (last - first);
+    }
+
+    private static int peak(short[] pcm, int skip) {
+        int peak = 0;
+        for (int i = skip; i < pcm.length; i++) {
+            peak = Math.max(peak, Math.abs(pcm[i]));
+        }
+        return peak;
+    }
+
+    private void assertSine(int outRate) {
+        short[] in = sine(IN_RATE, 1000, 10000, IN_RATE);
+        short[] out = resample(in, IN_RATE, outRate);
+        // 1秒输入得到约1秒输出
+        assertEquals(outRate, out.length, 1);
+        int skip = outRate / 100;
+        assertEquals(1000, frequency(out, outRate, skip), 1);
+        assertEquals(10000, peak(out, skip), 300);
+    }
+
+    @Test
+    public void upsample_keepsFrequencyAndLength() {
+        assertSine(44100);
+        assertSine(48000);
+    }
+
+    @Test
+    public void downsample_keepsFrequencyAndLength() {
+        assertSine(8000);
+    }
+
+    @Test
+    public void sameRate_copiesInput() {
+        short[] in = sine(IN_RATE, 1000, 10000, IN_RATE);
+        assertArrayEquals(in, resample(in, IN_RATE, IN_RATE));
+    }
+
+    @Test
+    public void downsample_removesAboveNyquist() {
+        // 6kHz高于8kHz输出的奈奎斯特频率，应被滤掉而不是混叠成2kHz
+        short[] out = resample(sine(IN_RATE, 6000, 10000, IN_RATE), IN_RATE, 8000);
+        assertTrue("peak = " + peak(out, 80), peak(out, 80) < 500);
+    }
+}
@@ -0,0 +1,113 @@
+package com.zfg.common.audio;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用合成的16kHz PCM验证语音活动检测：静音和低电平底噪不是语音，持续的音调是语音，
+ * 短促的噪声爆发只产生一个语音段，结束时间包含hangover
+ */
+public class VoiceActivityDetectorTest {
+
+    private static final int SAMPLE_RATE = 16000;
+    // 与AudioRecord每次读取的大小相近，不是分析帧长的整数倍
+    private static final int CHUNK = 1000;
+    private static final long HANGOVER_US = 300000;
+
+    private final Random mRandom = new Random(3);
+    private VoiceActivityDetector mVad;
+    private long mTimeUs;
+
+    @Before
+    public void setUp() {
+        mVad = new VoiceActivityDetector(SAMPLE_RATE);
+        mTimeUs = 0;
+    }
+
+    /**
+     * 按CHUNK分段送入，返回是否有任一段判为语音
+     */
+    private boolean feed(short[] pcm) {
+        boolean speech = false;
+        for (int offset = 0; offset < pcm.length; offset += CHUNK) {
+            int samples = Math.min(CHUNK, pcm.length - offset);
+            speech |= mVad.process(pcm, offset, samples, mTimeUs);
+            mTimeUs += samples * 1000000L / SAMPLE_RATE;
+        }
+        return speech;
+    }
+
+    private short[] noise(int ms, int amplitude) {
+        short[] pcm = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (mRandom.nextInt(amplitude * 2 + 1) - amplitude);
+        }
+        return pcm;
+    }
+
+    private short[] tone(int ms, int frequency, int amplitude) {
+        short[] pcm = new short[SAMPLE_RATE * ms / 1000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return pcm;
+    }
+
+    @Test
+    public void silence_isNotSpeech() {
+        assertFalse(feed(new short[SAMPLE_RATE * 2]));
+        // 低电平底噪也不是语音
+        assertFalse(feed(noise(2000, 60)));
+        mVad.finish(mTimeUs);
+        assertEquals(0, mVad.getRangeCount());
+        assertEquals(0, mVad.getSpeechRatio(), 0);
+    }
+
+    @Test
+    public void tone_isOneSpeechRange() {
+        feed(noise(1000, 60));
+        long toneStartUs = mTimeUs;
+        assertTrue(feed(tone(2000, 300, 4000)));
+        assertTrue(mVad.isSpeech());
+        long toneEndUs = mTimeUs;
+        feed(noise(1000, 60));
+        mVad.finish(mTimeUs);
+
+        assertEquals(1, mVad.getRangeCount());
+        // 起点对齐到20ms的分析帧
+        assertEquals(toneStartUs, mVad.getRangeStartUs(0), 20000);
+        assertEquals(toneEndUs + HANGOVER_US, mVad.getRangeEndUs(0), 40000);
+        assertFalse(mVad.isSpeech());
+    }
+
+    @Test
+    public void noiseBurst_endsAfterHangover() {
+        feed(noise(1000, 60));
+        long burstStartUs = mTimeUs;
+        assertTrue(feed(noise(100, 8000)));
+        long burstEndUs = mTimeUs;
+        // hangover之后回到非语音
+        feed(noise(1000, 60));
+        assertFalse(mVad.isSpeech());
+        mVad.finish(mTimeUs);
+
+        assertEquals(1, mVad.getRangeCount());
+        assertEquals(burstStartUs, mVad.getRangeStartUs(0), 20000);
+        assertEquals(burstEndUs + HANGOVER_US, mVad.getRangeEndUs(0), 40000);
+        assertTrue(mVad.getSpeechRatio() < 0.3f);
+    }
+
+    @Test
+    public void comfortNoise_staysBelowLimit() {
+        feed(noise(1000, 60));
+        short[] pcm = tone(100, 300, 4000);
+        mVad.fillComfortNoise(pcm, 0, pcm.length);
+        for (short sample : pcm) {
+            assertTrue("sample = " + sample, Math.abs(sample) <= 64);
+        }
+    }
+}
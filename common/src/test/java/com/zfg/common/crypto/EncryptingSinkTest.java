@@ -0,0 +1,126 @@
+package com.zfg.common.crypto;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * 按编码器输出的大小不一的写入加密，再用小于块大小的读取解密，检查内容一致；
+ * GCM模式下篡改、截断和错误密钥都要读取失败
+ */
+public class EncryptingSinkTest {
+
+    private final Random mRandom = new Random(3);
+    private final SecretKey mKey = key(1);
+
+    private static SecretKey key(int seed) {
+        byte[] bytes = new byte[32];
+        new Random(seed).nextBytes(bytes);
+        return new SecretKeySpec(bytes, "AES");
+    }
+
+    private byte[] plain(int length) {
+        byte[] data = new byte[length];
+        mRandom.nextBytes(data);
+        return data;
+    }
+
+    private byte[] encrypt(byte[] plain, int mode) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncryptingSink sink = new EncryptingSink(Channels.newChannel(out), mKey, mode);
+        int position = 0;
+        while (position < plain.length) {
+            int length = Math.min(plain.length - position, 1 + mRandom.nextInt(40000));
+            // 编码器输出在直接内存中
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            buffer.put(plain, position, length).flip();
+            assertEquals(length, sink.write(buffer));
+            assertFalse(buffer.hasRemaining());
+            position += length;
+        }
+        sink.close();
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] encrypted, SecretKey key) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DecryptingReader reader = new DecryptingReader(
+                Channels.newChannel(new ByteArrayInputStream(encrypted)), key)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(10000);
+            while (reader.read(buffer) >= 0) {
+                buffer.flip();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                out.write(bytes);
+                buffer.clear();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void ctr_roundTrip() throws IOException {
+        byte[] plain = plain(EncryptingSink.CHUNK_SIZE * 7 / 2);
+        byte[] encrypted = encrypt(plain, EncryptingSink.MODE_CTR);
+        assertEquals(EncryptionHeader.SIZE + plain.length, encrypted.length);
+        assertArrayEquals(plain, decrypt(encrypted, mKey));
+    }
+
+    @Test
+    public void gcm_roundTrip() throws IOException {
+        for (int length : new int[]{0, 100, EncryptingSink.CHUNK_SIZE,
+                EncryptingSink.CHUNK_SIZE * 7 / 2}) {
+            byte[] plain = plain(length);
+            byte[] encrypted = encrypt(plain, EncryptingSink.MODE_GCM);
+            int chunks = length / EncryptingSink.CHUNK_SIZE + 1;
+            assertEquals(EncryptionHeader.SIZE + length + chunks * EncryptingSink.TAG_SIZE,
+                    encrypted.length);
+            assertArrayEquals(plain, decrypt(encrypted, mKey));
+        }
+    }
+
+    @Test
+    public void sameInput_differentKeyAndIvPerFile() throws IOException {
+        byte[] plain = plain(1000);
+        byte[] first = encrypt(plain, EncryptingSink.MODE_CTR);
+        byte[] second = encrypt(plain, EncryptingSink.MODE_CTR);
+        assertFalse(Arrays.equals(Arrays.copyOfRange(first, EncryptionHeader.SIZE, first.length),
+                Arrays.copyOfRange(second, EncryptionHeader.SIZE, second.length)));
+    }
+
+    @Test
+    public void gcm_detectsTamperingAndTruncation() throws IOException {
+        byte[] plain = plain(EncryptingSink.CHUNK_SIZE * 5 / 2);
+        byte[] encrypted = encrypt(plain, EncryptingSink.MODE_GCM);
+
+        byte[] tampered = encrypted.clone();
+        tampered[EncryptionHeader.SIZE + EncryptingSink.CHUNK_SIZE + 100] ^= 1;
+        assertDecryptFails(tampered, mKey);
+
+        // 在块边界截断，剩下的都是完整的块
+        int chunk = EncryptingSink.CHUNK_SIZE + EncryptingSink.TAG_SIZE;
+        assertDecryptFails(Arrays.copyOf(encrypted, EncryptionHeader.SIZE + 2 * chunk), mKey);
+
+        assertDecryptFails(encrypted, key(2));
+    }
+
+    private void assertDecryptFails(byte[] encrypted, SecretKey key) {
+        try {
+            decrypt(encrypted, key);
+            fail("decrypted corrupted data");
+        } catch (IOException e) {
+            // 预期
+        }
+    }
+}
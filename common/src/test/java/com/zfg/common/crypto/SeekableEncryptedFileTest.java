@@ -0,0 +1,133 @@
+package com.zfg.common.crypto;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * 模拟MediaMuxer的写法（顺序写mdat，结束时回头改写文件头并追加moov），
+ * 写进预分配的文件，关闭后用DecryptingReader解密应与明文一致，文件中不出现明文
+ */
+public class SeekableEncryptedFileTest {
+
+    private final Random mRandom = new Random(7);
+    private final SecretKey mKey;
+    private File mFile;
+
+    public SeekableEncryptedFileTest() {
+        byte[] bytes = new byte[32];
+        new Random(1).nextBytes(bytes);
+        mKey = new SecretKeySpec(bytes, "AES");
+    }
+
+    @Before
+    public void setUp() {
+        mFile = new File(System.getProperty("java.io.tmpdir"), "seekable-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private byte[] random(int length) {
+        byte[] data = new byte[length];
+        mRandom.nextBytes(data);
+        return data;
+    }
+
+    private byte[] decrypt() throws IOException {
+        try (FileChannel in = new FileInputStream(mFile).getChannel();
+             DecryptingReader reader = new DecryptingReader(in, mKey)) {
+            ByteBuffer all = ByteBuffer.allocate((int) in.size());
+            while (reader.read(all) >= 0) {
+                if (!all.hasRemaining()) {
+                    break;
+                }
+            }
+            byte[] plain = new byte[all.position()];
+            all.flip();
+            all.get(plain);
+            return plain;
+        }
+    }
+
+    @Test
+    public void seekBackRewrites_decryptToFinalContent() throws IOException {
+        byte[] expected = random(300000);
+        // 预分配
+        try (RandomAccessFile raf = new RandomAccessFile(mFile, "rw")) {
+            raf.setLength(1024 * 1024);
+        }
+        try (SeekableEncryptedFile file = SeekableEncryptedFile.create(mFile, mKey)) {
+            // 文件头先写占位
+            file.write(0, new byte[1000], 0, 1000);
+            int position = 1000;
+            while (position < expected.length - 5000) {
+                int length = Math.min(expected.length - 5000 - position,
+                        1 + mRandom.nextInt(70000));
+                file.write(position, expected, position, length);
+                position += length;
+            }
+            // 结束时从不对齐的位置改写文件头，再追加moov
+            file.write(3, expected, 3, 997);
+            file.write(0, expected, 0, 3);
+            file.write(position, expected, position, expected.length - position);
+            assertEquals(expected.length, file.size());
+
+            byte[] read = new byte[777];
+            assertEquals(777, file.read(12345, read, 0, read.length));
+            for (int i = 0; i < read.length; i++) {
+                assertEquals(expected[12345 + i], read[i]);
+            }
+            assertEquals(10, file.read(expected.length - 10, read, 0, read.length));
+            assertEquals(-1, file.read(expected.length, read, 0, read.length));
+        }
+        // 预分配的空间被截掉
+        assertEquals(EncryptionHeader.SIZE + expected.length, mFile.length());
+        assertArrayEquals(expected, decrypt());
+    }
+
+    @Test
+    public void ciphertext_doesNotContainPlaintext() throws IOException {
+        byte[] plain = new byte[64 * 1024];
+        try (SeekableEncryptedFile file = SeekableEncryptedFile.create(mFile, mKey)) {
+            file.write(0, plain, 0, plain.length);
+        }
+        byte[] stored = new byte[(int) mFile.length()];
+        try (RandomAccessFile raf = new RandomAccessFile(mFile, "r")) {
+            raf.readFully(stored);
+        }
+        // 全0明文加密后不应有成段的0
+        int zeros = 0;
+        for (int i = EncryptionHeader.SIZE; i < stored.length; i++) {
+            zeros += stored[i] == 0 ? 1 : 0;
+        }
+        assertTrue("zeros = " + zeros, zeros < plain.length / 100);
+        assertArrayEquals(plain, decrypt());
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongKey_isRejected() throws IOException {
+        try (SeekableEncryptedFile file = SeekableEncryptedFile.create(mFile, mKey)) {
+            file.write(0, random(100), 0, 100);
+        }
+        byte[] bytes = new byte[32];
+        try (FileChannel in = new FileInputStream(mFile).getChannel()) {
+            new DecryptingReader(in, new SecretKeySpec(bytes, "AES"));
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.zfg.common.integrity;
+
+import com.zfg.common.crypto.SeekableEncryptedFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * 写入时分块摘要生成清单，校验原文件通过，修改、截断文件或换密钥时校验失败；
+ * 模拟MediaMuxer的写法（先写mdat数据，结束时改写文件头并追加moov），增量摘要与整个文件的摘要一致，
+ * 混合器缓存的数据比假设的多时也只摘要已写进文件的部分；边写边加密时按写入方记录的位置摘要密文
+ */
+public class IntegrityManifestTest {
+
+    private static final int CHUNK_SIZE = 4096;
+    // 预留的moov空间，结束时改写
+    private static final int FREE_SIZE = 10000;
+
+    private final Random mRandom = new Random(5);
+    private File mDir;
+    private KeyPair mKeyPair;
+
+    @Before
+    public void setUp() throws GeneralSecurityException {
+        mDir = new File(System.getProperty("java.io.tmpdir"), "integrity-" + System.nanoTime());
+        mDir.mkdirs();
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        mKeyPair = generator.generateKeyPair();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    private byte[] random(int length) {
+        byte[] data = new byte[length];
+        mRandom.nextBytes(data);
+        return data;
+    }
+
+    private IntegrityManifest writeWithManifest(File file, byte[] data)
+            throws IOException, GeneralSecurityException {
+        ChunkHasher hasher = new ChunkHasher(CHUNK_SIZE);
+        try (HashingChannel out = new HashingChannel(new FileOutputStream(file).getChannel(),
+                hasher)) {
+            int position = 0;
+            while (position < data.length) {
+                int length = Math.min(data.length - position, 1 + mRandom.nextInt(3000));
+                out.write(ByteBuffer.wrap(data, position, length));
+                position += length;
+            }
+        }
+        IntegrityManifest manifest = IntegrityManifest.create(file.getName(), hasher.getLength(),
+                CHUNK_SIZE, hasher.finish(), mKeyPair.getPrivate());
+        manifest.write(IntegrityManifest.fileFor(file));
+        return IntegrityManifest.read(IntegrityManifest.fileFor(file));
+    }
+
+    @Test
+    public void verify_detectsModifiedChunks() throws Exception {
+        File file = new File(mDir, "a.mp4");
+        byte[] data = random(CHUNK_SIZE * 40 + 123);
+        IntegrityManifest manifest = writeWithManifest(file, data);
+        assertEquals(41, manifest.getChunkCount());
+        assertTrue(manifest.verify(file, mKeyPair.getPublic()).isValid());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(CHUNK_SIZE * 17 + 5);
+            raf.write(data[CHUNK_SIZE * 17 + 5] ^ 1);
+            raf.seek(CHUNK_SIZE * 40 + 100);
+            raf.write(data[CHUNK_SIZE * 40 + 100] ^ 1);
+        }
+        IntegrityManifest.Result result = manifest.verify(file, mKeyPair.getPublic());
+        assertFalse(result.isValid());
+        assertTrue(result.isSignatureValid());
+        assertEquals(Arrays.asList(17, 40), result.getBadChunks());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(CHUNK_SIZE * 30);
+        }
+        result = manifest.verify(file, mKeyPair.getPublic());
+        assertFalse(result.isLengthValid());
+        // 修改过的第17块和截断后缺失的30~40块
+        assertEquals(12, result.getBadChunks().size());
+    }
+
+    @Test
+    public void verify_rejectsForgedManifest() throws Exception {
+        File file = new File(mDir, "b.mp4");
+        IntegrityManifest manifest = writeWithManifest(file, random(CHUNK_SIZE * 3));
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(256);
+        assertFalse(manifest.verify(file, generator.generateKeyPair().getPublic())
+                .isSignatureValid());
+
+        File manifestFile = IntegrityManifest.fileFor(file);
+        try (RandomAccessFile raf = new RandomAccessFile(manifestFile, "rw")) {
+            // 第一块摘要的第一个字节
+            long position = 4 + 4 + 2 + file.getName().length() + 8 + 4 + 4;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 1);
+        }
+        assertFalse(IntegrityManifest.read(manifestFile).verifySignature(mKeyPair.getPublic()));
+    }
+
+    @Test
+    public void growingFile_matchesFullHash() throws Exception {
+        File file = new File(mDir, "c.mp4");
+        byte[] samples = random(CHUNK_SIZE * 20 + 777);
+        long lag = CHUNK_SIZE * 2;
+
+        GrowingFileHasher hasher;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            hasher = new GrowingFileHasher(file, CHUNK_SIZE, lag, raf::getFilePointer);
+            long dataStart = writeHeader(raf);
+            int written = 0;
+            while (written < samples.length) {
+                int length = Math.min(samples.length - written, 1000);
+                // 混合器先缓存，lag内的数据还没写进文件
+                raf.seek(dataStart + written);
+                raf.write(samples, written, length);
+                written += length;
+                hasher.onDataWritten(written + lag);
+            }
+            hasher.sync();
+            finishMp4(raf, samples.length);
+        }
+        List<byte[]> hashes = hasher.finish();
+        // 共23块，第0~2块含文件头，第22块含最后的样本和udta，在结束时摘要
+        assertEquals(19, hasher.getIncrementalChunkCount());
+        assertHashesMatch(file, hashes);
+    }
+
+    @Test
+    public void laggingMuxer_hashesOnlyWrittenData() throws Exception {
+        File file = new File(mDir, "d.mp4");
+        byte[] samples = random(CHUNK_SIZE * 20 + 777);
+        // 混合器实际缓存的数据比调用方假设的lag多
+        int buffered = CHUNK_SIZE * 6;
+
+        GrowingFileHasher hasher;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            hasher = new GrowingFileHasher(file, CHUNK_SIZE, CHUNK_SIZE, raf::getFilePointer);
+            writeHeader(raf);
+            int reported = 0;
+            int written = 0;
+            while (reported < samples.length) {
+                reported = Math.min(samples.length, reported + 1000);
+                // 在数据写进文件之前摘要
+                hasher.onDataWritten(reported);
+                hasher.sync();
+                int end = Math.max(reported - buffered, 0);
+                if (end > written) {
+                    raf.write(samples, written, end - written);
+                    written = end;
+                }
+            }
+            raf.write(samples, written, samples.length - written);
+            finishMp4(raf, samples.length);
+        }
+        List<byte[]> hashes = hasher.finish();
+        int incremental = hasher.getIncrementalChunkCount();
+        assertTrue("incremental = " + incremental, incremental > 0 && incremental < 19);
+        assertHashesMatch(file, hashes);
+    }
+
+    @Test
+    public void encryptedFile_hashedWhileRecording() throws Exception {
+        File file = new File(mDir, "e.mp4");
+        byte[] samples = random(CHUNK_SIZE * 20 + 777);
+        long lag = CHUNK_SIZE * 2;
+        SecretKey key = new SecretKeySpec(random(32), "AES");
+
+        GrowingFileHasher hasher;
+        try (TrackingFile encrypted = new TrackingFile(SeekableEncryptedFile.create(file, key))) {
+            hasher = new GrowingFileHasher(file, CHUNK_SIZE, lag, encrypted::getWriteEnd,
+                    encrypted::getDataStart);
+            encrypted.write(0, box("ftyp", 24));
+            encrypted.write(24, box("free", FREE_SIZE));
+            hasher.onDataWritten(0);
+            hasher.sync();
+            assertEquals(0, hasher.getIncrementalChunkCount());
+            encrypted.write(24 + FREE_SIZE, Arrays.copyOf(box("mdat", 0), 8));
+            long dataStart = 24 + FREE_SIZE + 8;
+            int written = 0;
+            while (written < samples.length) {
+                int length = Math.min(samples.length - written, 1000);
+                encrypted.write(dataStart + written, Arrays.copyOfRange(samples, written,
+                        written + length));
+                written += length;
+                hasher.onDataWritten(written + lag);
+            }
+            hasher.sync();
+            encrypted.write(24, box("moov", 300));
+            encrypted.write(24 + 300, Arrays.copyOf(box("free", FREE_SIZE - 300), 8));
+            encrypted.write(24 + FREE_SIZE, ByteBuffer.allocate(4).putInt(8 + samples.length)
+                    .array());
+            encrypted.write(dataStart + samples.length, box("udta", 500));
+        }
+        List<byte[]> hashes = hasher.finish();
+        // mdat数据在密文中从第2块开始，第3~21块在录制中摘要
+        assertEquals(19, hasher.getIncrementalChunkCount());
+        assertHashesMatch(file, hashes);
+    }
+
+    /**
+     * 与给MediaMuxer的代理文件一样，写入时记录密文写到的位置和mdat数据开始的位置
+     */
+    private static class TrackingFile implements AutoCloseable {
+
+        private final SeekableEncryptedFile mFile;
+        private volatile long mWriteEnd = -1;
+        private volatile long mDataStart = -1;
+
+        TrackingFile(SeekableEncryptedFile file) {
+            mFile = file;
+        }
+
+        void write(long position, byte[] data) throws IOException {
+            mFile.write(position, data, 0, data.length);
+            mWriteEnd = SeekableEncryptedFile.HEADER_SIZE + position + data.length;
+            if (mDataStart < 0) {
+                long dataStart = GrowingFileHasher.findDataStart(mFile::read);
+                if (dataStart >= 0) {
+                    mDataStart = SeekableEncryptedFile.HEADER_SIZE + dataStart;
+                }
+            }
+        }
+
+        long getWriteEnd() {
+            return mWriteEnd;
+        }
+
+        long getDataStart() {
+            return mDataStart;
+        }
+
+        @Override
+        public void close() throws IOException {
+            mFile.close();
+        }
+    }
+
+    /**
+     * 预分配文件，写ftyp、预留的moov空间和mdat头
+     *
+     * @return mdat数据开始的位置，文件指针在此处
+     */
+    private long writeHeader(RandomAccessFile raf) throws IOException {
+        raf.setLength(CHUNK_SIZE * 40);
+        raf.write(box("ftyp", 24));
+        raf.write(box("free", FREE_SIZE));
+        raf.write(box("mdat", 0), 0, 8);
+        return raf.getFilePointer();
+    }
+
+    /**
+     * 结束：改写mdat大小和预留空间，追加moov，去掉预分配的部分
+     */
+    private void finishMp4(RandomAccessFile raf, int sampleBytes) throws IOException {
+        long dataStart = 24 + FREE_SIZE + 8;
+        raf.seek(24);
+        raf.write(box("moov", 300));
+        raf.write(box("free", FREE_SIZE - 300), 0, 8);
+        raf.seek(24 + FREE_SIZE);
+        raf.writeInt(8 + sampleBytes);
+        raf.seek(dataStart + sampleBytes);
+        raf.write(box("udta", 500));
+        raf.setLength(raf.getFilePointer());
+    }
+
+    private void assertHashesMatch(File file, List<byte[]> hashes) throws IOException {
+        ChunkHasher expected = new ChunkHasher(CHUNK_SIZE);
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            ByteBuffer all = ByteBuffer.allocate((int) channel.size());
+            channel.read(all, 0);
+            all.flip();
+            expected.update(all);
+        }
+        List<byte[]> expectedHashes = expected.finish();
+        assertEquals(expectedHashes.size(), hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            assertArrayEquals("chunk " + i, expectedHashes.get(i), hashes.get(i));
+        }
+    }
+
+    private byte[] box(String type, int size) {
+        ByteBuffer box = ByteBuffer.allocate(size > 0 ? size : 8);
+        box.putInt(size).put(type.getBytes());
+        return box.array();
+    }
+}
@@ -0,0 +1,202 @@
+package com.zfg.common.mp4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * 手工拼出一个小MP4（一个视频轨、一个音频轨）验证采样表解析和采样读取
+ */
+public class Mp4ReaderTest {
+
+    private static final int VIDEO_SAMPLES = 10;
+    private static final int AUDIO_SAMPLES = 8;
+    private static final int AUDIO_SAMPLE_SIZE = 6;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("mp4reader", ".mp4");
+        // mdat：视频采样i为i+1个字节的值i，音频采样为固定大小的0x50+i
+        ByteArrayOutputStream mdat = new ByteArrayOutputStream();
+        for (int i = 0; i < VIDEO_SAMPLES; i++) {
+            for (int j = 0; j <= i; j++) {
+                mdat.write(i);
+            }
+        }
+        for (int i = 0; i < AUDIO_SAMPLES; i++) {
+            for (int j = 0; j < AUDIO_SAMPLE_SIZE; j++) {
+                mdat.write(0x50 + i);
+            }
+        }
+        byte[] ftyp = box("ftyp", bytes("isom"), ints(0), bytes("isommp41"));
+        int mdatOffset = ftyp.length + 8;
+        // 视频两个chunk，各5个采样
+        int secondChunk = mdatOffset + 15;
+        int audioOffset = mdatOffset + 55;
+
+        byte[] videoEntry = box("avc1", new byte[6], shorts(1), new byte[16], shorts(640, 360),
+                new byte[50]);
+        byte[] videoStbl = box("stbl",
+                box("stsd", ints(0, 1), videoEntry),
+                box("stts", ints(0, 1, VIDEO_SAMPLES, 3000)),
+                box("ctts", ints(0, 2, 1, 0, VIDEO_SAMPLES - 1, 6000)),
+                box("stss", ints(0, 2, 1, 6)),
+                box("stsz", ints(0, 0, VIDEO_SAMPLES, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10)),
+                box("stsc", ints(0, 1, 1, 5, 1)),
+                box("stco", ints(0, 2, mdatOffset, secondChunk)));
+        byte[] audioEntry = box("mp4a", new byte[6], shorts(1), new byte[8], shorts(2, 16, 0, 0),
+                ints(44100 << 16));
+        byte[] audioStbl = box("stbl",
+                box("stsd", ints(0, 1), audioEntry),
+                box("stts", ints(0, 1, AUDIO_SAMPLES, 1024)),
+                box("stsz", ints(0, AUDIO_SAMPLE_SIZE, AUDIO_SAMPLES)),
+                box("stsc", ints(0, 1, 1, AUDIO_SAMPLES, 1)),
+                box("co64", ints(0, 1, 0, audioOffset)));
+        byte[] moov = box("moov",
+                box("mvhd", ints(0, 0, 0, 1000, 1000)),
+                trak(1, "vide", 90000, 30000, videoStbl),
+                trak(2, "soun", 44100, AUDIO_SAMPLES * 1024, audioStbl));
+
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(ftyp);
+            out.write(ints(mdat.size() + 8));
+            out.write(bytes("mdat"));
+            mdat.writeTo(out);
+            out.write(moov);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void parsesTracks() throws IOException {
+        try (Mp4Reader reader = new Mp4Reader(mFile)) {
+            assertEquals(2, reader.getTracks().size());
+            assertEquals(1000000, reader.getDurationUs());
+
+            Mp4Track video = reader.getVideoTrack();
+            assertEquals(1, video.getTrackId());
+            assertEquals("avc1", video.getSampleEntryType());
+            assertEquals(640, video.getWidth());
+            assertEquals(360, video.getHeight());
+            assertEquals(333333, video.getDurationUs());
+
+            Mp4Track audio = reader.getAudioTrack();
+            assertEquals("mp4a", audio.getSampleEntryType());
+            assertEquals(2, audio.getChannelCount());
+            assertEquals(44100, audio.getSampleRate());
+        }
+    }
+
+    @Test
+    public void readsSampleTables() throws IOException {
+        try (Mp4Reader reader = new Mp4Reader(mFile)) {
+            Mp4Track video = reader.getVideoTrack();
+            assertEquals(VIDEO_SAMPLES, video.getSampleCount());
+            for (int i = 0; i < VIDEO_SAMPLES; i++) {
+                assertEquals(i + 1, video.getSampleSize(i));
+                assertEquals(i * 3000 * 1000000L / 90000, video.getDecodeTimeUs(i));
+                ByteBuffer sample = reader.readSample(video, i);
+                assertEquals(i + 1, sample.remaining());
+                assertEquals(i, sample.get(0));
+                assertEquals(i, sample.get(i));
+            }
+            assertEquals(0, video.getPresentationTimeUs(0));
+            assertEquals((3000 + 6000) * 1000000L / 90000, video.getPresentationTimeUs(1));
+            assertTrue(video.isSyncSample(0));
+            assertTrue(video.isSyncSample(5));
+            assertFalse(video.isSyncSample(4));
+
+            Mp4Track audio = reader.getAudioTrack();
+            assertEquals(AUDIO_SAMPLES, audio.getSampleCount());
+            for (int i = 0; i < AUDIO_SAMPLES; i++) {
+                ByteBuffer sample = reader.readSample(audio, i);
+                assertEquals(AUDIO_SAMPLE_SIZE, sample.remaining());
+                assertEquals(0x50 + i, sample.get(AUDIO_SAMPLE_SIZE - 1));
+                assertTrue(audio.isSyncSample(i));
+            }
+        }
+    }
+
+    @Test
+    public void seeksToPreviousSyncSample() throws IOException {
+        try (Mp4Reader reader = new Mp4Reader(mFile)) {
+            Mp4Track video = reader.getVideoTrack();
+            // 第7帧在233ms
+            int index = video.getSampleIndex(240000);
+            assertEquals(7, index);
+            assertEquals(5, video.getSyncSampleBefore(index));
+            assertEquals(0, video.getSyncSampleBefore(4));
+            assertEquals(0, video.getSampleIndex(-1));
+            assertEquals(VIDEO_SAMPLES - 1, video.getSampleIndex(10000000));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileWithoutMoov() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(box("ftyp", bytes("isom"), ints(0)));
+            out.write(box("mdat", new byte[100]));
+        }
+        new Mp4Reader(mFile).close();
+    }
+
+    private static byte[] trak(int trackId, String handler, int timescale, int duration,
+                               byte[] stbl) throws IOException {
+        return box("trak",
+                box("tkhd", ints(0, 0, 0, trackId)),
+                box("mdia",
+                        box("mdhd", ints(0, 0, 0, timescale, duration)),
+                        box("hdlr", ints(0, 0), bytes(handler), new byte[12]),
+                        box("minf", stbl)));
+    }
+
+    private static byte[] box(String type, byte[]... parts) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            content.write(part);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(ints(content.size() + 8));
+        out.write(bytes(type));
+        content.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] shorts(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 2);
+        for (int value : values) {
+            buffer.putShort((short) value);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] bytes(String ascii) {
+        byte[] out = new byte[ascii.length()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (byte) ascii.charAt(i);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,291 @@
+package com.zfg.common.mp4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 模拟录制中断的文件：ftyp、大小为0的mdat，视频帧和AAC帧按chunk交错，末尾有未写完的帧，没有moov。
+ * 单声道的音频帧开头按NAL长度解读时是合法的小长度，后面跟着像NAL头的字节
+ */
+public class Mp4RecoveryTest {
+
+    private static final byte[] SPS = {0x67, 0x42, (byte) 0xC0, 0x1F, (byte) 0xDA, 0x01};
+    private static final byte[] PPS = {0x68, (byte) 0xCE, 0x3C, (byte) 0x80};
+    private static final byte[] AUDIO_CONFIG = {0x14, 0x10};
+    private static final byte[] AUDIO_CONFIG_MONO = {0x14, 0x08};
+    private static final int FRAME_RATE = 25;
+    private static final int GOP = 10;
+
+    private final Random mRandom = new Random(7);
+    private File mInput;
+    private File mOutput;
+    private final List<long[]> mVideoFrames = new ArrayList<>();
+    private final List<long[]> mAudioFrames = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mInput = File.createTempFile("broken", ".mp4");
+        mOutput = File.createTempFile("recovered", ".mp4");
+    }
+
+    @After
+    public void tearDown() {
+        mInput.delete();
+        mOutput.delete();
+        RecoverySidecar.fileFor(mInput).delete();
+        Mp4Recovery.backupFor(mInput).delete();
+    }
+
+    @Test
+    public void recoversInterleavedVideoAndAudio() throws IOException {
+        writeBrokenFile(40, 0);
+        Mp4Recovery.Result result = new Mp4Recovery(mInput).recover(mOutput);
+        assertEquals(mVideoFrames.size(), result.videoFrames);
+        assertEquals(mAudioFrames.size(), result.audioFrames);
+        assertEquals(0, result.skippedBytes);
+        assertTrue(result.truncatedBytes > 0);
+
+        try (Mp4Reader reader = new Mp4Reader(mOutput)) {
+            Mp4Track video = reader.getVideoTrack();
+            assertEquals("avc1", video.getSampleEntryType());
+            assertEquals(1280, video.getWidth());
+            assertEquals(mVideoFrames.size(), video.getSampleCount());
+            for (int i = 0; i < mVideoFrames.size(); i++) {
+                assertEquals(mVideoFrames.get(i)[0], video.getSampleOffset(i));
+                assertEquals(mVideoFrames.get(i)[1], video.getSampleSize(i));
+                assertEquals(i % GOP == 0, video.isSyncSample(i));
+            }
+            assertEquals(1000000 / FRAME_RATE, video.getDecodeTimeUs(1));
+
+            Mp4Track audio = reader.getAudioTrack();
+            assertEquals(16000, audio.getSampleRate());
+            assertEquals(mAudioFrames.size(), audio.getSampleCount());
+            for (int i = 0; i < mAudioFrames.size(); i++) {
+                assertEquals(mAudioFrames.get(i)[0], audio.getSampleOffset(i));
+                assertEquals(mAudioFrames.get(i)[1], audio.getSampleSize(i));
+            }
+        }
+    }
+
+    @Test
+    public void skipsAudioMissingFromSidecar() throws IOException {
+        // 最后几个音频帧的大小没有写入sidecar
+        writeBrokenFile(40, 5);
+        Mp4Recovery.Result result = new Mp4Recovery(mInput).recover(mOutput);
+        assertEquals(mVideoFrames.size(), result.videoFrames);
+        assertEquals(mAudioFrames.size(), result.audioFrames);
+        assertTrue(result.skippedBytes > 0);
+
+        try (Mp4Reader reader = new Mp4Reader(mOutput)) {
+            Mp4Track video = reader.getVideoTrack();
+            for (int i = 0; i < mVideoFrames.size(); i++) {
+                assertEquals(mVideoFrames.get(i)[0], video.getSampleOffset(i));
+            }
+        }
+    }
+
+    @Test
+    public void ignoresPreallocatedSpace() throws IOException {
+        writeBrokenFile(40, 0);
+        // StorageManager预分配而未写入的空间
+        try (RandomAccessFile file = new RandomAccessFile(mInput, "rw")) {
+            file.setLength(file.length() + 1024 * 1024);
+        }
+        Mp4Recovery.Result result = new Mp4Recovery(mInput).recover(mOutput);
+        assertEquals(mVideoFrames.size(), result.videoFrames);
+        assertEquals(mAudioFrames.size(), result.audioFrames);
+        assertEquals(0, result.skippedBytes);
+        // 只丢弃未写完的帧
+        assertEquals(9, result.truncatedBytes);
+    }
+
+    @Test
+    public void monoAudioLookingLikeNal_isNotTakenAsVideo() throws IOException {
+        writeBrokenFile(40, 0, 1);
+        Mp4Recovery.Result result = new Mp4Recovery(mInput).recover(mOutput);
+        assertEquals(mVideoFrames.size(), result.videoFrames);
+        assertEquals(mAudioFrames.size(), result.audioFrames);
+        assertEquals(0, result.skippedBytes);
+
+        try (Mp4Reader reader = new Mp4Reader(mOutput)) {
+            Mp4Track video = reader.getVideoTrack();
+            for (int i = 0; i < mVideoFrames.size(); i++) {
+                assertEquals(mVideoFrames.get(i)[0], video.getSampleOffset(i));
+                assertEquals(mVideoFrames.get(i)[1], video.getSampleSize(i));
+            }
+            Mp4Track audio = reader.getAudioTrack();
+            assertEquals(1, audio.getChannelCount());
+            for (int i = 0; i < mAudioFrames.size(); i++) {
+                assertEquals(mAudioFrames.get(i)[0], audio.getSampleOffset(i));
+                assertEquals(mAudioFrames.get(i)[1], audio.getSampleSize(i));
+            }
+        }
+    }
+
+    @Test
+    public void recoverInPlace_replacesInputAndRemovesSidecar() throws IOException {
+        writeBrokenFile(40, 0);
+        Mp4Recovery.Result result = Mp4Recovery.recoverInPlace(mInput);
+        assertEquals(mVideoFrames.size(), result.videoFrames);
+        assertFalse(RecoverySidecar.fileFor(mInput).exists());
+        assertFalse(Mp4Recovery.backupFor(mInput).exists());
+        try (Mp4Reader reader = new Mp4Reader(mInput)) {
+            assertEquals(mVideoFrames.size(), reader.getVideoTrack().getSampleCount());
+        }
+    }
+
+    @Test
+    public void recoverInPlace_keepsInputOnFailure() throws IOException {
+        writeBrokenFile(0, 0);
+        long length = mInput.length();
+        try {
+            Mp4Recovery.recoverInPlace(mInput);
+            fail("no video frame");
+        } catch (IOException e) {
+            // 预期
+        }
+        assertEquals(length, mInput.length());
+        assertTrue(RecoverySidecar.fileFor(mInput).exists());
+        assertFalse(new File(mInput.getPath() + ".recovering").exists());
+    }
+
+    @Test
+    public void restoreBackup_afterInterruptedReplace() throws IOException {
+        writeBrokenFile(10, 0);
+        long length = mInput.length();
+        // 原文件已改名为备份，修复后的文件还没改名
+        assertTrue(mInput.renameTo(Mp4Recovery.backupFor(mInput)));
+        assertTrue(Mp4Recovery.restoreBackup(mInput));
+        assertEquals(length, mInput.length());
+        assertFalse(Mp4Recovery.backupFor(mInput).exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void failsWithoutSidecar() throws IOException {
+        writeBrokenFile(10, 0);
+        RecoverySidecar.fileFor(mInput).delete();
+        new Mp4Recovery(mInput);
+    }
+
+    private void writeBrokenFile(int frames, int missingAudioSize) throws IOException {
+        writeBrokenFile(frames, missingAudioSize, 2);
+    }
+
+    /**
+     * @param frames           完整视频帧数
+     * @param missingAudioSize sidecar中缺少的末尾音频帧数
+     * @param channels         音频声道数，1时音频帧以SCE开头，2时以CPE开头
+     */
+    private void writeBrokenFile(int frames, int missingAudioSize, int channels)
+            throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(new byte[]{0, 0, 0, 16, 'f', 't', 'y', 'p', 'i', 's', 'o', 'm', 0, 0, 0, 0});
+        file.write(new byte[]{0, 0, 0, 0, 'm', 'd', 'a', 't'});
+        RecoverySidecar sidecar = RecoverySidecar.create(mInput);
+        sidecar.writeVideoConfig("video/avc", 1280, 720, FRAME_RATE, SPS, PPS);
+        sidecar.writeAudioConfig(16000, channels,
+                channels == 1 ? AUDIO_CONFIG_MONO : AUDIO_CONFIG);
+
+        // 每5帧视频一个chunk，之后是3帧音频的chunk
+        for (int i = 0; i < frames; i++) {
+            long start = file.size();
+            // slice头：first_mb_in_slice、slice_type、pic_parameter_set_id
+            if (i % GOP == 0) {
+                writeNal(file, 0x06, 20, 0x05);
+                // 0、I（7）、0
+                writeNal(file, 0x65, 3000 + mRandom.nextInt(2000), 0x88, 0x80);
+            } else {
+                // 0、P（5）、0
+                writeNal(file, 0x41, 200 + mRandom.nextInt(800), 0x9A);
+                // 第二个slice，1、P（5）、0
+                writeNal(file, 0x41, 100 + mRandom.nextInt(300), 0x46, 0x80);
+            }
+            mVideoFrames.add(new long[]{start, file.size() - start});
+            if (i % 5 == 4) {
+                for (int j = 0; j < 3; j++) {
+                    byte[] aac = channels == 1 ? monoAac() : stereoAac();
+                    mAudioFrames.add(new long[]{file.size(), aac.length});
+                    file.write(aac);
+                }
+            }
+        }
+        for (int i = 0; i < mAudioFrames.size() - missingAudioSize; i++) {
+            sidecar.appendAudioSize((int) mAudioFrames.get(i)[1]);
+        }
+        sidecar.close();
+        if (missingAudioSize > 0) {
+            mAudioFrames.subList(mAudioFrames.size() - missingAudioSize, mAudioFrames.size()).clear();
+        }
+        // 未写完的帧
+        byte[] tail = new byte[]{0, 0, 0x40, 0, 0x41, (byte) 0x9A, 1, 2, 3};
+        file.write(tail);
+
+        try (FileOutputStream out = new FileOutputStream(mInput)) {
+            file.writeTo(out);
+        }
+    }
+
+    private byte[] stereoAac() {
+        byte[] aac = new byte[150 + mRandom.nextInt(200)];
+        mRandom.nextBytes(aac);
+        // CPE开头
+        aac[0] = (byte) (0x21 + mRandom.nextInt(0x1E));
+        return aac;
+    }
+
+    /**
+     * 安静时的单声道帧：较小，SCE开头（前3位为0），内容中有很多0。
+     * 前4个字节按NAL长度解读时落在文件内，第5个字节像slice或IDR的NAL头
+     */
+    private byte[] monoAac() {
+        int size = 12 + mRandom.nextInt(60);
+        byte[] aac = new byte[size];
+        mRandom.nextBytes(aac);
+        for (int i = 0; i < size; i++) {
+            if (mRandom.nextInt(3) == 0) {
+                aac[i] = 0;
+            }
+        }
+        aac[0] = 0;
+        aac[1] = 0;
+        aac[2] = (byte) mRandom.nextInt(2);
+        aac[3] = (byte) (1 + mRandom.nextInt(255));
+        aac[4] = (byte) (mRandom.nextBoolean() ? 0x01 : 0x65);
+        aac[5] = (byte) (mRandom.nextBoolean() ? 0x9A : 0x88);
+        return aac;
+    }
+
+    /**
+     * @param payload NAL头之后的前几个字节，如slice头
+     */
+    private void writeNal(ByteArrayOutputStream out, int header, int size, int... payload)
+            throws IOException {
+        byte[] nal = new byte[size];
+        mRandom.nextBytes(nal);
+        nal[0] = (byte) header;
+        for (int i = 0; i < payload.length; i++) {
+            nal[1 + i] = (byte) payload[i];
+        }
+        // 避免随机内容中出现起始码
+        for (int i = 1 + payload.length; i < size; i++) {
+            if (nal[i] == 0) {
+                nal[i] = 1;
+            }
+        }
+        out.write(ByteBuffer.allocate(4).putInt(size).array());
+        out.write(nal);
+    }
+}
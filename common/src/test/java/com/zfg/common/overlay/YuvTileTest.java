@@ -0,0 +1,150 @@
+package com.zfg.common.overlay;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 叠加块混合到小尺寸NV12帧：不透明处Y、UV等于叠加块，透明处不变，叠加区域以外（含越界裁剪时）不被改写
+ */
+public class YuvTileTest {
+
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 16;
+    private static final int BACKGROUND_Y = 50;
+    private static final int BACKGROUND_U = 100;
+    private static final int BACKGROUND_V = 200;
+    private static final int TILE_WIDTH = 8;
+    private static final int TILE_HEIGHT = 4;
+
+    private byte[] mFrame;
+    private YuvTile mTile;
+
+    @Before
+    public void setUp() {
+        mFrame = background();
+        // 左半不透明红色，右半全透明
+        int[] argb = new int[TILE_WIDTH * TILE_HEIGHT];
+        for (int y = 0; y < TILE_HEIGHT; y++) {
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                argb[y * TILE_WIDTH + x] = x < TILE_WIDTH / 2 ? 0xFFFF0000 : 0x0000FF00;
+            }
+        }
+        mTile = YuvTile.fromArgb(argb, TILE_WIDTH, TILE_HEIGHT);
+    }
+
+    private static byte[] background() {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            frame[i] = (byte) BACKGROUND_Y;
+        }
+        for (int i = WIDTH * HEIGHT; i < frame.length; i += 2) {
+            frame[i] = (byte) BACKGROUND_U;
+            frame[i + 1] = (byte) BACKGROUND_V;
+        }
+        return frame;
+    }
+
+    private int y(int x, int y) {
+        return mFrame[y * WIDTH + x] & 0xFF;
+    }
+
+    private int u(int x, int y) {
+        return mFrame[WIDTH * HEIGHT + (y / 2) * WIDTH + (x & ~1)] & 0xFF;
+    }
+
+    private int v(int x, int y) {
+        return mFrame[WIDTH * HEIGHT + (y / 2) * WIDTH + (x & ~1) + 1] & 0xFF;
+    }
+
+    /**
+     * 检查矩形以外的Y和UV都是背景
+     */
+    private void assertUnchangedOutside(int left, int top, int right, int bottom) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if (x >= left && x < right && y >= top && y < bottom) {
+                    continue;
+                }
+                assertEquals("y at " + x + "," + y, BACKGROUND_Y, y(x, y));
+                assertEquals("u at " + x + "," + y, BACKGROUND_U, u(x, y));
+                assertEquals("v at " + x + "," + y, BACKGROUND_V, v(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void blend_fullAndZeroAlpha() {
+        int left = 10;
+        int top = 6;
+        mTile.blendNV12(mFrame, WIDTH, HEIGHT, left, top);
+
+        for (int ty = 0; ty < TILE_HEIGHT; ty++) {
+            for (int tx = 0; tx < TILE_WIDTH; tx++) {
+                int x = left + tx;
+                int y = top + ty;
+                if (tx < TILE_WIDTH / 2) {
+                    assertEquals(mTile.y[ty * TILE_WIDTH + tx] & 0xFF, y(x, y));
+                    int c = (ty / 2) * (TILE_WIDTH / 2) + tx / 2;
+                    assertEquals(mTile.uv[c * 2] & 0xFF, u(x, y));
+                    assertEquals(mTile.uv[c * 2 + 1] & 0xFF, v(x, y));
+                } else {
+                    assertEquals(BACKGROUND_Y, y(x, y));
+                    assertEquals(BACKGROUND_U, u(x, y));
+                    assertEquals(BACKGROUND_V, v(x, y));
+                }
+            }
+        }
+        // 红色的Y、U、V与背景不同，确实被改写了
+        assertFalse(y(left, top) == BACKGROUND_Y);
+        assertFalse(v(left, top) == BACKGROUND_V);
+        assertUnchangedOutside(left, top, left + TILE_WIDTH, top + TILE_HEIGHT);
+    }
+
+    @Test
+    public void blend_halfAlpha() {
+        int[] argb = new int[4];
+        for (int i = 0; i < argb.length; i++) {
+            argb[i] = 0x80FFFFFF;
+        }
+        YuvTile tile = YuvTile.fromArgb(argb, 2, 2);
+        tile.blendNV12(mFrame, WIDTH, HEIGHT, 0, 0);
+        int white = tile.y[0] & 0xFF;
+        int blended = y(0, 0);
+        assertTrue(blended > BACKGROUND_Y && blended < white);
+        assertEquals((BACKGROUND_Y + white) / 2, blended, 1);
+        // 白色的UV为128，混合后在背景和128之间
+        assertEquals((BACKGROUND_U + 128) / 2, u(0, 0), 1);
+        assertEquals((BACKGROUND_V + 128) / 2, v(0, 0), 1);
+        assertUnchangedOutside(0, 0, 2, 2);
+    }
+
+    @Test
+    public void blend_clipsAtFrameEdges() {
+        // 左上角超出帧，只剩右下2x2的不透明部分
+        mTile.blendNV12(mFrame, WIDTH, HEIGHT, -2, -2);
+        assertUnchangedOutside(0, 0, 2, 2);
+
+        // 右下角超出帧，Y的最后两行不能写进UV平面
+        mFrame = background();
+        mTile.blendNV12(mFrame, WIDTH, HEIGHT, WIDTH - 2, HEIGHT - 2);
+        assertUnchangedOutside(WIDTH - 2, HEIGHT - 2, WIDTH, HEIGHT);
+        assertEquals(mTile.y[0] & 0xFF, y(WIDTH - 2, HEIGHT - 2));
+
+        // 完全在帧外
+        mFrame = background();
+        mTile.blendNV12(mFrame, WIDTH, HEIGHT, WIDTH, 0);
+        mTile.blendNV12(mFrame, WIDTH, HEIGHT, 0, -TILE_HEIGHT);
+        assertUnchangedOutside(0, 0, 0, 0);
+    }
+
+    @Test
+    public void blend_oddPositionAlignedToChroma() {
+        mTile.blendNV12(mFrame, WIDTH, HEIGHT, 5, 3);
+        // 按偶数位置(4, 2)叠加，UV与Y对齐
+        assertEquals(mTile.y[0] & 0xFF, y(4, 2));
+        assertEquals(mTile.uv[0] & 0xFF, u(4, 2));
+        assertUnchangedOutside(4, 2, 4 + TILE_WIDTH, 2 + TILE_HEIGHT);
+    }
+}
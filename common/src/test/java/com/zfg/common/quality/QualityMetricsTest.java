@@ -0,0 +1,101 @@
+package com.zfg.common.quality;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 相同的帧PSNR为上限、SSIM为1；整帧加上固定偏移d时PSNR为10 * log10(255² / d²)，
+ * 并行拆分条带的结果与单线程一致
+ */
+public class QualityMetricsTest {
+
+    // 高度超过两个条带，会拆分计算
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    private final QualityMetrics mMetrics = new QualityMetrics(4);
+
+    @After
+    public void tearDown() {
+        mMetrics.shutdown();
+    }
+
+    private static byte[] randomFrame(long seed) {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        Random random = new Random(seed);
+        for (int i = 0; i < frame.length; i++) {
+            // 留出偏移的余量，不会溢出
+            frame[i] = (byte) (16 + random.nextInt(200));
+        }
+        return frame;
+    }
+
+    private static byte[] offset(byte[] frame, int delta) {
+        byte[] result = new byte[frame.length];
+        for (int i = 0; i < frame.length; i++) {
+            result[i] = (byte) ((frame[i] & 0xFF) + delta);
+        }
+        return result;
+    }
+
+    @Test
+    public void identicalFrames_maxPsnrAndSsimOne() {
+        byte[] frame = randomFrame(1);
+        FrameQuality quality = mMetrics.measure(frame, frame.clone(), WIDTH, HEIGHT);
+        assertEquals(QualityMetrics.MAX_PSNR, quality.getPsnr(), 0);
+        assertEquals(QualityMetrics.MAX_PSNR, quality.getPsnrY(), 0);
+        assertEquals(QualityMetrics.MAX_PSNR, quality.getPsnrU(), 0);
+        assertEquals(QualityMetrics.MAX_PSNR, quality.getPsnrV(), 0);
+        assertEquals(1.0, quality.getSsim(), 1e-9);
+    }
+
+    @Test
+    public void constantOffset_knownPsnr() {
+        byte[] frame = randomFrame(2);
+        for (int delta : new int[]{1, 4, 16}) {
+            FrameQuality quality = mMetrics.measure(frame, offset(frame, delta), WIDTH, HEIGHT);
+            double expected = 10 * Math.log10(255.0 * 255.0 / (delta * delta));
+            assertEquals(expected, quality.getPsnr(), 1e-9);
+            assertEquals(expected, quality.getPsnrY(), 1e-9);
+            assertEquals(expected, quality.getPsnrU(), 1e-9);
+            assertEquals(expected, quality.getPsnrV(), 1e-9);
+            // 只有亮度偏移，结构不变，SSIM接近1但小于1
+            assertTrue("ssim = " + quality.getSsim(), quality.getSsim() < 1);
+            assertTrue("ssim = " + quality.getSsim(), quality.getSsim() > 0.9);
+        }
+    }
+
+    @Test
+    public void offsetOnlyInLuma_chromaStaysMax() {
+        byte[] frame = randomFrame(3);
+        byte[] distorted = frame.clone();
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            distorted[i] = (byte) ((frame[i] & 0xFF) + 2);
+        }
+        FrameQuality quality = mMetrics.measure(frame, distorted, WIDTH, HEIGHT);
+        assertEquals(10 * Math.log10(255.0 * 255.0 / 4), quality.getPsnrY(), 1e-9);
+        assertEquals(QualityMetrics.MAX_PSNR, quality.getPsnrU(), 0);
+        assertEquals(QualityMetrics.MAX_PSNR, quality.getPsnrV(), 0);
+        // 整体按Y、U、V全部采样的均方误差计算，色度占1/3
+        assertEquals(10 * Math.log10(255.0 * 255.0 / (4 * 2.0 / 3)), quality.getPsnr(), 1e-9);
+    }
+
+    @Test
+    public void parallelMatchesSingleThread() {
+        byte[] reference = randomFrame(4);
+        byte[] distorted = randomFrame(5);
+        QualityMetrics single = new QualityMetrics(1);
+        try {
+            FrameQuality expected = single.measure(reference, distorted, WIDTH, HEIGHT);
+            FrameQuality actual = mMetrics.measure(reference, distorted, WIDTH, HEIGHT);
+            assertEquals(expected.getPsnr(), actual.getPsnr(), 1e-9);
+            assertEquals(expected.getSsim(), actual.getSsim(), 1e-9);
+        } finally {
+            single.shutdown();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.zfg.common.storage;
+
+import com.zfg.common.mp4.RecoverySidecar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * 检查配额的循环删除顺序、使用中文件的保护，以及预分配MP4的截断
+ */
+public class StorageManagerTest {
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("storage").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    private File write(String name, int size, long lastModified) throws IOException {
+        File file = new File(mDir, name);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[size]);
+        }
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    @Test
+    public void enforceQuota_deletesOldestInactiveFilesFirst() throws IOException {
+        StorageManager manager = new StorageManager.Builder(mDir).setQuotaBytes(300).build();
+        // 最旧的文件正在写
+        File active = manager.createFile("a.mp4", 0);
+        write("a.mp4", 100, 1000);
+        File b = write("b.aac", 100, 2000);
+        File c = write("c.h264", 100, 3000);
+        File d = write("d.mp4", 100, 4000);
+        File sidecar = RecoverySidecar.fileFor(d);
+        write(sidecar.getName(), 10, 4000);
+        File other = write("notes.txt", 1000, 500);
+
+        assertEquals(400, manager.getUsedBytes());
+        assertEquals(200, manager.enforceQuota(50));
+        assertTrue(active.exists());
+        assertFalse(b.exists());
+        assertFalse(c.exists());
+        assertTrue(d.exists());
+        assertTrue(other.exists());
+
+        assertEquals(100, manager.enforceQuota(150));
+        assertFalse(d.exists());
+        assertFalse(sidecar.exists());
+
+        try {
+            manager.enforceQuota(250);
+            fail("active file deleted");
+        } catch (IOException e) {
+            assertTrue(active.exists());
+        }
+
+        // 写完后可被删除
+        manager.release(active);
+        assertEquals(100, manager.enforceQuota(250));
+        assertFalse(active.exists());
+    }
+
+    @Test
+    public void trimPreallocatedMp4_cutsAfterLastBox() throws IOException {
+        File file = new File(mDir, "trim.mp4");
+        ByteBuffer boxes = ByteBuffer.allocate(16 + 108 + 28);
+        boxes.putInt(16).put(new byte[]{'f', 't', 'y', 'p'}).put(new byte[8]);
+        boxes.putInt(108).put(new byte[]{'m', 'd', 'a', 't'}).put(new byte[100]);
+        boxes.putInt(28).put(new byte[]{'m', 'o', 'o', 'v'}).put(new byte[20]);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(boxes.array());
+            raf.setLength(64 * 1024);
+            assertEquals(boxes.capacity(), StorageManager.trimPreallocatedMp4(raf));
+            assertEquals(boxes.capacity(), raf.length());
+            // 已截断的文件不变
+            assertEquals(boxes.capacity(), StorageManager.trimPreallocatedMp4(raf));
+        }
+    }
+
+    @Test
+    public void trimPreallocatedMp4_keepsUnterminatedMdat() throws IOException {
+        File file = new File(mDir, "broken.mp4");
+        ByteBuffer boxes = ByteBuffer.allocate(16 + 8);
+        boxes.putInt(16).put(new byte[]{'f', 't', 'y', 'p'}).put(new byte[8]);
+        boxes.putInt(0).put(new byte[]{'m', 'd', 'a', 't'});
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write(boxes.array());
+            raf.setLength(64 * 1024);
+            assertEquals(64 * 1024, StorageManager.trimPreallocatedMp4(raf));
+            assertEquals(64 * 1024, raf.length());
+        }
+    }
+
+    @Test
+    public void loadOrMeasureWriteSpeed_usesCacheOnSameVolume() throws IOException {
+        StorageManager manager = new StorageManager.Builder(mDir).build();
+        long measured = manager.loadOrMeasureWriteSpeed(1024 * 1024);
+        assertTrue(measured > 0);
+        File cache = new File(mDir, ".write_speed");
+        assertTrue(cache.exists());
+
+        // 写入一个能辨认的缓存值，同一存储上直接读取，不再测量
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(cache))) {
+            out.writeLong(12345);
+            out.writeLong(mDir.getTotalSpace());
+        }
+        StorageManager restarted = new StorageManager.Builder(mDir).build();
+        assertEquals(12345, restarted.loadOrMeasureWriteSpeed(1024 * 1024));
+        assertEquals(12345, restarted.getWriteBytesPerSecond());
+        assertFalse(restarted.isFastEnough(12345));
+
+        // 容量不同，认为换了卡，重新测量
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(cache))) {
+            out.writeLong(12345);
+            out.writeLong(mDir.getTotalSpace() + 1);
+        }
+        assertTrue(restarted.loadOrMeasureWriteSpeed(1024 * 1024) != 12345);
+    }
+
+    @Test
+    public void createFile_neverReplacesExistingRecording() throws IOException {
+        StorageManager manager = new StorageManager.Builder(mDir).build();
+        // 时间回退后生成了同名文件
+        File existing = write("20261019_143005_123_main.mp4.enc", 100, 1000);
+        File created = manager.createFile(existing.getName(), 0);
+        assertEquals("20261019_143005_123_main_1.mp4.enc", created.getName());
+        assertEquals(100, existing.length());
+        assertEquals(0, created.length());
+
+        File again = StorageManager.createUniqueFile(mDir, existing.getName());
+        assertEquals("20261019_143005_123_main_2.mp4.enc", again.getName());
+        assertEquals(100, existing.length());
+        assertEquals(new File(mDir, "fresh.mp4"),
+                StorageManager.createUniqueFile(mDir, "fresh.mp4"));
+    }
+}
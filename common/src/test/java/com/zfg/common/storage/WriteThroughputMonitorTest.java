@@ -0,0 +1,61 @@
+package com.zfg.common.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 交给混合器很快返回，按文件偏移判断存储是否跟得上：文件跟着增长时不饱和，积压持续增长时饱和
+ */
+public class WriteThroughputMonitorTest {
+
+    private static final long FRAME_NS = 33000000L;
+    private static final int FRAME_BYTES = 20000;
+    private static final long HEADER_BYTES = 32;
+
+    /**
+     * 按帧间隔送入10秒的数据，文件每秒写出writtenPerSecond字节，混合器最多缓存1秒
+     */
+    private WriteThroughputMonitor run(long writtenPerSecond) {
+        WriteThroughputMonitor monitor = new WriteThroughputMonitor();
+        long submitted = 0;
+        for (int i = 0; i < 300; i++) {
+            long nowNs = i * FRAME_NS;
+            submitted += FRAME_BYTES;
+            long written = Math.min(Math.max(submitted - FRAME_BYTES * 30, 0),
+                    writtenPerSecond * nowNs / 1000000000L);
+            monitor.onWrite(FRAME_BYTES, HEADER_BYTES + written, nowNs);
+        }
+        return monitor;
+    }
+
+    @Test
+    public void fastStorage_isNotSaturated() {
+        WriteThroughputMonitor monitor = run(10 * 1024 * 1024);
+        assertFalse(monitor.toString(), monitor.isSaturated());
+        // 约30帧/秒
+        long incoming = FRAME_BYTES * 1000000000L / FRAME_NS;
+        assertEquals(incoming, monitor.getIncomingBytesPerSecond(), incoming / 20);
+        assertEquals(incoming, monitor.getWriteBytesPerSecond(), incoming / 10);
+        assertTrue(monitor.getBacklogBytes() <= FRAME_BYTES * 31);
+    }
+
+    @Test
+    public void slowStorage_isSaturated() {
+        // 只能写出码率的一半
+        WriteThroughputMonitor monitor = run(FRAME_BYTES * 15);
+        assertTrue(monitor.toString(), monitor.isSaturated());
+        assertEquals(FRAME_BYTES * 15, monitor.getWriteBytesPerSecond(), FRAME_BYTES);
+    }
+
+    @Test
+    public void unknownOffset_isNeverSaturated() {
+        WriteThroughputMonitor monitor = new WriteThroughputMonitor();
+        for (int i = 0; i < 300; i++) {
+            monitor.onWrite(FRAME_BYTES, -1, i * FRAME_NS);
+        }
+        assertFalse(monitor.isSaturated());
+        assertEquals(-1, monitor.getWriteBytesPerSecond());
+        assertTrue(monitor.getIncomingBytesPerSecond() > 0);
+    }
+}
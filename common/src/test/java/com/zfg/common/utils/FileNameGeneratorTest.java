@@ -0,0 +1,93 @@
+package com.zfg.common.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * 多线程同时生成ID时不重复，每个线程拿到的ID按字符串递增；同一毫秒、时间回退时仍保持顺序
+ */
+public class FileNameGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 20000;
+
+    @Test
+    public void concurrentIds_areUniqueAndOrderedPerThread() throws InterruptedException {
+        final FileNameGenerator generator = new FileNameGenerator();
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<String> errors = new ArrayList<>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                String previous = "";
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    String id = generator.nextId();
+                    if (id.compareTo(previous) <= 0 || !ids.add(id)) {
+                        synchronized (errors) {
+                            errors.add(previous + " -> " + id);
+                        }
+                        return;
+                    }
+                    previous = id;
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(THREADS * IDS_PER_THREAD, ids.size());
+    }
+
+    @Test
+    public void sameMillisecond_appendsSequenceThenBorrowsNextMillisecond() {
+        FileNameGenerator generator = new FileNameGenerator();
+        long now = System.currentTimeMillis() / 1000 * 1000 + 998;
+        String first = generator.nextId(now);
+        assertTrue(first.matches("\\d{8}_\\d{6}_998"));
+        assertEquals(first + "-01", generator.nextId(now));
+
+        Set<String> ids = new HashSet<>();
+        String previous = first;
+        String nextSecond = null;
+        for (int i = 0; i < 3 * (FileNameGenerator.MAX_SEQUENCE + 1); i++) {
+            String id = generator.nextId(now);
+            assertTrue(id.compareTo(previous) > 0);
+            assertTrue(ids.add(id));
+            assertFalse(id.contains(" ") || id.contains(":"));
+            if (id.endsWith("_000")) {
+                nextSecond = id;
+            }
+            previous = id;
+        }
+        // 借用到下一秒时日期部分更新
+        assertNotNull(nextSecond);
+        assertFalse(first.substring(0, 15).equals(nextSecond.substring(0, 15)));
+    }
+
+    @Test
+    public void clockGoingBack_keepsIncreasing() {
+        FileNameGenerator generator = new FileNameGenerator();
+        long now = System.currentTimeMillis();
+        String before = generator.nextId(now);
+        String after = generator.nextId(now - 60000);
+        assertEquals(before + "-01", after);
+        assertTrue(generator.nextId(now + 1).compareTo(after) > 0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.zfg.common.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 旋转、镜像按像素逐个对照：宽高跨过分块边界，90、180、270度下NV12和I420的每个分量都写到正确位置；
+ * NV21转NV12同时旋转镜像，与先转换再旋转、镜像的结果一致
+ */
+public class ImageFormatUtilsTest {
+
+    // 超过一个分块，色度高为奇数
+    private static final int WIDTH = 132;
+    private static final int HEIGHT = 70;
+    private static final int[] DEGREES = {0, 90, 180, 270};
+
+    private final byte[] mSrc;
+
+    public ImageFormatUtilsTest() {
+        mSrc = new byte[WIDTH * HEIGHT * 3 / 2];
+        new Random(3).nextBytes(mSrc);
+    }
+
+    @Test
+    public void rotateNV12_movesEveryPixel() {
+        int ySize = WIDTH * HEIGHT;
+        for (int degrees : DEGREES) {
+            byte[] expected = new byte[mSrc.length];
+            transform(mSrc, 0, WIDTH, HEIGHT, 1, false, expected, 0, degrees, false);
+            transform(mSrc, ySize, WIDTH / 2, HEIGHT / 2, 2, false, expected, ySize, degrees,
+                    false);
+            byte[] actual = new byte[mSrc.length];
+            ImageFormatUtils.rotateNV12(mSrc, actual, WIDTH, HEIGHT, degrees);
+            assertArrayEquals("degrees = " + degrees, expected, actual);
+        }
+    }
+
+    @Test
+    public void rotateI420_movesEveryPixel() {
+        int ySize = WIDTH * HEIGHT;
+        int uvSize = ySize / 4;
+        for (int degrees : DEGREES) {
+            byte[] expected = new byte[mSrc.length];
+            transform(mSrc, 0, WIDTH, HEIGHT, 1, false, expected, 0, degrees, false);
+            transform(mSrc, ySize, WIDTH / 2, HEIGHT / 2, 1, false, expected, ySize, degrees,
+                    false);
+            transform(mSrc, ySize + uvSize, WIDTH / 2, HEIGHT / 2, 1, false,
+                    expected, ySize + uvSize, degrees, false);
+            byte[] actual = new byte[mSrc.length];
+            ImageFormatUtils.rotateI420(mSrc, actual, WIDTH, HEIGHT, degrees);
+            assertArrayEquals("degrees = " + degrees, expected, actual);
+        }
+    }
+
+    @Test
+    public void mirrorNV12_afterRotation_inPlace() {
+        int ySize = WIDTH * HEIGHT;
+        for (int degrees : DEGREES) {
+            byte[] expected = new byte[mSrc.length];
+            transform(mSrc, 0, WIDTH, HEIGHT, 1, false, expected, 0, degrees, true);
+            transform(mSrc, ySize, WIDTH / 2, HEIGHT / 2, 2, false, expected, ySize, degrees,
+                    true);
+            byte[] actual = new byte[mSrc.length];
+            ImageFormatUtils.rotateNV12(mSrc, actual, WIDTH, HEIGHT, degrees);
+            boolean swap = degrees == 90 || degrees == 270;
+            ImageFormatUtils.mirrorNV12(actual, actual, swap ? HEIGHT : WIDTH,
+                    swap ? WIDTH : HEIGHT);
+            assertArrayEquals("degrees = " + degrees, expected, actual);
+        }
+    }
+
+    @Test
+    public void nv21ToNV12_rotatesAndMirrorsInOnePass() {
+        int ySize = WIDTH * HEIGHT;
+        // NV21的VU交换为UV
+        byte[] nv12 = mSrc.clone();
+        for (int i = ySize; i < nv12.length; i += 2) {
+            nv12[i] = mSrc[i + 1];
+            nv12[i + 1] = mSrc[i];
+        }
+        for (int degrees : DEGREES) {
+            boolean swap = degrees == 90 || degrees == 270;
+            for (boolean mirror : new boolean[]{false, true}) {
+                byte[] expected = new byte[mSrc.length];
+                ImageFormatUtils.rotateNV12(nv12, expected, WIDTH, HEIGHT, degrees);
+                if (mirror) {
+                    ImageFormatUtils.mirrorNV12(expected, expected, swap ? HEIGHT : WIDTH,
+                            swap ? WIDTH : HEIGHT);
+                }
+                byte[] actual = new byte[mSrc.length];
+                ImageFormatUtils.NV21ToNV12(mSrc, actual, WIDTH, HEIGHT, degrees, mirror);
+                assertArrayEquals("degrees = " + degrees + ", mirror = " + mirror,
+                        expected, actual);
+            }
+        }
+    }
+
+    /**
+     * 逐像素的参考实现：顺时针旋转后按旋转后的画面水平镜像
+     */
+    private static void transform(byte[] src, int offset, int width, int height, int pixelBytes,
+                                  boolean swapBytes, byte[] dst, int dstOffset, int degrees,
+                                  boolean mirror) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int dx;
+                int dy;
+                int dstWidth;
+                switch (degrees) {
+                    case 90:
+                        dx = height - 1 - y;
+                        dy = x;
+                        dstWidth = height;
+                        break;
+                    case 180:
+                        dx = width - 1 - x;
+                        dy = height - 1 - y;
+                        dstWidth = width;
+                        break;
+                    case 270:
+                        dx = y;
+                        dy = width - 1 - x;
+                        dstWidth = height;
+                        break;
+                    default:
+                        dx = x;
+                        dy = y;
+                        dstWidth = width;
+                        break;
+                }
+                if (mirror) {
+                    dx = dstWidth - 1 - dx;
+                }
+                int s = offset + (y * width + x) * pixelBytes;
+                int d = dstOffset + (dy * dstWidth + dx) * pixelBytes;
+                for (int i = 0; i < pixelBytes; i++) {
+                    dst[d + i] = src[s + (swapBytes ? pixelBytes - 1 - i : i)];
+                }
+            }
+        }
+    }
+}
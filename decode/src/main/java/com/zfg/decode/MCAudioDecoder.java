@@ -1,7 +1,17 @@
 package com.zfg.decode;
 
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import com.zfg.common.utils.LogUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
- * 音频硬解码
+ * 音频硬解码，解码出的PCM通过回调输出
  *
  * @author zhongfanggui
  * @version 1.0.0
@@ -9,8 +19,154 @@ package com.zfg.decode;
  */
 public class MCAudioDecoder extends Thread {
 
+    // 超时时间，单位：微秒
+    private static final int TIMEOUT = 10000;
+
+    private final String mPath;
+    private final Listener mListener;
+    private MediaExtractor mExtractor;
+    private MediaFormat mInputFormat;
+    private MediaCodec mMediaCodec;
+    private MediaCodec.BufferInfo mBufferInfo;
+
+    private volatile boolean isExit = false;
+
+    /**
+     * @param path     音视频文件路径
+     * @param listener 解码回调，在解码线程执行
+     */
+    public MCAudioDecoder(String path, Listener listener) {
+        super("MCAudioDecoder");
+        mPath = path;
+        mListener = listener;
+    }
+
+    /**
+     * 打开文件并选择第一个音频轨，start前调用
+     *
+     * @return 音频轨格式，没有音频轨时为null
+     */
+    public MediaFormat prepare() throws IOException {
+        mExtractor = new MediaExtractor();
+        mExtractor.setDataSource(mPath);
+        int trackIndex = MCVideoDecoder.selectTrack(mExtractor, "audio/");
+        if (trackIndex < 0) {
+            LogUtils.e("MCAudioDecoder no audio track: " + mPath);
+            return null;
+        }
+        mInputFormat = mExtractor.getTrackFormat(trackIndex);
+        return mInputFormat;
+    }
+
+    public void stopDecode() {
+        isExit = true;
+    }
+
     @Override
     public void run() {
+        LogUtils.i("Start MCAudioDecoder thread...");
+        try {
+            if (mInputFormat == null && prepare() == null) {
+                throw new IOException("no audio track");
+            }
+            startMediaCodec();
+            decodeLoop();
+            if (mListener != null && !isExit) {
+                mListener.onEndOfStream();
+            }
+        } catch (IOException | IllegalStateException e) {
+            LogUtils.e("MCAudioDecoder exception = " + e);
+            if (mListener != null) {
+                mListener.onError(e);
+            }
+        } finally {
+            stopMediaCodec();
+        }
+        LogUtils.i("Stop MCAudioDecoder thread...");
+    }
+
+    private void startMediaCodec() throws IOException {
+        MediaCodecInfo codecInfo = MCVideoDecoder.findDecoder(mInputFormat);
+        String mime = mInputFormat.getString(MediaFormat.KEY_MIME);
+        mMediaCodec = codecInfo != null ? MediaCodec.createByCodecName(codecInfo.getName())
+                : MediaCodec.createDecoderByType(mime);
+        mMediaCodec.configure(mInputFormat, null, null, 0);
+        mMediaCodec.start();
+        mBufferInfo = new MediaCodec.BufferInfo();
+        LogUtils.i("Start audio decoder " + mMediaCodec.getName());
+    }
+
+    private void stopMediaCodec() {
+        if (mMediaCodec != null) {
+            try {
+                mMediaCodec.stop();
+            } catch (IllegalStateException e) {
+                LogUtils.e("stop audio decoder exception = " + e);
+            }
+            mMediaCodec.release();
+            mMediaCodec = null;
+        }
+        if (mExtractor != null) {
+            mExtractor.release();
+            mExtractor = null;
+        }
+    }
+
+    private void decodeLoop() {
+        boolean inputDone = false;
+        boolean outputDone = false;
+        while (!isExit && !outputDone) {
+            if (!inputDone) {
+                int inputIndex = mMediaCodec.dequeueInputBuffer(TIMEOUT);
+                if (inputIndex >= 0) {
+                    ByteBuffer inputBuffer = mMediaCodec.getInputBuffer(inputIndex);
+                    int size = mExtractor.readSampleData(inputBuffer, 0);
+                    if (size < 0) {
+                        mMediaCodec.queueInputBuffer(inputIndex, 0, 0, 0,
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        mMediaCodec.queueInputBuffer(inputIndex, 0, size,
+                                mExtractor.getSampleTime(), 0);
+                        mExtractor.advance();
+                    }
+                }
+            }
+
+            int outputIndex = mMediaCodec.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
+            if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                if (mListener != null) {
+                    mListener.onFormatChanged(mMediaCodec.getOutputFormat());
+                }
+            } else if (outputIndex >= 0) {
+                if (mBufferInfo.size > 0 && mListener != null) {
+                    ByteBuffer outputBuffer = mMediaCodec.getOutputBuffer(outputIndex);
+                    outputBuffer.position(mBufferInfo.offset);
+                    outputBuffer.limit(mBufferInfo.offset + mBufferInfo.size);
+                    mListener.onPcm(outputBuffer, mBufferInfo.presentationTimeUs);
+                }
+                outputDone = (mBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                mMediaCodec.releaseOutputBuffer(outputIndex, false);
+            }
+        }
+    }
+
+    /**
+     * 解码回调，在解码线程执行
+     */
+    public interface Listener {
+        /**
+         * 输出PCM的采样率、声道数
+         */
+        void onFormatChanged(MediaFormat format);
+
+        /**
+         * 16位交错PCM，pcm在回调返回后失效
+         */
+        void onPcm(ByteBuffer pcm, long presentationTimeUs);
+
+        void onEndOfStream();
 
+        void onError(Exception e);
     }
 }
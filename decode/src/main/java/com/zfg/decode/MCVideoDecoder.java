@@ -1,7 +1,23 @@
 package com.zfg.decode;
 
+import android.media.Image;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.view.Surface;
+
+import com.zfg.common.utils.ImageFormatUtils;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * 视频硬解码
+ * 1）设置了输出Surface时直接渲染到Surface，如编码器的输入Surface，数据不经过Java层
+ * 2）未设置Surface时把每帧转为NV12回调
  *
  * @author zhongfanggui
  * @version 1.0.0
@@ -9,8 +25,245 @@ package com.zfg.decode;
  */
 public class MCVideoDecoder extends Thread {
 
+    // 超时时间，单位：微秒
+    private static final int TIMEOUT = 10000;
+
+    private final String mPath;
+    private final Listener mListener;
+    private MediaExtractor mExtractor;
+    private MediaFormat mInputFormat;
+    private int mTrackIndex = -1;
+    private Surface mOutputSurface;
+    private MediaCodec mMediaCodec;
+    private MediaCodec.BufferInfo mBufferInfo;
+
+    private volatile boolean isExit = false;
+    private volatile long mDecodedFrames;
+    private byte[] mFrame;
+
+    /**
+     * @param path     视频文件路径
+     * @param listener 解码回调，在解码线程执行
+     */
+    public MCVideoDecoder(String path, Listener listener) {
+        super("MCVideoDecoder");
+        mPath = path;
+        mListener = listener;
+    }
+
+    /**
+     * 打开文件并选择第一个视频轨，start前调用
+     *
+     * @return 视频轨格式，没有视频轨时为null
+     */
+    public MediaFormat prepare() throws IOException {
+        mExtractor = new MediaExtractor();
+        mExtractor.setDataSource(mPath);
+        mTrackIndex = selectTrack(mExtractor, "video/");
+        if (mTrackIndex < 0) {
+            LogUtils.e("MCVideoDecoder no video track: " + mPath);
+            return null;
+        }
+        mInputFormat = mExtractor.getTrackFormat(mTrackIndex);
+        return mInputFormat;
+    }
+
+    /**
+     * 选择第一个mime以prefix开头的轨道
+     *
+     * @return 轨道序号，没有时为-1
+     */
+    static int selectTrack(MediaExtractor extractor, String prefix) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(prefix)) {
+                extractor.selectTrack(i);
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 查找支持该格式的解码器
+     */
+    static MediaCodecInfo findDecoder(MediaFormat format) {
+        MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        String name = codecList.findDecoderForFormat(format);
+        if (name == null) {
+            return null;
+        }
+        for (MediaCodecInfo info : codecList.getCodecInfos()) {
+            if (name.equals(info.getName())) {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 设置输出Surface，start前调用
+     */
+    public void setOutputSurface(Surface surface) {
+        mOutputSurface = surface;
+    }
+
+    public void stopDecode() {
+        isExit = true;
+    }
+
+    /**
+     * @return 已解码的帧数
+     */
+    public long getDecodedFrames() {
+        return mDecodedFrames;
+    }
+
     @Override
     public void run() {
+        LogUtils.i("Start MCVideoDecoder thread...");
+        try {
+            if (mInputFormat == null && prepare() == null) {
+                throw new IOException("no video track");
+            }
+            startMediaCodec();
+            decodeLoop();
+            if (mListener != null && !isExit) {
+                mListener.onEndOfStream();
+            }
+        } catch (IOException | IllegalStateException e) {
+            LogUtils.e("MCVideoDecoder exception = " + e);
+            if (mListener != null) {
+                mListener.onError(e);
+            }
+        } finally {
+            stopMediaCodec();
+        }
+        LogUtils.i("Stop MCVideoDecoder thread... frames = " + mDecodedFrames);
+    }
+
+    private void startMediaCodec() throws IOException {
+        // 某些格式（如帧率、码率）findDecoderForFormat不接受，只用mime和宽高查找
+        MediaFormat format = new MediaFormat(mInputFormat);
+        format.setString(MediaFormat.KEY_FRAME_RATE, null);
+        MediaCodecInfo codecInfo = findDecoder(format);
+        String mime = mInputFormat.getString(MediaFormat.KEY_MIME);
+        mMediaCodec = codecInfo != null ? MediaCodec.createByCodecName(codecInfo.getName())
+                : MediaCodec.createDecoderByType(mime);
+        if (mOutputSurface == null) {
+            // 输出为YUV_420_888，通过getOutputImage读取
+            mInputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+        }
+        mMediaCodec.configure(mInputFormat, mOutputSurface, null, 0);
+        mMediaCodec.start();
+        mBufferInfo = new MediaCodec.BufferInfo();
+        LogUtils.i("Start video decoder " + mMediaCodec.getName() + ", surface = "
+                + (mOutputSurface != null));
+    }
+
+    private void stopMediaCodec() {
+        if (mMediaCodec != null) {
+            try {
+                mMediaCodec.stop();
+            } catch (IllegalStateException e) {
+                LogUtils.e("stop video decoder exception = " + e);
+            }
+            mMediaCodec.release();
+            mMediaCodec = null;
+        }
+        if (mExtractor != null) {
+            mExtractor.release();
+            mExtractor = null;
+        }
+    }
+
+    private void decodeLoop() {
+        boolean inputDone = false;
+        boolean outputDone = false;
+        while (!isExit && !outputDone) {
+            if (!inputDone) {
+                inputDone = feedInput();
+            }
+            outputDone = drainOutput();
+        }
+    }
+
+    /**
+     * @return 是否已送入结束标志
+     */
+    private boolean feedInput() {
+        int inputIndex = mMediaCodec.dequeueInputBuffer(TIMEOUT);
+        if (inputIndex < 0) {
+            return false;
+        }
+        ByteBuffer inputBuffer = mMediaCodec.getInputBuffer(inputIndex);
+        int size = mExtractor.readSampleData(inputBuffer, 0);
+        if (size < 0) {
+            mMediaCodec.queueInputBuffer(inputIndex, 0, 0, 0,
+                    MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            return true;
+        }
+        mMediaCodec.queueInputBuffer(inputIndex, 0, size, mExtractor.getSampleTime(), 0);
+        mExtractor.advance();
+        return false;
+    }
+
+    /**
+     * @return 是否已输出结束标志
+     */
+    private boolean drainOutput() {
+        int outputIndex = mMediaCodec.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
+        if (outputIndex < 0) {
+            return false;
+        }
+        boolean endOfStream = (mBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+        boolean hasFrame = mBufferInfo.size > 0;
+        if (mOutputSurface != null) {
+            // 以presentationTimeUs为时间戳渲染到Surface，编码器沿用此时间戳
+            mMediaCodec.releaseOutputBuffer(outputIndex, hasFrame);
+        } else {
+            if (hasFrame && mListener != null) {
+                deliverFrame(outputIndex, mBufferInfo.presentationTimeUs);
+            }
+            mMediaCodec.releaseOutputBuffer(outputIndex, false);
+        }
+        if (hasFrame) {
+            mDecodedFrames++;
+        }
+        return endOfStream;
+    }
+
+    private void deliverFrame(int outputIndex, long presentationTimeUs) {
+        Image image = mMediaCodec.getOutputImage(outputIndex);
+        if (image == null) {
+            return;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int frameSize = width * height * 3 / 2;
+        if (mFrame == null || mFrame.length != frameSize) {
+            mFrame = new byte[frameSize];
+        }
+        Image.Plane[] planes = image.getPlanes();
+        ImageFormatUtils.yuv420888ToNV12(planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(), planes[1].getRowStride(),
+                planes[1].getPixelStride(), width, height, mFrame);
+        image.close();
+        mListener.onFrame(mFrame, width, height, presentationTimeUs);
+    }
+
+    /**
+     * 解码回调，在解码线程执行
+     */
+    public interface Listener {
+        /**
+         * 未设置输出Surface时回调每帧，nv12在回调返回后复用
+         */
+        void onFrame(byte[] nv12, int width, int height, long presentationTimeUs);
+
+        void onEndOfStream();
 
+        void onError(Exception e);
     }
 }
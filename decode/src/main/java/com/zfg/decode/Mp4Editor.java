@@ -0,0 +1,322 @@
+package com.zfg.decode;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MP4无损剪辑，不重新编码，只复制需要的采样：
+ * 1）trim：从起始时间之前最近的关键帧开始复制到结束时间，通过采样表定位，耗时与输出大小成正比
+ * 2）concat：拼接编码参数相同的多个文件，时间戳依次后移
+ * 开始写入后失败时删除不完整的输出文件
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public final class Mp4Editor {
+
+    // 格式中没有KEY_MAX_INPUT_SIZE时的采样缓存大小
+    private static final int DEFAULT_SAMPLE_SIZE = 1024 * 1024;
+
+    private Mp4Editor() {
+    }
+
+    /**
+     * 截取[startUs, endUs)，实际起点为startUs之前最近的关键帧，输出时间戳从0开始，
+     * 关键帧之前的音频丢弃
+     *
+     * @return 实际起点时间，单位：微秒
+     */
+    public static long trim(String inputPath, String outputPath, long startUs, long endUs)
+            throws IOException {
+        List<TrackSource> sources = openTracks(inputPath);
+        MediaMuxer muxer = null;
+        boolean isDone = false;
+        try {
+            muxer = createMuxer(outputPath, sources);
+            // 以视频关键帧为实际起点，音频都是同步帧，直接跳到该时间
+            long keyFrameUs = startUs;
+            TrackSource video = findVideo(sources);
+            if (video != null) {
+                video.extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                keyFrameUs = Math.max(0, video.extractor.getSampleTime());
+            }
+            for (TrackSource source : sources) {
+                if (source != video) {
+                    source.extractor.seekTo(keyFrameUs, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+                }
+            }
+            muxer.start();
+            long samples = copySamples(muxer, sources, endUs, -keyFrameUs);
+            muxer.stop();
+            LogUtils.i("Mp4Editor trim " + inputPath + " [" + keyFrameUs + ", " + endUs
+                    + ") -> " + outputPath + ", samples = " + samples);
+            isDone = true;
+            return keyFrameUs;
+        } finally {
+            release(muxer, sources);
+            // 输出文件由混合器创建，之前失败时不动已有的文件
+            if (!isDone && muxer != null) {
+                deleteOutput(outputPath);
+            }
+        }
+    }
+
+    /**
+     * 按顺序拼接，所有文件的轨道类型和编码参数（mime、宽高、采样率、csd）必须相同，
+     * 开始写入前检查，不相同时不生成输出文件
+     */
+    public static void concat(List<String> inputPaths, String outputPath) throws IOException {
+        if (inputPaths.isEmpty()) {
+            throw new IllegalArgumentException("no input");
+        }
+        List<TrackSource> first = openTracks(inputPaths.get(0));
+        MediaMuxer muxer = null;
+        List<TrackSource> current = first;
+        boolean isDone = false;
+        try {
+            for (int i = 1; i < inputPaths.size(); i++) {
+                current = openTracks(inputPaths.get(i));
+                checkCompatible(first, current, inputPaths.get(i));
+                release(null, current);
+                current = first;
+            }
+            muxer = createMuxer(outputPath, first);
+            muxer.start();
+            long offsetUs = 0;
+            long samples = 0;
+            for (int i = 0; i < inputPaths.size(); i++) {
+                if (i > 0) {
+                    current = openTracks(inputPaths.get(i));
+                    for (int t = 0; t < current.size(); t++) {
+                        current.get(t).muxerTrack = first.get(t).muxerTrack;
+                    }
+                }
+                samples += copySamples(muxer, current, Long.MAX_VALUE, offsetUs);
+                offsetUs = endOf(current);
+                if (current != first) {
+                    release(null, current);
+                    current = first;
+                }
+            }
+            muxer.stop();
+            LogUtils.i("Mp4Editor concat " + inputPaths.size() + " files -> " + outputPath
+                    + ", samples = " + samples + ", duration = " + offsetUs);
+            isDone = true;
+        } finally {
+            if (current != first) {
+                release(null, current);
+            }
+            release(muxer, first);
+            // 输出文件由混合器创建，之前失败时不动已有的文件
+            if (!isDone && muxer != null) {
+                deleteOutput(outputPath);
+            }
+        }
+    }
+
+    /**
+     * 每个轨道一个MediaExtractor，便于各自定位和按时间交错写入
+     */
+    private static List<TrackSource> openTracks(String path) throws IOException {
+        MediaExtractor probe = new MediaExtractor();
+        List<TrackSource> sources = new ArrayList<>();
+        try {
+            probe.setDataSource(path);
+            for (int i = 0; i < probe.getTrackCount(); i++) {
+                MediaFormat format = probe.getTrackFormat(i);
+                String mime = format.getString(MediaFormat.KEY_MIME);
+                if (mime == null || !(mime.startsWith("video/") || mime.startsWith("audio/"))) {
+                    continue;
+                }
+                MediaExtractor extractor = new MediaExtractor();
+                extractor.setDataSource(path);
+                extractor.selectTrack(i);
+                sources.add(new TrackSource(extractor, format));
+            }
+        } catch (IOException e) {
+            release(null, sources);
+            throw e;
+        } finally {
+            probe.release();
+        }
+        if (sources.isEmpty()) {
+            throw new IOException("no audio/video track: " + path);
+        }
+        return sources;
+    }
+
+    private static MediaMuxer createMuxer(String outputPath, List<TrackSource> sources)
+            throws IOException {
+        MediaMuxer muxer = new MediaMuxer(outputPath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        TrackSource video = findVideo(sources);
+        if (video != null && video.format.containsKey(MediaFormat.KEY_ROTATION)) {
+            muxer.setOrientationHint(video.format.getInteger(MediaFormat.KEY_ROTATION));
+        }
+        for (TrackSource source : sources) {
+            source.muxerTrack = muxer.addTrack(source.format);
+        }
+        return muxer;
+    }
+
+    /**
+     * 按时间戳交错复制各轨道的采样，直到所有轨道到达endUs
+     *
+     * @param offsetUs 写入时加到时间戳上的偏移，偏移后为负的采样丢弃
+     * @return 复制的采样数
+     */
+    private static long copySamples(MediaMuxer muxer, List<TrackSource> sources, long endUs,
+                                    long offsetUs) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(maxSampleSize(sources));
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        long samples = 0;
+        while (true) {
+            // 取当前时间戳最小的轨道
+            TrackSource next = null;
+            long nextUs = Long.MAX_VALUE;
+            for (TrackSource source : sources) {
+                long sampleUs = source.extractor.getSampleTime();
+                if (sampleUs >= 0 && sampleUs < endUs && sampleUs < nextUs) {
+                    next = source;
+                    nextUs = sampleUs;
+                }
+            }
+            if (next == null) {
+                return samples;
+            }
+            long ptsUs = nextUs + offsetUs;
+            // 起点关键帧之前的音频，不压到0，否则多个采样时间戳相同
+            if (ptsUs < 0) {
+                next.extractor.advance();
+                continue;
+            }
+            int size = next.extractor.readSampleData(buffer, 0);
+            if (size < 0) {
+                next.extractor.advance();
+                continue;
+            }
+            int flags = (next.extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                    ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+            info.set(0, size, ptsUs, flags);
+            muxer.writeSampleData(next.muxerTrack, buffer, info);
+            if (next.lastUs >= 0 && ptsUs > next.lastUs) {
+                next.lastDeltaUs = ptsUs - next.lastUs;
+            }
+            next.lastUs = ptsUs;
+            next.extractor.advance();
+            samples++;
+        }
+    }
+
+    /**
+     * @return 输出的结束时间，即各轨道最后一个采样加一个采样时长的最大值
+     */
+    private static long endOf(List<TrackSource> sources) {
+        long end = 0;
+        for (TrackSource source : sources) {
+            end = Math.max(end, source.lastUs + source.lastDeltaUs);
+        }
+        return end;
+    }
+
+    private static int maxSampleSize(List<TrackSource> sources) {
+        int max = 0;
+        for (TrackSource source : sources) {
+            if (source.format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                max = Math.max(max, source.format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+            }
+        }
+        return max > 0 ? max : DEFAULT_SAMPLE_SIZE;
+    }
+
+    private static void checkCompatible(List<TrackSource> expected, List<TrackSource> actual,
+                                        String path) throws IOException {
+        if (expected.size() != actual.size()) {
+            throw new IOException("track count mismatch: " + path);
+        }
+        for (int i = 0; i < expected.size(); i++) {
+            MediaFormat a = expected.get(i).format;
+            MediaFormat b = actual.get(i).format;
+            if (!sameValue(a, b, MediaFormat.KEY_MIME)
+                    || !sameValue(a, b, MediaFormat.KEY_WIDTH)
+                    || !sameValue(a, b, MediaFormat.KEY_HEIGHT)
+                    || !sameValue(a, b, MediaFormat.KEY_SAMPLE_RATE)
+                    || !sameValue(a, b, MediaFormat.KEY_CHANNEL_COUNT)
+                    || !sameBuffer(a, b, "csd-0")
+                    || !sameBuffer(a, b, "csd-1")) {
+                throw new IOException("codec config mismatch: " + path + ", track " + i);
+            }
+        }
+    }
+
+    private static boolean sameValue(MediaFormat a, MediaFormat b, String key) {
+        if (a.containsKey(key) != b.containsKey(key)) {
+            return false;
+        }
+        if (!a.containsKey(key)) {
+            return true;
+        }
+        if (MediaFormat.KEY_MIME.equals(key)) {
+            return a.getString(key).equals(b.getString(key));
+        }
+        return a.getInteger(key) == b.getInteger(key);
+    }
+
+    private static boolean sameBuffer(MediaFormat a, MediaFormat b, String key) {
+        ByteBuffer x = a.getByteBuffer(key);
+        ByteBuffer y = b.getByteBuffer(key);
+        return x == null ? y == null : x.equals(y);
+    }
+
+    private static TrackSource findVideo(List<TrackSource> sources) {
+        for (TrackSource source : sources) {
+            if (source.format.getString(MediaFormat.KEY_MIME).startsWith("video/")) {
+                return source;
+            }
+        }
+        return null;
+    }
+
+    private static void deleteOutput(String outputPath) {
+        File output = new File(outputPath);
+        if (output.exists() && !output.delete()) {
+            LogUtils.e("delete incomplete output failed: " + outputPath);
+        }
+    }
+
+    private static void release(MediaMuxer muxer, List<TrackSource> sources) {
+        if (muxer != null) {
+            try {
+                muxer.release();
+            } catch (IllegalStateException e) {
+                LogUtils.e("release muxer exception = " + e);
+            }
+        }
+        for (TrackSource source : sources) {
+            source.extractor.release();
+        }
+    }
+
+    private static class TrackSource {
+        final MediaExtractor extractor;
+        final MediaFormat format;
+        int muxerTrack = -1;
+        long lastUs = -1;
+        long lastDeltaUs;
+
+        TrackSource(MediaExtractor extractor, MediaFormat format) {
+            this.extractor = extractor;
+            this.format = format;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.zfg.decode;
+
+import com.zfg.common.quality.FrameQuality;
+import com.zfg.common.quality.QualityMetrics;
+import com.zfg.common.quality.SequenceQuality;
+import com.zfg.common.replay.YuvFileReader;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 解码编码后的文件，与源YUV文件逐帧对齐后计算PSNR和SSIM。
+ * 按时间戳对齐：解码帧相对第一帧的时间乘以帧率四舍五入后即源文件中的帧序号，
+ * 编码时丢掉的帧只是不参与比较，不会让后面的帧错位。
+ * 需要待测文件的时间戳按源帧序号生成，ReplaySession回放生成的文件满足
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class QualityEvaluator {
+
+    private final QualityMetrics mMetrics;
+
+    /**
+     * @param metrics 可在多个评估之间共享
+     */
+    public QualityEvaluator(QualityMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 阻塞直到解码完成，在后台线程调用
+     *
+     * @param encodedPath 编码后的mp4
+     * @param sourceFile  编码时使用的源YUV文件
+     * @param yuvFormat   YuvFileReader.FORMAT_NV12或FORMAT_I420
+     * @param frameRate   编码时的帧率，用于把时间戳换算为源帧序号
+     * @throws IOException 文件不可读、解码失败，或解码尺寸与源不同
+     */
+    public SequenceQuality evaluate(String encodedPath, File sourceFile, int width, int height,
+                                    int yuvFormat, int frameRate)
+            throws IOException, InterruptedException {
+        final YuvFileReader reader = new YuvFileReader(sourceFile, width, height, yuvFormat);
+        final SequenceQuality result = new SequenceQuality();
+        final byte[] source = new byte[reader.getFrameSize()];
+        final Exception[] error = new Exception[1];
+        MCVideoDecoder decoder = new MCVideoDecoder(encodedPath, new MCVideoDecoder.Listener() {
+            private long mFirstPtsUs = -1;
+            private long mLastIndex = -1;
+
+            @Override
+            public void onFrame(byte[] nv12, int frameWidth, int frameHeight,
+                                long presentationTimeUs) {
+                if (error[0] != null) {
+                    return;
+                }
+                if (mFirstPtsUs < 0) {
+                    mFirstPtsUs = presentationTimeUs;
+                }
+                long index = sourceIndex(presentationTimeUs - mFirstPtsUs, frameRate);
+                // 超出源文件或与上一帧对应同一源帧（时间戳抖动超过半帧）时不比较
+                if (index >= reader.getFrameCount() || index <= mLastIndex) {
+                    return;
+                }
+                if (frameWidth != width || frameHeight != height) {
+                    error[0] = new IOException("decoded size " + frameWidth + "x" + frameHeight
+                            + " != source " + width + "x" + height);
+                    return;
+                }
+                mLastIndex = index;
+                try {
+                    reader.readFrame((int) index, source);
+                } catch (IOException e) {
+                    error[0] = e;
+                    return;
+                }
+                FrameQuality quality = mMetrics.measure(source, nv12, width, height);
+                result.add(quality);
+            }
+
+            @Override
+            public void onEndOfStream() {
+
+            }
+
+            @Override
+            public void onError(Exception e) {
+                error[0] = e;
+            }
+        });
+        try {
+            decoder.start();
+            decoder.join();
+        } finally {
+            reader.close();
+        }
+        if (error[0] != null) {
+            throw error[0] instanceof IOException ? (IOException) error[0]
+                    : new IOException(error[0]);
+        }
+        if (result.getFrames() < reader.getFrameCount()) {
+            LogUtils.w("QualityEvaluator compared " + result.getFrames() + " of "
+                    + reader.getFrameCount() + " source frames, dropped frames not compared");
+        }
+        LogUtils.i("QualityEvaluator " + encodedPath + ": " + result);
+        return result;
+    }
+
+    /**
+     * @param relativePtsUs 相对第一帧的时间戳
+     * @return 对应的源帧序号
+     */
+    static long sourceIndex(long relativePtsUs, int frameRate) {
+        return Math.round(relativePtsUs * (double) frameRate / 1000000.0);
+    }
+}
@@ -0,0 +1,111 @@
+package com.zfg.decode;
+
+import com.zfg.common.quality.QualityMetrics;
+import com.zfg.common.quality.RateQualityCurve;
+import com.zfg.common.quality.SequenceQuality;
+import com.zfg.common.utils.LogUtils;
+import com.zfg.encode.RecordingConfig;
+import com.zfg.encode.ReplaySession;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * 码率-质量扫描：用同一个源YUV文件按多个码率编码（ReplaySession非实时模式，不录音），
+ * 逐个解码计算质量，得到该录制配置的码率-质量曲线，再用findLowestBitRate选出满足质量目标的码率。
+ * 代替MuxerThread按固定压缩比估算的默认码率
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class RateQualitySweep implements Callable<RateQualityCurve> {
+
+    private final RecordingConfig mConfig;
+    private final File mSourceFile;
+    private final int mYuvFormat;
+    private final int[] mBitRates;
+    private final boolean isKeepFiles;
+
+    /**
+     * @param config     编码配置，宽高需与源文件相同，码率和录音设置忽略
+     * @param sourceFile 源YUV文件
+     * @param yuvFormat  YuvFileReader.FORMAT_NV12或FORMAT_I420
+     * @param bitRates   要测量的码率，单位bps
+     * @param keepFiles  是否保留各码率的编码文件
+     */
+    public RateQualitySweep(RecordingConfig config, File sourceFile, int yuvFormat,
+                            int[] bitRates, boolean keepFiles) {
+        mConfig = config;
+        mSourceFile = sourceFile;
+        mYuvFormat = yuvFormat;
+        mBitRates = bitRates.clone();
+        isKeepFiles = keepFiles;
+    }
+
+    /**
+     * 阻塞直到所有码率测量完成，在后台线程调用。编码器同一时间只占用一个
+     */
+    @Override
+    public RateQualityCurve call() throws IOException, InterruptedException {
+        String name = mConfig.getMimeType() + " " + mConfig.getWidth() + "x"
+                + mConfig.getHeight() + "@" + mConfig.getFrameRate();
+        RateQualityCurve curve = new RateQualityCurve(name);
+        QualityMetrics metrics = new QualityMetrics();
+        try {
+            QualityEvaluator evaluator = new QualityEvaluator(metrics);
+            for (int bitRate : mBitRates) {
+                String filePath = encode(bitRate);
+                try {
+                    SequenceQuality quality = evaluator.evaluate(filePath, mSourceFile,
+                            mConfig.getWidth(), mConfig.getHeight(), mYuvFormat,
+                            mConfig.getFrameRate());
+                    curve.add(bitRate, quality);
+                    LogUtils.i("RateQualitySweep " + name + " " + bitRate / 1000 + "kbps: "
+                            + quality);
+                } finally {
+                    if (!isKeepFiles) {
+                        new File(filePath).delete();
+                    }
+                }
+            }
+        } finally {
+            metrics.shutdown();
+        }
+        LogUtils.i("RateQualitySweep result\n" + curve);
+        return curve;
+    }
+
+    /**
+     * @return 编码后的文件
+     */
+    private String encode(int bitRate) throws IOException, InterruptedException {
+        RecordingConfig config = new RecordingConfig.Builder()
+                .setName("rq" + bitRate / 1000)
+                .setMimeType(mConfig.getMimeType())
+                .setSize(mConfig.getWidth(), mConfig.getHeight())
+                .setFrameRate(mConfig.getFrameRate())
+                .setGop(mConfig.getGop())
+                .setBitRate(bitRate)
+                .setAudioEnabled(false)
+                .setOutputDir(mConfig.getOutputDir())
+                .build();
+        final CountDownLatch done = new CountDownLatch(1);
+        final String[] result = new String[1];
+        new ReplaySession(config, mSourceFile, mYuvFormat, null, false).start(
+                new ReplaySession.Listener() {
+                    @Override
+                    public void onFinished(String filePath, String report) {
+                        result[0] = filePath;
+                        done.countDown();
+                    }
+                });
+        done.await();
+        if (result[0] == null) {
+            throw new IOException("encode " + bitRate + "bps failed");
+        }
+        return result[0];
+    }
+}
@@ -0,0 +1,123 @@
+package com.zfg.decode;
+
+import android.media.MediaFormat;
+
+import com.zfg.common.Constants;
+
+import java.io.File;
+
+/**
+ * 转码参数，通过Builder创建
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class TranscodeConfig {
+
+    private final String inputPath;
+    private final String outputPath;
+    private final String mimeType;
+    private final int videoBitRate;
+    private final int gop;
+    private final int audioBitRate;
+
+    private TranscodeConfig(Builder builder) {
+        inputPath = builder.inputPath;
+        if (builder.outputPath != null) {
+            outputPath = builder.outputPath;
+        } else {
+            String name = new File(builder.inputPath).getName().replaceAll("\\.mp4$", "");
+            outputPath = new File(Constants.PATH, name + "_transcode.mp4").getAbsolutePath();
+        }
+        mimeType = builder.mimeType;
+        videoBitRate = builder.videoBitRate;
+        gop = builder.gop;
+        audioBitRate = builder.audioBitRate;
+    }
+
+    public String getInputPath() {
+        return inputPath;
+    }
+
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * @return 视频码率，小于等于0时按分辨率和帧率计算
+     */
+    public int getVideoBitRate() {
+        return videoBitRate;
+    }
+
+    public int getGop() {
+        return gop;
+    }
+
+    /**
+     * @return 音频码率，小于等于0时音频直接复制不重新编码
+     */
+    public int getAudioBitRate() {
+        return audioBitRate;
+    }
+
+    @Override
+    public String toString() {
+        return "TranscodeConfig{" + inputPath + " -> " + outputPath + ", videoBitRate="
+                + videoBitRate + ", audioBitRate=" + audioBitRate + "}";
+    }
+
+    public static class Builder {
+        private String inputPath;
+        private String outputPath;
+        private String mimeType = MediaFormat.MIMETYPE_VIDEO_AVC;
+        private int videoBitRate;
+        private int gop = 2;
+        private int audioBitRate;
+
+        public Builder setInputPath(String inputPath) {
+            this.inputPath = inputPath;
+            return this;
+        }
+
+        /**
+         * 不设置时输出到Constants.PATH下的"源文件名_transcode.mp4"
+         */
+        public Builder setOutputPath(String outputPath) {
+            this.outputPath = outputPath;
+            return this;
+        }
+
+        public Builder setMimeType(String mimeType) {
+            this.mimeType = mimeType;
+            return this;
+        }
+
+        public Builder setVideoBitRate(int videoBitRate) {
+            this.videoBitRate = videoBitRate;
+            return this;
+        }
+
+        public Builder setGop(int gop) {
+            this.gop = gop;
+            return this;
+        }
+
+        public Builder setAudioBitRate(int audioBitRate) {
+            this.audioBitRate = audioBitRate;
+            return this;
+        }
+
+        public TranscodeConfig build() {
+            if (inputPath == null) {
+                throw new IllegalArgumentException("inputPath is null");
+            }
+            return new TranscodeConfig(this);
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.zfg.decode;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.view.Surface;
+
+import com.zfg.common.utils.LogUtils;
+import com.zfg.encode.EncoderPool;
+import com.zfg.encode.MCAudioEncoder;
+import com.zfg.encode.MCVideoEncoder;
+import com.zfg.encode.MuxerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+
+/**
+ * 单个文件的转码任务：MCVideoDecoder、MCAudioDecoder解码，重新编码后写入MediaMuxer。
+ * 视频优先由解码器直接渲染到编码器的输入Surface，编码器不支持Surface输入时改为NV12数据输入。
+ * 音频码率小于等于0时直接复制音频数据。编码输出在任务线程统一写入
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+class TranscodeJob implements Callable<String> {
+
+    // 超时时间，单位：微秒
+    private static final int TIMEOUT = 10000;
+    // 源文件没有帧率时使用的默认值
+    private static final int DEFAULT_FRAME_RATE = 30;
+    // 复制音频时最多领先视频的时长，单位：微秒
+    private static final long AUDIO_LEAD_US = 500000;
+    // 源文件没有KEY_MAX_INPUT_SIZE时复制音频使用的缓存大小
+    private static final int MAX_AUDIO_SAMPLE_SIZE = 256 * 1024;
+    // 进度回调间隔，单位：毫秒
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private final TranscodeConfig mConfig;
+    private final Transcoder.Listener mListener;
+
+    private MCVideoDecoder mVideoDecoder;
+    private MCAudioDecoder mAudioDecoder;
+    private MediaCodec mVideoEncoder;
+    private volatile MediaCodec mAudioEncoder;
+    private Surface mInputSurface;
+    private MediaExtractor mAudioExtractor;
+    private ByteBuffer mAudioCopyBuffer;
+    private MediaMuxer mMuxer;
+
+    // 轨道
+    private int mVideoTrack = -1;
+    private int mAudioTrack = -1;
+    private boolean hasAudio;
+    private boolean isMuxerStarted;
+    private long mLastVideoPtsUs;
+
+    private volatile Exception mError;
+    private volatile boolean isCancelled;
+    private long mEncodedFrames;
+    private long mStartMs;
+    private long mLastProgressMs;
+    private float mFps;
+
+    TranscodeJob(TranscodeConfig config, Transcoder.Listener listener) {
+        mConfig = config;
+        mListener = listener;
+    }
+
+    @Override
+    public String call() throws Exception {
+        LogUtils.i("TranscodeJob start " + mConfig);
+        mStartMs = System.currentTimeMillis();
+        try {
+            prepare();
+            mVideoDecoder.start();
+            if (mAudioDecoder != null) {
+                mAudioDecoder.start();
+            }
+            drainLoop();
+            if (mError != null) {
+                throw mError;
+            }
+            mMuxer.stop();
+            LogUtils.i("TranscodeJob finish " + mConfig.getOutputPath() + ", frames = "
+                    + mEncodedFrames + ", fps = " + mFps);
+            if (mListener != null) {
+                mListener.onFinished(mConfig, mConfig.getOutputPath(), mEncodedFrames, mFps);
+            }
+            return mConfig.getOutputPath();
+        } catch (Exception e) {
+            LogUtils.e("TranscodeJob exception = " + e);
+            if (mListener != null) {
+                mListener.onError(mConfig, e);
+            }
+            throw e;
+        } finally {
+            release();
+        }
+    }
+
+    private void prepare() throws IOException {
+        mVideoDecoder = new MCVideoDecoder(mConfig.getInputPath(), mVideoListener);
+        MediaFormat sourceFormat = mVideoDecoder.prepare();
+        if (sourceFormat == null) {
+            throw new IOException("no video track: " + mConfig.getInputPath());
+        }
+        int width = sourceFormat.getInteger(MediaFormat.KEY_WIDTH);
+        int height = sourceFormat.getInteger(MediaFormat.KEY_HEIGHT);
+        int frameRate = sourceFormat.containsKey(MediaFormat.KEY_FRAME_RATE)
+                ? sourceFormat.getInteger(MediaFormat.KEY_FRAME_RATE) : DEFAULT_FRAME_RATE;
+        int bitRate = mConfig.getVideoBitRate() > 0 ? mConfig.getVideoBitRate()
+                : MuxerThread.computeBitRate(width, height, frameRate);
+
+        File dir = new File(mConfig.getOutputPath()).getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+        mMuxer = new MediaMuxer(mConfig.getOutputPath(),
+                MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        if (sourceFormat.containsKey(MediaFormat.KEY_ROTATION)) {
+            mMuxer.setOrientationHint(sourceFormat.getInteger(MediaFormat.KEY_ROTATION));
+        }
+
+        // 与录制使用相同的编码参数，旋转由文件方向信息处理
+        MediaFormat videoFormat = MCVideoEncoder.createVideoFormat(mConfig.getMimeType(), 0,
+                width, height, frameRate, bitRate, mConfig.getGop());
+        createVideoEncoder(videoFormat);
+        mVideoDecoder.setOutputSurface(mInputSurface);
+
+        prepareAudio();
+    }
+
+    private void createVideoEncoder(MediaFormat videoFormat) throws IOException {
+        MediaCodecInfo codecInfo = EncoderPool.getInstance().findEncoder(mConfig.getMimeType());
+        if (codecInfo == null) {
+            throw new IOException("no encoder for " + mConfig.getMimeType());
+        }
+        // 优先Surface输入，解码器直接渲染，数据不经过Java层
+        mVideoEncoder = MediaCodec.createByCodecName(codecInfo.getName());
+        try {
+            videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            mVideoEncoder.configure(videoFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            mInputSurface = mVideoEncoder.createInputSurface();
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            LogUtils.e("Surface input not supported, use buffer input, e = " + e);
+            mVideoEncoder.release();
+            mVideoEncoder = MediaCodec.createByCodecName(codecInfo.getName());
+            videoFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
+            mVideoEncoder.configure(videoFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            mInputSurface = null;
+        }
+        mVideoEncoder.start();
+        LogUtils.i("TranscodeJob video encoder " + codecInfo.getName() + ", surface = "
+                + (mInputSurface != null));
+    }
+
+    private void prepareAudio() throws IOException {
+        if (mConfig.getAudioBitRate() > 0) {
+            mAudioDecoder = new MCAudioDecoder(mConfig.getInputPath(), mAudioListener);
+            hasAudio = mAudioDecoder.prepare() != null;
+            if (!hasAudio) {
+                mAudioDecoder = null;
+            }
+        } else {
+            // 直接复制音频数据
+            mAudioExtractor = new MediaExtractor();
+            mAudioExtractor.setDataSource(mConfig.getInputPath());
+            int track = MCVideoDecoder.selectTrack(mAudioExtractor, "audio/");
+            hasAudio = track >= 0;
+            if (hasAudio) {
+                MediaFormat format = mAudioExtractor.getTrackFormat(track);
+                mAudioTrack = mMuxer.addTrack(format);
+                int maxSize = format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                        ? format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) : MAX_AUDIO_SAMPLE_SIZE;
+                mAudioCopyBuffer = ByteBuffer.allocateDirect(maxSize);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        MediaCodec.BufferInfo videoInfo = new MediaCodec.BufferInfo();
+        MediaCodec.BufferInfo audioInfo = new MediaCodec.BufferInfo();
+        boolean videoDone = false;
+        boolean audioDone = !hasAudio;
+        while ((!videoDone || !audioDone) && mError == null && !isCancelled) {
+            // 混合器启动前只取输出格式，不取数据
+            if (!videoDone && (isMuxerStarted || mVideoTrack < 0)) {
+                videoDone = drainEncoder(mVideoEncoder, videoInfo, true);
+            }
+            if (!audioDone) {
+                if (mAudioExtractor != null) {
+                    audioDone = isMuxerStarted && copyAudioSample(audioInfo, videoDone);
+                } else {
+                    MediaCodec audioEncoder = mAudioEncoder;
+                    if (audioEncoder != null && (isMuxerStarted || mAudioTrack < 0)) {
+                        audioDone = drainEncoder(audioEncoder, audioInfo, false);
+                    }
+                }
+            }
+            reportProgress(false);
+            // Future.cancel(true)中断转码线程
+            if (Thread.currentThread().isInterrupted()) {
+                isCancelled = true;
+            }
+        }
+        reportProgress(true);
+        if (isCancelled && mError == null) {
+            mError = new InterruptedException("cancelled");
+        }
+    }
+
+    /**
+     * @return 是否已输出结束标志
+     */
+    private boolean drainEncoder(MediaCodec encoder, MediaCodec.BufferInfo info, boolean video) {
+        int outputIndex = encoder.dequeueOutputBuffer(info, TIMEOUT);
+        if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+            int track = mMuxer.addTrack(encoder.getOutputFormat());
+            if (video) {
+                mVideoTrack = track;
+            } else {
+                mAudioTrack = track;
+            }
+            startMuxerIfReady();
+            return false;
+        }
+        if (outputIndex < 0) {
+            return false;
+        }
+        if ((info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+            // 编码配置已在输出格式中
+            info.size = 0;
+        }
+        if (info.size > 0) {
+            ByteBuffer outputBuffer = encoder.getOutputBuffer(outputIndex);
+            outputBuffer.position(info.offset);
+            outputBuffer.limit(info.offset + info.size);
+            mMuxer.writeSampleData(video ? mVideoTrack : mAudioTrack, outputBuffer, info);
+            if (video) {
+                mEncodedFrames++;
+                mLastVideoPtsUs = info.presentationTimeUs;
+            }
+        }
+        encoder.releaseOutputBuffer(outputIndex, false);
+        return (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+    }
+
+    /**
+     * 复制一个音频采样，领先视频太多时暂停，避免混合器缓存过多
+     *
+     * @return 是否已复制完
+     */
+    private boolean copyAudioSample(MediaCodec.BufferInfo info, boolean videoDone) {
+        long sampleTime = mAudioExtractor.getSampleTime();
+        if (!videoDone && sampleTime > mLastVideoPtsUs + AUDIO_LEAD_US) {
+            return false;
+        }
+        int size = mAudioExtractor.readSampleData(mAudioCopyBuffer, 0);
+        if (size < 0) {
+            return true;
+        }
+        int flags = (mAudioExtractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0
+                ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0;
+        info.set(0, size, sampleTime, flags);
+        mMuxer.writeSampleData(mAudioTrack, mAudioCopyBuffer, info);
+        return !mAudioExtractor.advance();
+    }
+
+    private void startMuxerIfReady() {
+        if (!isMuxerStarted && mVideoTrack >= 0 && (!hasAudio || mAudioTrack >= 0)) {
+            mMuxer.start();
+            isMuxerStarted = true;
+            LogUtils.i("TranscodeJob muxer start");
+        }
+    }
+
+    private void reportProgress(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - mLastProgressMs < PROGRESS_INTERVAL_MS) {
+            return;
+        }
+        mLastProgressMs = now;
+        long elapsed = Math.max(1, now - mStartMs);
+        mFps = mEncodedFrames * 1000f / elapsed;
+        if (mListener != null && !force) {
+            mListener.onProgress(mConfig, mEncodedFrames, mFps);
+        }
+    }
+
+    private void release() {
+        if (mVideoDecoder != null) {
+            mVideoDecoder.stopDecode();
+            joinQuietly(mVideoDecoder);
+        }
+        if (mAudioDecoder != null) {
+            mAudioDecoder.stopDecode();
+            joinQuietly(mAudioDecoder);
+        }
+        releaseCodec(mVideoEncoder);
+        releaseCodec(mAudioEncoder);
+        if (mInputSurface != null) {
+            mInputSurface.release();
+        }
+        if (mAudioExtractor != null) {
+            mAudioExtractor.release();
+        }
+        if (mMuxer != null) {
+            try {
+                mMuxer.release();
+            } catch (IllegalStateException e) {
+                LogUtils.e("release muxer exception = " + e);
+            }
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        if (!thread.isAlive()) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            LogUtils.e("join interruptedException");
+        }
+    }
+
+    private static void releaseCodec(MediaCodec codec) {
+        if (codec == null) {
+            return;
+        }
+        try {
+            codec.stop();
+        } catch (IllegalStateException e) {
+            LogUtils.e("stop codec exception = " + e);
+        }
+        codec.release();
+    }
+
+    /**
+     * 视频解码回调，在MCVideoDecoder线程执行，只有编码器为数据输入时才有onFrame
+     */
+    private final MCVideoDecoder.Listener mVideoListener = new MCVideoDecoder.Listener() {
+        @Override
+        public void onFrame(byte[] nv12, int width, int height, long presentationTimeUs) {
+            queueInput(mVideoEncoder, nv12, 0, nv12.length, presentationTimeUs);
+        }
+
+        @Override
+        public void onEndOfStream() {
+            if (mInputSurface != null) {
+                mVideoEncoder.signalEndOfInputStream();
+            } else {
+                queueEndOfStream(mVideoEncoder);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            mError = e;
+        }
+    };
+
+    /**
+     * 音频解码回调，在MCAudioDecoder线程执行，收到PCM格式后按源文件的采样率和声道数创建编码器
+     */
+    private final MCAudioDecoder.Listener mAudioListener = new MCAudioDecoder.Listener() {
+        private byte[] mPcm;
+
+        @Override
+        public void onFormatChanged(MediaFormat format) {
+            if (mAudioEncoder != null) {
+                return;
+            }
+            try {
+                MediaCodecInfo codecInfo = EncoderPool.getInstance()
+                        .findEncoder(MediaFormat.MIMETYPE_AUDIO_AAC);
+                if (codecInfo == null) {
+                    throw new IOException("no aac encoder");
+                }
+                MediaCodec encoder = MediaCodec.createByCodecName(codecInfo.getName());
+                encoder.configure(MCAudioEncoder.createAudioFormat(
+                        format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                        format.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                        mConfig.getAudioBitRate()), null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+                encoder.start();
+                mAudioEncoder = encoder;
+            } catch (IOException | IllegalStateException e) {
+                mError = e;
+            }
+        }
+
+        @Override
+        public void onPcm(ByteBuffer pcm, long presentationTimeUs) {
+            MediaCodec encoder = mAudioEncoder;
+            if (encoder == null) {
+                return;
+            }
+            int size = pcm.remaining();
+            if (mPcm == null || mPcm.length < size) {
+                mPcm = new byte[size];
+            }
+            pcm.get(mPcm, 0, size);
+            queueInput(encoder, mPcm, 0, size, presentationTimeUs);
+        }
+
+        @Override
+        public void onEndOfStream() {
+            MediaCodec encoder = mAudioEncoder;
+            if (encoder != null) {
+                queueEndOfStream(encoder);
+            } else {
+                // 没有解码出数据
+                mError = new IOException("audio decoder produced no output");
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            mError = e;
+        }
+    };
+
+    /**
+     * 送入编码器，超过输入缓存大小时分多次送入，等待输入缓存时检查是否已取消
+     */
+    private void queueInput(MediaCodec encoder, byte[] data, int offset, int size,
+                            long presentationTimeUs) {
+        while (size > 0 && mError == null && !isCancelled) {
+            int inputIndex = encoder.dequeueInputBuffer(TIMEOUT);
+            if (inputIndex < 0) {
+                continue;
+            }
+            ByteBuffer inputBuffer = encoder.getInputBuffer(inputIndex);
+            inputBuffer.clear();
+            int count = Math.min(size, inputBuffer.remaining());
+            inputBuffer.put(data, offset, count);
+            encoder.queueInputBuffer(inputIndex, 0, count, presentationTimeUs, 0);
+            offset += count;
+            size -= count;
+        }
+    }
+
+    private void queueEndOfStream(MediaCodec encoder) {
+        while (mError == null && !isCancelled) {
+            int inputIndex = encoder.dequeueInputBuffer(TIMEOUT);
+            if (inputIndex >= 0) {
+                encoder.queueInputBuffer(inputIndex, 0, 0, 0,
+                        MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.zfg.decode;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import com.zfg.common.utils.LogUtils;
+import com.zfg.encode.EncoderPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 离线转码，多个文件并行转码，每个任务占用一个解码器和一个编码器实例。
+ * 并行数不超过编解码器支持的实例数（API 23及以上可查，以下按DEFAULT_MAX_PARALLEL）
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class Transcoder {
+
+    // 无法查询编解码器实例数时的并行数
+    private static final int DEFAULT_MAX_PARALLEL = 2;
+
+    private final ExecutorService mExecutor;
+    private final int mParallel;
+
+    /**
+     * @param maxParallel 期望的并行任务数，实际值见getParallel
+     */
+    public Transcoder(int maxParallel) {
+        this(maxParallel, MediaFormat.MIMETYPE_VIDEO_AVC);
+    }
+
+    /**
+     * @param maxParallel 期望的并行任务数
+     * @param mimeType    视频编码类型，用于查询编解码器实例数
+     */
+    public Transcoder(int maxParallel, String mimeType) {
+        mParallel = Math.max(1, Math.min(maxParallel, maxCodecInstances(mimeType)));
+        final AtomicInteger index = new AtomicInteger();
+        mExecutor = Executors.newFixedThreadPool(mParallel, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "TranscodeJob-" + index.getAndIncrement());
+            }
+        });
+        LogUtils.i("Transcoder parallel = " + mParallel);
+    }
+
+    /**
+     * 编码器与解码器支持实例数的较小值
+     */
+    private static int maxCodecInstances(String mimeType) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return DEFAULT_MAX_PARALLEL;
+        }
+        int max = Integer.MAX_VALUE;
+        MediaCodecInfo encoder = EncoderPool.getInstance().findEncoder(mimeType);
+        if (encoder != null) {
+            max = Math.min(max, encoder.getCapabilitiesForType(mimeType)
+                    .getMaxSupportedInstances());
+        }
+        MediaCodecInfo decoder = MCVideoDecoder.findDecoder(
+                MediaFormat.createVideoFormat(mimeType, 1280, 720));
+        if (decoder != null) {
+            max = Math.min(max, decoder.getCapabilitiesForType(mimeType)
+                    .getMaxSupportedInstances());
+        }
+        return max == Integer.MAX_VALUE ? DEFAULT_MAX_PARALLEL : max;
+    }
+
+    /**
+     * @return 实际并行任务数
+     */
+    public int getParallel() {
+        return mParallel;
+    }
+
+    /**
+     * 提交转码任务，超过并行数时排队
+     *
+     * @param listener 在转码线程回调，可为null
+     * @return 结果为输出文件路径
+     */
+    public Future<String> submit(TranscodeConfig config, Listener listener) {
+        return mExecutor.submit(new TranscodeJob(config, listener));
+    }
+
+    /**
+     * 不再接受新任务，已提交的任务继续执行
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    /**
+     * 转码回调，在转码线程执行
+     */
+    public interface Listener {
+        /**
+         * 约每秒回调一次
+         *
+         * @param frames 已编码帧数
+         * @param fps    平均每秒编码帧数
+         */
+        void onProgress(TranscodeConfig config, long frames, float fps);
+
+        void onFinished(TranscodeConfig config, String outputPath, long frames, float fps);
+
+        void onError(TranscodeConfig config, Exception e);
+    }
+}
@@ -0,0 +1,75 @@
+package com.zfg.encode;
+
+import android.content.Context;
+import android.os.Build;
+
+import java.io.IOException;
+
+import javax.crypto.SecretKey;
+
+/**
+ * 设备上的实现：EncoderPool中的MediaCodec、AudioRecord和MediaMuxer
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class AndroidMediaBackends implements MediaBackends {
+
+    private static final AndroidMediaBackends INSTANCE = new AndroidMediaBackends();
+
+    // 打开代理文件描述符用，未设置时mp4不能写入时加密
+    private volatile Context mContext;
+
+    private AndroidMediaBackends() {
+
+    }
+
+    public static AndroidMediaBackends getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 设置后API 26及以上的mp4可以写入时加密，在Application.onCreate中调用
+     */
+    public void setContext(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public EncoderBackend createVideoEncoder(RecordingConfig config) {
+        return new PooledEncoderBackend(config.getVideoPoolKey(), MCVideoEncoder.createVideoFormat(
+                config.getMimeType(), config.getRotation(), config.getWidth(), config.getHeight(),
+                config.getFrameRate(), config.getBitRate(), config.getGop()));
+    }
+
+    @Override
+    public EncoderBackend createAudioEncoder(int sampleRate, int channelCount, int bitRate) {
+        return new PooledEncoderBackend(MCAudioEncoder.poolKey(sampleRate, channelCount, bitRate),
+                MCAudioEncoder.createAudioFormat(sampleRate, channelCount, bitRate));
+    }
+
+    @Override
+    public AudioSourceBackend createAudioSource(int sampleRate, int channelCount) {
+        return new AudioRecordSource(sampleRate, channelCount);
+    }
+
+    @Override
+    public MuxerBackend createMuxer(String filePath) throws IOException {
+        return new MediaMuxerBackend(filePath);
+    }
+
+    @Override
+    public boolean isEncryptedMuxerSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && mContext != null;
+    }
+
+    @Override
+    public MuxerBackend createEncryptedMuxer(String filePath, SecretKey masterKey)
+            throws IOException {
+        if (!isEncryptedMuxerSupported()) {
+            throw new IOException("encrypted muxer not supported");
+        }
+        return new MediaMuxerBackend(mContext, filePath, masterKey);
+    }
+}
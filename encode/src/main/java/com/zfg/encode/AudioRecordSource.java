@@ -0,0 +1,80 @@
+package com.zfg.encode;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+
+import com.zfg.common.utils.LogUtils;
+
+/**
+ * 麦克风采集，AudioRecord从EncoderPool获取，停止后回收复用
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class AudioRecordSource implements AudioSourceBackend {
+
+    /**
+     * 返回的音频数据的格式，ENCODING_PCM_8BIT, ENCODING_PCM_16BIT, and ENCODING_PCM_FLOAT.
+     */
+    static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
+
+    private final int mSampleRate;
+    private final int mChannelConfig;
+    // 创建AudioRecord对象所需的最小缓冲区大小，单位字节
+    private final int mMinBufferSize;
+    private AudioRecord mAudioRecord;
+
+    public AudioRecordSource(int sampleRate, int channelCount) {
+        mSampleRate = sampleRate;
+        mChannelConfig = channelConfig(channelCount);
+        mMinBufferSize = AudioRecord.getMinBufferSize(sampleRate, mChannelConfig, AUDIO_FORMAT);
+    }
+
+    /**
+     * 录音声道数，CHANNEL_IN_MONO and CHANNEL_IN_STEREO. 其中CHANNEL_IN_MONO是可以保证在所有设备能够使用的。
+     */
+    static int channelConfig(int channelCount) {
+        return channelCount == 2 ? AudioFormat.CHANNEL_IN_STEREO : AudioFormat.CHANNEL_IN_MONO;
+    }
+
+    @Override
+    public boolean start() {
+        stop();
+        // 优先使用编码器池中预创建的AudioRecord
+        mAudioRecord = EncoderPool.getInstance().acquireAudioRecord(mSampleRate, mChannelConfig,
+                AUDIO_FORMAT);
+        if (mAudioRecord == null) {
+            LogUtils.e("AudioRecord create failed!");
+            return false;
+        }
+        mAudioRecord.startRecording();
+        LogUtils.i("Start record");
+        return true;
+    }
+
+    @Override
+    public int read(short[] pcm, int offset, int samples) {
+        AudioRecord audioRecord = mAudioRecord;
+        if (audioRecord == null) {
+            return AudioRecord.ERROR_INVALID_OPERATION;
+        }
+        return audioRecord.read(pcm, offset, samples);
+    }
+
+    @Override
+    public int getBufferSamples() {
+        return mMinBufferSize / 2;
+    }
+
+    @Override
+    public void stop() {
+        if (mAudioRecord != null) {
+            LogUtils.i("Stop record");
+            // 只停止录音，AudioRecord回收到编码器池复用
+            EncoderPool.getInstance().recycleAudioRecord(mAudioRecord, mSampleRate,
+                    mChannelConfig, AUDIO_FORMAT);
+            mAudioRecord = null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.zfg.encode;
+
+/**
+ * 音频采集接口，设备上由AudioRecordSource实现，主机单测可替换为按实时速率产生PCM的模拟实现
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public interface AudioSourceBackend {
+
+    /**
+     * 开始采集
+     *
+     * @return 失败返回false
+     */
+    boolean start();
+
+    /**
+     * 阻塞读取16位PCM，与AudioRecord.read一致
+     *
+     * @return 读到的采样数，出错时返回负数
+     */
+    int read(short[] pcm, int offset, int samples);
+
+    /**
+     * @return 每次读取的缓存大小，单位为采样（所有声道）
+     */
+    int getBufferSamples();
+
+    /**
+     * 停止采集，可重复调用
+     */
+    void stop();
+}
@@ -0,0 +1,237 @@
+package com.zfg.encode;
+
+import com.zfg.common.utils.FileNameGenerator;
+import com.zfg.common.utils.FrameBufferPool;
+import com.zfg.common.utils.ImageFormatUtils;
+import com.zfg.common.utils.LogUtils;
+
+/**
+ * 同一路摄像头数据同时录制主文件和低分辨率代理文件（如1080p主文件加360p代理），
+ * 每帧只缩放一次，编码跟不上时优先丢代理的帧
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class DualResolutionRecorder {
+
+    // 代理短边的目标长度，竖屏时是宽度
+    public static final int PROXY_SHORT_SIDE = 360;
+    // 代理宽高对齐到16，部分硬件AVC编码器不支持非16对齐的尺寸
+    private static final int PROXY_ALIGNMENT = 16;
+    // 主或代理的编码队列积压超过此值时丢弃代理帧
+    private static final int PROXY_SHED_BACKLOG = 3;
+    // 每多少帧输出一次缩放耗时统计
+    private static final int STATS_INTERVAL = 250;
+    // 缓存池大小，编码队列10帧加上正在编码和正在转换的帧
+    private static final int POOL_CAPACITY = 12;
+
+    private final RecordingSession mMasterSession;
+    private final RecordingSession mProxySession;
+    private final FrameBufferPool mMasterPool;
+    private final FrameBufferPool mProxyPool;
+    // 暂停代理录制，不缩放、不送入代理帧，发热降级时使用
+    private volatile boolean isProxyPaused;
+
+    // 缩放耗时统计
+    private long mScaleCount;
+    private long mScaleTotalNs;
+    private long mShedCount;
+
+    /**
+     * @param masterConfig 主文件参数
+     * @param proxyConfig  代理文件参数，为null时只录制主文件
+     */
+    public DualResolutionRecorder(RecordingConfig masterConfig, RecordingConfig proxyConfig) {
+        mMasterPool = new FrameBufferPool(frameSize(masterConfig), POOL_CAPACITY);
+        mMasterSession = new RecordingSession(masterConfig);
+        mMasterSession.setFrameBufferPool(mMasterPool);
+        if (proxyConfig != null) {
+            mProxyPool = new FrameBufferPool(frameSize(proxyConfig), POOL_CAPACITY);
+            mProxySession = new RecordingSession(proxyConfig);
+            mProxySession.setFrameBufferPool(mProxyPool);
+        } else {
+            mProxyPool = null;
+            mProxySession = null;
+        }
+    }
+
+    /**
+     * 按主文件参数生成代理参数：等比缩放到短边约360（横屏、竖屏都按短边），
+     * 宽高对齐到16，如1920x1080得到624x352，1080x1920得到352x624；
+     * 不录音频（同一时间只有一路能打开麦克风）
+     */
+    public static RecordingConfig createProxyConfig(RecordingConfig masterConfig) {
+        int masterWidth = masterConfig.getWidth();
+        int masterHeight = masterConfig.getHeight();
+        int masterShort = Math.min(masterWidth, masterHeight);
+        int masterLong = Math.max(masterWidth, masterHeight);
+        // 短边向下对齐，不超过主文件；长边按短边的缩放比例取最近的对齐值
+        int shortSide = Math.max(PROXY_ALIGNMENT,
+                Math.min(PROXY_SHORT_SIDE, masterShort) / PROXY_ALIGNMENT * PROXY_ALIGNMENT);
+        int longSide = Math.max(PROXY_ALIGNMENT, (int) ((long) masterLong * shortSide
+                / masterShort + PROXY_ALIGNMENT / 2) / PROXY_ALIGNMENT * PROXY_ALIGNMENT);
+        boolean isPortrait = masterHeight > masterWidth;
+        return new RecordingConfig.Builder()
+                .setName("proxy")
+                .setMimeType(masterConfig.getMimeType())
+                .setRotation(masterConfig.getRotation())
+                .setSize(isPortrait ? shortSide : longSide, isPortrait ? longSide : shortSide)
+                .setFrameRate(masterConfig.getFrameRate())
+                .setGop(masterConfig.getGop())
+                .setAudioEnabled(false)
+                .build();
+    }
+
+    private static int frameSize(RecordingConfig config) {
+        return config.getWidth() * config.getHeight() * 3 / 2;
+    }
+
+    /**
+     * 取一个主分辨率的空帧，填好NV12数据后通过addVideoData送入
+     */
+    public byte[] obtainFrame() {
+        return mMasterPool.acquire();
+    }
+
+    public void start(RecordingSession.Callback callback) {
+        // 主文件和代理文件使用相同的前缀，便于配对
+        String sessionId = FileNameGenerator.getInstance().nextId();
+        mMasterSession.start(sessionId, callback);
+        if (mProxySession != null) {
+            mProxySession.start(sessionId, null);
+        }
+    }
+
+    public void stop(RecordingSession.Callback callback) {
+        if (mProxySession != null) {
+            mProxySession.stop(null);
+        }
+        mMasterSession.stop(callback);
+        if (mScaleCount > 0) {
+            LogUtils.i("DualResolutionRecorder scale avg = " + mScaleTotalNs / mScaleCount / 1000
+                    + "us, frames = " + mScaleCount + ", shed = " + mShedCount);
+        }
+    }
+
+    /**
+     * 不再使用时在stop后调用，停止完成后结束两个会话的控制线程
+     */
+    public void release() {
+        mMasterSession.release();
+        if (mProxySession != null) {
+            mProxySession.release();
+        }
+    }
+
+    /**
+     * 送入一帧主分辨率NV12数据，之后调用方不能再使用data
+     */
+    public void addVideoData(byte[] data) {
+        if (mProxySession != null && !isProxyPaused) {
+            addProxyData(data);
+        }
+        mMasterSession.addVideoData(data);
+    }
+
+    /**
+     * 下一个通过addVideoData送入的帧在主文件和代理文件中都编码为关键帧，
+     * 代理帧被丢弃时顺延到下一个代理帧
+     */
+    public void forceKeyFrame() {
+        mMasterSession.forceKeyFrame();
+        if (mProxySession != null) {
+            mProxySession.forceKeyFrame();
+        }
+    }
+
+    /**
+     * 暂停或恢复代理文件的帧，暂停期间代理文件没有画面，恢复后从下一个关键帧开始
+     */
+    public void setProxyPaused(boolean paused) {
+        if (mProxySession != null && isProxyPaused && !paused) {
+            mProxySession.forceKeyFrame();
+        }
+        isProxyPaused = paused;
+    }
+
+    /**
+     * 按比例调整主文件和代理文件的视频码率，1为配置的码率
+     */
+    public void setBitRateFactor(float factor) {
+        applyBitRateFactor(mMasterSession, factor);
+        if (mProxySession != null) {
+            applyBitRateFactor(mProxySession, factor);
+        }
+    }
+
+    private static void applyBitRateFactor(RecordingSession session, float factor) {
+        session.setVideoBitRate((int) (session.getConfig().getBitRate() * factor));
+    }
+
+    /**
+     * 主文件和代理文件每frameInterval帧只编码一帧
+     */
+    public void setFrameInterval(int frameInterval) {
+        mMasterSession.setFrameInterval(frameInterval);
+        if (mProxySession != null) {
+            mProxySession.setFrameInterval(frameInterval);
+        }
+    }
+
+    /**
+     * 按QualityGovernor的级别调整代理、码率和帧率，分析相关的措施由调用方处理
+     */
+    public void setQualityLevel(int level) {
+        setProxyPaused(level >= QualityGovernor.LEVEL_PROXY_PAUSED);
+        setBitRateFactor(level >= QualityGovernor.LEVEL_REDUCED_BITRATE
+                ? QualityGovernor.REDUCED_BITRATE_FACTOR : 1);
+        setFrameInterval(level >= QualityGovernor.LEVEL_REDUCED_FRAME_RATE
+                ? QualityGovernor.REDUCED_FRAME_INTERVAL : 1);
+    }
+
+    private void addProxyData(byte[] data) {
+        // 编码跟不上时先丢代理的帧，不做缩放
+        if (mMasterSession.getVideoBacklog() >= PROXY_SHED_BACKLOG
+                || mProxySession.getVideoBacklog() >= PROXY_SHED_BACKLOG) {
+            mShedCount++;
+            return;
+        }
+
+        RecordingConfig master = mMasterSession.getConfig();
+        RecordingConfig proxy = mProxySession.getConfig();
+        byte[] proxyFrame = mProxyPool.acquire();
+        long startNs = System.nanoTime();
+        ImageFormatUtils.scaleNV12(data, master.getWidth(), master.getHeight(),
+                proxyFrame, proxy.getWidth(), proxy.getHeight());
+        mScaleTotalNs += System.nanoTime() - startNs;
+        mScaleCount++;
+        if (mScaleCount % STATS_INTERVAL == 0) {
+            LogUtils.d("DualResolutionRecorder scale avg = " + mScaleTotalNs / mScaleCount / 1000
+                    + "us, shed = " + mShedCount);
+        }
+        mProxySession.addVideoData(proxyFrame);
+    }
+
+    /**
+     * @return 平均每帧缩放耗时，单位纳秒
+     */
+    public long getAverageScaleNs() {
+        return mScaleCount == 0 ? 0 : mScaleTotalNs / mScaleCount;
+    }
+
+    /**
+     * @return 因编码跟不上而丢弃的代理帧数
+     */
+    public long getShedCount() {
+        return mShedCount;
+    }
+
+    public RecordingSession getMasterSession() {
+        return mMasterSession;
+    }
+
+    public RecordingSession getProxySession() {
+        return mProxySession;
+    }
+}
@@ -0,0 +1,73 @@
+package com.zfg.encode;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 编码器接口，方法与MediaCodec的同步缓冲区用法一致，编码线程只通过此接口访问编码器。
+ * 设备上由PooledEncoderBackend实现，主机单测可替换为模拟实现，
+ * 不依赖MediaCodec测试编码线程、队列和混合的逻辑
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public interface EncoderBackend {
+
+    /**
+     * 获取并启动编码器，在编码线程调用
+     *
+     * @return 失败返回false
+     */
+    boolean start();
+
+    /**
+     * 复用的编码器flush后不会再回调INFO_OUTPUT_FORMAT_CHANGED，需用此格式添加轨道
+     *
+     * @return 上次输出的格式，新建的编码器返回null
+     */
+    MediaFormat getCachedOutputFormat();
+
+    /**
+     * @see MediaCodec#dequeueInputBuffer(long)
+     */
+    int dequeueInputBuffer(long timeoutUs);
+
+    ByteBuffer getInputBuffer(int index);
+
+    void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags);
+
+    /**
+     * @return 输出缓冲区序号，或MediaCodec.INFO_OUTPUT_FORMAT_CHANGED、INFO_TRY_AGAIN_LATER
+     * @see MediaCodec#dequeueOutputBuffer(MediaCodec.BufferInfo, long)
+     */
+    int dequeueOutputBuffer(MediaCodec.BufferInfo info, long timeoutUs);
+
+    ByteBuffer getOutputBuffer(int index);
+
+    /**
+     * 收到INFO_OUTPUT_FORMAT_CHANGED后调用，返回的格式会被缓存，供复用时添加轨道
+     */
+    MediaFormat getOutputFormat();
+
+    void releaseOutputBuffer(int index);
+
+    /**
+     * 请求尽快输出一个关键帧，未启动时忽略，可在任意线程调用
+     */
+    void requestKeyFrame();
+
+    /**
+     * 运行中调整视频码率，只在编码线程调用，未启动时忽略
+     *
+     * @param bitRate 单位bps
+     */
+    void setBitRate(int bitRate);
+
+    /**
+     * 停止使用编码器，设备上回收到编码器池
+     */
+    void release();
+}
@@ -0,0 +1,360 @@
+package com.zfg.encode;
+
+import android.annotation.SuppressLint;
+import android.media.AudioRecord;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.media.MediaRecorder;
+
+import com.zfg.common.utils.LogUtils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 编码器池，预览期间提前创建并配置好编码器和AudioRecord，录制时直接取用，
+ * 录制结束后flush回收复用，避免每次开始录制都重新枚举、创建和配置MediaCodec。
+ * 创建、配置、释放都不持有池的锁，预创建期间开始录制不会被阻塞
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class EncoderPool {
+
+    // 每种配置最多保留的空闲编码器数
+    private static final int MAX_IDLE_PER_KEY = 2;
+
+    private static EncoderPool instance;
+
+    // 按配置区分的空闲编码器
+    private final Map<String, ArrayDeque<PooledCodec>> mIdleCodecs = new HashMap<>();
+    // 编码器信息缓存，避免重复枚举MediaCodecList
+    private final Map<String, MediaCodecInfo> mCodecInfos = new ConcurrentHashMap<>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private AudioRecord mIdleAudioRecord;
+    private String mIdleAudioRecordKey;
+    // 已释放，此后回收的编码器直接释放，直到下次预创建
+    private boolean isReleased;
+
+    private EncoderPool() {
+
+    }
+
+    public static EncoderPool getInstance() {
+        if (null == instance) {
+            synchronized (EncoderPool.class) {
+                if (null == instance) {
+                    instance = new EncoderPool();
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * 在后台线程预创建编码器，已有相同配置的空闲编码器时不创建
+     *
+     * @param key    编码配置标识
+     * @param format 编码参数
+     */
+    public void prewarmAsync(String key, MediaFormat format) {
+        mExecutor.execute(() -> {
+            synchronized (this) {
+                // 与releaseAsync在同一线程按顺序执行
+                isReleased = false;
+                ArrayDeque<PooledCodec> idle = mIdleCodecs.get(key);
+                if (idle != null && !idle.isEmpty()) {
+                    return;
+                }
+            }
+            // 创建和配置耗时，不持有锁，录制开始时acquire不用等待
+            PooledCodec codec = createCodec(key, format);
+            if (codec != null) {
+                addIdle(codec);
+            }
+        });
+    }
+
+    /**
+     * 在后台线程预创建AudioRecord
+     */
+    @SuppressLint("MissingPermission")
+    public void prewarmAudioRecordAsync(int sampleRate, int channelConfig,
+                                        int audioFormatEncoding) {
+        mExecutor.execute(() -> {
+            synchronized (this) {
+                isReleased = false;
+                if (mIdleAudioRecord != null) {
+                    return;
+                }
+            }
+            AudioRecord audioRecord = createAudioRecord(sampleRate, channelConfig,
+                    audioFormatEncoding);
+            if (audioRecord == null) {
+                return;
+            }
+            synchronized (this) {
+                if (mIdleAudioRecord == null && !isReleased) {
+                    mIdleAudioRecord = audioRecord;
+                    mIdleAudioRecordKey = audioRecordKey(sampleRate, channelConfig,
+                            audioFormatEncoding);
+                    return;
+                }
+            }
+            audioRecord.release();
+        });
+    }
+
+    /**
+     * 获取编码器，优先使用空闲的已配置编码器，没有则新建
+     *
+     * @param key    编码配置标识，相同标识的编码器才能复用
+     * @param format 编码参数
+     * @return 已start的编码器，失败返回null
+     */
+    public PooledCodec acquire(String key, MediaFormat format) {
+        synchronized (this) {
+            ArrayDeque<PooledCodec> idle = mIdleCodecs.get(key);
+            if (idle != null && !idle.isEmpty()) {
+                PooledCodec codec = idle.poll();
+                codec.isReused = true;
+                LogUtils.i("EncoderPool reuse " + key);
+                return codec;
+            }
+        }
+        return createCodec(key, format);
+    }
+
+    /**
+     * 回收编码器，flush后保持在已配置的空闲状态
+     */
+    public void recycle(PooledCodec codec) {
+        if (codec == null) {
+            return;
+        }
+        try {
+            codec.codec.flush();
+        } catch (IllegalStateException e) {
+            LogUtils.e("EncoderPool flush exception = " + e);
+            releaseCodec(codec);
+            return;
+        }
+        addIdle(codec);
+    }
+
+    /**
+     * 获取AudioRecord，返回时尚未开始录音
+     */
+    @SuppressLint("MissingPermission")
+    public AudioRecord acquireAudioRecord(int sampleRate, int channelConfig,
+                                          int audioFormatEncoding) {
+        String key = audioRecordKey(sampleRate, channelConfig, audioFormatEncoding);
+        synchronized (this) {
+            if (mIdleAudioRecord != null && key.equals(mIdleAudioRecordKey)) {
+                AudioRecord audioRecord = mIdleAudioRecord;
+                mIdleAudioRecord = null;
+                LogUtils.i("EncoderPool reuse AudioRecord");
+                return audioRecord;
+            }
+        }
+        return createAudioRecord(sampleRate, channelConfig, audioFormatEncoding);
+    }
+
+    /**
+     * 回收AudioRecord，只停止录音不释放
+     */
+    public void recycleAudioRecord(AudioRecord audioRecord, int sampleRate,
+                                   int channelConfig, int audioFormatEncoding) {
+        if (audioRecord == null) {
+            return;
+        }
+        try {
+            audioRecord.stop();
+        } catch (IllegalStateException e) {
+            LogUtils.e("EncoderPool stop AudioRecord exception = " + e);
+            audioRecord.release();
+            return;
+        }
+        synchronized (this) {
+            if (mIdleAudioRecord == null && !isReleased) {
+                mIdleAudioRecord = audioRecord;
+                mIdleAudioRecordKey = audioRecordKey(sampleRate, channelConfig,
+                        audioFormatEncoding);
+                return;
+            }
+        }
+        audioRecord.release();
+    }
+
+    /**
+     * 在后台线程释放所有空闲的编码器和AudioRecord，退出预览时调用。
+     * 此时仍在使用的编码器回收时直接释放
+     */
+    public void releaseAsync() {
+        mExecutor.execute(this::release);
+    }
+
+    private void release() {
+        List<PooledCodec> codecs = new ArrayList<>();
+        AudioRecord audioRecord;
+        synchronized (this) {
+            isReleased = true;
+            for (ArrayDeque<PooledCodec> idle : mIdleCodecs.values()) {
+                codecs.addAll(idle);
+            }
+            mIdleCodecs.clear();
+            audioRecord = mIdleAudioRecord;
+            mIdleAudioRecord = null;
+        }
+        for (PooledCodec codec : codecs) {
+            releaseCodec(codec);
+        }
+        if (audioRecord != null) {
+            audioRecord.release();
+        }
+        LogUtils.i("EncoderPool release");
+    }
+
+    /**
+     * 查找支持该类型的编码器，结果会被缓存
+     */
+    public MediaCodecInfo findEncoder(String mimeType) {
+        MediaCodecInfo cached = mCodecInfos.get(mimeType);
+        if (cached != null) {
+            return cached;
+        }
+        int numCodecs = MediaCodecList.getCodecCount();
+        for (int i = 0; i < numCodecs; i++) {
+            MediaCodecInfo codecInfo = MediaCodecList.getCodecInfoAt(i);
+            if (!codecInfo.isEncoder()) {
+                continue;
+            }
+            String[] types = codecInfo.getSupportedTypes();
+            for (String type : types) {
+                if (type.equalsIgnoreCase(mimeType)) {
+                    LogUtils.i("encoderName = " + codecInfo.getName());
+                    mCodecInfos.put(mimeType, codecInfo);
+                    return codecInfo;
+                }
+            }
+        }
+        return null;
+    }
+
+    private PooledCodec createCodec(String key, MediaFormat format) {
+        long startNs = System.nanoTime();
+        MediaCodecInfo codecInfo = findEncoder(format.getString(MediaFormat.KEY_MIME));
+        if (codecInfo == null) {
+            LogUtils.e("EncoderPool no encoder for " + key);
+            return null;
+        }
+        MediaCodec codec = null;
+        try {
+            codec = MediaCodec.createByCodecName(codecInfo.getName());
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            LogUtils.e("EncoderPool create " + key + " exception = " + e);
+            if (codec != null) {
+                codec.release();
+            }
+            return null;
+        }
+        LogUtils.i("EncoderPool create " + key + " cost = "
+                + (System.nanoTime() - startNs) / 1000000 + "ms");
+        return new PooledCodec(key, codec);
+    }
+
+    @SuppressLint("MissingPermission")
+    private AudioRecord createAudioRecord(int sampleRate, int channelConfig,
+                                          int audioFormatEncoding) {
+        int minBufferSize = AudioRecord.getMinBufferSize(sampleRate, channelConfig,
+                audioFormatEncoding);
+        AudioRecord audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate,
+                channelConfig, audioFormatEncoding, minBufferSize);
+        if (AudioRecord.STATE_INITIALIZED != audioRecord.getState()) {
+            LogUtils.e("AudioRecord create failed!");
+            audioRecord.release();
+            return null;
+        }
+        return audioRecord;
+    }
+
+    /**
+     * 放入空闲队列，只在此时持有锁；池已释放或已满时释放编码器
+     */
+    private void addIdle(PooledCodec codec) {
+        synchronized (this) {
+            if (!isReleased) {
+                ArrayDeque<PooledCodec> idle = mIdleCodecs.get(codec.key);
+                if (idle == null) {
+                    idle = new ArrayDeque<>();
+                    mIdleCodecs.put(codec.key, idle);
+                }
+                if (idle.size() < MAX_IDLE_PER_KEY) {
+                    idle.offer(codec);
+                    return;
+                }
+            }
+        }
+        releaseCodec(codec);
+    }
+
+    private void releaseCodec(PooledCodec codec) {
+        try {
+            codec.codec.stop();
+        } catch (IllegalStateException e) {
+            LogUtils.e("EncoderPool stop exception = " + e);
+        }
+        codec.codec.release();
+    }
+
+    private static String audioRecordKey(int sampleRate, int channelConfig,
+                                         int audioFormatEncoding) {
+        return sampleRate + "/" + channelConfig + "/" + audioFormatEncoding;
+    }
+
+    /**
+     * 池中的编码器，缓存了首次输出的MediaFormat。
+     * flush后编码器不会再回调INFO_OUTPUT_FORMAT_CHANGED，复用时需用缓存的格式添加轨道
+     */
+    public static class PooledCodec {
+        final String key;
+        final MediaCodec codec;
+        volatile MediaFormat outputFormat;
+        volatile boolean isReused;
+
+        PooledCodec(String key, MediaCodec codec) {
+            this.key = key;
+            this.codec = codec;
+        }
+
+        public MediaCodec getCodec() {
+            return codec;
+        }
+
+        public MediaFormat getOutputFormat() {
+            return outputFormat;
+        }
+
+        public void setOutputFormat(MediaFormat outputFormat) {
+            this.outputFormat = outputFormat;
+        }
+
+        public boolean isReused() {
+            return isReused;
+        }
+    }
+}
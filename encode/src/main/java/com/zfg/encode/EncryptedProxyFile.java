@@ -0,0 +1,158 @@
+package com.zfg.encode;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import androidx.annotation.RequiresApi;
+
+import com.zfg.common.crypto.SeekableEncryptedFile;
+import com.zfg.common.integrity.GrowingFileHasher;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/**
+ * 给MediaMuxer的可seek代理文件描述符（API 26及以上），读写在回调线程中经SeekableEncryptedFile
+ * 按位置加解密后落盘，MediaMuxer结束时回头改写文件头也能加密，文件中始终没有明文。
+ * 文件大小按已写入的范围计算，关闭时截掉预分配的部分。
+ * 记录密文在文件中写到的位置和mdat数据开始的位置，录制中按块摘要密文时以此为界
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+@RequiresApi(api = Build.VERSION_CODES.O)
+class EncryptedProxyFile extends ProxyFileDescriptorCallback {
+
+    private static final long RELEASE_TIMEOUT_MS = 3000;
+
+    // 只在回调线程中使用
+    private final SeekableEncryptedFile mFile;
+    private final HandlerThread mThread;
+    private final ParcelFileDescriptor mDescriptor;
+    private final CountDownLatch mReleaseLatch = new CountDownLatch(1);
+    // 文件中的位置，在回调线程中更新，可在任意线程读取
+    private volatile long mWriteEnd = -1;
+    private volatile long mDataStart = -1;
+
+    /**
+     * @param masterKey 用于加密数据密钥的AES密钥
+     */
+    EncryptedProxyFile(Context context, String filePath, SecretKey masterKey) throws IOException {
+        mFile = SeekableEncryptedFile.create(new File(filePath), masterKey);
+        mThread = new HandlerThread("EncryptedProxyFile");
+        mThread.start();
+        try {
+            StorageManager storageManager = context.getSystemService(StorageManager.class);
+            mDescriptor = storageManager.openProxyFileDescriptor(
+                    ParcelFileDescriptor.MODE_READ_WRITE, this, new Handler(mThread.getLooper()));
+        } catch (IOException | RuntimeException e) {
+            mThread.quitSafely();
+            mFile.close();
+            throw e;
+        }
+    }
+
+    FileDescriptor getFileDescriptor() {
+        return mDescriptor.getFileDescriptor();
+    }
+
+    /**
+     * @return 最近一次写入在文件中结束的位置，还没写入时为-1
+     */
+    long getWriteOffset() {
+        return mWriteEnd;
+    }
+
+    /**
+     * @return mdat数据在文件中开始的位置，还没写到mdat头时为-1
+     */
+    long getDataStart() {
+        return mDataStart;
+    }
+
+    @Override
+    public long onGetSize() {
+        return mFile.size();
+    }
+
+    @Override
+    public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+        try {
+            return Math.max(mFile.read(offset, data, 0, size), 0);
+        } catch (IOException e) {
+            LogUtils.e("proxy read at " + offset + " exception = " + e);
+            throw new ErrnoException("onRead", OsConstants.EIO);
+        }
+    }
+
+    @Override
+    public int onWrite(long offset, int size, byte[] data) throws ErrnoException {
+        try {
+            mFile.write(offset, data, 0, size);
+            mWriteEnd = SeekableEncryptedFile.HEADER_SIZE + offset + size;
+            if (mDataStart < 0) {
+                long dataStart = GrowingFileHasher.findDataStart(mFile::read);
+                if (dataStart >= 0) {
+                    mDataStart = SeekableEncryptedFile.HEADER_SIZE + dataStart;
+                }
+            }
+            return size;
+        } catch (IOException e) {
+            LogUtils.e("proxy write at " + offset + " exception = " + e);
+            throw new ErrnoException("onWrite", OsConstants.EIO);
+        }
+    }
+
+    @Override
+    public void onFsync() throws ErrnoException {
+        try {
+            mFile.force();
+        } catch (IOException e) {
+            throw new ErrnoException("onFsync", OsConstants.EIO);
+        }
+    }
+
+    @Override
+    public void onRelease() {
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            LogUtils.e("close encrypted file exception = " + e);
+        } finally {
+            mThread.quitSafely();
+            mReleaseLatch.countDown();
+        }
+    }
+
+    /**
+     * MediaMuxer释放后调用，关闭描述符并等待回调线程关闭文件，返回后文件不再被改写
+     */
+    void close() {
+        try {
+            mDescriptor.close();
+        } catch (IOException e) {
+            LogUtils.e("close proxy descriptor exception = " + e);
+        }
+        try {
+            if (!mReleaseLatch.await(RELEASE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LogUtils.e("wait encrypted file release timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
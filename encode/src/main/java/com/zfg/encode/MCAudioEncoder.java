@@ -1,26 +1,23 @@
 package com.zfg.encode;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.media.AudioFormat;
-import android.media.AudioRecord;
 import android.media.MediaCodec;
-import android.media.MediaCodecInfo;
-import android.media.MediaCodecList;
 import android.media.MediaFormat;
-import android.media.MediaRecorder;
 
-import com.zfg.common.Constants;
-import com.zfg.common.utils.DateUtils;
+import com.zfg.common.audio.AdtsHeader;
+import com.zfg.common.audio.AudioDspChain;
+import com.zfg.common.audio.VoiceActivityDetector;
 import com.zfg.common.utils.LogUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import androidx.core.app.ActivityCompat;
 
@@ -41,44 +38,46 @@ public class MCAudioEncoder extends Thread {
     /**
      * 比特率（码率，即编码器每秒输出的数据大小）
      */
-    private static final int BIT_RATE = 64000;
+    static final int BIT_RATE = 64000;
 
     /**
      * 采样率
      */
-    private static final int SAMPLE_RATE_HZ = 16000;
+    static final int SAMPLE_RATE_HZ = 16000;
 
     /**
      * 声道数
      */
-    private static final int CHANNEL_COUNT = 1;
+    static final int CHANNEL_COUNT = 1;
 
     /**
-     * 缓存大小
-     */
-    private static final int MAX_BUFFER_SIZE = 10 * 1024;
-
-    /**
-     * 录音声道数，CHANNEL_IN_MONO and CHANNEL_IN_STEREO. 其中CHANNEL_IN_MONO是可以保证在所有设备能够使用的。
+     * 编码输出的采样率和声道数，与采集不同时由AudioDspChain重采样和转换声道，如44100、48000立体声
      */
-    private static final int CHANNEL_IN_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+    private static final int OUTPUT_SAMPLE_RATE_HZ = SAMPLE_RATE_HZ;
+    private static final int OUTPUT_CHANNEL_COUNT = CHANNEL_COUNT;
 
     /**
-     * 返回的音频数据的格式，ENCODING_PCM_8BIT, ENCODING_PCM_16BIT, and ENCODING_PCM_FLOAT.
+     * 缓存大小
      */
-    private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
+    private static final int MAX_BUFFER_SIZE = 10 * 1024;
 
     // 超时时间，单位：微秒，1微秒=0.001毫秒 0.012秒
     private final static int TIMEOUT = 12000;
 
     private final Object lock = new Object();
     private WeakReference<MuxerThread> muxerThread;
-    private MediaCodec mMediaCodec;
-    private MediaFormat mediaFormat;
+    private final EncoderBackend mEncoder;
+    private final AudioSourceBackend mAudioSource;
+    // 编码器已启动
+    private boolean isCodecStarted;
+    // 正在采集
+    private boolean isRecording;
+    private final SessionStats mStats;
     private MediaCodec.BufferInfo mBufferInfo;
-    private FileOutputStream mFileOutputStream;
-    private AudioRecord mAudioRecord;
-    private int minBufferSize;
+    private WritableByteChannel mStreamChannel;
+    // 单独保存aac时每帧前写的ADTS头
+    private final byte[] mAdtsHeader = new byte[AdtsHeader.SIZE];
+    private final ByteBuffer mAdtsBuffer = ByteBuffer.wrap(mAdtsHeader);
 
     // MediaCodec和AudioRecord是否准备好了
     private volatile boolean isPrepared = false;
@@ -89,99 +88,109 @@ public class MCAudioEncoder extends Thread {
     private long prevOutputPTSUs = 0;
     // 是否单独保存aac文件
     private boolean isSaveAac;
+    // 语音活动检测，只在编码线程使用
+    private final VoiceActivityDetector mVad = new VoiceActivityDetector(SAMPLE_RATE_HZ);
+    // 非语音段替换为舒适噪声，见RecordingConfig.isVadGateEnabled
+    private final boolean isVadGate;
+    // 自动增益控制和限幅，见RecordingConfig.isAgcEnabled
+    private final boolean isAgcEnabled;
+    private long mFirstPTSUs = -1;
+    private long mVadTotalNs;
 
     public MCAudioEncoder(WeakReference<MuxerThread> muxerThread) {
+        this(AndroidMediaBackends.getInstance(), muxerThread);
+    }
+
+    /**
+     * @param backends 创建AAC编码器和音频采集
+     */
+    public MCAudioEncoder(MediaBackends backends, WeakReference<MuxerThread> muxerThread) {
+        super("MCAudioEncoder");
         this.muxerThread = muxerThread;
+        mEncoder = backends.createAudioEncoder(OUTPUT_SAMPLE_RATE_HZ, OUTPUT_CHANNEL_COUNT,
+                BIT_RATE);
+        mAudioSource = backends.createAudioSource(SAMPLE_RATE_HZ, CHANNEL_COUNT);
+        MuxerThread muxer = muxerThread.get();
+        mStats = muxer == null ? new SessionStats() : muxer.getStats();
+        isVadGate = muxer != null && muxer.getConfig().isVadGateEnabled();
+        isAgcEnabled = muxer != null && muxer.getConfig().isAgcEnabled();
         // 解码后保存数据的类型，包含每一个buffer的元数据信息
         mBufferInfo = new MediaCodec.BufferInfo();
 
         if (isSaveAac) {
-            createFile();
+            createFile(muxer == null ? null : muxer.getConfig());
         }
         startRecord();
-        initEncoder();
     }
 
-    private void createFile() {
-        // 创建文件夹
-        File dir = new File(Constants.PATH);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-        // 创建文件
-        String fileName = DateUtils.getStringDate() + ".aac";
-        File file = new File(Constants.PATH, fileName);
-        if (file.exists()) {
-            file.delete();
-        }
+    private void createFile(RecordingConfig config) {
         try {
-            mFileOutputStream = new FileOutputStream(file);
+            mStreamChannel = MuxerThread.openStreamFile(".aac", config);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void initEncoder() {
-        MediaCodecInfo audioCodecInfo = selectMediaCodec(MINE_TYPE_AAC);
-        if (audioCodecInfo == null) {
-            LogUtils.e("selectAudioCodec null");
-            return;
-        }
-        LogUtils.i("selectAudioCodec = " + audioCodecInfo.getName());
+    /**
+     * 创建音频编码参数，EncoderPool预创建编码器时使用相同的参数
+     */
+    public static MediaFormat createAudioFormat() {
+        return createAudioFormat(OUTPUT_SAMPLE_RATE_HZ, OUTPUT_CHANNEL_COUNT, BIT_RATE);
+    }
 
+    /**
+     * 创建AAC编码参数，转码时按源文件的采样率和声道数创建
+     */
+    public static MediaFormat createAudioFormat(int sampleRate, int channelCount, int bitRate) {
         // 设置编码参数
-        mediaFormat = MediaFormat.createAudioFormat(MINE_TYPE_AAC, SAMPLE_RATE_HZ, CHANNEL_COUNT);
-        mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
+        MediaFormat mediaFormat = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                sampleRate, channelCount);
+        mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
 //        mediaFormat.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
 //        mediaFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, MAX_BUFFER_SIZE);
+        return mediaFormat;
     }
 
-    private MediaCodecInfo selectMediaCodec(String mimeType) {
-        int numCodecs = MediaCodecList.getCodecCount();
-        for (int i = 0; i < numCodecs; i++) {
-            MediaCodecInfo codecInfo = MediaCodecList.getCodecInfoAt(i);
-            if (!codecInfo.isEncoder()) {
-                continue;
-            }
-            String[] types = codecInfo.getSupportedTypes();
-            for (String type : types) {
-                if (type.equalsIgnoreCase(mimeType)) {
-                    String encoderName = codecInfo.getName();
-                    LogUtils.i("encoderName = " + encoderName);
-                    return codecInfo;
-                }
-            }
-        }
-        return null;
+    /**
+     * 编码器池中区分编码配置的标识
+     */
+    public static String poolKey() {
+        return poolKey(OUTPUT_SAMPLE_RATE_HZ, OUTPUT_CHANNEL_COUNT, BIT_RATE);
+    }
+
+    static String poolKey(int sampleRate, int channelCount, int bitRate) {
+        return MediaFormat.MIMETYPE_AUDIO_AAC + "/" + sampleRate + "/" + channelCount + "/"
+                + bitRate;
     }
 
     private boolean startMediaCodec() {
-        if (null != mMediaCodec) {
+        long startNs = System.nanoTime();
+        if (isCodecStarted) {
             LogUtils.i("MediaCodec is not null");
             stopMediaCodec();
         }
 
-        // 根据类型实例化一个编码器
-        try {
-            mMediaCodec = MediaCodec.createEncoderByType(MINE_TYPE_AAC);
-        } catch (IOException e) {
-            LogUtils.e("createEncoderByType exception = " + e);
-        }
-
-        if (mMediaCodec == null) {
+        if (!mEncoder.start()) {
             LogUtils.e("Create media encoder failed");
             return false;
         }
-
-        // MediaCodec.CONFIGURE_FLAG_ENCODE 表示需要配置一个编码器，而不是解码器
-        mMediaCodec.configure(mediaFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
-        mMediaCodec.start();
-        LogUtils.i("Start mediacodec");
+        isCodecStarted = true;
+        mStats.codecs.incrementAndGet();
+
+        // 复用的编码器flush后不会再回调INFO_OUTPUT_FORMAT_CHANGED，直接用缓存的格式添加音轨
+        MediaFormat outputFormat = mEncoder.getCachedOutputFormat();
+        if (outputFormat != null) {
+            MuxerThread muxer = muxerThread.get();
+            if (muxer != null) {
+                muxer.addMediaTrack(MuxerThread.TRACK_AUDIO, outputFormat);
+            }
+        }
+        LogUtils.i("Start audio encoder, cost = " + (System.nanoTime() - startNs) / 1000000
+                + "ms");
         isPrepared = true;
         return true;
     }
 
-    @SuppressLint("MissingPermission")
     private boolean startRecord() {
         // 先检查是否有录音权限
 //        if (ActivityCompat.checkSelfPermission(mContext, Manifest.permission.RECORD_AUDIO)
@@ -191,46 +200,23 @@ public class MCAudioEncoder extends Thread {
 //        }
 
         stopRecord();
-
-        // 创建AudioRecord对象所需的最小缓冲区大小
-        minBufferSize = AudioRecord.getMinBufferSize(SAMPLE_RATE_HZ, CHANNEL_IN_CONFIG,
-                AUDIO_FORMAT);
-        // 创建AudioRecord对象
-        mAudioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, SAMPLE_RATE_HZ,
-                CHANNEL_IN_CONFIG, AUDIO_FORMAT, minBufferSize);
-        int state = mAudioRecord.getState();
-        if (AudioRecord.STATE_INITIALIZED != state) {
-            LogUtils.e("AudioRecord create failed!");
-            return false;
-        }
-        mAudioRecord.startRecording();
-        LogUtils.i("Start record");
-        return true;
+        isRecording = mAudioSource.start();
+        return isRecording;
     }
 
     private void stopRecord() {
-        if (mAudioRecord != null) {
-            LogUtils.i("Stop record");
-            mAudioRecord.stop();
-            mAudioRecord.release();
-            mAudioRecord = null;
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                LogUtils.e("stopRecord interrupted exception");
-            }
-        }
+        isRecording = false;
+        mAudioSource.stop();
     }
 
     private void stopMediaCodec() {
 
         stopRecord();
 
-        if (mMediaCodec != null) {
-            LogUtils.i("Stop mediacodec");
-            mMediaCodec.stop();
-            mMediaCodec.release();
-            mMediaCodec = null;
+        if (isCodecStarted) {
+            isCodecStarted = false;
+            mEncoder.release();
+            mStats.codecs.decrementAndGet();
         }
 
         isPrepared = false;
@@ -256,11 +242,17 @@ public class MCAudioEncoder extends Thread {
     @Override
     public void run() {
         LogUtils.i("Start MCAudioEncoder thread...");
+        mStats.threads.incrementAndGet();
         boolean initMediaCodecResult = false;
-        // 初始化一个buffer，存放录音数据
-        byte[] audioData = new byte[minBufferSize];
-        // 获取到的录音大小
-        int readBytes;
+        // 初始化一个buffer，存放录音数据，16位PCM
+        short[] audioData = new short[mAudioSource.getBufferSamples()];
+        // 重采样、混音、AGC处理链和输出
+        AudioDspChain dspChain = new AudioDspChain(SAMPLE_RATE_HZ, CHANNEL_COUNT,
+                OUTPUT_SAMPLE_RATE_HZ, OUTPUT_CHANNEL_COUNT, audioData.length / CHANNEL_COUNT);
+        dspChain.setAgcEnabled(isAgcEnabled);
+        short[] outputData = new short[dspChain.getMaxOutputFrames() * OUTPUT_CHANNEL_COUNT];
+        // 获取到的采样数
+        int readSamples;
         while (!isExit) {
             if (!isMuxerReady) {
                 synchronized (lock) {
@@ -274,43 +266,96 @@ public class MCAudioEncoder extends Thread {
 
             if (isMuxerReady && !isPrepared) {
                 initMediaCodecResult = startMediaCodec();
-            } else if (initMediaCodecResult && null != mAudioRecord) {
-                readBytes = mAudioRecord.read(audioData, 0, minBufferSize);
+            } else if (initMediaCodecResult && isRecording) {
+                readSamples = mAudioSource.read(audioData, 0, audioData.length);
                 // 如果读取音频数据没有出现错误，就开始编码
-                if (readBytes > 0) {
+                if (readSamples > 0) {
+                    long ptsUs = getPTSUs();
+                    if (mFirstPTSUs < 0) {
+                        mFirstPTSUs = ptsUs;
+                    }
+                    long startNs = System.nanoTime();
+                    boolean speech = mVad.process(audioData, 0, readSamples, ptsUs);
+                    if (isVadGate && !speech) {
+                        mVad.fillComfortNoise(audioData, 0, readSamples);
+                    }
+                    mVadTotalNs += System.nanoTime() - startNs;
+                    int outFrames = dspChain.process(audioData, null,
+                            readSamples / CHANNEL_COUNT, outputData);
+                    mStats.metrics.record(PipelineMetrics.STAGE_AUDIO_DSP,
+                            System.nanoTime() - startNs);
                     // 将PCM编码成AAC
-                    encodeData(audioData, readBytes, getPTSUs());
+                    encodeData(outputData, outFrames * OUTPUT_CHANNEL_COUNT, ptsUs);
                 }
             }
         }
 
-        if (isSaveAac && null != mFileOutputStream) {
+        if (isSaveAac && null != mStreamChannel) {
             try {
-                mFileOutputStream.close();
-                LogUtils.i("FileOutputStream close");
+                mStreamChannel.close();
+                LogUtils.i("aac stream close");
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
         stopMediaCodec();
+        saveSpeechRanges();
+        mStats.threads.decrementAndGet();
         LogUtils.i("Stop MCAudioEncoder thread...");
     }
 
-    private void encodeData(byte[] bufferData, int readBytes, long presentationTimeUs) {
-        // dequeueInputBuffer（time）需要传入一个时间值，-1表示一直等待，0表示不等待有可能会丢帧，其他表示等待多少毫秒
-        // 获取输入缓存的index
-        int inputIndex = mMediaCodec.dequeueInputBuffer(TIMEOUT);
-        if (inputIndex >= 0) {
-            ByteBuffer inputByteBuffer = mMediaCodec.getInputBuffer(inputIndex);
+    /**
+     * 语音段保存到mp4同名的.speech.json文件，时间相对录音开始
+     */
+    private void saveSpeechRanges() {
+        if (mFirstPTSUs < 0) {
+            return;
+        }
+        mVad.finish(getPTSUs());
+        LogUtils.i("VAD speech ratio = " + mVad.getSpeechRatio() + ", ranges = "
+                + mVad.getRangeCount() + ", cost = " + mVadTotalNs / 1000000 + "ms");
+        MuxerThread muxer = muxerThread.get();
+        String filePath = muxer == null ? null : muxer.getFilePath();
+        if (filePath == null) {
+            return;
+        }
+        File file = new File(filePath.replaceAll("\\.mp4$", "") + ".speech.json");
+        try {
+            mVad.writeRanges(file, mFirstPTSUs);
+        } catch (IOException e) {
+            LogUtils.e("saveSpeechRanges exception = " + e);
+        }
+    }
+
+    private void encodeData(short[] pcm, int samples, long presentationTimeUs) {
+        // 重采样到高采样率、多声道后可能超过输入缓存大小，分多次送入
+        int offset = 0;
+        while (offset < samples) {
+            // dequeueInputBuffer（time）需要传入一个时间值，-1表示一直等待，0表示不等待有可能会丢帧，其他表示等待多少毫秒
+            // 获取输入缓存的index
+            int inputIndex = mEncoder.dequeueInputBuffer(TIMEOUT);
+            if (inputIndex < 0) {
+                LogUtils.e("encodeData error inputIndex = " + inputIndex + ", samples = " + samples);
+                break;
+            }
+            ByteBuffer inputByteBuffer = mEncoder.getInputBuffer(inputIndex);
             inputByteBuffer.clear();
+            ShortBuffer shortBuffer = inputByteBuffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+            // 按整帧送入
+            int count = Math.min(samples - offset,
+                    shortBuffer.remaining() / OUTPUT_CHANNEL_COUNT * OUTPUT_CHANNEL_COUNT);
+            if (count <= 0) {
+                LogUtils.e("encodeData input buffer too small = " + shortBuffer.remaining());
+                mEncoder.queueInputBuffer(inputIndex, 0, 0, presentationTimeUs, 0);
+                break;
+            }
             // 添加数据
-            inputByteBuffer.put(bufferData);
-            // 限制ByteBuffer的访问长度
-            inputByteBuffer.limit(bufferData.length);
+            shortBuffer.put(pcm, offset, count);
+            long ptsUs = presentationTimeUs + (long) (offset / OUTPUT_CHANNEL_COUNT) * 1000000L
+                    / OUTPUT_SAMPLE_RATE_HZ;
             // 把输入缓存塞回去给MediaCodec
-            mMediaCodec.queueInputBuffer(inputIndex, 0, bufferData.length, presentationTimeUs, 0);
-        } else {
-            LogUtils.e("encodeData error inputIndex = " + inputIndex + ", readBytes = " + readBytes);
+            mEncoder.queueInputBuffer(inputIndex, 0, count * 2, ptsUs, 0);
+            offset += count;
         }
 
         MuxerThread muxer = muxerThread.get();
@@ -319,13 +364,12 @@ public class MCAudioEncoder extends Thread {
             return;
         }
         // 获取输出缓存的index
-        int outputIndex;
+        // 循环末尾已取下一个输出，不能在循环开头再取，否则取到的缓冲区不会被写入和释放
+        int outputIndex = mEncoder.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
 
         do {
-            outputIndex = mMediaCodec.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
-
             if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                MediaFormat format = mMediaCodec.getOutputFormat();
+                MediaFormat format = mEncoder.getOutputFormat();
                 MuxerThread muxerRun = muxerThread.get();
                 if (muxerRun != null) {
                     muxer.addMediaTrack(MuxerThread.TRACK_AUDIO, format);
@@ -333,8 +377,12 @@ public class MCAudioEncoder extends Thread {
             } else if (outputIndex < 0) {
                 LogUtils.e("outputIndex < 0");
             } else {
-                ByteBuffer outByteBuffer = mMediaCodec.getOutputBuffer(outputIndex);
-                if (mBufferInfo.size != 0 && muxer.isMuxerStart()) {
+                ByteBuffer outByteBuffer = mEncoder.getOutputBuffer(outputIndex);
+                // 混合器未启动时由MuxerThread暂存，启动后回放
+                if (mBufferInfo.size != 0) {
+                    // 编码器输出的时间戳是对应PCM送入时的时间
+                    mStats.metrics.record(PipelineMetrics.STAGE_AUDIO_ENCODE,
+                            System.nanoTime() - mBufferInfo.presentationTimeUs * 1000);
                     mBufferInfo.presentationTimeUs = getPTSUs();
                     LogUtils.i("Audio size = " + mBufferInfo.size);
                     muxer.addMuxerData(new MuxerThread.MuxerData(MuxerThread.TRACK_AUDIO, outByteBuffer,
@@ -343,33 +391,31 @@ public class MCAudioEncoder extends Thread {
                 }
 
                 // 单独保存编码后的文件
-                if (isSaveAac && null != mFileOutputStream) {
-                    // 获取缓存信息的长度
-                    int byteBufSize = mBufferInfo.size;
+                if (isSaveAac && null != mStreamChannel) {
                     // 添加ADTS头部后的长度
-                    int bytePacketSize = byteBufSize + 7;
+                    int bytePacketSize = mBufferInfo.size + AdtsHeader.SIZE;
+                    addADTStoPacket(mAdtsHeader, bytePacketSize);
+                    mAdtsBuffer.clear();
 
+                    // 编码数据直接从编码器的输出缓冲写出
                     outByteBuffer.position(mBufferInfo.offset);
                     outByteBuffer.limit(mBufferInfo.offset + mBufferInfo.size);
-
-                    byte[] targetByte = new byte[bytePacketSize];
-                    // 添加ADTS头部
-                    addADTStoPacket(targetByte, bytePacketSize);
-                    // 将编码得到的AAC数据 取出到byte[]中 偏移量offset=7
-                    outByteBuffer.get(targetByte, 7, byteBufSize);
-
-                    outByteBuffer.position(mBufferInfo.offset);
-
                     try {
-                        mFileOutputStream.write(targetByte);
+                        while (mAdtsBuffer.hasRemaining()) {
+                            mStreamChannel.write(mAdtsBuffer);
+                        }
+                        while (outByteBuffer.hasRemaining()) {
+                            mStreamChannel.write(outByteBuffer);
+                        }
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
+                    outByteBuffer.position(mBufferInfo.offset);
                 }
 
                 // 释放
-                mMediaCodec.releaseOutputBuffer(outputIndex, false);
-                outputIndex = mMediaCodec.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
+                mEncoder.releaseOutputBuffer(outputIndex);
+                outputIndex = mEncoder.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
             }
 
         } while (outputIndex >= 0);
@@ -379,19 +425,11 @@ public class MCAudioEncoder extends Thread {
      * 给编码出的aac裸流添加adts头字段
      *
      * @param packet    要空出前7个字节，否则会搞乱数据
-     * @param packetLen
+     * @param packetLen 包含ADTS头的长度
      */
     private void addADTStoPacket(byte[] packet, int packetLen) {
-        int profile = 2;  //AAC LC
-        int freqIdx = 4;  //44.1KHz
-        int chanCfg = 2;  //CPE
-        packet[0] = (byte) 0xFF;
-        packet[1] = (byte) 0xF9;
-        packet[2] = (byte) (((profile - 1) << 6) + (freqIdx << 2) + (chanCfg >> 2));
-        packet[3] = (byte) (((chanCfg & 3) << 6) + (packetLen >> 11));
-        packet[4] = (byte) ((packetLen & 0x7FF) >> 3);
-        packet[5] = (byte) (((packetLen & 7) << 5) + 0x1F);
-        packet[6] = (byte) 0xFC;
+        AdtsHeader.write(packet, 0, packetLen, AdtsHeader.PROFILE_AAC_LC,
+                AdtsHeader.sampleRateIndex(OUTPUT_SAMPLE_RATE_HZ), OUTPUT_CHANNEL_COUNT);
     }
 
     private long getPTSUs() {
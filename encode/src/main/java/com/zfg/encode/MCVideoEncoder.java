@@ -2,20 +2,18 @@ package com.zfg.encode;
 
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
-import android.media.MediaCodecList;
 import android.media.MediaFormat;
-import android.os.Build;
 
-import com.zfg.common.Constants;
-import com.zfg.common.utils.DateUtils;
+import com.zfg.common.trace.PipelineTrace;
+import com.zfg.common.utils.FrameBufferPool;
 import com.zfg.common.utils.LogUtils;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 视频硬编码
@@ -26,24 +24,14 @@ import java.util.concurrent.ArrayBlockingQueue;
  */
 public class MCVideoEncoder extends Thread {
 
-    private String mEncodeType;
-    private int mRotation;
-    // 分辨率
-    private int mWidth;
-    private int mHeight;
-    // 每秒显示帧数 fps
-    private int mFrameRate;
-    // 视频码率
-    private int mBitrate;
-    // I帧间隔
-    private int mGOP;
     private WeakReference<MuxerThread> muxerThread;
 
     private final Object lock = new Object();
-    private FileOutputStream mFileOutputStream;
-    private MediaFormat mediaFormat;
-    private MediaCodecInfo mCodecInfo;
-    private MediaCodec mMediaCodec;
+    private WritableByteChannel mStreamChannel;
+    private final EncoderBackend mEncoder;
+    // 编码器已启动
+    private volatile boolean isCodecStarted;
+    private final SessionStats mStats;
     private MediaCodec.BufferInfo mBufferInfo;
 
     // MediaCodec是否准备好了
@@ -53,154 +41,137 @@ public class MCVideoEncoder extends Thread {
     // 混合器是否准备好
     private volatile boolean isMuxerReady = false;
 
-    // 存储每一帧的数据 Vector 自增数组
-    public ArrayBlockingQueue<byte[]> mFrameBytes = new ArrayBlockingQueue<>(10);
+    // 等待编码的帧，元素是预分配的帧槽，记录帧数据、入队时间和帧号，入队不分配内存也不另外加锁
+    private final ArrayBlockingQueue<QueuedFrame> mFrameQueue =
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // 空闲的帧槽，比队列多两个：编码线程刚取出还未归还的一个，和入队时正在填写的一个
+    private final ArrayBlockingQueue<QueuedFrame> mFreeSlots =
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY + 2);
+    // 编码完或丢弃的帧归还到此缓存池，可为null
+    private volatile FrameBufferPool mBufferPool;
+    // 下一个送入的帧编码为关键帧
+    private volatile boolean isKeyFrameForced;
+    // 需要编码为关键帧的帧，轮到它送入编码器前请求关键帧
+    private volatile byte[] mKeyFrameData;
+    // 送入编码器的帧的时间戳、送入时间和跟踪帧号，按输出的时间戳找回，只在编码线程使用。
+    // 时间戳可由调用方指定，编码耗时按送入时间计算
+    private final long[] mInputPts = new long[INPUT_SLOTS];
+    private final long[] mInputNs = new long[INPUT_SLOTS];
+    private final int[] mTraceFrameIds = new int[INPUT_SLOTS];
+    private int mInputNext;
+    // 运行中调整的码率，0表示不调整；只在编码线程应用
+    private volatile int mTargetBitRate;
+    private int mAppliedBitRate;
+    // 每多少帧编码一帧，用于降低帧率
+    private volatile int mFrameInterval = 1;
+    private long mFrameCounter;
 
     private long pts;
     private long generateIndex = 0;
     // 超时时间，单位：微秒，1微秒=0.001毫秒 0.012秒
     private final static int TIMEOUT = 12000;
+    // 编码队列长度，超过后丢弃最早的帧
+    private static final int QUEUE_CAPACITY = 10;
+    // 编码器中同时处理的帧数上限，超过后最早的记录被覆盖
+    private static final int INPUT_SLOTS = 16;
     public byte[] configByte;
     // 是否单独保存H264文件
     private boolean isSaveH264;
 
     public MCVideoEncoder(String encodeType, int rotation, int width, int height, int frameRate,
                           int bitrate, int gop, WeakReference<MuxerThread> muxerThread) {
-        mEncodeType = encodeType;
-        mRotation = rotation;
-        mWidth = width;
-        mHeight = height;
-        mFrameRate = frameRate;
-        mBitrate = bitrate;
-        mGOP = gop;
+        this(new PooledEncoderBackend(poolKey(encodeType, rotation, width, height, frameRate,
+                bitrate, gop), createVideoFormat(encodeType, rotation, width, height, frameRate,
+                bitrate, gop)), muxerThread);
+    }
+
+    /**
+     * @param encoder 视频编码器，由MediaBackends创建
+     */
+    public MCVideoEncoder(EncoderBackend encoder, WeakReference<MuxerThread> muxerThread) {
+        super("MCVideoEncoder");
+        mEncoder = encoder;
         this.muxerThread = muxerThread;
+        MuxerThread muxer = muxerThread.get();
+        mStats = muxer == null ? new SessionStats() : muxer.getStats();
+        mBufferInfo = new MediaCodec.BufferInfo();
+        for (int i = 0; i < QUEUE_CAPACITY + 2; i++) {
+            mFreeSlots.offer(new QueuedFrame());
+        }
 
         if (isSaveH264) {
-            createFile();
+            createFile(muxer == null ? null : muxer.getConfig());
         }
-
-        initVideoEncoder();
     }
 
-    private void createFile() {
-        // 创建文件夹
-        File dir = new File(Constants.PATH);
-        if (!dir.exists()) {
-            dir.mkdirs();
-        }
-        // 创建文件
-        String fileName = DateUtils.getStringDate() + ".h264";
-        File file = new File(Constants.PATH, fileName);
-        if (file.exists()) {
-            file.delete();
-        }
+    private void createFile(RecordingConfig config) {
         try {
-            mFileOutputStream = new FileOutputStream(file);
+            mStreamChannel = MuxerThread.openStreamFile(".h264", config);
         } catch (Exception e) {
             LogUtils.e("createFile error = " + e);
         }
     }
 
-    private void initVideoEncoder() {
-        mBufferInfo = new MediaCodec.BufferInfo();
+    /**
+     * 创建视频编码参数，EncoderPool预创建编码器时使用相同的参数
+     */
+    public static MediaFormat createVideoFormat(String encodeType, int rotation, int width,
+                                                int height, int frameRate, int bitrate, int gop) {
+        MediaFormat mediaFormat;
         // 设置编码参数
-        if ((mRotation == 90 || mRotation == 270)) {
-            mediaFormat = MediaFormat.createVideoFormat(mEncodeType, mHeight, mWidth);
+        if ((rotation == 90 || rotation == 270)) {
+            mediaFormat = MediaFormat.createVideoFormat(encodeType, height, width);
         } else {
-            mediaFormat = MediaFormat.createVideoFormat(mEncodeType, mWidth, mHeight);
-        }
-
-        mCodecInfo = selectMediaCodec(mEncodeType);
-        if (null == mCodecInfo) {
-            LogUtils.e("codecInfo is null");
-            return;
+            mediaFormat = MediaFormat.createVideoFormat(encodeType, width, height);
         }
 
-        // 设置颜色格式
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            //COLOR_FormatYUV420Flexible 包含多个yuv格式
-            mediaFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
-        } else {
-            mediaFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, selectColorFormat(mCodecInfo, mEncodeType));
-        }
+        // 设置颜色格式，COLOR_FormatYUV420Flexible 包含多个yuv格式
+        mediaFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Flexible);
         // 设置比特率
-        mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, mBitrate);
+        mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
         // 设置帧率
-        mediaFormat.setInteger(MediaFormat.KEY_FRAME_RATE, mFrameRate);
+        mediaFormat.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
         // 设置关键帧的时间
-        mediaFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, mGOP);
-    }
-
-    private MediaCodecInfo selectMediaCodec(String mimeType) {
-        int numCodecs = MediaCodecList.getCodecCount();
-        for (int i = 0; i < numCodecs; i++) {
-            MediaCodecInfo codecInfo = MediaCodecList.getCodecInfoAt(i);
-            if (!codecInfo.isEncoder()) {
-                continue;
-            }
-            String[] types = codecInfo.getSupportedTypes();
-            for (String type : types) {
-                if (type.equalsIgnoreCase(mimeType)) {
-                    String encoderName = codecInfo.getName();
-                    LogUtils.i("encoderName = " + encoderName);
-                    return codecInfo;
-                }
-            }
-        }
-        return null;
+        mediaFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, gop);
+        return mediaFormat;
     }
 
-    private int selectColorFormat(MediaCodecInfo codecInfo, String mimeType) {
-        MediaCodecInfo.CodecCapabilities capabilities = codecInfo.getCapabilitiesForType(mimeType);
-        for (int i = 0; i < capabilities.colorFormats.length; i++) {
-            int colorFormat = capabilities.colorFormats[i];
-            if (isRecognizedFormat(colorFormat)) {
-                return colorFormat;
-            }
-        }
-        return 0;
-    }
-
-    private boolean isRecognizedFormat(int colorFormat) {
-        switch (colorFormat) {
-            // these are the formats we know how to handle for this test
-            case MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420Planar:
-            case MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420PackedPlanar:
-            case MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420SemiPlanar:
-            case MediaCodecInfo.CodecCapabilities.COLOR_FormatYUV420PackedSemiPlanar:
-            case MediaCodecInfo.CodecCapabilities.COLOR_TI_FormatYUV420PackedSemiPlanar:
-                return true;
-            default:
-                return false;
-        }
+    /**
+     * 编码器池中区分编码配置的标识
+     */
+    public static String poolKey(String encodeType, int rotation, int width, int height,
+                                 int frameRate, int bitrate, int gop) {
+        return encodeType + "/" + rotation + "/" + width + "x" + height + "/" + frameRate
+                + "/" + bitrate + "/" + gop;
     }
 
     private boolean startMediaCodec() {
-        try {
-            isPrepared = true;
-            mMediaCodec = MediaCodec.createByCodecName(mCodecInfo.getName());
-            mMediaCodec.configure(mediaFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
-            mMediaCodec.start();
-            LogUtils.i("Start mediacodec");
-            return true;
-        } catch (NullPointerException | IOException
-                | IllegalStateException | IllegalArgumentException e) {
-
-            if (mMediaCodec != null) {
-                mMediaCodec.stop();
-                mMediaCodec.release();
-                mMediaCodec = null;
+        long startNs = System.nanoTime();
+        isPrepared = true;
+        if (!mEncoder.start()) {
+            return false;
+        }
+        isCodecStarted = true;
+        mStats.codecs.incrementAndGet();
+        // 复用的编码器flush后不会再回调INFO_OUTPUT_FORMAT_CHANGED，直接用缓存的格式添加视频轨
+        MediaFormat outputFormat = mEncoder.getCachedOutputFormat();
+        if (outputFormat != null) {
+            MuxerThread muxer = muxerThread.get();
+            if (muxer != null) {
+                muxer.addMediaTrack(MuxerThread.TRACK_VIDEO, outputFormat);
             }
+            requestKeyFrame();
         }
-        return false;
+        LogUtils.i("Start video encoder, cost = " + (System.nanoTime() - startNs) / 1000000
+                + "ms");
+        return true;
     }
 
     private void stopMediaCodec() {
-        if (mMediaCodec != null) {
-            LogUtils.i("Stop mediacodec");
-            mMediaCodec.stop();
-            mMediaCodec.release();
-            mMediaCodec = null;
+        if (isCodecStarted) {
+            isCodecStarted = false;
+            mEncoder.release();
+            mStats.codecs.decrementAndGet();
         }
 
         isPrepared = false;
@@ -211,18 +182,139 @@ public class MCVideoEncoder extends Thread {
     }
 
     public void add(byte[] data) {
-        if (null != mFrameBytes && isMuxerReady) {
-            if (mFrameBytes.size() >= 10) {
-                mFrameBytes.poll();
+        add(data, -1);
+    }
+
+    /**
+     * @param timestampUs 帧的时间戳，单位微秒，与System.nanoTime() / 1000同一基准，
+     *                    小于0时使用送入编码器的时间
+     */
+    public void add(byte[] data, long timestampUs) {
+        if (isMuxerReady) {
+            int frameInterval = mFrameInterval;
+            if (frameInterval > 1 && mFrameCounter++ % frameInterval != 0) {
+                // 跳过的帧不消耗强制关键帧，顺延到下一个编码的帧
+                mStats.videoFramesSkipped.incrementAndGet();
+                recycleFrame(data);
+                return;
+            }
+            mStats.videoFramesIn.incrementAndGet();
+            if (isKeyFrameForced) {
+                isKeyFrameForced = false;
+                mKeyFrameData = data;
             }
-            mFrameBytes.add(data);
+            if (mFrameQueue.size() >= QUEUE_CAPACITY) {
+                QueuedFrame dropped = mFrameQueue.poll();
+                if (dropped != null) {
+                    if (dropped.data == mKeyFrameData) {
+                        // 要求的关键帧被丢弃，顺延到队列中的下一帧
+                        QueuedFrame next = mFrameQueue.peek();
+                        mKeyFrameData = next == null ? null : next.data;
+                    }
+                    dropQueuedFrame(dropped);
+                    mStats.videoFramesDropped.incrementAndGet();
+                }
+            }
+            QueuedFrame slot = mFreeSlots.poll();
+            if (slot == null) {
+                // 帧槽比队列多，正常不会发生
+                recycleFrame(data);
+                mStats.videoFramesDropped.incrementAndGet();
+                return;
+            }
+            int frameId = PipelineTrace.nextFrameId();
+            PipelineTrace.beginFrame(PipelineTrace.FRAME, frameId);
+            slot.data = data;
+            slot.enqueueNs = System.nanoTime();
+            slot.frameId = frameId;
+            slot.timestampUs = timestampUs;
+            if (frameId != 0) {
+                PipelineTrace.counter(PipelineTrace.VIDEO_BACKLOG, mFrameQueue.size() + 1);
+            }
+            if (!mFrameQueue.offer(slot)) {
+                dropQueuedFrame(slot);
+            }
+        } else {
+            recycleFrame(data);
         }
     }
 
+    /**
+     * 下一个通过add送入的帧编码为关键帧，用于场景切换、分段和推流，
+     * 与requestKeyFrame不同，不受编码队列积压影响
+     */
+    public void forceKeyFrame() {
+        isKeyFrameForced = true;
+    }
+
+    /**
+     * 请求编码器尽快输出一个关键帧（IDR帧）
+     */
+    public void requestKeyFrame() {
+        if (isCodecStarted) {
+            mEncoder.requestKeyFrame();
+        }
+    }
+
+    /**
+     * 运行中调整码率，在编码线程送入下一帧前生效
+     *
+     * @param bitRate 单位bps，小于等于0时不调整
+     */
+    public void setBitRate(int bitRate) {
+        mTargetBitRate = bitRate;
+    }
+
+    /**
+     * 降低帧率：每frameInterval帧只编码一帧，其余在入队前直接归还，为1时编码所有帧
+     */
+    public void setFrameInterval(int frameInterval) {
+        mFrameInterval = Math.max(1, frameInterval);
+    }
+
+    /**
+     * 设置帧缓存池，add进来的帧编码完或丢弃后归还
+     */
+    public void setFrameBufferPool(FrameBufferPool bufferPool) {
+        mBufferPool = bufferPool;
+    }
+
+    /**
+     * @return 等待编码的帧数
+     */
+    public int getBacklog() {
+        return mFrameQueue.size();
+    }
+
+    private void recycleFrame(byte[] data) {
+        FrameBufferPool bufferPool = mBufferPool;
+        if (bufferPool != null) {
+            bufferPool.release(data);
+        }
+    }
+
+    /**
+     * 未编码就丢弃队列中的帧：结束该帧的跟踪区间，归还帧数据和帧槽
+     */
+    private void dropQueuedFrame(QueuedFrame slot) {
+        PipelineTrace.endFrame(PipelineTrace.FRAME, slot.frameId);
+        recycleFrame(slot.data);
+        releaseSlot(slot);
+    }
+
+    private void releaseSlot(QueuedFrame slot) {
+        slot.data = null;
+        slot.frameId = 0;
+        mFreeSlots.offer(slot);
+    }
+
     public synchronized void restart() {
         isPrepared = false;
         isMuxerReady = false;
-        mFrameBytes.clear();
+        QueuedFrame slot;
+        while ((slot = mFrameQueue.poll()) != null) {
+            dropQueuedFrame(slot);
+        }
     }
 
     public void setMuxerReady(boolean muxerReady) {
@@ -236,6 +328,7 @@ public class MCVideoEncoder extends Thread {
     @Override
     public void run() {
         LogUtils.i("Start MCVideoEncoder thread...");
+        mStats.threads.incrementAndGet();
         while (!isExit) {
 
             if (!isMuxerReady) {
@@ -250,16 +343,54 @@ public class MCVideoEncoder extends Thread {
 
             if (isMuxerReady && !isPrepared) {
                 startMediaCodec();
-            } else if (mFrameBytes.size() > 0) {
-                byte[] bytes = mFrameBytes.poll();
-                encodeFrame(bytes);
+            } else if (isCodecStarted) {
+                // 队列为空时等待，不空转
+                QueuedFrame slot = null;
+                try {
+                    slot = mFrameQueue.poll(TIMEOUT, TimeUnit.MICROSECONDS);
+                } catch (InterruptedException e) {
+                    LogUtils.e("poll frame interruptedException");
+                }
+                if (slot != null) {
+                    byte[] bytes = slot.data;
+                    int frameId = slot.frameId;
+                    long timestampUs = slot.timestampUs;
+                    mStats.metrics.record(PipelineMetrics.STAGE_VIDEO_QUEUE,
+                            System.nanoTime() - slot.enqueueNs);
+                    releaseSlot(slot);
+                    if (bytes == mKeyFrameData) {
+                        mKeyFrameData = null;
+                        requestKeyFrame();
+                    }
+                    int bitRate = mTargetBitRate;
+                    if (bitRate > 0 && bitRate != mAppliedBitRate) {
+                        mEncoder.setBitRate(bitRate);
+                        mAppliedBitRate = bitRate;
+                    }
+                    PipelineTrace.begin(PipelineTrace.ENCODE_FRAME);
+                    encodeFrame(bytes, frameId, timestampUs);
+                    PipelineTrace.end();
+                    recycleFrame(bytes);
+                }
+            }
+        }
+
+        QueuedFrame remain;
+        while ((remain = mFrameQueue.poll()) != null) {
+            dropQueuedFrame(remain);
+        }
+        // 仍在编码器中、不会再输出的帧
+        for (int i = 0; i < INPUT_SLOTS; i++) {
+            if (mTraceFrameIds[i] != 0) {
+                PipelineTrace.endFrame(PipelineTrace.FRAME_ENCODE, mTraceFrameIds[i]);
+                PipelineTrace.endFrame(PipelineTrace.FRAME, mTraceFrameIds[i]);
+                mTraceFrameIds[i] = 0;
             }
         }
 
-        if (isSaveH264 && null != mFileOutputStream) {
+        if (isSaveH264 && null != mStreamChannel) {
             try {
-                mFileOutputStream.flush();
-                mFileOutputStream.close();
+                mStreamChannel.close();
                 LogUtils.i("Stream close");
             } catch (IOException e) {
                 e.printStackTrace();
@@ -267,19 +398,34 @@ public class MCVideoEncoder extends Thread {
         }
 
         stopMediaCodec();
+        mStats.threads.decrementAndGet();
         LogUtils.i("Stop MCVideoEncoder thread...");
     }
 
-    private void encodeFrame(byte[] input) {
-        int inputBufferIndex = mMediaCodec.dequeueInputBuffer(-1);
+    /**
+     * @param frameId     跟踪用的帧号，未启用跟踪时为0
+     * @param timestampUs 帧的时间戳，小于0时使用当前时间
+     */
+    private void encodeFrame(byte[] input, int frameId, long timestampUs) {
+        int inputBufferIndex = mEncoder.dequeueInputBuffer(-1);
         if (inputBufferIndex >= 0) {
-            ByteBuffer inputBuffer = mMediaCodec.getInputBuffer(inputBufferIndex);
+            ByteBuffer inputBuffer = mEncoder.getInputBuffer(inputBufferIndex);
             inputBuffer.clear();
             // inputBuffer.remaining()要大于或等于input.length否则报错
             // inputBuffer.remaining()大小与编码时设置的参数有关，如宽高和帧率等
             inputBuffer.put(input);
-            mMediaCodec.queueInputBuffer(inputBufferIndex, 0, input.length,
-                    System.nanoTime() / 1000, 0);
+            long inputNs = System.nanoTime();
+            long ptsUs = timestampUs >= 0 ? timestampUs : inputNs / 1000;
+            mInputPts[mInputNext] = ptsUs;
+            mInputNs[mInputNext] = inputNs;
+            mTraceFrameIds[mInputNext] = frameId;
+            mInputNext = (mInputNext + 1) % INPUT_SLOTS;
+            if (frameId != 0) {
+                PipelineTrace.beginFrame(PipelineTrace.FRAME_ENCODE, frameId);
+            }
+            mEncoder.queueInputBuffer(inputBufferIndex, 0, input.length, ptsUs, 0);
+        } else if (frameId != 0) {
+            PipelineTrace.endFrame(PipelineTrace.FRAME, frameId);
         }
 
         MuxerThread muxer = muxerThread.get();
@@ -288,10 +434,10 @@ public class MCVideoEncoder extends Thread {
             return;
         }
 
-        int outputIndex = mMediaCodec.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
+        int outputIndex = dequeueOutput();
         do {
             if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-                MediaFormat format = mMediaCodec.getOutputFormat();
+                MediaFormat format = mEncoder.getOutputFormat();
                 MuxerThread muxerRun = muxerThread.get();
                 if (muxerRun != null) {
                     muxer.addMediaTrack(MuxerThread.TRACK_VIDEO, format);
@@ -299,35 +445,78 @@ public class MCVideoEncoder extends Thread {
             } else if (outputIndex < 0) {
                 LogUtils.e("outputIndex < 0");
             } else {
-                ByteBuffer outputBuffer = mMediaCodec.getOutputBuffer(outputIndex);
+                ByteBuffer outputBuffer = mEncoder.getOutputBuffer(outputIndex);
                 if (mBufferInfo.size != 0) {
+                    int slot = takeInput(mBufferInfo.presentationTimeUs);
+                    int outputFrameId = 0;
+                    if (slot >= 0) {
+                        mStats.metrics.record(PipelineMetrics.STAGE_VIDEO_ENCODE,
+                                System.nanoTime() - mInputNs[slot]);
+                        outputFrameId = mTraceFrameIds[slot];
+                        mTraceFrameIds[slot] = 0;
+                    }
 
                     // adjust the ByteBuffer values to match BufferInfo (not needed?)
                     outputBuffer.position(mBufferInfo.offset);
                     outputBuffer.limit(mBufferInfo.offset + mBufferInfo.size);
 
-                    if (muxer.isMuxerStart()) {
-                        LogUtils.i("Video size = " + mBufferInfo.size);
-                        muxer.addMuxerData(new MuxerThread.MuxerData(MuxerThread.TRACK_VIDEO,
-                                outputBuffer, mBufferInfo));
-                    }
+                    // 混合器未启动时由MuxerThread暂存，启动后回放
+                    LogUtils.i("Video size = " + mBufferInfo.size);
+                    MuxerThread.MuxerData data = new MuxerThread.MuxerData(
+                            MuxerThread.TRACK_VIDEO, outputBuffer, mBufferInfo);
+                    data.frameId = outputFrameId;
+                    PipelineTrace.endFrame(PipelineTrace.FRAME_ENCODE, data.frameId);
+                    muxer.addMuxerData(data);
                 }
 
                 // 单独保存编码后的文件
-                if (isSaveH264 && null != mFileOutputStream) {
-                    byte[] outData = new byte[mBufferInfo.size];
-                    outputBuffer.get(outData);
+                if (isSaveH264 && null != mStreamChannel) {
+                    // 直接写编码器的输出缓冲，不复制到堆数组
+                    outputBuffer.position(mBufferInfo.offset);
+                    outputBuffer.limit(mBufferInfo.offset + mBufferInfo.size);
                     try {
-                        mFileOutputStream.write(outData, 0, outData.length);
+                        while (outputBuffer.hasRemaining()) {
+                            mStreamChannel.write(outputBuffer);
+                        }
                     } catch (IOException e) {
                         LogUtils.e("Save h264 exception = " + e);
                     }
                 }
 
                 // 释放
-                mMediaCodec.releaseOutputBuffer(outputIndex, false);
-                outputIndex = mMediaCodec.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
+                mEncoder.releaseOutputBuffer(outputIndex);
+                outputIndex = dequeueOutput();
             }
         } while (outputIndex >= 0);
     }
+
+    private int dequeueOutput() {
+        PipelineTrace.begin(PipelineTrace.DEQUEUE_OUTPUT);
+        int outputIndex = mEncoder.dequeueOutputBuffer(mBufferInfo, TIMEOUT);
+        PipelineTrace.end();
+        return outputIndex;
+    }
+
+    /**
+     * @return 该时间戳对应的送入记录下标，已被覆盖时返回-1
+     */
+    private int takeInput(long ptsUs) {
+        for (int i = 0; i < INPUT_SLOTS; i++) {
+            if (mInputNs[i] != 0 && mInputPts[i] == ptsUs) {
+                mInputNs[i] = 0;
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 编码队列中的帧槽：帧数据、入队时间、帧号和时间戳，构造时预分配，编码或丢弃后归还复用
+     */
+    private static class QueuedFrame {
+        byte[] data;
+        long enqueueNs;
+        int frameId;
+        long timestampUs;
+    }
 }
@@ -0,0 +1,43 @@
+package com.zfg.encode;
+
+import java.io.IOException;
+
+import javax.crypto.SecretKey;
+
+/**
+ * 创建录制用的编码器、音频采集和混合器，MuxerThread通过它获取所有平台相关的对象。
+ * 设备上使用AndroidMediaBackends，主机单测传入模拟实现即可在Linux上跑完整的采集、编码、混合流程
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public interface MediaBackends {
+
+    EncoderBackend createVideoEncoder(RecordingConfig config);
+
+    EncoderBackend createAudioEncoder(int sampleRate, int channelCount, int bitRate);
+
+    /**
+     * @param channelCount 1或2
+     */
+    AudioSourceBackend createAudioSource(int sampleRate, int channelCount);
+
+    /**
+     * @param filePath 输出的mp4文件
+     */
+    MuxerBackend createMuxer(String filePath) throws IOException;
+
+    /**
+     * @return 是否支持createEncryptedMuxer，不支持时由MuxerThread在文件结束后整体加密
+     */
+    boolean isEncryptedMuxerSupported();
+
+    /**
+     * 写入时加密的混合器，输出与EncryptingSink的MODE_CTR格式相同，文件中没有明文
+     *
+     * @param filePath  输出的加密文件
+     * @param masterKey 用于加密数据密钥的AES密钥
+     */
+    MuxerBackend createEncryptedMuxer(String filePath, SecretKey masterKey) throws IOException;
+}
@@ -0,0 +1,153 @@
+package com.zfg.encode;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import com.zfg.common.storage.StorageManager;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import javax.crypto.SecretKey;
+
+/**
+ * MediaMuxer写mp4。API 26及以上通过文件描述符写，保留StorageManager预分配的空间，
+ * 正常结束后截掉未用完的部分；以下版本MediaMuxer打开文件时会清空，预分配无效。
+ * 加密时通过EncryptedProxyFile的代理文件描述符写，数据加密后落盘
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class MediaMuxerBackend implements MuxerBackend {
+
+    private final MediaMuxer mMediaMuxer;
+    // 通过文件描述符写时打开的文件，否则为null
+    private final RandomAccessFile mFile;
+    // 加密写入时的代理文件，否则为null
+    private final EncryptedProxyFile mProxy;
+    // 按路径写时的文件（API 26以下），没有预分配，文件大小就是写到的位置，否则为null
+    private final File mPathFile;
+    private boolean isStopped;
+
+    public MediaMuxerBackend(String filePath) throws IOException {
+        mProxy = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mPathFile = null;
+            mFile = new RandomAccessFile(filePath, "rw");
+            try {
+                mMediaMuxer = new MediaMuxer(mFile.getFD(),
+                        MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            } catch (IOException | RuntimeException e) {
+                mFile.close();
+                throw e;
+            }
+        } else {
+            mFile = null;
+            mPathFile = new File(filePath);
+            mMediaMuxer = new MediaMuxer(filePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        }
+    }
+
+    /**
+     * 写入时加密，输出与EncryptingSink的MODE_CTR格式相同
+     *
+     * @param masterKey 用于加密数据密钥的AES密钥
+     */
+    @RequiresApi(api = Build.VERSION_CODES.O)
+    public MediaMuxerBackend(Context context, String filePath, SecretKey masterKey)
+            throws IOException {
+        mFile = null;
+        mPathFile = null;
+        mProxy = new EncryptedProxyFile(context, filePath, masterKey);
+        try {
+            mMediaMuxer = new MediaMuxer(mProxy.getFileDescriptor(),
+                    MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        } catch (IOException | RuntimeException e) {
+            mProxy.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int addTrack(MediaFormat format) {
+        return mMediaMuxer.addTrack(format);
+    }
+
+    @Override
+    public void start() {
+        mMediaMuxer.start();
+    }
+
+    @Override
+    public void writeSampleData(int trackIndex, ByteBuffer byteBuf,
+                                MediaCodec.BufferInfo bufferInfo) {
+        mMediaMuxer.writeSampleData(trackIndex, byteBuf, bufferInfo);
+    }
+
+    @Override
+    public void stop() {
+        mMediaMuxer.stop();
+        isStopped = true;
+    }
+
+    @Override
+    public void release() {
+        try {
+            mMediaMuxer.release();
+        } finally {
+            if (mFile != null) {
+                closeFile();
+            }
+            if (mProxy != null) {
+                mProxy.close();
+            }
+        }
+    }
+
+    /**
+     * MediaMuxer复制了文件描述符，与mFile共享文件偏移；按路径写时为文件大小；
+     * 写代理文件时为最近一次写入密文的结束位置
+     */
+    @Override
+    public long getWriteOffset() throws IOException {
+        if (mFile != null) {
+            return mFile.getFilePointer();
+        }
+        if (mProxy != null) {
+            return mProxy.getWriteOffset();
+        }
+        return mPathFile != null ? mPathFile.length() : -1;
+    }
+
+    @Override
+    public long getDataStart() {
+        return mProxy != null ? mProxy.getDataStart() : -1;
+    }
+
+    /**
+     * 未正常结束的文件mdat大小还没写入，不截断，留给Mp4Recovery修复
+     */
+    private void closeFile() {
+        try {
+            if (isStopped) {
+                StorageManager.trimPreallocatedMp4(mFile);
+            }
+        } catch (IOException e) {
+            LogUtils.e("trim preallocated mp4 exception = " + e);
+        }
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            LogUtils.e("close mp4 exception = " + e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.zfg.encode;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 混合器接口，方法与MediaMuxer一致，设备上由MediaMuxerBackend实现
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public interface MuxerBackend {
+
+    /**
+     * @return 轨道序号
+     */
+    int addTrack(MediaFormat format);
+
+    void start();
+
+    void writeSampleData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo);
+
+    /**
+     * 写文件尾，失败时抛出异常，此时文件不完整
+     */
+    void stop();
+
+    void release();
+
+    /**
+     * 可在其他线程调用
+     *
+     * @return 混合器在文件中当前写到的位置，之前的数据都已写进文件，无法获取时返回-1
+     */
+    long getWriteOffset() throws IOException;
+
+    /**
+     * 文件中是密文时无法按box找到mdat，由混合器提供，可在其他线程调用
+     *
+     * @return mdat数据在文件中开始的位置，还没写到mdat头或文件中是明文时返回-1
+     */
+    long getDataStart() throws IOException;
+}
@@ -2,19 +2,33 @@ package com.zfg.encode;
 
 import android.media.MediaCodec;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
 import android.util.Size;
 import android.view.Surface;
 
 import com.zfg.common.Constants;
-import com.zfg.common.utils.DateUtils;
+import com.zfg.common.crypto.EncryptingSink;
+import com.zfg.common.integrity.ChunkHasher;
+import com.zfg.common.integrity.GrowingFileHasher;
+import com.zfg.common.integrity.HashingChannel;
+import com.zfg.common.integrity.IntegrityManifest;
+import com.zfg.common.trace.PipelineTrace;
+import com.zfg.common.mp4.RecoverySidecar;
+import com.zfg.common.storage.StorageManager;
+import com.zfg.common.utils.FileNameGenerator;
+import com.zfg.common.utils.FrameBufferPool;
 import com.zfg.common.utils.LogUtils;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * 音视频混合类
@@ -33,18 +47,34 @@ public class MuxerThread extends Thread {
     public static final int FRAME_RATE = 25;
     public static final int GOP = 10;
     private static final int COMPRESS_RATIO = 256;
-    public static final int BIT_RATE = WIDTH * HEIGHT * 3 * 8 * FRAME_RATE / COMPRESS_RATIO;
+    public static final int BIT_RATE = computeBitRate(WIDTH, HEIGHT, FRAME_RATE);
     public static Size SIZE = new Size(WIDTH, HEIGHT);
 
     public static final int TRACK_VIDEO = 0;
     public static final int TRACK_AUDIO = 1;
+
+    // 混合器启动前每个轨道最多缓存的数据数，视频约2秒，音频约3秒（16kHz下每帧1024个采样）
+    private static final int PENDING_VIDEO_SECONDS = 2;
+    private static final int MAX_PENDING_AUDIO = 48;
+    // 使用StorageManager时按码率预分配这么长时间的文件空间，超出后文件照常增长
+    private static final int RESERVE_SECONDS = 300;
+    // 已写进文件的范围以混合器的文件偏移为准，另外只摘要离最新数据这么长时间之前的部分，
+    // 避开结尾可能被改写的数据
+    private static final int HASH_LAG_SECONDS = 3;
+    private static final long MIN_HASH_LAG_BYTES = 4 * 1024 * 1024;
     private final Object lock = new Object();
 
-    private static MuxerThread muxerThread;
+    private final RecordingConfig mConfig;
+    private final SessionStats mStats;
+    private final FrameBufferPool mBufferPool;
+    private final MediaBackends mBackends;
     private MCAudioEncoder mAudioThread;
     private MCVideoEncoder mVideoThread;
+    // 运行中的视频码率和帧间隔调整，视频编码线程创建前设置的在创建时应用
+    private volatile int mVideoBitRate;
+    private volatile int mFrameInterval = 1;
     private Vector<MuxerData> muxerDataList;
-    private MediaMuxer mediaMuxer;
+    private MuxerBackend mediaMuxer;
 
     private volatile boolean isVideoTrackAdd;
     private volatile boolean isAudioTrackAdd;
@@ -53,34 +83,110 @@ public class MuxerThread extends Thread {
     private int mVideoTrackIndex = -1;
     private int mAudioTrackIndex = -1;
 
-    private MuxerThread() {
+    // 输出文件名前缀，为null时在readyStart生成
+    private volatile String mSessionId;
+    // 输出文件路径，readyStart后有效
+    private volatile String mFilePath;
+    // 文件是否正常结束（写完moov），失败的文件保留修复文件，下次启动时由Mp4Recovery修复
+    private volatile boolean isFinished;
+    // 录制中断时用于修复文件，正常结束后删除
+    private volatile RecoverySidecar mSidecar;
+    // 由StorageManager创建的输出文件，写完后释放
+    private StorageManager mStorage;
+    private File mStorageFile;
+    private boolean isStorageSlowLogged;
+    // 当前文件由混合器写入时加密，否则配置了加密时在结束后整体加密
+    private boolean isMuxerEncrypted;
+    // 配置了完整性密钥时在后台摘要输出文件
+    private GrowingFileHasher mHasher;
+    // 写入当前文件的样本数据量
+    private long mFileDataBytes;
+    private final CountDownLatch mReadyLatch = new CountDownLatch(1);
+
+    // 混合器启动前（等待另一条轨道添加时）暂存的数据，启动后按时间戳顺序回放
+    private final ArrayDeque<MuxerData> mPendingVideo = new ArrayDeque<>();
+    private final ArrayDeque<MuxerData> mPendingAudio = new ArrayDeque<>();
+    // 已写入首个视频关键帧，此前的视频非关键帧全部丢弃，保证文件从IDR帧开始
+    private boolean isVideoKeyFrameQueued;
+    private boolean isKeyFrameRequested;
+    private int mPendingDropCount;
+
+    // 首帧耗时统计：从startMuxer（即按下开始录制）到第一个数据写入文件
+    private final long mCreateTimeNs = System.nanoTime();
+    private volatile long mFirstFrameLatencyMs = -1;
+
+    /**
+     * @param bufferPool 视频帧编码完后归还的缓存池，可为null
+     */
+    public MuxerThread(RecordingConfig config, SessionStats stats, FrameBufferPool bufferPool) {
+        this(config, stats, bufferPool, AndroidMediaBackends.getInstance());
+    }
 
+    /**
+     * @param backends 创建编码器、音频采集和混合器，主机单测时传入模拟实现
+     */
+    public MuxerThread(RecordingConfig config, SessionStats stats, FrameBufferPool bufferPool,
+                       MediaBackends backends) {
+        super("MuxerThread" + (config.getName() == null ? "" : "-" + config.getName()));
+        mConfig = config;
+        mStats = stats;
+        mBufferPool = bufferPool;
+        mBackends = backends;
     }
 
-    public static void startMuxer() {
-        if (null == muxerThread) {
-            synchronized (MuxerThread.class) {
-                if (null == muxerThread) {
-                    muxerThread = new MuxerThread();
-                    muxerThread.start();
-                }
-            }
-        }
+    /**
+     * 默认码率，按分辨率和帧率估算
+     */
+    public static int computeBitRate(int width, int height, int frameRate) {
+        return width * height * 3 * 8 * frameRate / COMPRESS_RATIO;
     }
 
-    public static void stopMuxer() {
-        if (null != muxerThread) {
-            muxerThread.exit();
-            try {
-                muxerThread.join();
-            } catch (InterruptedException e) {
-                LogUtils.e("stopMuxer interruptedException");
-            }
+    SessionStats getStats() {
+        return mStats;
+    }
+
+    RecordingConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * 创建单独保存的H264、AAC裸流文件，设置了StorageManager时先检查配额，
+     * 配置了加密时返回边写边加密的通道，文件名加上EncryptingSink.SUFFIX
+     *
+     * @param suffix 扩展名
+     * @param config 所属会话的配置，可为null
+     */
+    static WritableByteChannel openStreamFile(String suffix, RecordingConfig config)
+            throws IOException {
+        boolean isEncrypted = config != null && config.getEncryptionKey() != null;
+        String fileName = FileNameGenerator.getInstance().nextFileName(
+                isEncrypted ? suffix + EncryptingSink.SUFFIX : suffix);
+        FileChannel channel = new FileOutputStream(StorageManager.createOutputFile(fileName))
+                .getChannel();
+        if (!isEncrypted) {
+            return channel;
         }
-        muxerThread = null;
+        try {
+            return new EncryptingSink(channel, config.getEncryptionKey(),
+                    config.getEncryptionMode());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    String getFilePath() {
+        return mFilePath;
+    }
+
+    /**
+     * @return 线程退出后，文件是否正常结束
+     */
+    boolean isFinished() {
+        return isFinished;
     }
 
-    private void exit() {
+    void exit() {
         if (mVideoThread != null) {
             mVideoThread.stopEncodeVideo();
             try {
@@ -107,15 +213,22 @@ public class MuxerThread extends Thread {
 
     private void initMuxer() {
         muxerDataList = new Vector<>();
-        mAudioThread = new MCAudioEncoder((new WeakReference<>(this)));
-        mVideoThread = new MCVideoEncoder(MIME_TYPE, ROTATION, WIDTH, HEIGHT,
-                FRAME_RATE, BIT_RATE, GOP, new WeakReference<>(this));
-        mAudioThread.start();
+        if (mConfig.isAudioEnabled()) {
+            mAudioThread = new MCAudioEncoder(mBackends, new WeakReference<>(this));
+            mAudioThread.start();
+        }
+        mVideoThread = new MCVideoEncoder(mBackends.createVideoEncoder(mConfig),
+                new WeakReference<>(this));
+        mVideoThread.setFrameBufferPool(mBufferPool);
+        mVideoThread.setBitRate(mVideoBitRate);
+        mVideoThread.setFrameInterval(mFrameInterval);
         mVideoThread.start();
         try {
             readyStart();
         } catch (IOException e) {
             LogUtils.e("initMuxer IOException = " + e);
+        } finally {
+            mReadyLatch.countDown();
         }
     }
 
@@ -124,21 +237,71 @@ public class MuxerThread extends Thread {
         isVideoTrackAdd = false;
         isAudioTrackAdd = false;
         muxerDataList.clear();
-
-        // 创建文件夹
-        File dir = new File(Constants.PATH);
-        if (!dir.exists()) {
-            dir.mkdirs();
+        synchronized (lock) {
+            mPendingVideo.clear();
+            mPendingAudio.clear();
+            isVideoKeyFrameQueued = false;
+            isKeyFrameRequested = false;
+            mPendingDropCount = 0;
         }
-        // 创建文件
-        String fileName = DateUtils.getStringDate() + ".mp4";
-        File file = new File(Constants.PATH, fileName);
-        if (file.exists()) {
-            file.delete();
+
+        String sessionId = mSessionId != null ? mSessionId
+                : FileNameGenerator.getInstance().nextId();
+        isMuxerEncrypted = mConfig.getEncryptionKey() != null
+                && mBackends.isEncryptedMuxerSupported();
+        String fileName = sessionId
+                + (mConfig.getName() == null ? "" : "_" + mConfig.getName()) + ".mp4"
+                + (isMuxerEncrypted ? EncryptingSink.SUFFIX : "");
+        long bytesPerSecond = (mConfig.getBitRate()
+                + (mConfig.isAudioEnabled() ? MCAudioEncoder.BIT_RATE : 0)) / 8;
+        File file;
+        StorageManager storage = StorageManager.getDefault();
+        if (mConfig.getOutputDir() == null && storage != null) {
+            // 检查配额和剩余空间并预分配
+            if (!storage.isFastEnough(bytesPerSecond)) {
+                LogUtils.w("storage write speed " + storage.getWriteBytesPerSecond() / 1024
+                        + "KB/s may not keep up with " + bytesPerSecond / 1024 + "KB/s");
+            }
+            file = storage.createFile(fileName, bytesPerSecond * RESERVE_SECONDS);
+            mStorage = storage;
+            mStorageFile = file;
+        } else {
+            // 创建文件夹
+            File dir = new File(mConfig.getOutputDir() != null ? mConfig.getOutputDir()
+                    : Constants.PATH);
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            // 创建文件，不覆盖已有的录像
+            file = StorageManager.createUniqueFile(dir, fileName);
         }
         String filePath = file.getAbsolutePath();
 
-        mediaMuxer = new MediaMuxer(filePath, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+        mediaMuxer = isMuxerEncrypted
+                ? mBackends.createEncryptedMuxer(filePath, mConfig.getEncryptionKey())
+                : mBackends.createMuxer(filePath);
+        mFilePath = filePath;
+        // 结束后整体加密的文件在加密时摘要密文
+        if (mConfig.getIntegrityKey() != null
+                && (mConfig.getEncryptionKey() == null || isMuxerEncrypted)) {
+            MuxerBackend muxer = mediaMuxer;
+            long lagBytes = Math.max(bytesPerSecond * HASH_LAG_SECONDS, MIN_HASH_LAG_BYTES);
+            // 密文中找不到mdat，由写代理文件时记录
+            mHasher = isMuxerEncrypted
+                    ? new GrowingFileHasher(file, IntegrityManifest.CHUNK_SIZE, lagBytes,
+                    muxer::getWriteOffset, muxer::getDataStart)
+                    : new GrowingFileHasher(file, IntegrityManifest.CHUNK_SIZE, lagBytes,
+                    muxer::getWriteOffset);
+            mFileDataBytes = 0;
+        }
+        // 加密的文件无法修复，不写修复文件
+        if (!isMuxerEncrypted) {
+            try {
+                mSidecar = RecoverySidecar.create(file);
+            } catch (IOException e) {
+                LogUtils.e("create recovery sidecar exception = " + e);
+            }
+        }
         if (mAudioThread != null) {
             mAudioThread.setMuxerReady(true);
         }
@@ -148,32 +311,167 @@ public class MuxerThread extends Thread {
         LogUtils.i("readyStart filePath  = " + filePath);
     }
 
+    String awaitReady() {
+        try {
+            mReadyLatch.await();
+        } catch (InterruptedException e) {
+            LogUtils.e("awaitReady interruptedException");
+        }
+        return mFilePath;
+    }
+
     public boolean isMuxerStart() {
-        return isAudioTrackAdd && isVideoTrackAdd;
+        return (isAudioTrackAdd || !mConfig.isAudioEnabled()) && isVideoTrackAdd;
+    }
+
+    /**
+     * 首帧耗时，即从startMuxer到第一个数据写入文件的时间
+     *
+     * @return 毫秒，尚未写入时返回-1
+     */
+    public long getFirstFrameLatencyMs() {
+        return mFirstFrameLatencyMs;
+    }
+
+    void addVideoData(byte[] data) {
+        addVideoData(data, -1);
+    }
+
+    /**
+     * @param timestampUs 帧的时间戳，小于0时使用送入编码器的时间
+     */
+    void addVideoData(byte[] data, long timestampUs) {
+        if (mVideoThread != null) {
+            mVideoThread.add(data, timestampUs);
+        } else if (mBufferPool != null) {
+            mBufferPool.release(data);
+        }
+    }
+
+    /**
+     * @param sessionId 输出文件名前缀，start前调用
+     */
+    void setSessionId(String sessionId) {
+        mSessionId = sessionId;
+    }
+
+    /**
+     * @param bitRate 视频码率，单位bps，小于等于0时不调整
+     */
+    void setVideoBitRate(int bitRate) {
+        mVideoBitRate = bitRate;
+        MCVideoEncoder videoThread = mVideoThread;
+        if (videoThread != null) {
+            videoThread.setBitRate(bitRate);
+        }
     }
 
-    public static void addVideoPreviewData(byte[] data) {
-        if (muxerThread != null) {
-            muxerThread.addVideoData(data);
+    /**
+     * @param frameInterval 每多少帧编码一帧
+     */
+    void setFrameInterval(int frameInterval) {
+        mFrameInterval = frameInterval;
+        MCVideoEncoder videoThread = mVideoThread;
+        if (videoThread != null) {
+            videoThread.setFrameInterval(frameInterval);
         }
     }
 
-    private void addVideoData(byte[] data) {
+    /**
+     * 下一个送入的视频帧编码为关键帧
+     */
+    void forceKeyFrame() {
         if (mVideoThread != null) {
-            mVideoThread.add(data);
+            mVideoThread.forceKeyFrame();
         }
     }
 
+    /**
+     * @return 等待编码的视频帧数
+     */
+    int getVideoBacklog() {
+        return mVideoThread != null ? mVideoThread.getBacklog() : 0;
+    }
+
     public void addMuxerData(MuxerData data) {
-        if (!isMuxerStart()) {
+        // 编码器配置数据（SPS/PPS、AudioSpecificConfig）已包含在MediaFormat中，不需要写入
+        if (data.isCodecConfig()) {
             return;
         }
 
-        muxerDataList.add(data);
-
+        PipelineTrace.begin(PipelineTrace.ADD_MUXER_DATA);
         synchronized (lock) {
-            lock.notify();
+            if (!isMuxerStart()) {
+                addPendingData(data);
+            } else {
+                queueMuxerData(data);
+                lock.notify();
+            }
         }
+        PipelineTrace.end();
+    }
+
+    /**
+     * 混合器未启动时暂存数据，每个轨道的队列有上限，超出时丢弃最早的数据
+     */
+    private void addPendingData(MuxerData data) {
+        ArrayDeque<MuxerData> pending;
+        int max;
+        if (data.trackIndex == TRACK_VIDEO) {
+            pending = mPendingVideo;
+            max = mConfig.getFrameRate() * PENDING_VIDEO_SECONDS;
+        } else {
+            pending = mPendingAudio;
+            max = MAX_PENDING_AUDIO;
+        }
+        if (pending.size() >= max) {
+            MuxerData dropped = pending.poll();
+            PipelineTrace.endFrame(PipelineTrace.FRAME, dropped.frameId);
+            mPendingDropCount++;
+        }
+        pending.offer(data);
+    }
+
+    /**
+     * 混合器启动后按时间戳顺序回放暂存的数据，需持有lock
+     */
+    private void replayPendingData() {
+        int videoCount = mPendingVideo.size();
+        int audioCount = mPendingAudio.size();
+        while (!mPendingVideo.isEmpty() || !mPendingAudio.isEmpty()) {
+            MuxerData next;
+            if (mPendingAudio.isEmpty() || (!mPendingVideo.isEmpty()
+                    && mPendingVideo.peek().bufferInfo.presentationTimeUs
+                    <= mPendingAudio.peek().bufferInfo.presentationTimeUs)) {
+                next = mPendingVideo.poll();
+            } else {
+                next = mPendingAudio.poll();
+            }
+            queueMuxerData(next);
+        }
+        LogUtils.i("replayPendingData video = " + videoCount + ", audio = " + audioCount
+                + ", dropped = " + mPendingDropCount);
+    }
+
+    /**
+     * 加入待写入队列，第一个视频关键帧之前的视频数据会被丢弃，需持有lock
+     */
+    private void queueMuxerData(MuxerData data) {
+        if (data.trackIndex == TRACK_VIDEO && !isVideoKeyFrameQueued) {
+            if (!data.isKeyFrame()) {
+                // 缓存中的关键帧已被挤掉，让编码器尽快补一个
+                if (!isKeyFrameRequested && mVideoThread != null) {
+                    isKeyFrameRequested = true;
+                    mVideoThread.requestKeyFrame();
+                }
+                LogUtils.d("drop video frame before key frame, pts = "
+                        + data.bufferInfo.presentationTimeUs);
+                PipelineTrace.endFrame(PipelineTrace.FRAME, data.frameId);
+                return;
+            }
+            isVideoKeyFrameQueued = true;
+        }
+        muxerDataList.add(data);
     }
 
     public synchronized void addMediaTrack(int index, MediaFormat mediaFormat) {
@@ -195,17 +493,107 @@ public class MuxerThread extends Thread {
                 return;
             }
 
+            writeSidecarConfig(index, mediaFormat);
+
+            // 与addMuxerData互斥，保证暂存数据回放完成前不会有新数据插队
+            synchronized (lock) {
+                if (index == TRACK_VIDEO) {
+                    mVideoTrackIndex = track;
+                    isVideoTrackAdd = true;
+                    LogUtils.i("添加视频轨完成");
+                } else {
+                    mAudioTrackIndex = track;
+                    isAudioTrackAdd = true;
+                    LogUtils.i("添加音轨完成");
+                }
+
+                mediaMuxerStart();
+            }
+        }
+    }
+
+    /**
+     * 把编码配置写入修复文件，修复时用于重建moov
+     */
+    private void writeSidecarConfig(int index, MediaFormat mediaFormat) {
+        RecoverySidecar sidecar = mSidecar;
+        if (sidecar == null) {
+            return;
+        }
+        try {
             if (index == TRACK_VIDEO) {
-                mVideoTrackIndex = track;
-                isVideoTrackAdd = true;
-                LogUtils.i("添加视频轨完成");
+                sidecar.writeVideoConfig(mediaFormat.getString(MediaFormat.KEY_MIME),
+                        mediaFormat.getInteger(MediaFormat.KEY_WIDTH),
+                        mediaFormat.getInteger(MediaFormat.KEY_HEIGHT), mConfig.getFrameRate(),
+                        csdWithoutStartCode(mediaFormat, "csd-0"),
+                        csdWithoutStartCode(mediaFormat, "csd-1"));
             } else {
-                mAudioTrackIndex = track;
-                isAudioTrackAdd = true;
-                LogUtils.i("添加音轨完成");
+                sidecar.writeAudioConfig(mediaFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                        mediaFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                        csdWithoutStartCode(mediaFormat, "csd-0"));
+            }
+        } catch (IOException | RuntimeException e) {
+            LogUtils.e("write recovery sidecar exception = " + e);
+            closeSidecar(false);
+        }
+    }
+
+    /**
+     * 记录已写入的音频帧大小，AAC裸流修复时需要按此分帧
+     */
+    private void appendSidecarAudioSize(int size) {
+        RecoverySidecar sidecar = mSidecar;
+        if (sidecar == null) {
+            return;
+        }
+        try {
+            sidecar.appendAudioSize(size);
+        } catch (IOException e) {
+            LogUtils.e("append recovery sidecar exception = " + e);
+            closeSidecar(false);
+        }
+    }
+
+    /**
+     * 读取csd，去掉AVC的00 00 00 01或00 00 01起始码，AAC的csd原样返回
+     */
+    private static byte[] csdWithoutStartCode(MediaFormat mediaFormat, String key) {
+        ByteBuffer csd = mediaFormat.getByteBuffer(key);
+        if (csd == null) {
+            return new byte[0];
+        }
+        ByteBuffer src = csd.duplicate();
+        int start = src.position();
+        if (src.remaining() > 4 && src.get(start) == 0 && src.get(start + 1) == 0) {
+            if (src.get(start + 2) == 1) {
+                start += 3;
+            } else if (src.get(start + 2) == 0 && src.get(start + 3) == 1) {
+                start += 4;
             }
+        }
+        src.position(start);
+        byte[] bytes = new byte[src.remaining()];
+        src.get(bytes);
+        return bytes;
+    }
 
-            mediaMuxerStart();
+    /**
+     * @param isFinished 文件是否已正常结束，是则删除修复文件，否则保留用于修复
+     */
+    private void closeSidecar(boolean isFinished) {
+        RecoverySidecar sidecar = mSidecar;
+        if (sidecar == null) {
+            return;
+        }
+        mSidecar = null;
+        try {
+            if (isFinished) {
+                sidecar.delete();
+            } else {
+                sidecar.close();
+            }
+        } catch (IOException e) {
+            LogUtils.e("close recovery sidecar exception = " + e);
         }
     }
 
@@ -214,6 +602,7 @@ public class MuxerThread extends Thread {
             if (isMuxerStart()) {
                 mediaMuxer.start();
                 LogUtils.i("mediaMuxerStart");
+                replayPendingData();
                 lock.notify();
             }
         }
@@ -221,11 +610,15 @@ public class MuxerThread extends Thread {
 
     private void mediaMuxerStop() {
         if (mediaMuxer != null) {
+            boolean isFinished = false;
             try {
                 mediaMuxer.stop();
+                isFinished = true;
             } catch (Exception e) {
                 LogUtils.e("mediaMuxerStop stop exception = " + e);
             }
+            closeSidecar(isFinished);
+            this.isFinished = isFinished;
             try {
                 mediaMuxer.release();
             } catch (Exception e) {
@@ -233,12 +626,99 @@ public class MuxerThread extends Thread {
 
             }
             mediaMuxer = null;
+            if (isFinished && mConfig.getEncryptionKey() != null && !isMuxerEncrypted) {
+                encryptOutput();
+            }
+            if (mHasher != null) {
+                if (isFinished) {
+                    hashOutput();
+                } else {
+                    mHasher.cancel();
+                }
+                mHasher = null;
+            }
+        }
+        if (mStorageFile != null) {
+            mStorage.release(mStorageFile);
+            mStorageFile = null;
+        }
+    }
+
+    /**
+     * 不支持写入时加密（API 26以下）时的退路：文件正常结束后整体加密并删除明文。
+     * 录制中的文件是明文，删除的明文可能仍残留在存储上，异常结束的文件保留明文由Mp4Recovery修复，
+     * 因此这种方式不能保证录像在存储上始终是加密的
+     */
+    private void encryptOutput() {
+        File plain = new File(mFilePath);
+        File encrypted = null;
+        long startMs = System.currentTimeMillis();
+        // 同时摘要写出的密文
+        ChunkHasher hasher = mConfig.getIntegrityKey() != null
+                ? new ChunkHasher(IntegrityManifest.CHUNK_SIZE) : null;
+        try {
+            encrypted = StorageManager.createUniqueFile(plain.getParentFile(),
+                    plain.getName() + EncryptingSink.SUFFIX);
+            WritableByteChannel out = new FileOutputStream(encrypted).getChannel();
+            EncryptingSink.encryptFile(plain, hasher != null ? new HashingChannel(out, hasher)
+                    : out, mConfig.getEncryptionKey(), mConfig.getEncryptionMode());
+        } catch (IOException e) {
+            LogUtils.e("encrypt " + plain + " exception = " + e);
+            if (encrypted != null) {
+                encrypted.delete();
+            }
+            return;
+        }
+        plain.delete();
+        mFilePath = encrypted.getAbsolutePath();
+        LogUtils.i("encrypted " + mFilePath + ", size = " + encrypted.length() + ", cost = "
+                + (System.currentTimeMillis() - startMs) + "ms");
+        if (hasher != null) {
+            writeManifest(encrypted, hasher.getLength(), hasher.finish());
+        }
+    }
+
+    /**
+     * @return 混合器在文件中写到的位置，无法获取时返回-1
+     */
+    private long getWriteOffset() {
+        try {
+            return mediaMuxer.getWriteOffset();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 文件已结束，摘要录制中未摘要的块（文件头和最后几秒）并生成清单
+     */
+    private void hashOutput() {
+        File file = new File(mFilePath);
+        long startMs = System.currentTimeMillis();
+        try {
+            List<byte[]> hashes = mHasher.finish();
+            LogUtils.i("hash " + file.getName() + ", chunks = " + hashes.size()
+                    + ", hashed while recording = " + mHasher.getIncrementalChunkCount()
+                    + ", finish cost = " + (System.currentTimeMillis() - startMs) + "ms");
+            writeManifest(file, file.length(), hashes);
+        } catch (IOException e) {
+            LogUtils.e("hash " + file + " exception = " + e);
+        }
+    }
+
+    private void writeManifest(File file, long length, List<byte[]> hashes) {
+        try {
+            IntegrityManifest.create(file.getName(), length, IntegrityManifest.CHUNK_SIZE,
+                    hashes, mConfig.getIntegrityKey()).write(IntegrityManifest.fileFor(file));
+        } catch (Exception e) {
+            LogUtils.e("write manifest for " + file + " exception = " + e);
         }
     }
 
     @Override
     public void run() {
         LogUtils.i("MuxerThread start");
+        mStats.threads.incrementAndGet();
 
         initMuxer();
 
@@ -247,8 +727,10 @@ public class MuxerThread extends Thread {
                 if (muxerDataList.isEmpty()) {
                     synchronized (lock) {
                         try {
-                            LogUtils.i("等待混合数据...");
-                            lock.wait();
+                            if (muxerDataList.isEmpty() && !isExit) {
+                                LogUtils.i("等待混合数据...");
+                                lock.wait();
+                            }
                         } catch (InterruptedException e) {
                             e.printStackTrace();
                         }
@@ -263,7 +745,42 @@ public class MuxerThread extends Thread {
                     }
                     LogUtils.i("写入混合数据 size = " + data.bufferInfo.size);
                     try {
-                        mediaMuxer.writeSampleData(track, data.byteBuf, data.bufferInfo);
+                        long writeNs = System.nanoTime();
+                        mStats.metrics.record(PipelineMetrics.STAGE_MUX_QUEUE,
+                                writeNs - data.queuedNs);
+                        PipelineTrace.begin(PipelineTrace.WRITE_SAMPLE);
+                        try {
+                            mediaMuxer.writeSampleData(track, data.byteBuf, data.bufferInfo);
+                        } finally {
+                            PipelineTrace.end();
+                            PipelineTrace.endFrame(PipelineTrace.FRAME, data.frameId);
+                        }
+                        long writtenNs = System.nanoTime();
+                        mStats.metrics.record(PipelineMetrics.STAGE_MUX_WRITE,
+                                writtenNs - writeNs);
+                        mStats.writeMonitor.onWrite(data.bufferInfo.size, getWriteOffset(),
+                                writtenNs);
+                        if (mHasher != null) {
+                            mFileDataBytes += data.bufferInfo.size;
+                            mHasher.onDataWritten(mFileDataBytes);
+                        }
+                        if (!isStorageSlowLogged && mStats.writeMonitor.isSaturated()) {
+                            isStorageSlowLogged = true;
+                            LogUtils.w("storage can not keep up, " + mStats.writeMonitor);
+                        }
+                        if (data.trackIndex == TRACK_VIDEO) {
+                            mStats.metrics.onVideoWritten(writtenNs);
+                        }
+                        if (data.trackIndex == TRACK_AUDIO) {
+                            appendSidecarAudioSize(data.bufferInfo.size);
+                        }
+                        mStats.samplesWritten.incrementAndGet();
+                        mStats.bytesWritten.addAndGet(data.bufferInfo.size);
+                        if (mFirstFrameLatencyMs < 0) {
+                            mFirstFrameLatencyMs = (System.nanoTime() - mCreateTimeNs) / 1000000;
+                            LogUtils.i("开始录制到首帧写入耗时 = " + mFirstFrameLatencyMs + "ms, track = "
+                                    + data.trackIndex);
+                        }
                     } catch (Exception e) {
                         LogUtils.e("写入混合数据失败, exception = " + e + ", track = " + track);
                     }
@@ -271,8 +788,10 @@ public class MuxerThread extends Thread {
             } else {
                 synchronized (lock) {
                     try {
-                        LogUtils.i("等待音视轨添加...");
-                        lock.wait();
+                        if (!isMuxerStart() && !isExit) {
+                            LogUtils.i("等待音视轨添加...");
+                            lock.wait();
+                        }
                     } catch (InterruptedException e) {
                         LogUtils.e("addMediaTrack exception = " + e);
                     }
@@ -281,6 +800,7 @@ public class MuxerThread extends Thread {
         }
 
         mediaMuxerStop();
+        mStats.threads.decrementAndGet();
         LogUtils.i("MuxerThread exit");
     }
 
@@ -288,12 +808,38 @@ public class MuxerThread extends Thread {
         int trackIndex;
         ByteBuffer byteBuf;
         MediaCodec.BufferInfo bufferInfo;
-
+        // 加入混合队列的时间
+        final long queuedNs = System.nanoTime();
+        // 跟踪用的视频帧号，未启用跟踪时为0
+        int frameId;
+
+        /**
+         * 复制编码器输出的数据，编码器的输出缓冲区在releaseOutputBuffer后会被复用，
+         * 而数据可能要在队列中等待混合器启动后才写入
+         */
         public MuxerData(int trackIndex, ByteBuffer byteBuf, MediaCodec.BufferInfo bufferInfo) {
             this.trackIndex = trackIndex;
-            this.byteBuf = byteBuf;
-            this.bufferInfo = bufferInfo;
-            byteBuf.flip();
+            // 逐个字段赋值而不是调用set，主机单测的android.jar桩中set为空实现
+            this.bufferInfo = new MediaCodec.BufferInfo();
+            this.bufferInfo.offset = 0;
+            this.bufferInfo.size = bufferInfo.size;
+            this.bufferInfo.presentationTimeUs = bufferInfo.presentationTimeUs;
+            this.bufferInfo.flags = bufferInfo.flags;
+
+            ByteBuffer src = byteBuf.duplicate();
+            src.limit(bufferInfo.offset + bufferInfo.size);
+            src.position(bufferInfo.offset);
+            this.byteBuf = ByteBuffer.allocateDirect(bufferInfo.size);
+            this.byteBuf.put(src);
+            this.byteBuf.flip();
+        }
+
+        boolean isKeyFrame() {
+            return (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        }
+
+        boolean isCodecConfig() {
+            return (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
         }
     }
 }
@@ -0,0 +1,168 @@
+package com.zfg.encode;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 录制流水线各阶段的耗时分布和视频写入帧率。各线程直接记录，无锁；
+ * 耗时按对数分桶统计（每个2的幂区间16个子桶），百分位的相对误差在6.25%以内
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class PipelineMetrics {
+
+    // 读取、转换输入帧（摄像头分析或文件回放）
+    public static final int STAGE_SOURCE = 0;
+    // 视频帧在编码队列中等待
+    public static final int STAGE_VIDEO_QUEUE = 1;
+    // 视频帧送入编码器到取得输出
+    public static final int STAGE_VIDEO_ENCODE = 2;
+    // 每块PCM的语音检测、重采样和AGC
+    public static final int STAGE_AUDIO_DSP = 3;
+    // PCM送入编码器到取得AAC输出
+    public static final int STAGE_AUDIO_ENCODE = 4;
+    // 编码数据在混合队列中等待（含混合器启动前的暂存）
+    public static final int STAGE_MUX_QUEUE = 5;
+    // writeSampleData
+    public static final int STAGE_MUX_WRITE = 6;
+
+    private static final String[] STAGE_NAMES = {"source", "video queue", "video encode",
+            "audio dsp", "audio encode", "mux queue", "mux write"};
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // 覆盖到2^36微秒（约19小时）
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray[] mBuckets = new AtomicLongArray[STAGE_NAMES.length];
+    private final AtomicLongArray mCounts = new AtomicLongArray(STAGE_NAMES.length);
+    private final AtomicLongArray mMaxUs = new AtomicLongArray(STAGE_NAMES.length);
+
+    private final AtomicLong mVideoWritten = new AtomicLong();
+    private volatile long mFirstVideoWriteNs;
+    private volatile long mLastVideoWriteNs;
+
+    public PipelineMetrics() {
+        for (int i = 0; i < mBuckets.length; i++) {
+            mBuckets[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * @param stage      STAGE_*
+     * @param durationNs 耗时，小于0时按0记录
+     */
+    public void record(int stage, long durationNs) {
+        long us = Math.max(0, durationNs / 1000);
+        mBuckets[stage].incrementAndGet(bucketIndex(us));
+        mCounts.incrementAndGet(stage);
+        long max;
+        while (us > (max = mMaxUs.get(stage))) {
+            if (mMaxUs.compareAndSet(stage, max, us)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 一个视频帧写入文件，只在混合线程调用
+     */
+    void onVideoWritten(long nowNs) {
+        if (mVideoWritten.getAndIncrement() == 0) {
+            mFirstVideoWriteNs = nowNs;
+        }
+        mLastVideoWriteNs = nowNs;
+    }
+
+    private static int bucketIndex(long us) {
+        if (us < SUB_BUCKETS) {
+            return (int) us;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(us);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (us >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return 桶的中间值，单位微秒
+     */
+    private static long bucketValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long low = (long) (SUB_BUCKETS + sub) << shift;
+        return low + ((1L << shift) >> 1);
+    }
+
+    public long getCount(int stage) {
+        return mCounts.get(stage);
+    }
+
+    /**
+     * @param percentile 0到100
+     * @return 耗时百分位，单位微秒，没有记录时返回0
+     */
+    public long getPercentileUs(int stage, double percentile) {
+        long count = mCounts.get(stage);
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        AtomicLongArray buckets = mBuckets[stage];
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return Math.min(bucketValue(i), mMaxUs.get(stage));
+            }
+        }
+        return mMaxUs.get(stage);
+    }
+
+    public long getMaxUs(int stage) {
+        return mMaxUs.get(stage);
+    }
+
+    public long getVideoFramesWritten() {
+        return mVideoWritten.get();
+    }
+
+    /**
+     * @return 第一帧到最后一帧写入期间的平均写入帧率，不足两帧时返回0
+     */
+    public double getSustainedFps() {
+        long frames = mVideoWritten.get();
+        long elapsedNs = mLastVideoWriteNs - mFirstVideoWriteNs;
+        return frames < 2 || elapsedNs <= 0 ? 0 : (frames - 1) * 1e9 / elapsedNs;
+    }
+
+    /**
+     * @return 多行文本：写入帧率，以及每个有记录的阶段的次数、p50、p90、p99、最大耗时
+     */
+    public String report() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "video frames = %d, sustained fps = %.2f",
+                mVideoWritten.get(), getSustainedFps()));
+        for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+            if (mCounts.get(stage) == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.US,
+                    "\n%-13s n=%-7d p50=%8.2fms p90=%8.2fms p99=%8.2fms max=%8.2fms",
+                    STAGE_NAMES[stage], mCounts.get(stage),
+                    getPercentileUs(stage, 50) / 1000.0, getPercentileUs(stage, 90) / 1000.0,
+                    getPercentileUs(stage, 99) / 1000.0, mMaxUs.get(stage) / 1000.0));
+        }
+        return builder.toString();
+    }
+}
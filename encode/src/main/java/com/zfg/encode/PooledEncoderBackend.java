@@ -0,0 +1,149 @@
+package com.zfg.encode;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Bundle;
+
+import com.zfg.common.utils.LogUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 从EncoderPool获取的MediaCodec编码器，release时回收到池中复用
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class PooledEncoderBackend implements EncoderBackend {
+
+    private final String mPoolKey;
+    private final MediaFormat mFormat;
+    private EncoderPool.PooledCodec mPooledCodec;
+    private volatile MediaCodec mMediaCodec;
+    // 运行中调整过码率，回收前需恢复为编码参数中的码率
+    private boolean isBitRateChanged;
+
+    /**
+     * @param poolKey 编码器池中区分编码配置的标识
+     * @param format  编码参数
+     */
+    public PooledEncoderBackend(String poolKey, MediaFormat format) {
+        mPoolKey = poolKey;
+        mFormat = format;
+    }
+
+    @Override
+    public boolean start() {
+        if (mFormat == null) {
+            return false;
+        }
+        mPooledCodec = EncoderPool.getInstance().acquire(mPoolKey, mFormat);
+        if (mPooledCodec == null) {
+            LogUtils.e("Create media encoder failed, key = " + mPoolKey);
+            return false;
+        }
+        mMediaCodec = mPooledCodec.getCodec();
+        LogUtils.i("Start mediacodec " + mPoolKey + ", reused = " + mPooledCodec.isReused());
+        return true;
+    }
+
+    @Override
+    public MediaFormat getCachedOutputFormat() {
+        return mPooledCodec != null ? mPooledCodec.getOutputFormat() : null;
+    }
+
+    @Override
+    public int dequeueInputBuffer(long timeoutUs) {
+        return mMediaCodec.dequeueInputBuffer(timeoutUs);
+    }
+
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+        return mMediaCodec.getInputBuffer(index);
+    }
+
+    @Override
+    public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs,
+                                 int flags) {
+        mMediaCodec.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+    }
+
+    @Override
+    public int dequeueOutputBuffer(MediaCodec.BufferInfo info, long timeoutUs) {
+        return mMediaCodec.dequeueOutputBuffer(info, timeoutUs);
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return mMediaCodec.getOutputBuffer(index);
+    }
+
+    @Override
+    public MediaFormat getOutputFormat() {
+        MediaFormat format = mMediaCodec.getOutputFormat();
+        mPooledCodec.setOutputFormat(format);
+        return format;
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index) {
+        mMediaCodec.releaseOutputBuffer(index, false);
+    }
+
+    @Override
+    public void requestKeyFrame() {
+        MediaCodec codec = mMediaCodec;
+        if (codec == null) {
+            return;
+        }
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+        try {
+            codec.setParameters(params);
+            LogUtils.i("requestKeyFrame");
+        } catch (IllegalStateException e) {
+            LogUtils.e("requestKeyFrame exception = " + e);
+        }
+    }
+
+    @Override
+    public void setBitRate(int bitRate) {
+        MediaCodec codec = mMediaCodec;
+        if (codec == null) {
+            return;
+        }
+        if (applyBitRate(codec, bitRate)) {
+            isBitRateChanged = true;
+            LogUtils.i("setBitRate " + bitRate + ", key = " + mPoolKey);
+        }
+    }
+
+    private static boolean applyBitRate(MediaCodec codec, int bitRate) {
+        Bundle params = new Bundle();
+        params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, bitRate);
+        try {
+            codec.setParameters(params);
+            return true;
+        } catch (IllegalStateException e) {
+            LogUtils.e("setBitRate exception = " + e);
+            return false;
+        }
+    }
+
+    @Override
+    public void release() {
+        if (mPooledCodec != null) {
+            LogUtils.i("Stop mediacodec " + mPoolKey);
+            if (isBitRateChanged && mMediaCodec != null) {
+                // 池中按编码参数区分编码器，复用前恢复原码率
+                applyBitRate(mMediaCodec, mFormat.getInteger(MediaFormat.KEY_BIT_RATE));
+                isBitRateChanged = false;
+            }
+            // 回收到编码器池，下次录制直接复用
+            mMediaCodec = null;
+            EncoderPool.getInstance().recycle(mPooledCodec);
+            mPooledCodec = null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.zfg.encode;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+import com.zfg.common.utils.LogUtils;
+
+/**
+ * 通过PowerManager监听发热状态，需要API 29，低版本始终报告STATUS_NONE，
+ * 此时只能依靠丢帧率降级
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class PowerManagerThermalMonitor implements ThermalMonitor {
+
+    private final PowerManager mPowerManager;
+    private PowerManager.OnThermalStatusChangedListener mSystemListener;
+
+    public PowerManagerThermalMonitor(Context context) {
+        mPowerManager = (PowerManager) context.getApplicationContext()
+                .getSystemService(Context.POWER_SERVICE);
+    }
+
+    @Override
+    public synchronized void start(Listener listener) {
+        stop();
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q || mPowerManager == null) {
+            LogUtils.i("thermal status not supported, sdk = " + Build.VERSION.SDK_INT);
+            listener.onThermalStatusChanged(STATUS_NONE);
+            return;
+        }
+        mSystemListener = status -> {
+            LogUtils.i("thermal status = " + status);
+            listener.onThermalStatusChanged(status);
+        };
+        // 直接在系统回调线程通知，不经过主线程
+        mPowerManager.addThermalStatusListener(Runnable::run, mSystemListener);
+        listener.onThermalStatusChanged(mPowerManager.getCurrentThermalStatus());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (mSystemListener != null) {
+            mPowerManager.removeThermalStatusListener(mSystemListener);
+            mSystemListener = null;
+        }
+    }
+}
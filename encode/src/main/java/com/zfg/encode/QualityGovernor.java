@@ -0,0 +1,189 @@
+package com.zfg.encode;
+
+import com.zfg.common.utils.LogUtils;
+
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 长时间录制的降级控制：根据发热状态、编码丢帧率和存储写入速度逐级降低负载，恢复后逐级升回。
+ * 级别越高负载越低，每级包含之前各级的措施：
+ * 1 减少分析（场景检测、移动侦测），2 暂停代理文件，3 降低码率，4 降低帧率。
+ * 发热状态决定最低级别，立即生效；丢帧率超过阈值或存储跟不上时每次只降一级，
+ * 且两次降级之间留出生效时间；
+ * 发热状态低于当前级别且不再丢帧并持续一段时间后才升一级，避免来回切换
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class QualityGovernor implements ThermalMonitor.Listener {
+
+    public static final int LEVEL_FULL = 0;
+    public static final int LEVEL_REDUCED_ANALYSIS = 1;
+    public static final int LEVEL_PROXY_PAUSED = 2;
+    public static final int LEVEL_REDUCED_BITRATE = 3;
+    public static final int LEVEL_REDUCED_FRAME_RATE = 4;
+    public static final int MAX_LEVEL = LEVEL_REDUCED_FRAME_RATE;
+
+    // 降低码率级别的码率比例
+    public static final float REDUCED_BITRATE_FACTOR = 0.6f;
+    // 降低帧率级别每几帧编码一帧
+    public static final int REDUCED_FRAME_INTERVAL = 2;
+
+    // 评估间隔
+    static final long EVALUATE_INTERVAL_MS = 2000;
+    // 一个评估周期内丢帧率超过此值时降一级
+    static final float STEP_DOWN_DROP_RATE = 0.05f;
+    // 丢帧率低于此值才算有余量
+    static final float HEADROOM_DROP_RATE = 0.01f;
+    // 因丢帧降级后至少间隔这么久才再次因丢帧降级，等上一次降级生效
+    static final long STEP_DOWN_INTERVAL_MS = 10000;
+    // 持续有余量这么久才升一级，两次升级之间也至少间隔这么久
+    static final long STEP_UP_DELAY_MS = 60000;
+
+    private final Listener mListener;
+    private volatile int mThermalStatus = ThermalMonitor.STATUS_NONE;
+
+    private int mLevel = LEVEL_FULL;
+    private long mLastChangeMs = Long.MIN_VALUE / 2;
+    private long mHeadroomSinceMs = -1;
+    private long mLastFramesIn;
+    private long mLastFramesDropped;
+
+    private ThermalMonitor mMonitor;
+    private ScheduledExecutorService mExecutor;
+
+    /**
+     * @param listener 级别变化时在评估线程回调
+     */
+    public QualityGovernor(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 从LEVEL_FULL开始，监听发热状态，并定时按会话的丢帧统计评估，第一次评估立即执行
+     */
+    public synchronized void start(ThermalMonitor monitor, final SessionStats stats) {
+        stop();
+        mLevel = LEVEL_FULL;
+        mLastChangeMs = Long.MIN_VALUE / 2;
+        mHeadroomSinceMs = -1;
+        mLastFramesIn = stats.getVideoFramesIn();
+        mLastFramesDropped = stats.getVideoFramesDropped();
+        mMonitor = monitor;
+        monitor.start(this);
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        mExecutor.scheduleWithFixedDelay(() -> evaluate(System.nanoTime() / 1000000,
+                stats.getVideoFramesIn(), stats.getVideoFramesDropped(),
+                stats.getWriteMonitor().isSaturated()),
+                0, EVALUATE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (mMonitor != null) {
+            mMonitor.stop();
+            mMonitor = null;
+        }
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+            mExecutor = null;
+        }
+    }
+
+    @Override
+    public void onThermalStatusChanged(int status) {
+        mThermalStatus = status;
+    }
+
+    /**
+     * 按发热状态和上次评估以来的丢帧率调整级别，定时调用，单测可直接调用
+     *
+     * @param nowMs         单调时间，单位毫秒
+     * @param framesIn      累计送入编码队列的帧数
+     * @param framesDropped 累计因队列满丢弃的帧数
+     */
+    public void evaluate(long nowMs, long framesIn, long framesDropped) {
+        evaluate(nowMs, framesIn, framesDropped, false);
+    }
+
+    /**
+     * @param isStorageSaturated 存储写入跟不上，与丢帧率过高同样处理
+     */
+    public void evaluate(long nowMs, long framesIn, long framesDropped,
+                         boolean isStorageSaturated) {
+        int newLevel;
+        String reason;
+        synchronized (this) {
+            long in = framesIn - mLastFramesIn;
+            long dropped = framesDropped - mLastFramesDropped;
+            mLastFramesIn = framesIn;
+            mLastFramesDropped = framesDropped;
+            float dropRate = in > 0 ? (float) dropped / in : 0;
+            int thermalStatus = mThermalStatus;
+            int floor = thermalFloor(thermalStatus);
+
+            if (floor > mLevel) {
+                newLevel = floor;
+                reason = "thermal status " + thermalStatus;
+            } else if ((dropRate > STEP_DOWN_DROP_RATE || isStorageSaturated)
+                    && mLevel < MAX_LEVEL && nowMs - mLastChangeMs >= STEP_DOWN_INTERVAL_MS) {
+                newLevel = mLevel + 1;
+                reason = isStorageSaturated ? "storage saturated"
+                        : String.format(Locale.US, "drop rate %.1f%%", dropRate * 100);
+            } else if (dropRate < HEADROOM_DROP_RATE && !isStorageSaturated && floor < mLevel) {
+                if (mHeadroomSinceMs < 0) {
+                    mHeadroomSinceMs = nowMs;
+                }
+                if (nowMs - mHeadroomSinceMs < STEP_UP_DELAY_MS
+                        || nowMs - mLastChangeMs < STEP_UP_DELAY_MS) {
+                    return;
+                }
+                newLevel = mLevel - 1;
+                reason = "headroom, thermal status " + thermalStatus;
+            } else {
+                mHeadroomSinceMs = -1;
+                return;
+            }
+            mLevel = newLevel;
+            mLastChangeMs = nowMs;
+            mHeadroomSinceMs = -1;
+        }
+        LogUtils.i("QualityGovernor level = " + newLevel + ", " + reason);
+        if (mListener != null) {
+            mListener.onLevelChanged(newLevel, reason);
+        }
+    }
+
+    /**
+     * 发热状态对应的最低级别
+     */
+    static int thermalFloor(int status) {
+        switch (status) {
+            case ThermalMonitor.STATUS_NONE:
+                return LEVEL_FULL;
+            case ThermalMonitor.STATUS_LIGHT:
+                return LEVEL_REDUCED_ANALYSIS;
+            case ThermalMonitor.STATUS_MODERATE:
+                return LEVEL_PROXY_PAUSED;
+            case ThermalMonitor.STATUS_SEVERE:
+                return LEVEL_REDUCED_BITRATE;
+            default:
+                return LEVEL_REDUCED_FRAME_RATE;
+        }
+    }
+
+    public synchronized int getLevel() {
+        return mLevel;
+    }
+
+    public interface Listener {
+        /**
+         * @param level  LEVEL_*
+         * @param reason 变化原因，用于日志
+         */
+        void onLevelChanged(int level, String reason);
+    }
+}
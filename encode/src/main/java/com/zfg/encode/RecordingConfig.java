@@ -0,0 +1,258 @@
+package com.zfg.encode;
+
+import com.zfg.common.crypto.EncryptingSink;
+
+import java.security.PrivateKey;
+
+import javax.crypto.SecretKey;
+
+/**
+ * 录制参数，每个RecordingSession一份
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class RecordingConfig {
+
+    private final String name;
+    private final String mimeType;
+    private final int rotation;
+    private final int width;
+    private final int height;
+    private final int frameRate;
+    private final int bitRate;
+    private final int gop;
+    private final boolean audioEnabled;
+    private final String outputDir;
+    private final SecretKey encryptionKey;
+    private final int encryptionMode;
+    private final PrivateKey integrityKey;
+    private final boolean vadGateEnabled;
+    private final boolean agcEnabled;
+
+    private RecordingConfig(Builder builder) {
+        name = builder.name;
+        mimeType = builder.mimeType;
+        rotation = builder.rotation;
+        width = builder.width;
+        height = builder.height;
+        frameRate = builder.frameRate;
+        bitRate = builder.bitRate > 0 ? builder.bitRate
+                : MuxerThread.computeBitRate(builder.width, builder.height, builder.frameRate);
+        gop = builder.gop;
+        audioEnabled = builder.audioEnabled;
+        outputDir = builder.outputDir;
+        encryptionKey = builder.encryptionKey;
+        encryptionMode = builder.encryptionMode;
+        integrityKey = builder.integrityKey;
+        vadGateEnabled = builder.vadGateEnabled;
+        agcEnabled = builder.agcEnabled;
+    }
+
+    /**
+     * 会话名，会加在输出文件名后面，区分同时录制的多个文件，可为null
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public int getRotation() {
+        return rotation;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public int getGop() {
+        return gop;
+    }
+
+    /**
+     * 是否录制音频，同一时间一般只有一个会话能打开麦克风
+     */
+    public boolean isAudioEnabled() {
+        return audioEnabled;
+    }
+
+    /**
+     * 输出文件夹，为null时使用Constants.PATH
+     */
+    public String getOutputDir() {
+        return outputDir;
+    }
+
+    /**
+     * 输出文件的加密主密钥，为null时不加密
+     */
+    public SecretKey getEncryptionKey() {
+        return encryptionKey;
+    }
+
+    /**
+     * EncryptingSink.MODE_CTR或MODE_GCM
+     */
+    public int getEncryptionMode() {
+        return encryptionMode;
+    }
+
+    /**
+     * 签名完整性清单的私钥，为null时不生成清单
+     */
+    public PrivateKey getIntegrityKey() {
+        return integrityKey;
+    }
+
+    /**
+     * 是否把非语音段替换为舒适噪声，关闭时音频原样编码，语音段只导出为元数据
+     */
+    public boolean isVadGateEnabled() {
+        return vadGateEnabled;
+    }
+
+    /**
+     * 是否对采集的音频做自动增益控制和限幅，关闭时按采集电平编码
+     */
+    public boolean isAgcEnabled() {
+        return agcEnabled;
+    }
+
+    /**
+     * 编码器池中区分视频编码配置的标识
+     */
+    public String getVideoPoolKey() {
+        return MCVideoEncoder.poolKey(mimeType, rotation, width, height, frameRate, bitRate, gop);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingConfig{" + name + ", " + width + "x" + height + "@" + frameRate
+                + ", bitRate=" + bitRate + ", audio=" + audioEnabled + ", encrypted=" + (encryptionKey != null) + "}";
+    }
+
+    public static class Builder {
+        private String name;
+        private String mimeType = MuxerThread.MIME_TYPE;
+        private int rotation = MuxerThread.ROTATION;
+        private int width = MuxerThread.WIDTH;
+        private int height = MuxerThread.HEIGHT;
+        private int frameRate = MuxerThread.FRAME_RATE;
+        // 小于等于0时按分辨率和帧率计算
+        private int bitRate;
+        private int gop = MuxerThread.GOP;
+        private boolean audioEnabled = true;
+        private String outputDir;
+        private SecretKey encryptionKey;
+        private int encryptionMode = EncryptingSink.MODE_GCM;
+        private PrivateKey integrityKey;
+        private boolean vadGateEnabled;
+        private boolean agcEnabled;
+
+        public Builder setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder setMimeType(String mimeType) {
+            this.mimeType = mimeType;
+            return this;
+        }
+
+        public Builder setRotation(int rotation) {
+            this.rotation = rotation;
+            return this;
+        }
+
+        public Builder setSize(int width, int height) {
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        public Builder setFrameRate(int frameRate) {
+            this.frameRate = frameRate;
+            return this;
+        }
+
+        public Builder setBitRate(int bitRate) {
+            this.bitRate = bitRate;
+            return this;
+        }
+
+        public Builder setGop(int gop) {
+            this.gop = gop;
+            return this;
+        }
+
+        public Builder setAudioEnabled(boolean audioEnabled) {
+            this.audioEnabled = audioEnabled;
+            return this;
+        }
+
+        public Builder setOutputDir(String outputDir) {
+            this.outputDir = outputDir;
+            return this;
+        }
+
+        /**
+         * 加密输出文件，文件名加上EncryptingSink.SUFFIX。H264/AAC裸流边写边加密；
+         * mp4在API 26及以上通过代理文件描述符边写边加密，固定为MODE_CTR（MediaMuxer会回头改写），
+         * 以下版本在分段结束后整体加密，录制中和异常结束的文件是明文
+         *
+         * @param key  主密钥，为null时不加密
+         * @param mode EncryptingSink.MODE_CTR或MODE_GCM，API 26及以上的mp4不使用
+         */
+        public Builder setEncryption(SecretKey key, int mode) {
+            this.encryptionKey = key;
+            this.encryptionMode = mode;
+            return this;
+        }
+
+        /**
+         * 为每个mp4生成签名的完整性清单（IntegrityManifest），录制时在后台分块摘要
+         *
+         * @param key EC或RSA私钥，为null时不生成
+         */
+        public Builder setIntegrityKey(PrivateKey key) {
+            this.integrityKey = key;
+            return this;
+        }
+
+        /**
+         * 语音活动检测判为非语音的段替换为低电平舒适噪声，可降低码率但会丢掉环境声，默认关闭
+         */
+        public Builder setVadGateEnabled(boolean vadGateEnabled) {
+            this.vadGateEnabled = vadGateEnabled;
+            return this;
+        }
+
+        /**
+         * 采集音频做自动增益控制（AutomaticGainControl）和限幅，小声时最多放大8倍，默认关闭
+         */
+        public Builder setAgcEnabled(boolean agcEnabled) {
+            this.agcEnabled = agcEnabled;
+            return this;
+        }
+
+        public RecordingConfig build() {
+            return new RecordingConfig(this);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.zfg.encode;
+
+import com.zfg.common.utils.FrameBufferPool;
+import com.zfg.common.utils.LogUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 录制会话，每个会话有独立的编码器、混合器和缓存，可以同时录制多路，
+ * 如全分辨率存档加低分辨率代理，或前后摄像头同时录制
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class RecordingSession {
+
+    // 正在录制的会话
+    private static final List<RecordingSession> sActiveSessions = new CopyOnWriteArrayList<>();
+
+    private final RecordingConfig mConfig;
+    private final SessionStats mStats = new SessionStats();
+    // 开始、停止在此线程串行执行，停止时的等待编码线程退出、写文件尾等耗时操作都不在调用线程，
+    // 不再使用的会话需调用release结束此线程
+    private final ExecutorService mControlExecutor = Executors.newSingleThreadExecutor();
+    private volatile MuxerThread mMuxerThread;
+    private volatile FrameBufferPool mBufferPool;
+    private volatile MediaBackends mBackends = AndroidMediaBackends.getInstance();
+    // 运行中的码率、帧率调整，跨越多次start保留
+    private volatile int mVideoBitRate;
+    private volatile int mFrameInterval = 1;
+
+    public RecordingSession(RecordingConfig config) {
+        mConfig = config;
+    }
+
+    /**
+     * 预览期间在后台预创建编码器，缩短按下开始录制到写入首帧的时间
+     */
+    public static void prewarmEncoders(RecordingConfig config) {
+        EncoderPool pool = EncoderPool.getInstance();
+        pool.prewarmAsync(config.getVideoPoolKey(), MCVideoEncoder.createVideoFormat(
+                config.getMimeType(), config.getRotation(), config.getWidth(), config.getHeight(),
+                config.getFrameRate(), config.getBitRate(), config.getGop()));
+        if (config.isAudioEnabled()) {
+            pool.prewarmAsync(MCAudioEncoder.poolKey(), MCAudioEncoder.createAudioFormat());
+            pool.prewarmAudioRecordAsync(MCAudioEncoder.SAMPLE_RATE_HZ,
+                    AudioRecordSource.channelConfig(MCAudioEncoder.CHANNEL_COUNT),
+                    AudioRecordSource.AUDIO_FORMAT);
+        }
+    }
+
+    /**
+     * 释放编码器池，退出预览时调用，仍在录制的会话停止后编码器直接释放
+     */
+    public static void releaseEncoders() {
+        EncoderPool.getInstance().releaseAsync();
+    }
+
+    /**
+     * @return 正在录制的会话
+     */
+    public static List<RecordingSession> getActiveSessions() {
+        return new ArrayList<>(sActiveSessions);
+    }
+
+    /**
+     * 异步开始录制，调用线程不阻塞
+     *
+     * @param callback 输出文件创建后在后台线程回调，可为null
+     * @return 输出文件路径，创建失败时为null
+     */
+    public Future<String> start(Callback callback) {
+        return start(null, callback);
+    }
+
+    /**
+     * 异步开始录制，同时录制的多个会话传入相同的ID，输出文件名按会话名区分
+     *
+     * @param sessionId 输出文件名的前缀，为null时由FileNameGenerator生成
+     * @param callback  输出文件创建后在后台线程回调，可为null
+     * @return 输出文件路径，创建失败时为null
+     */
+    public Future<String> start(String sessionId, Callback callback) {
+        return mControlExecutor.submit(() -> {
+            if (mMuxerThread == null) {
+                mMuxerThread = new MuxerThread(mConfig, mStats, mBufferPool, mBackends);
+                mMuxerThread.setSessionId(sessionId);
+                mMuxerThread.setVideoBitRate(mVideoBitRate);
+                mMuxerThread.setFrameInterval(mFrameInterval);
+                mMuxerThread.start();
+                sActiveSessions.add(this);
+                LogUtils.i("RecordingSession start " + mConfig + ", active = "
+                        + sActiveSessions.size());
+            }
+            String filePath = mMuxerThread.awaitReady();
+            if (callback != null) {
+                callback.onStarted(filePath);
+            }
+            return filePath;
+        });
+    }
+
+    /**
+     * 异步停止录制，调用线程只提交任务，等待编码线程退出和写文件尾都在后台线程完成
+     *
+     * @param callback 文件写完后在后台线程回调，可为null
+     * @return 输出文件路径，未在录制时为null
+     */
+    public Future<String> stop(Callback callback) {
+        return mControlExecutor.submit(() -> {
+            MuxerThread thread = mMuxerThread;
+            String filePath = null;
+            boolean isFinished = false;
+            if (thread != null) {
+                thread.exit();
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    LogUtils.e("stop interruptedException");
+                }
+                filePath = thread.getFilePath();
+                isFinished = thread.isFinished();
+                mMuxerThread = null;
+                sActiveSessions.remove(this);
+                LogUtils.i("RecordingSession stop " + mConfig + ", " + mStats);
+            }
+            if (callback != null) {
+                callback.onStopped(filePath, isFinished);
+            }
+            return filePath;
+        });
+    }
+
+    /**
+     * 不再使用时调用，已提交的开始、停止任务执行完后结束控制线程，之后不能再start
+     */
+    public void release() {
+        mControlExecutor.shutdown();
+    }
+
+    /**
+     * 设置帧缓存池，addVideoData送入的帧编码完或丢弃后归还，需在start前设置
+     */
+    public void setFrameBufferPool(FrameBufferPool bufferPool) {
+        mBufferPool = bufferPool;
+    }
+
+    /**
+     * 替换编码器、音频采集和混合器的创建，如文件回放时使用ReplayMediaBackends，需在start前设置
+     */
+    public void setMediaBackends(MediaBackends backends) {
+        mBackends = backends;
+    }
+
+    /**
+     * 送入一帧NV12视频数据，设置了帧缓存池时调用方不能再使用data，由会话负责归还
+     */
+    public void addVideoData(byte[] data) {
+        addVideoData(data, -1);
+    }
+
+    /**
+     * 送入一帧NV12视频数据并指定时间戳，如回放时按源帧序号生成，文件中的帧间隔与源一致
+     *
+     * @param timestampUs 单位微秒，与System.nanoTime() / 1000同一基准且递增，
+     *                    小于0时使用送入编码器的时间
+     */
+    public void addVideoData(byte[] data, long timestampUs) {
+        MuxerThread thread = mMuxerThread;
+        if (thread != null) {
+            thread.addVideoData(data, timestampUs);
+        } else if (mBufferPool != null) {
+            mBufferPool.release(data);
+        }
+    }
+
+    /**
+     * 运行中调整视频码率，如发热时降低码率，不需要重新开始录制
+     *
+     * @param bitRate 单位bps，小于等于0时恢复为配置的码率
+     */
+    public void setVideoBitRate(int bitRate) {
+        mVideoBitRate = bitRate > 0 ? bitRate : mConfig.getBitRate();
+        MuxerThread thread = mMuxerThread;
+        if (thread != null) {
+            thread.setVideoBitRate(mVideoBitRate);
+        }
+    }
+
+    /**
+     * 降低帧率，每frameInterval个送入的帧只编码一帧，为1时恢复
+     */
+    public void setFrameInterval(int frameInterval) {
+        mFrameInterval = Math.max(1, frameInterval);
+        MuxerThread thread = mMuxerThread;
+        if (thread != null) {
+            thread.setFrameInterval(mFrameInterval);
+        }
+    }
+
+    /**
+     * 下一个通过addVideoData送入的帧编码为关键帧，在送入该帧前调用，
+     * 场景切换、分段和推流需要关键帧时使用
+     */
+    public void forceKeyFrame() {
+        MuxerThread thread = mMuxerThread;
+        if (thread != null) {
+            thread.forceKeyFrame();
+        }
+    }
+
+    /**
+     * @return 等待编码的视频帧数，用于判断编码是否跟不上
+     */
+    public int getVideoBacklog() {
+        MuxerThread thread = mMuxerThread;
+        return thread != null ? thread.getVideoBacklog() : 0;
+    }
+
+    public boolean isRecording() {
+        return mMuxerThread != null;
+    }
+
+    public RecordingConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * @return 本会话的线程、编码器占用和数据统计
+     */
+    public SessionStats getStats() {
+        return mStats;
+    }
+
+    /**
+     * 异步开始、停止的结果回调，在后台线程执行
+     */
+    public interface Callback {
+        /**
+         * @param filePath 输出文件路径，创建失败时为null
+         */
+        void onStarted(String filePath);
+
+        /**
+         * @param filePath   输出文件路径，未在录制时为null
+         * @param isFinished 文件是否正常结束，为false时文件缺少moov无法播放，保留了修复文件，
+         *                   下次启动时由Mp4Recovery修复
+         */
+        void onStopped(String filePath, boolean isFinished);
+    }
+}
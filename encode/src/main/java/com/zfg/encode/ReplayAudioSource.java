@@ -0,0 +1,165 @@
+package com.zfg.encode;
+
+import com.zfg.common.audio.AudioDspChain;
+import com.zfg.common.replay.PcmFileReader;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 从PCM或WAV文件回放音频，代替麦克风采集。文件格式与请求的不同时经AudioDspChain转换（不做AGC），
+ * 到文件末尾后从头循环。实时模式按采样率阻塞读取，与AudioRecord一致；否则不等待，尽快返回
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class ReplayAudioSource implements AudioSourceBackend {
+
+    // 每次读取的时长
+    private static final int BUFFER_MS = 40;
+
+    private final File mFile;
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final boolean isRealTime;
+
+    private PcmFileReader mReader;
+    private AudioDspChain mDspChain;
+    private short[] mFileData;
+    // 转换后未读完的数据
+    private short[] mConverted;
+    private int mConvertedOffset;
+    private int mConvertedCount;
+    private long mStartNs;
+    private long mFramesRead;
+
+    /**
+     * @param sampleRate   输出采样率，裸PCM文件也按此采样率读取
+     * @param channelCount 输出声道数，裸PCM文件也按此声道数读取
+     * @param isRealTime   是否按采样率实时输出
+     */
+    public ReplayAudioSource(File file, int sampleRate, int channelCount, boolean isRealTime) {
+        mFile = file;
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        this.isRealTime = isRealTime;
+    }
+
+    @Override
+    public boolean start() {
+        stop();
+        PcmFileReader reader;
+        try {
+            reader = new PcmFileReader(mFile, mSampleRate, mChannelCount);
+        } catch (IOException e) {
+            LogUtils.e("open replay audio failed: " + e.getMessage());
+            return false;
+        }
+        if (reader.getFrameCount() == 0) {
+            LogUtils.e("replay audio is empty: " + mFile);
+            closeQuietly(reader);
+            return false;
+        }
+        int fileFrames = reader.getSampleRate() * BUFFER_MS / 1000;
+        mFileData = new short[fileFrames * reader.getChannelCount()];
+        if (reader.getSampleRate() != mSampleRate || reader.getChannelCount() != mChannelCount) {
+            mDspChain = new AudioDspChain(reader.getSampleRate(), reader.getChannelCount(),
+                    mSampleRate, mChannelCount, fileFrames);
+            mDspChain.setAgcEnabled(false);
+            mConverted = new short[mDspChain.getMaxOutputFrames() * mChannelCount];
+            LogUtils.i("replay audio " + reader.getSampleRate() + "Hz/"
+                    + reader.getChannelCount() + " -> " + mSampleRate + "Hz/" + mChannelCount);
+        }
+        mConvertedOffset = 0;
+        mConvertedCount = 0;
+        mFramesRead = 0;
+        mStartNs = System.nanoTime();
+        mReader = reader;
+        return true;
+    }
+
+    @Override
+    public int read(short[] pcm, int offset, int samples) {
+        PcmFileReader reader = mReader;
+        if (reader == null) {
+            return -1;
+        }
+        samples = samples / mChannelCount * mChannelCount;
+        int count = mDspChain == null ? readDirect(reader, pcm, offset, samples)
+                : readConverted(reader, pcm, offset, samples);
+        mFramesRead += count / mChannelCount;
+        if (isRealTime) {
+            // 等到这些数据“采集”完成的时间
+            long waitNs = mStartNs + mFramesRead * 1000000000L / mSampleRate - System.nanoTime();
+            if (waitNs > 0) {
+                try {
+                    Thread.sleep(waitNs / 1000000, (int) (waitNs % 1000000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return count;
+    }
+
+    private int readDirect(PcmFileReader reader, short[] pcm, int offset, int samples) {
+        int count = 0;
+        while (count < samples) {
+            int read = reader.read(pcm, offset + count, samples - count);
+            if (read < 0) {
+                reader.rewind();
+                continue;
+            }
+            count += read;
+        }
+        return count;
+    }
+
+    private int readConverted(PcmFileReader reader, short[] pcm, int offset, int samples) {
+        int count = 0;
+        while (count < samples) {
+            if (mConvertedCount == 0) {
+                int read = reader.read(mFileData, 0, mFileData.length);
+                if (read < 0) {
+                    reader.rewind();
+                    continue;
+                }
+                int frames = mDspChain.process(mFileData, null,
+                        read / reader.getChannelCount(), mConverted);
+                mConvertedOffset = 0;
+                mConvertedCount = frames * mChannelCount;
+                continue;
+            }
+            int copy = Math.min(samples - count, mConvertedCount);
+            System.arraycopy(mConverted, mConvertedOffset, pcm, offset + count, copy);
+            mConvertedOffset += copy;
+            mConvertedCount -= copy;
+            count += copy;
+        }
+        return count;
+    }
+
+    @Override
+    public int getBufferSamples() {
+        return mSampleRate * BUFFER_MS / 1000 * mChannelCount;
+    }
+
+    @Override
+    public void stop() {
+        if (mReader != null) {
+            closeQuietly(mReader);
+            mReader = null;
+            mDspChain = null;
+        }
+    }
+
+    private static void closeQuietly(PcmFileReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LogUtils.e("close replay audio failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.zfg.encode;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.crypto.SecretKey;
+
+/**
+ * 回放时使用：音频采集替换为ReplayAudioSource，编码器和混合器仍由delegate创建
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class ReplayMediaBackends implements MediaBackends {
+
+    private final MediaBackends mDelegate;
+    private final File mAudioFile;
+    private final boolean isRealTime;
+
+    /**
+     * @param delegate   创建编码器、混合器，设备上为AndroidMediaBackends
+     * @param audioFile  回放的PCM或WAV文件，为null时仍使用delegate的音频采集
+     * @param isRealTime 是否按采样率实时回放音频
+     */
+    public ReplayMediaBackends(MediaBackends delegate, File audioFile, boolean isRealTime) {
+        mDelegate = delegate;
+        mAudioFile = audioFile;
+        this.isRealTime = isRealTime;
+    }
+
+    @Override
+    public EncoderBackend createVideoEncoder(RecordingConfig config) {
+        return mDelegate.createVideoEncoder(config);
+    }
+
+    @Override
+    public EncoderBackend createAudioEncoder(int sampleRate, int channelCount, int bitRate) {
+        return mDelegate.createAudioEncoder(sampleRate, channelCount, bitRate);
+    }
+
+    @Override
+    public AudioSourceBackend createAudioSource(int sampleRate, int channelCount) {
+        if (mAudioFile == null) {
+            return mDelegate.createAudioSource(sampleRate, channelCount);
+        }
+        return new ReplayAudioSource(mAudioFile, sampleRate, channelCount, isRealTime);
+    }
+
+    @Override
+    public MuxerBackend createMuxer(String filePath) throws IOException {
+        return mDelegate.createMuxer(filePath);
+    }
+
+    @Override
+    public boolean isEncryptedMuxerSupported() {
+        return mDelegate.isEncryptedMuxerSupported();
+    }
+
+    @Override
+    public MuxerBackend createEncryptedMuxer(String filePath, SecretKey masterKey)
+            throws IOException {
+        return mDelegate.createEncryptedMuxer(filePath, masterKey);
+    }
+}
@@ -0,0 +1,153 @@
+package com.zfg.encode;
+
+import com.zfg.common.replay.YuvFileReader;
+import com.zfg.common.utils.FrameBufferPool;
+import com.zfg.common.utils.LogUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * 用YUV文件（和可选的PCM/WAV文件）代替摄像头和麦克风跑完整的录制流程，输入固定，结果可复现，
+ * 用于比较不同版本、不同设备的编码性能。视频读完即结束，结束时输出持续帧率和各阶段耗时分布
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class ReplaySession {
+
+    // 非实时模式下编码队列积压达到该帧数时暂停送帧，避免丢帧
+    private static final int MAX_BACKLOG = 2;
+
+    private final RecordingConfig mConfig;
+    private final File mYuvFile;
+    private final int mYuvFormat;
+    private final File mAudioFile;
+    private final boolean isRealTime;
+    private volatile boolean isExit;
+    private Thread mThread;
+
+    /**
+     * @param config     录制参数，YUV文件按其宽高读取，实时模式按其帧率送帧
+     * @param yuvFormat  YuvFileReader.FORMAT_NV12或FORMAT_I420
+     * @param audioFile  回放的音频，为null时使用麦克风（config不录音时忽略）
+     * @param isRealTime true按帧率和采样率实时回放；false尽快送入，测量最大吞吐
+     */
+    public ReplaySession(RecordingConfig config, File yuvFile, int yuvFormat, File audioFile,
+                         boolean isRealTime) {
+        mConfig = config;
+        mYuvFile = yuvFile;
+        mYuvFormat = yuvFormat;
+        mAudioFile = audioFile;
+        this.isRealTime = isRealTime;
+    }
+
+    /**
+     * 在后台线程开始回放
+     *
+     * @param listener 回放结束后在后台线程回调，可为null
+     */
+    public synchronized void start(Listener listener) {
+        if (mThread != null) {
+            return;
+        }
+        isExit = false;
+        mThread = new Thread(() -> replay(listener), "ReplaySession");
+        mThread.start();
+    }
+
+    /**
+     * 提前结束回放，已送入的帧仍会写入文件，结果照常回调
+     */
+    public synchronized void stop() {
+        isExit = true;
+        mThread = null;
+    }
+
+    private void replay(Listener listener) {
+        String filePath = null;
+        String report;
+        YuvFileReader reader = null;
+        RecordingSession session = null;
+        try {
+            reader = new YuvFileReader(mYuvFile, mConfig.getWidth(), mConfig.getHeight(),
+                    mYuvFormat);
+            FrameBufferPool bufferPool = new FrameBufferPool(reader.getFrameSize(),
+                    MAX_BACKLOG + 4);
+            session = new RecordingSession(mConfig);
+            session.setFrameBufferPool(bufferPool);
+            session.setMediaBackends(new ReplayMediaBackends(AndroidMediaBackends.getInstance(),
+                    mAudioFile, isRealTime));
+            if (session.start(null).get() == null) {
+                throw new IOException("create output file failed");
+            }
+            LogUtils.i("ReplaySession start " + mYuvFile + ", frames = "
+                    + reader.getFrameCount() + ", realTime = " + isRealTime);
+            PipelineMetrics metrics = session.getStats().getMetrics();
+            long frameIntervalNs = 1000000000L / mConfig.getFrameRate();
+            long startNs = System.nanoTime();
+            // 时间戳按源帧序号生成，非实时模式编码得比实时快或慢时文件中的帧间隔也与源一致，
+            // 解码后可按时间戳找回源帧（QualityEvaluator）
+            for (int i = 0; i < reader.getFrameCount() && !isExit; i++) {
+                if (isRealTime) {
+                    sleepNs(startNs + i * frameIntervalNs - System.nanoTime());
+                } else {
+                    while (session.getVideoBacklog() >= MAX_BACKLOG && !isExit) {
+                        Thread.sleep(1);
+                    }
+                }
+                long readNs = System.nanoTime();
+                byte[] frame = bufferPool.acquire();
+                reader.readFrame(i, frame);
+                metrics.record(PipelineMetrics.STAGE_SOURCE, System.nanoTime() - readNs);
+                session.addVideoData(frame, (startNs + i * frameIntervalNs) / 1000);
+            }
+            filePath = session.stop(null).get();
+            report = metrics.report();
+            LogUtils.i("ReplaySession finished " + filePath + "\n" + report);
+        } catch (IOException | ExecutionException e) {
+            report = "replay failed: " + e.getMessage();
+            LogUtils.e(report);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report = "replay interrupted";
+            LogUtils.e(report);
+        } finally {
+            if (session != null) {
+                if (session.isRecording()) {
+                    session.stop(null);
+                }
+                session.release();
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LogUtils.e("close replay video failed: " + e.getMessage());
+                }
+            }
+        }
+        if (listener != null) {
+            listener.onFinished(filePath, report);
+        }
+    }
+
+    private static void sleepNs(long ns) throws InterruptedException {
+        if (ns > 0) {
+            Thread.sleep(ns / 1000000, (int) (ns % 1000000));
+        }
+    }
+
+    /**
+     * 回放结果回调，在后台线程执行
+     */
+    public interface Listener {
+        /**
+         * @param filePath 输出文件路径，失败时为null
+         * @param report   PipelineMetrics.report()的内容，失败时为错误信息
+         */
+        void onFinished(String filePath, String report);
+    }
+}
@@ -0,0 +1,80 @@
+package com.zfg.encode;
+
+import com.zfg.common.storage.WriteThroughputMonitor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个录制会话的资源和数据统计，用来评估设备能同时支撑多少路录制
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public class SessionStats {
+
+    // 当前占用的线程数和编码器数
+    final AtomicInteger threads = new AtomicInteger();
+    final AtomicInteger codecs = new AtomicInteger();
+
+    // 送入视频编码队列的帧数和因队列满被丢弃的帧数
+    final AtomicLong videoFramesIn = new AtomicLong();
+    final AtomicLong videoFramesDropped = new AtomicLong();
+    // 降帧率时按间隔跳过、不送入编码队列的帧数
+    final AtomicLong videoFramesSkipped = new AtomicLong();
+
+    // 写入文件的数据
+    final AtomicLong samplesWritten = new AtomicLong();
+    final AtomicLong bytesWritten = new AtomicLong();
+
+    // 各阶段耗时分布
+    final PipelineMetrics metrics = new PipelineMetrics();
+
+    // 写文件耗时，用于发现存储跟不上
+    final WriteThroughputMonitor writeMonitor = new WriteThroughputMonitor();
+
+    public int getThreads() {
+        return threads.get();
+    }
+
+    public int getCodecs() {
+        return codecs.get();
+    }
+
+    public long getVideoFramesIn() {
+        return videoFramesIn.get();
+    }
+
+    public long getVideoFramesDropped() {
+        return videoFramesDropped.get();
+    }
+
+    public long getVideoFramesSkipped() {
+        return videoFramesSkipped.get();
+    }
+
+    public long getSamplesWritten() {
+        return samplesWritten.get();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    public WriteThroughputMonitor getWriteMonitor() {
+        return writeMonitor;
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + threads.get() + ", codecs=" + codecs.get()
+                + ", framesIn=" + videoFramesIn.get() + ", framesDropped=" + videoFramesDropped.get()
+                + ", framesSkipped=" + videoFramesSkipped.get()
+                + ", samples=" + samplesWritten.get() + ", bytes=" + bytesWritten.get();
+    }
+}
@@ -0,0 +1,34 @@
+package com.zfg.encode;
+
+/**
+ * 设备发热状态来源，设备上为PowerManagerThermalMonitor，单测中可直接回调模拟的状态序列
+ *
+ * @author zhongfanggui
+ * @version 3.5.0
+ * @since 2026/10/19
+ */
+public interface ThermalMonitor {
+
+    // 发热状态，取值与PowerManager.THERMAL_STATUS_*相同
+    int STATUS_NONE = 0;
+    int STATUS_LIGHT = 1;
+    int STATUS_MODERATE = 2;
+    int STATUS_SEVERE = 3;
+    int STATUS_CRITICAL = 4;
+    int STATUS_EMERGENCY = 5;
+    int STATUS_SHUTDOWN = 6;
+
+    /**
+     * 开始监听，立即回调一次当前状态
+     */
+    void start(Listener listener);
+
+    void stop();
+
+    interface Listener {
+        /**
+         * @param status STATUS_*，可能在任意线程回调
+         */
+        void onThermalStatusChanged(int status);
+    }
+}
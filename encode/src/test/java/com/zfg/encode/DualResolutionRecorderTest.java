@@ -0,0 +1,48 @@
+package com.zfg.encode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 代理尺寸按短边缩放，横屏、竖屏一致，宽高对齐到16
+ */
+public class DualResolutionRecorderTest {
+
+    private static RecordingConfig proxyOf(int width, int height) {
+        return DualResolutionRecorder.createProxyConfig(new RecordingConfig.Builder()
+                .setSize(width, height)
+                .build());
+    }
+
+    private static void assertSize(int width, int height, RecordingConfig config) {
+        assertEquals(width, config.getWidth());
+        assertEquals(height, config.getHeight());
+    }
+
+    @Test
+    public void proxy_scalesShortSide() {
+        assertSize(624, 352, proxyOf(1920, 1080));
+        // 竖屏时宽高交换，不能按高度缩放成202x360
+        assertSize(352, 624, proxyOf(1080, 1920));
+        assertSize(464, 352, proxyOf(640, 480));
+    }
+
+    @Test
+    public void proxy_neverLargerThanMaster() {
+        assertSize(320, 240, proxyOf(320, 240));
+        assertSize(176, 144, proxyOf(176, 144));
+    }
+
+    @Test
+    public void proxy_alignedTo16() {
+        int[][] sizes = {{1920, 1080}, {1080, 1920}, {1280, 720}, {720, 1280}, {1440, 1080},
+                {2560, 1440}, {1080, 2340}};
+        for (int[] size : sizes) {
+            RecordingConfig proxy = proxyOf(size[0], size[1]);
+            assertEquals(0, proxy.getWidth() % 16);
+            assertEquals(0, proxy.getHeight() % 16);
+            assertEquals(size[0] > size[1], proxy.getWidth() > proxy.getHeight());
+        }
+    }
+}
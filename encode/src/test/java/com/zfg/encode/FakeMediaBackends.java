@@ -0,0 +1,440 @@
+package com.zfg.encode;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+/**
+ * 主机单测用的模拟编码器、音频采集和混合器。编码器不做真正的压缩，按可配置的延时和抖动输出
+ * 合成的H.264 NAL（4字节长度前缀）或AAC帧；音频采集按实时速率产生正弦波；混合器只记录写入的数据
+ */
+class FakeMediaBackends implements MediaBackends {
+
+    private static final int AUDIO_INPUT_CAPACITY = 16 * 1024;
+
+    // 每帧编码耗时（阻塞编码线程），模拟编码器跟不上
+    private final long mProcessUs;
+    // 输入到输出的延时和随机抖动
+    private final long mLatencyUs;
+    private final long mJitterUs;
+    private final long mSeed;
+
+    volatile FakeEncoder videoEncoder;
+    volatile FakeEncoder audioEncoder;
+    volatile FakeMuxer muxer;
+
+    FakeMediaBackends(long processUs, long latencyUs, long jitterUs, long seed) {
+        mProcessUs = processUs;
+        mLatencyUs = latencyUs;
+        mJitterUs = jitterUs;
+        mSeed = seed;
+    }
+
+    @Override
+    public EncoderBackend createVideoEncoder(RecordingConfig config) {
+        int frameBytes = config.getBitRate() / 8 / config.getFrameRate();
+        videoEncoder = new FakeEncoder(true, config.getWidth() * config.getHeight() * 3 / 2,
+                frameBytes, config.getGop() * config.getFrameRate(), 0, 0, mProcessUs, mLatencyUs,
+                mJitterUs, mSeed);
+        return videoEncoder;
+    }
+
+    @Override
+    public EncoderBackend createAudioEncoder(int sampleRate, int channelCount, int bitRate) {
+        int frameBytes = bitRate / 8 * FakeEncoder.AAC_FRAME_SAMPLES / sampleRate;
+        audioEncoder = new FakeEncoder(false, AUDIO_INPUT_CAPACITY, frameBytes, 1, sampleRate,
+                channelCount, 0, mLatencyUs, mJitterUs, mSeed + 1);
+        return audioEncoder;
+    }
+
+    @Override
+    public AudioSourceBackend createAudioSource(int sampleRate, int channelCount) {
+        return new FakeAudioSource(sampleRate, channelCount);
+    }
+
+    @Override
+    public MuxerBackend createMuxer(String filePath) {
+        muxer = new FakeMuxer(videoEncoder != null ? videoEncoder.outputFormat : null);
+        return muxer;
+    }
+
+    @Override
+    public boolean isEncryptedMuxerSupported() {
+        return false;
+    }
+
+    @Override
+    public MuxerBackend createEncryptedMuxer(String filePath, SecretKey masterKey) {
+        throw new UnsupportedOperationException();
+    }
+
+    static class FakeEncoder implements EncoderBackend {
+
+        static final int AAC_FRAME_SAMPLES = 1024;
+
+        private final boolean isVideo;
+        private final int mFrameBytes;
+        private final int mGopFrames;
+        private final int mSampleRate;
+        private final int mChannelCount;
+        private final long mProcessUs;
+        private final long mLatencyUs;
+        private final long mJitterUs;
+        private final Random mRandom;
+        private final ByteBuffer mInput;
+        // 主机上MediaFormat是空实现，FakeMuxer按对象区分轨道
+        final MediaFormat outputFormat = new MediaFormat();
+        // 编码中的帧，按输入顺序输出
+        private final ArrayDeque<Output> mOutputs = new ArrayDeque<>();
+        private Output mDequeued;
+        private long mLastReadyNs;
+        private long mFrameIndex;
+        private int mPendingSamples;
+        private boolean isFormatReported;
+        private volatile boolean isStarted;
+        private volatile boolean isKeyFrameRequested;
+
+        volatile int startCount;
+        volatile int releaseCount;
+        volatile int keyFrameRequests;
+        volatile int bitRate;
+
+        /**
+         * @param inputCapacity 输入缓冲区大小，视频为一帧NV12
+         * @param frameBytes    平均每帧输出大小，视频关键帧为4倍
+         */
+        FakeEncoder(boolean isVideo, int inputCapacity, int frameBytes, int gopFrames,
+                    int sampleRate, int channelCount, long processUs, long latencyUs,
+                    long jitterUs, long seed) {
+            this.isVideo = isVideo;
+            mInput = ByteBuffer.allocateDirect(inputCapacity);
+            mFrameBytes = Math.max(frameBytes, 16);
+            mGopFrames = Math.max(gopFrames, 1);
+            mSampleRate = sampleRate;
+            mChannelCount = channelCount;
+            mProcessUs = processUs;
+            mLatencyUs = latencyUs;
+            mJitterUs = jitterUs;
+            mRandom = new Random(seed);
+        }
+
+        @Override
+        public boolean start() {
+            isStarted = true;
+            startCount++;
+            return true;
+        }
+
+        @Override
+        public MediaFormat getCachedOutputFormat() {
+            return null;
+        }
+
+        @Override
+        public int dequeueInputBuffer(long timeoutUs) {
+            return isStarted ? 0 : MediaCodec.INFO_TRY_AGAIN_LATER;
+        }
+
+        @Override
+        public ByteBuffer getInputBuffer(int index) {
+            return mInput;
+        }
+
+        @Override
+        public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs,
+                                     int flags) {
+            if (mProcessUs > 0) {
+                sleepUs(mProcessUs);
+            }
+            if (isVideo) {
+                boolean isKey = mFrameIndex % mGopFrames == 0 || isKeyFrameRequested;
+                isKeyFrameRequested = false;
+                mFrameIndex = isKey ? 1 : mFrameIndex + 1;
+                int bytes = isKey ? mFrameBytes * 4
+                        : mFrameBytes / 2 + mRandom.nextInt(mFrameBytes);
+                addOutput(nal(bytes, isKey), presentationTimeUs,
+                        isKey ? MediaCodec.BUFFER_FLAG_KEY_FRAME : 0);
+            } else {
+                // 每1024个采样输出一帧AAC
+                int samples = size / 2 / mChannelCount;
+                long ptsUs = presentationTimeUs - (long) mPendingSamples * 1000000 / mSampleRate;
+                mPendingSamples += samples;
+                while (mPendingSamples >= AAC_FRAME_SAMPLES) {
+                    ByteBuffer frame = ByteBuffer.allocate(mFrameBytes - 8 + mRandom.nextInt(16));
+                    frame.put(0, (byte) 0x21);
+                    addOutput(frame, ptsUs, MediaCodec.BUFFER_FLAG_KEY_FRAME);
+                    ptsUs += (long) AAC_FRAME_SAMPLES * 1000000 / mSampleRate;
+                    mPendingSamples -= AAC_FRAME_SAMPLES;
+                }
+            }
+        }
+
+        private static ByteBuffer nal(int bytes, boolean isKey) {
+            ByteBuffer nal = ByteBuffer.allocate(bytes);
+            nal.putInt(0, bytes - 4);
+            nal.put(4, (byte) (isKey ? 0x65 : 0x41));
+            return nal;
+        }
+
+        private void addOutput(ByteBuffer data, long ptsUs, int flags) {
+            long jitterNs = mJitterUs > 0 ? (long) (mRandom.nextDouble() * mJitterUs * 1000) : 0;
+            // 编码器按输入顺序输出，抖动不会让后面的帧先出来
+            long readyNs = Math.max(mLastReadyNs, System.nanoTime() + mLatencyUs * 1000 + jitterNs);
+            mLastReadyNs = readyNs;
+            mOutputs.add(new Output(data, ptsUs, flags, readyNs));
+        }
+
+        @Override
+        public int dequeueOutputBuffer(MediaCodec.BufferInfo info, long timeoutUs) {
+            Output head = mOutputs.peek();
+            if (head == null) {
+                sleepUs(timeoutUs);
+                return MediaCodec.INFO_TRY_AGAIN_LATER;
+            }
+            long waitNs = head.readyNs - System.nanoTime();
+            if (waitNs > timeoutUs * 1000) {
+                sleepUs(timeoutUs);
+                return MediaCodec.INFO_TRY_AGAIN_LATER;
+            }
+            if (waitNs > 0) {
+                sleepUs(waitNs / 1000);
+            }
+            if (!isFormatReported) {
+                // 与MediaCodec一样，第一个输出前先回调格式变化
+                isFormatReported = true;
+                return MediaCodec.INFO_OUTPUT_FORMAT_CHANGED;
+            }
+            mDequeued = mOutputs.poll();
+            info.offset = 0;
+            info.size = mDequeued.data.capacity();
+            info.presentationTimeUs = mDequeued.ptsUs;
+            info.flags = mDequeued.flags;
+            return 0;
+        }
+
+        @Override
+        public ByteBuffer getOutputBuffer(int index) {
+            ByteBuffer data = mDequeued.data.duplicate();
+            data.clear();
+            return data;
+        }
+
+        @Override
+        public MediaFormat getOutputFormat() {
+            return outputFormat;
+        }
+
+        @Override
+        public void releaseOutputBuffer(int index) {
+            mDequeued = null;
+        }
+
+        @Override
+        public void requestKeyFrame() {
+            if (isStarted) {
+                keyFrameRequests++;
+                isKeyFrameRequested = true;
+            }
+        }
+
+        @Override
+        public void setBitRate(int bitRate) {
+            if (isStarted) {
+                this.bitRate = bitRate;
+            }
+        }
+
+        @Override
+        public void release() {
+            isStarted = false;
+            releaseCount++;
+            mOutputs.clear();
+        }
+
+        private static void sleepUs(long us) {
+            if (us <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(us / 1000, (int) (us % 1000) * 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Output {
+        final ByteBuffer data;
+        final long ptsUs;
+        final int flags;
+        final long readyNs;
+
+        Output(ByteBuffer data, long ptsUs, int flags, long readyNs) {
+            this.data = data;
+            this.ptsUs = ptsUs;
+            this.flags = flags;
+            this.readyNs = readyNs;
+        }
+    }
+
+    /**
+     * 按实时速率产生440Hz正弦波，read阻塞到这段数据“录完”为止，与AudioRecord一致
+     */
+    static class FakeAudioSource implements AudioSourceBackend {
+
+        // 约40ms
+        private static final int BUFFER_MS = 40;
+
+        private final int mSampleRate;
+        private final int mChannelCount;
+        private long mStartNs;
+        private long mFramesRead;
+        private volatile boolean isStarted;
+
+        FakeAudioSource(int sampleRate, int channelCount) {
+            mSampleRate = sampleRate;
+            mChannelCount = channelCount;
+        }
+
+        @Override
+        public boolean start() {
+            mStartNs = System.nanoTime();
+            mFramesRead = 0;
+            isStarted = true;
+            return true;
+        }
+
+        @Override
+        public int read(short[] pcm, int offset, int samples) {
+            if (!isStarted) {
+                return -3;
+            }
+            int frames = samples / mChannelCount;
+            long endNs = mStartNs + (mFramesRead + frames) * 1000000000L / mSampleRate;
+            long waitNs = endNs - System.nanoTime();
+            if (waitNs > 0) {
+                try {
+                    Thread.sleep(waitNs / 1000000, (int) (waitNs % 1000000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            for (int i = 0; i < frames; i++) {
+                double t = (double) (mFramesRead + i) / mSampleRate;
+                short value = (short) (8000 * Math.sin(2 * Math.PI * 440 * t));
+                for (int c = 0; c < mChannelCount; c++) {
+                    pcm[offset + i * mChannelCount + c] = value;
+                }
+            }
+            mFramesRead += frames;
+            return frames * mChannelCount;
+        }
+
+        @Override
+        public int getBufferSamples() {
+            return mSampleRate * BUFFER_MS / 1000 * mChannelCount;
+        }
+
+        @Override
+        public void stop() {
+            isStarted = false;
+        }
+    }
+
+    /**
+     * 记录每个轨道写入的帧数、字节数和时间戳，检查时间戳单调递增和视频从关键帧开始，
+     * 统计数组按MuxerThread.TRACK_VIDEO、TRACK_AUDIO索引
+     */
+    static class FakeMuxer implements MuxerBackend {
+
+        private final MediaFormat mVideoFormat;
+        // addTrack返回的序号对应的轨道类型
+        private final int[] mTrackTypes = new int[2];
+        private int mTrackCount;
+        private boolean isStarted;
+
+        final long[] samples = new long[2];
+        final long[] bytes = new long[2];
+        final long[] firstPtsUs = {-1, -1};
+        final long[] lastPtsUs = {-1, -1};
+        final long[] keyFrames = new long[2];
+        // 时间戳不递增的次数，MediaMuxer遇到会报错
+        final long[] ptsErrors = new long[2];
+        int writesBeforeStart;
+        boolean isFirstSampleKey;
+        volatile boolean isStopped;
+        volatile boolean isReleased;
+
+        FakeMuxer(MediaFormat videoFormat) {
+            mVideoFormat = videoFormat;
+        }
+
+        @Override
+        public synchronized int addTrack(MediaFormat format) {
+            if (isStarted) {
+                throw new IllegalStateException("addTrack after start");
+            }
+            mTrackTypes[mTrackCount] = format == mVideoFormat ? MuxerThread.TRACK_VIDEO
+                    : MuxerThread.TRACK_AUDIO;
+            return mTrackCount++;
+        }
+
+        @Override
+        public synchronized void start() {
+            isStarted = true;
+        }
+
+        @Override
+        public synchronized void writeSampleData(int trackIndex, ByteBuffer byteBuf,
+                                                 MediaCodec.BufferInfo bufferInfo) {
+            int track = mTrackTypes[trackIndex];
+            if (!isStarted) {
+                writesBeforeStart++;
+                return;
+            }
+            boolean isKey = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+            if (samples[track] == 0) {
+                firstPtsUs[track] = bufferInfo.presentationTimeUs;
+                if (track == MuxerThread.TRACK_VIDEO) {
+                    isFirstSampleKey = isKey;
+                }
+            } else if (bufferInfo.presentationTimeUs <= lastPtsUs[track]) {
+                ptsErrors[track]++;
+            }
+            if (isKey) {
+                keyFrames[track]++;
+            }
+            lastPtsUs[track] = bufferInfo.presentationTimeUs;
+            samples[track]++;
+            bytes[track] += bufferInfo.size;
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (!isStarted) {
+                throw new IllegalStateException("stop before start");
+            }
+            isStopped = true;
+        }
+
+        @Override
+        public void release() {
+            isReleased = true;
+        }
+
+        @Override
+        public long getWriteOffset() {
+            return -1;
+        }
+
+        @Override
+        public long getDataStart() {
+            return -1;
+        }
+    }
+}
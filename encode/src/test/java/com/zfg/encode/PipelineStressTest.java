@@ -0,0 +1,150 @@
+package com.zfg.encode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用FakeMediaBackends在主机上跑完整的采集、编码、混合流程，检查吞吐、丢帧和音视频同步
+ */
+public class PipelineStressTest {
+
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final int AUDIO_SAMPLE_RATE = 16000;
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("pipeline").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void steadyRecording_keepsAvSyncWithFewDrops() throws InterruptedException {
+        FakeMediaBackends backends = new FakeMediaBackends(0, 30000, 20000, 1);
+        SessionStats stats = record(backends, 30, 3000);
+        FakeMediaBackends.FakeMuxer muxer = backends.muxer;
+
+        assertValidFile(muxer);
+        // 按墙上时间送帧，主机调度抖动可能让10帧的队列偶尔满，只限制丢帧率不超过5%
+        long framesIn = stats.getVideoFramesIn();
+        long dropped = stats.getVideoFramesDropped();
+        assertTrue("dropped = " + dropped + " of " + framesIn, dropped * 20 <= framesIn);
+        // 结束时还在编码器和写入队列中的帧不会写入
+        long video = muxer.samples[MuxerThread.TRACK_VIDEO];
+        assertTrue("video written = " + video, video >= framesIn - dropped - 6);
+
+        long audio = muxer.samples[MuxerThread.TRACK_AUDIO];
+        long expectedAudio = 3L * AUDIO_SAMPLE_RATE / AAC_FRAME_SAMPLES;
+        assertTrue("audio written = " + audio, Math.abs(audio - expectedAudio) <= 6);
+
+        long videoSpanUs = muxer.lastPtsUs[MuxerThread.TRACK_VIDEO]
+                - muxer.firstPtsUs[MuxerThread.TRACK_VIDEO];
+        long audioSpanUs = muxer.lastPtsUs[MuxerThread.TRACK_AUDIO]
+                - muxer.firstPtsUs[MuxerThread.TRACK_AUDIO];
+        long startSkewUs = muxer.firstPtsUs[MuxerThread.TRACK_AUDIO]
+                - muxer.firstPtsUs[MuxerThread.TRACK_VIDEO];
+        assertTrue("start skew = " + startSkewUs, Math.abs(startSkewUs) < 200000);
+        assertTrue("span diff = " + (videoSpanUs - audioSpanUs),
+                Math.abs(videoSpanUs - audioSpanUs) < 200000);
+    }
+
+    @Test
+    public void slowEncoder_dropsFramesButFileStaysValid() throws InterruptedException {
+        // 每帧编码50ms，送入60fps，编码器最多处理约20fps
+        FakeMediaBackends backends = new FakeMediaBackends(50000, 10000, 10000, 2);
+        SessionStats stats = record(backends, 60, 2000);
+        FakeMediaBackends.FakeMuxer muxer = backends.muxer;
+
+        assertValidFile(muxer);
+        long framesIn = stats.getVideoFramesIn();
+        long dropped = stats.getVideoFramesDropped();
+        long video = muxer.samples[MuxerThread.TRACK_VIDEO];
+        assertTrue("dropped = " + dropped + " of " + framesIn, dropped > framesIn / 2);
+        // 队列最多积压10帧，其余要么写入要么丢弃
+        assertTrue(video + dropped >= framesIn - 12);
+        assertTrue(video <= framesIn - dropped);
+        assertTrue(muxer.samples[MuxerThread.TRACK_AUDIO] > 0);
+    }
+
+    @Test
+    public void videoOnly_startsWithoutAudioTrack() throws InterruptedException {
+        FakeMediaBackends backends = new FakeMediaBackends(0, 20000, 0, 3);
+        SessionStats stats = record(backends, 25, 1000, false);
+        FakeMediaBackends.FakeMuxer muxer = backends.muxer;
+
+        assertNull(backends.audioEncoder);
+        assertValidFile(muxer);
+        assertEquals(0, muxer.samples[MuxerThread.TRACK_AUDIO]);
+        assertTrue(muxer.samples[MuxerThread.TRACK_VIDEO] >= stats.getVideoFramesIn() - 3);
+    }
+
+    private SessionStats record(FakeMediaBackends backends, int frameRate, long durationMs)
+            throws InterruptedException {
+        return record(backends, frameRate, durationMs, true);
+    }
+
+    /**
+     * 按帧率实时送入视频帧，结束后等待所有线程退出
+     */
+    private SessionStats record(FakeMediaBackends backends, int frameRate, long durationMs,
+                                boolean audioEnabled) throws InterruptedException {
+        RecordingConfig config = new RecordingConfig.Builder()
+                .setSize(640, 480)
+                .setFrameRate(frameRate)
+                .setGop(1)
+                .setAudioEnabled(audioEnabled)
+                .setOutputDir(mDir.getAbsolutePath())
+                .build();
+        SessionStats stats = new SessionStats();
+        MuxerThread muxerThread = new MuxerThread(config, stats, null, backends);
+        muxerThread.start();
+        assertNotNull(muxerThread.awaitReady());
+
+        long startNs = System.nanoTime();
+        int frames = (int) (durationMs * frameRate / 1000);
+        for (int i = 0; i < frames; i++) {
+            muxerThread.addVideoData(new byte[640 * 480 * 3 / 2]);
+            long nextNs = startNs + (i + 1) * 1000000000L / frameRate;
+            long waitMs = (nextNs - System.nanoTime()) / 1000000;
+            if (waitMs > 0) {
+                Thread.sleep(waitMs);
+            }
+        }
+
+        muxerThread.exit();
+        muxerThread.join(5000);
+        assertFalse(muxerThread.isAlive());
+        assertEquals(0, stats.getThreads());
+        assertEquals(0, stats.getCodecs());
+        return stats;
+    }
+
+    private static void assertValidFile(FakeMediaBackends.FakeMuxer muxer) {
+        assertNotNull(muxer);
+        assertTrue(muxer.isStopped);
+        assertTrue(muxer.isReleased);
+        assertEquals(0, muxer.writesBeforeStart);
+        assertTrue(muxer.samples[MuxerThread.TRACK_VIDEO] > 0);
+        assertTrue(muxer.isFirstSampleKey);
+        assertEquals(0, muxer.ptsErrors[MuxerThread.TRACK_VIDEO]);
+        assertEquals(0, muxer.ptsErrors[MuxerThread.TRACK_AUDIO]);
+    }
+}
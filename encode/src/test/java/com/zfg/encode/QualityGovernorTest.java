@@ -0,0 +1,158 @@
+package com.zfg.encode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用模拟的发热状态和丢帧统计驱动QualityGovernor，检查降级、恢复的时机，以及码率、帧率调整能到达编码器
+ */
+public class QualityGovernorTest {
+
+    private static final long INTERVAL = QualityGovernor.EVALUATE_INTERVAL_MS;
+    // 每个评估周期送入的帧数，25fps
+    private static final long FRAMES = 50;
+
+    private final List<Integer> mLevels = new ArrayList<>();
+    private QualityGovernor mGovernor;
+    private long mNowMs;
+    private long mFramesIn;
+    private long mFramesDropped;
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mGovernor = new QualityGovernor((level, reason) -> mLevels.add(level));
+        mDir = Files.createTempDirectory("governor").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    /**
+     * 推进一个评估周期
+     *
+     * @param dropped 本周期丢弃的帧数
+     */
+    private void tick(int thermalStatus, long dropped) {
+        mGovernor.onThermalStatusChanged(thermalStatus);
+        mNowMs += INTERVAL;
+        mFramesIn += FRAMES;
+        mFramesDropped += dropped;
+        mGovernor.evaluate(mNowMs, mFramesIn, mFramesDropped);
+    }
+
+    private void run(int thermalStatus, long dropped, long durationMs) {
+        for (long elapsed = 0; elapsed < durationMs; elapsed += INTERVAL) {
+            tick(thermalStatus, dropped);
+        }
+    }
+
+    @Test
+    public void thermalRise_jumpsToFloorAndRecoversOneLevelAtATime() {
+        run(ThermalMonitor.STATUS_NONE, 0, 10000);
+        assertEquals(QualityGovernor.LEVEL_FULL, mGovernor.getLevel());
+
+        tick(ThermalMonitor.STATUS_SEVERE, 0);
+        assertEquals(QualityGovernor.LEVEL_REDUCED_BITRATE, mGovernor.getLevel());
+        assertEquals(1, mLevels.size());
+
+        // 降温后不会马上恢复
+        run(ThermalMonitor.STATUS_NONE, 0, QualityGovernor.STEP_UP_DELAY_MS - INTERVAL);
+        assertEquals(QualityGovernor.LEVEL_REDUCED_BITRATE, mGovernor.getLevel());
+
+        // 之后每个升级间隔升一级
+        run(ThermalMonitor.STATUS_NONE, 0, 3 * QualityGovernor.STEP_UP_DELAY_MS + INTERVAL);
+        assertEquals(QualityGovernor.LEVEL_FULL, mGovernor.getLevel());
+        assertEquals(Arrays.asList(QualityGovernor.LEVEL_REDUCED_BITRATE,
+                QualityGovernor.LEVEL_PROXY_PAUSED, QualityGovernor.LEVEL_REDUCED_ANALYSIS,
+                QualityGovernor.LEVEL_FULL), mLevels);
+    }
+
+    @Test
+    public void recoveryStopsAtThermalFloor() {
+        tick(ThermalMonitor.STATUS_CRITICAL, 0);
+        assertEquals(QualityGovernor.MAX_LEVEL, mGovernor.getLevel());
+
+        run(ThermalMonitor.STATUS_MODERATE, 0, 10 * QualityGovernor.STEP_UP_DELAY_MS);
+        assertEquals(QualityGovernor.LEVEL_PROXY_PAUSED, mGovernor.getLevel());
+    }
+
+    @Test
+    public void sustainedDrops_stepDownOneLevelPerInterval() {
+        // 20%丢帧，没有发热信息（API 29以下）
+        long start = mNowMs;
+        run(ThermalMonitor.STATUS_NONE, FRAMES / 5, QualityGovernor.STEP_DOWN_INTERVAL_MS);
+        assertEquals(1, mLevels.size());
+
+        run(ThermalMonitor.STATUS_NONE, FRAMES / 5, 10 * QualityGovernor.STEP_DOWN_INTERVAL_MS);
+        assertEquals(QualityGovernor.MAX_LEVEL, mGovernor.getLevel());
+        assertEquals(QualityGovernor.MAX_LEVEL, mLevels.size());
+        assertTrue(mNowMs - start >= (QualityGovernor.MAX_LEVEL - 1)
+                * QualityGovernor.STEP_DOWN_INTERVAL_MS);
+    }
+
+    @Test
+    public void intermittentDrops_holdLevelWithoutFlapping() {
+        tick(ThermalMonitor.STATUS_MODERATE, 0);
+        assertEquals(QualityGovernor.LEVEL_PROXY_PAUSED, mGovernor.getLevel());
+
+        // 发热已恢复，但每30秒仍有一次少量丢帧（2%），不够降级也不算有余量
+        for (int i = 0; i < 20; i++) {
+            run(ThermalMonitor.STATUS_NONE, 0, 30000 - INTERVAL);
+            tick(ThermalMonitor.STATUS_NONE, 1);
+        }
+        assertEquals(QualityGovernor.LEVEL_PROXY_PAUSED, mGovernor.getLevel());
+        assertEquals(1, mLevels.size());
+    }
+
+    @Test
+    public void bitRateAndFrameInterval_reachRunningEncoder() throws InterruptedException {
+        RecordingConfig config = new RecordingConfig.Builder()
+                .setSize(320, 240)
+                .setFrameRate(30)
+                .setBitRate(1000000)
+                .setAudioEnabled(false)
+                .setOutputDir(mDir.getAbsolutePath())
+                .build();
+        FakeMediaBackends backends = new FakeMediaBackends(0, 10000, 0, 4);
+        SessionStats stats = new SessionStats();
+        MuxerThread muxerThread = new MuxerThread(config, stats, null, backends);
+        muxerThread.setFrameInterval(QualityGovernor.REDUCED_FRAME_INTERVAL);
+        muxerThread.start();
+        assertNotNull(muxerThread.awaitReady());
+
+        for (int i = 0; i < 30; i++) {
+            muxerThread.addVideoData(new byte[320 * 240 * 3 / 2]);
+            Thread.sleep(10);
+        }
+        muxerThread.setVideoBitRate(600000);
+        for (int i = 0; i < 10; i++) {
+            muxerThread.addVideoData(new byte[320 * 240 * 3 / 2]);
+            Thread.sleep(10);
+        }
+        muxerThread.exit();
+        muxerThread.join(5000);
+
+        assertEquals(600000, backends.videoEncoder.bitRate);
+        assertEquals(20, stats.getVideoFramesIn());
+        assertEquals(20, stats.getVideoFramesSkipped());
+    }
+}